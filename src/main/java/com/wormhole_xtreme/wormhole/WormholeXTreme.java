@@ -18,6 +18,7 @@
  */
 package com.wormhole_xtreme.wormhole;
 
+import java.io.File;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,10 +44,17 @@ import com.wormhole_xtreme.wormhole.command.WXList;
 import com.wormhole_xtreme.wormhole.command.WXRemove;
 import com.wormhole_xtreme.wormhole.command.Wormhole;
 import com.wormhole_xtreme.wormhole.config.WormholeConfig;
+import com.wormhole_xtreme.wormhole.logic.StargateBlockQueue;
+import com.wormhole_xtreme.wormhole.logic.StargateClientRenderer;
 import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import com.wormhole_xtreme.wormhole.logic.StargateTimerWheel;
 import com.wormhole_xtreme.wormhole.database.DatabaseInitializer;
 import com.wormhole_xtreme.wormhole.database.DatabaseManager;
+import com.wormhole_xtreme.wormhole.database.FlatFileGateStore;
+import com.wormhole_xtreme.wormhole.database.GateStore;
+import com.wormhole_xtreme.wormhole.database.LegacyGateMigrator;
 import com.wormhole_xtreme.wormhole.database.StargateRepository;
+import com.wormhole_xtreme.wormhole.database.StargateWriteQueue;
 import com.wormhole_xtreme.wormhole.model.StargateManager;
 import com.wormhole_xtreme.wormhole.permissions.PermissionsManager;
 import com.wormhole_xtreme.wormhole.plugin.HelpSupport;
@@ -86,13 +94,24 @@ public class WormholeXTreme extends JavaPlugin {
     // Database
     private DatabaseManager databaseManager;
     private DatabaseInitializer databaseInitializer;
-    private StargateRepository stargateRepository;
+    private GateStore gateStore;
+    private StargateWriteQueue stargateWriteQueue;
+    // How often the gate store does its upkeep, such as folding its journal into the database: five minutes
+    private static final long STORE_COMPACT_TICKS = 5 * 60 * 20;
+    // How often gates whose chunks stayed unloaded are dropped back to descriptors: one minute
+    private static final long GATE_SWEEP_TICKS = 60 * 20;
+    // The gate file of the flat file store, in the data folder
+    private static final String FLAT_FILE_NAME = "stargates.dat";
 
     // Plugin instances
     private static WormholeXTreme instance;
     private static Logger log;
     private static BukkitScheduler scheduler;
     private static WorldHandler worldHandler;
+    private static StargateBlockQueue blockQueue;
+    private static StargateTimerWheel timerWheel;
+    private static StargateClientRenderer clientRenderer;
+    private static int animationLodRadius;
 
     // Listeners
     private final WormholeXTremePlayerListener playerListener = new WormholeXTremePlayerListener();
@@ -101,6 +120,7 @@ public class WormholeXTreme extends JavaPlugin {
     private final WormholeXTremeEntityListener entityListener = new WormholeXTremeEntityListener();
     private final WormholeXTremeServerListener serverListener = new WormholeXTremeServerListener();
     private final WormholeXTremeRedstoneListener redstoneListener = new WormholeXTremeRedstoneListener();
+    private final WormholeXTremeWorldListener worldListener = new WormholeXTremeWorldListener();
 
     /**
      * Gets the plugin instance.
@@ -139,12 +159,21 @@ public class WormholeXTreme extends JavaPlugin {
     }
 
     /**
-     * Gets the stargate repository.
+     * Gets the store gates are kept in, as chosen by the storage backend setting.
      *
-     * @return the stargate repository
+     * @return the gate store
      */
-    public StargateRepository getStargateRepository() {
-        return stargateRepository;
+    public GateStore getGateStore() {
+        return gateStore;
+    }
+
+    /**
+     * Gets the write-behind queue for stargate saves.
+     *
+     * @return the stargate write queue
+     */
+    public StargateWriteQueue getStargateWriteQueue() {
+        return stargateWriteQueue;
     }
 
     /**
@@ -154,6 +183,22 @@ public class WormholeXTreme extends JavaPlugin {
      */
     private boolean initializeDatabase() {
         try {
+            final String backend = wormholeConfig.get(WormholeConfig.STORAGE_BACKEND);
+            if ("FLATFILE".equalsIgnoreCase(backend)) {
+                final File folder = getDataFolder();
+                if (!folder.exists() && !folder.mkdirs()) {
+                    getLogger().severe("Failed to create data folder: " + folder);
+                    return false;
+                }
+                gateStore = new FlatFileGateStore(new File(folder, FLAT_FILE_NAME).toPath(), getLogger());
+                startGateStore();
+                getLogger().info("Flat file gate store opened successfully");
+                return true;
+            }
+            if (!"HSQLDB".equalsIgnoreCase(backend)) {
+                getLogger().warning("Unknown storage backend '" + backend + "', using HSQLDB");
+            }
+
             // Initialize database manager
             databaseManager = new DatabaseManager(this);
             if (!databaseManager.initialize()) {
@@ -169,7 +214,8 @@ public class WormholeXTreme extends JavaPlugin {
             }
 
             // Initialize repositories
-            stargateRepository = new StargateRepository(this, databaseManager);
+            gateStore = new StargateRepository(this, databaseManager, databaseManager.getJournalPath());
+            startGateStore();
 
             getLogger().info("Database initialized successfully");
             return true;
@@ -179,6 +225,14 @@ public class WormholeXTreme extends JavaPlugin {
         }
     }
 
+    /**
+     * Puts the write queue in front of the gate store and schedules its upkeep.
+     */
+    private void startGateStore() {
+        stargateWriteQueue = new StargateWriteQueue(gateStore, getLogger());
+        scheduler.runTaskTimerAsynchronously(this, gateStore::compact, STORE_COMPACT_TICKS, STORE_COMPACT_TICKS);
+    }
+
     // ...existing code...
 
 /**
@@ -226,6 +280,65 @@ public static BukkitScheduler getScheduler() {
     return scheduler;
 }
 
+/**
+ * Gets the queue gate rendering sets its blocks through.
+ *
+ * @return the block queue, null while the plugin is not enabled
+ */
+public static StargateBlockQueue getBlockQueue() {
+    return blockQueue;
+}
+
+/**
+ * Gets the wheel gate and player timers are scheduled on.
+ *
+ * @return the timer wheel, null while the plugin is not enabled
+ */
+public static StargateTimerWheel getTimerWheel() {
+    return timerWheel;
+}
+
+/**
+ * Gets the renderer gate animations are shown to players through in CLIENT animation mode.
+ *
+ * @return the client renderer, null in WORLD mode or while the plugin is not enabled
+ */
+public static StargateClientRenderer getClientRenderer() {
+    return clientRenderer;
+}
+
+/**
+ * Gets the blocks from a gate within which a player must be for it to animate step by step.
+ *
+ * @return the radius, 0 if gates always animate
+ */
+public static int getAnimationLodRadius() {
+    return animationLodRadius;
+}
+
+/**
+ * Applies the configured animation level of detail, and starts or stops the client renderer to match the configured animation mode.
+ */
+private void applyAnimationMode() {
+    animationLodRadius = Math.max(0, wormholeConfig.get(WormholeConfig.ANIMATION_LOD_RADIUS));
+    final String mode = wormholeConfig.get(WormholeConfig.ANIMATION_MODE);
+    if ("CLIENT".equalsIgnoreCase(mode)) {
+        if (clientRenderer == null) {
+            clientRenderer = new StargateClientRenderer(wormholeConfig.get(WormholeConfig.CLIENT_ANIMATION_RANGE));
+        } else {
+            clientRenderer.setRange(wormholeConfig.get(WormholeConfig.CLIENT_ANIMATION_RANGE));
+        }
+        return;
+    }
+    if (!"WORLD".equalsIgnoreCase(mode)) {
+        getLogger().warning("Unknown animation mode '" + mode + "', using WORLD");
+    }
+    if (clientRenderer != null) {
+        clientRenderer.clearAll();
+        clientRenderer = null;
+    }
+}
+
 /**
  * Gets the WorldHandler instance.
  *
@@ -248,15 +361,25 @@ public static void setWorldHandler(WorldHandler handler) {
  */
 private void registerCommands() {
     Objects.requireNonNull(getCommand("wxforce")).setExecutor(new Force());
-    Objects.requireNonNull(getCommand("wxidc")).setExecutor(new WXIDC());
+    final WXIDC wxidc = new WXIDC();
+    Objects.requireNonNull(getCommand("wxidc")).setExecutor(wxidc);
+    Objects.requireNonNull(getCommand("wxidc")).setTabCompleter(wxidc);
     Objects.requireNonNull(getCommand("wxcompass")).setExecutor(new Compass());
     Objects.requireNonNull(getCommand("wxcomplete")).setExecutor(new Complete());
-    Objects.requireNonNull(getCommand("wxremove")).setExecutor(new WXRemove());
+    final WXRemove wxremove = new WXRemove();
+    Objects.requireNonNull(getCommand("wxremove")).setExecutor(wxremove);
+    Objects.requireNonNull(getCommand("wxremove")).setTabCompleter(wxremove);
     Objects.requireNonNull(getCommand("wxlist")).setExecutor(new WXList());
-    Objects.requireNonNull(getCommand("wxgo")).setExecutor(new Go());
-    Objects.requireNonNull(getCommand("dial")).setExecutor(new Dial());
+    final Go go = new Go();
+    Objects.requireNonNull(getCommand("wxgo")).setExecutor(go);
+    Objects.requireNonNull(getCommand("wxgo")).setTabCompleter(go);
+    final Dial dial = new Dial();
+    Objects.requireNonNull(getCommand("dial")).setExecutor(dial);
+    Objects.requireNonNull(getCommand("dial")).setTabCompleter(dial);
     Objects.requireNonNull(getCommand("wxbuild")).setExecutor(new Build());
-    Objects.requireNonNull(getCommand("wormhole")).setExecutor(new Wormhole());
+    final Wormhole wormhole = new Wormhole();
+    Objects.requireNonNull(getCommand("wormhole")).setExecutor(wormhole);
+    Objects.requireNonNull(getCommand("wormhole")).setTabCompleter(wormhole);
 }
 
 /**
@@ -272,6 +395,7 @@ private void registerListeners() {
     pm.registerEvents(entityListener, this);
     pm.registerEvents(serverListener, this);
     pm.registerEvents(redstoneListener, this);
+    pm.registerEvents(worldListener, this);
 }
 
 // Static wrappers for legacy support classes to call during enable flows
@@ -370,8 +494,28 @@ public void onEnable() {
         }
     }
     
+    // One task a tick runs due gate timers, then applies a budget of the block changes they queued
+    timerWheel = new StargateTimerWheel(StargateTimerWheel.DEFAULT_SLOTS, getLogger());
+    blockQueue = new StargateBlockQueue(wormholeConfig.get(WormholeConfig.BLOCK_CHANGES_PER_TICK));
+    applyAnimationMode();
+    scheduler.runTaskTimer(this, () -> {
+        timerWheel.tick();
+        blockQueue.tick();
+        if (clientRenderer != null) {
+            clientRenderer.tick();
+        }
+    }, 1, 1);
+
+    // Bring gates still in the old save format over before they are loaded
+    if (databaseManager != null) {
+        new LegacyGateMigrator(databaseManager, gateStore, databaseManager.getMigrationCheckpointPath(), getLogger(),
+                Runtime.getRuntime().availableProcessors()).migrate();
+    }
+
     // Load stargates from database into memory
     StargateManager.initialize(this);
+    final long unloadDelay = wormholeConfig.get(WormholeConfig.GATE_UNLOAD_DELAY) * 1000L;
+    scheduler.runTaskTimer(this, () -> StargateManager.dehydrateIdleStargates(unloadDelay), GATE_SWEEP_TICKS, GATE_SWEEP_TICKS);
     
     prettyLog(Level.INFO, true, "has been enabled!");
 }
@@ -379,6 +523,22 @@ public void onEnable() {
 @Override
 public void onDisable() {
     // Plugin shutdown logic
+    // Leave no gate half drawn.
+    if (clientRenderer != null) {
+        clientRenderer.clearAll();
+        clientRenderer = null;
+    }
+    if (blockQueue != null) {
+        blockQueue.flush();
+        blockQueue = null;
+    }
+    // Write out queued gate saves while the pool is still open.
+    if (stargateWriteQueue != null) {
+        stargateWriteQueue.close();
+    }
+    if (gateStore != null) {
+        gateStore.close();
+    }
     if (databaseManager != null) {
         databaseManager.shutdown();
     }
@@ -395,6 +555,10 @@ public void onDisable() {
 public void reload() {
     try {
         wormholeConfig.reload();
+        if (blockQueue != null) {
+            blockQueue.setBudget(wormholeConfig.get(WormholeConfig.BLOCK_CHANGES_PER_TICK));
+            applyAnimationMode();
+        }
         prettyLog(Level.INFO, false, "Configuration reloaded.");
         HelpSupport.enableHelp();
         if (wormholeConfig.get(WormholeConfig.WORLDS_SUPPORT_ENABLED)) {
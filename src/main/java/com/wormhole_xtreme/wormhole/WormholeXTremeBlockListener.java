@@ -20,7 +20,6 @@ package com.wormhole_xtreme.wormhole;
 
 import java.util.logging.Level;
 
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
@@ -132,6 +131,9 @@ public class WormholeXTremeBlockListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockBreak(final BlockBreakEvent event) {
         final Block block = event.getBlock();
+        if (!StargateManager.isGateChunk(block)) {
+            return;
+        }
         final Player player = event.getPlayer();
         final Stargate stargate = StargateManager.getGateFromBlock(block);
 
@@ -142,6 +144,25 @@ public class WormholeXTremeBlockListener implements Listener {
         }
     }
 
+    /**
+     * Checks if the gate is active or recently active with a lava portal,
+     * the only case where fire and lava near it need blocking.
+     *
+     * @param stargate the stargate
+     * @return true, if the gate's surroundings need protecting
+     */
+    private static boolean isActiveLavaGate(final Stargate stargate) {
+        if (!(stargate.isGateActive() || stargate.isGateRecentlyActive())) {
+            return false;
+        }
+        final Material portalMaterial = stargate.isGateCustom() 
+            ? stargate.getGateCustomPortalMaterial()
+            : (stargate.getGateShape() != null 
+                ? stargate.getGateShape().getShapePortalMaterial() 
+                : null);
+        return portalMaterial == Material.LAVA;
+    }
+
     /**
      * On block burn.
      * Prevents blocks from burning near active stargates with lava portals.
@@ -150,44 +171,13 @@ public class WormholeXTremeBlockListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockBurn(final BlockBurnEvent event) {
-        final Location current = event.getBlock().getLocation();
-        final Stargate closest = StargateManager.findClosestStargate(current);
-        
-        // Skip if no nearby stargate or stargate is inactive
-        if (closest == null || !(closest.isGateActive() || closest.isGateRecentlyActive())) {
-            return;
-        }
-        
-        // Check if the portal uses lava
-        Material portalMaterial = closest.isGateCustom() 
-            ? closest.getGateCustomPortalMaterial()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapePortalMaterial() 
-                : null);
-                
-    if (portalMaterial != Material.LAVA) {
+        if (!StargateManager.isGateChunk(event.getBlock())) {
             return;
         }
-        
-        // Check distance to stargate
-        final double blockDistanceSquared = StargateManager.distanceSquaredToClosestGateBlock(current, closest);
-        double wooshDepthSquared = closest.isGateCustom()
-            ? closest.getGateCustomWooshDepthSquared()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapeWooshDepthSquared() 
-                : 0);
-                
-        double wooshDepth = closest.isGateCustom()
-            ? closest.getGateCustomWooshDepth()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapeWooshDepth() 
-                : 0);
-        
-        // Cancel if within protected area
-        if ((blockDistanceSquared <= wooshDepthSquared && wooshDepth != 0) || blockDistanceSquared <= 25) {
+        final Stargate closest = StargateManager.findStargateProtectingBlock(event.getBlock(), WormholeXTremeBlockListener::isActiveLavaGate);
+        if (closest != null) {
             WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, 
-                "Blocked Gate: \"" + closest.getGateName() + 
-                "\" Proximity Block Burn Distance Squared: \"" + blockDistanceSquared + "\"");
+                "Blocked Gate: \"" + closest.getGateName() + "\" Proximity Block Burn");
             event.setCancelled(true);
         }
     }
@@ -200,6 +190,9 @@ public class WormholeXTremeBlockListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockDamage(final BlockDamageEvent event) {
+        if (!StargateManager.isGateChunk(event.getBlock())) {
+            return;
+        }
         final Stargate stargate = StargateManager.getGateFromBlock(event.getBlock());
         final Player player = event.getPlayer();
         
@@ -219,8 +212,15 @@ public class WormholeXTremeBlockListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockFromTo(final BlockFromToEvent event) {
-        if (StargateManager.isBlockInGate(event.getToBlock()) || 
-            StargateManager.isBlockInGate(event.getBlock())) {
+        final Block to = event.getToBlock();
+        final Block from = event.getBlock();
+        final boolean toChunk = StargateManager.isGateChunk(to);
+        final boolean fromChunk = StargateManager.isGateChunk(from);
+        if (!toChunk && !fromChunk) {
+            return;
+        }
+        if ((toChunk && StargateManager.isBlockInGate(to)) || 
+            (fromChunk && StargateManager.isBlockInGate(from))) {
             event.setCancelled(true);
         }
     }
@@ -233,46 +233,15 @@ public class WormholeXTremeBlockListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockIgnite(final BlockIgniteEvent event) {
-        final Location current = event.getBlock().getLocation();
-        final Stargate closest = StargateManager.findClosestStargate(current);
-        
-        // Skip if no nearby stargate or stargate is inactive
-        if (closest == null || !(closest.isGateActive() || closest.isGateRecentlyActive())) {
+        if (!StargateManager.isGateChunk(event.getBlock())) {
             return;
         }
-        
-        // Check if the portal uses lava
-        Material portalMaterial = closest.isGateCustom() 
-            ? closest.getGateCustomPortalMaterial()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapePortalMaterial() 
-                : null);
-                
-    if (portalMaterial != Material.LAVA) {
-            return;
-        }
-        
-        // Check distance to stargate
-        final double blockDistanceSquared = StargateManager.distanceSquaredToClosestGateBlock(current, closest);
-        double wooshDepthSquared = closest.isGateCustom()
-            ? closest.getGateCustomWooshDepthSquared()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapeWooshDepthSquared() 
-                : 0);
-                
-        double wooshDepth = closest.isGateCustom()
-            ? closest.getGateCustomWooshDepth()
-            : (closest.getGateShape() != null 
-                ? closest.getGateShape().getShapeWooshDepth() 
-                : 0);
-        
-        // Cancel if within protected area
-        if ((blockDistanceSquared <= wooshDepthSquared && wooshDepth != 0) || blockDistanceSquared <= 25) {
+        final Stargate closest = StargateManager.findStargateProtectingBlock(event.getBlock(), WormholeXTremeBlockListener::isActiveLavaGate);
+        if (closest != null) {
             WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, 
                 "Blocked Gate: \"" + closest.getGateName() + 
                 "\" Block Type: \"" + event.getBlock().getType() + 
-                "\" Proximity Block Ignite: \"" + event.getCause() + 
-                "\" Distance Squared: \"" + blockDistanceSquared + "\"");
+                "\" Proximity Block Ignite: \"" + event.getCause() + "\"");
             event.setCancelled(true);
         }
     }
@@ -286,6 +255,9 @@ public class WormholeXTremeBlockListener implements Listener {
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onBlockPhysics(final BlockPhysicsEvent event) {
         final Block block = event.getBlock();
+        if (!StargateManager.isGateChunk(block)) {
+            return;
+        }
         if (StargateManager.isBlockInGate(block) && block.getType() != Material.REDSTONE_WIRE) {
             event.setCancelled(true);
         }
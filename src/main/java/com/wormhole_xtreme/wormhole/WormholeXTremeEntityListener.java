@@ -21,7 +21,6 @@ package com.wormhole_xtreme.wormhole;
 import java.util.List;
 import java.util.logging.Level;
 
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
@@ -75,37 +74,44 @@ class WormholeXTremeEntityListener implements Listener
     private static boolean handlePlayerDamageEvent(final EntityDamageEvent event)
     {
         final Player p = (Player) event.getEntity();
-        final Location current = p.getLocation();
-        final Stargate closest = StargateManager.findClosestStargate(current);
-        if ((closest != null) && (((closest.isGateCustom()
-            ? closest.getGateCustomPortalMaterial()
-            : closest.getGateShape() != null
-                ? closest.getGateShape().getShapePortalMaterial()
-                : Material.WATER) == Material.LAVA) || ((closest.getGateTarget() != null) && ((closest.getGateTarget().isGateCustom()
-            ? closest.getGateTarget().getGateCustomPortalMaterial()
-            : closest.getGateTarget().getGateShape() != null
-                ? closest.getGateTarget().getGateShape().getShapePortalMaterial()
-                : Material.WATER) == Material.LAVA))))
+        final Stargate closest = StargateManager.findStargateProtectingPlayer(p.getLocation(), WormholeXTremeEntityListener::isActiveLavaGate);
+        if (closest != null)
         {
-            final double blockDistanceSquared = StargateManager.distanceSquaredToClosestGateBlock(current, closest);
-            if ((closest.isGateActive() || closest.isGateRecentlyActive()) && (((blockDistanceSquared <= (closest.isGateCustom()
-                ? closest.getGateCustomWooshDepthSquared()
-                : closest.getGateShape() != null
-                    ? closest.getGateShape().getShapeWooshDepthSquared()
-                    : 0)) && ((closest.isGateCustom()
-                ? closest.getGateCustomWooshDepth()
-                : closest.getGateShape() != null
-                    ? closest.getGateShape().getShapeWooshDepth()
-                    : 0) != 0)) || (blockDistanceSquared <= 16)))
-            {
-                WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Blocked Gate: \"" + closest.getGateName() + "\" Proximity Event: \"" + event.getCause().toString() + "\" On: \"" + p.getName() + "\" Distance Squared: \"" + blockDistanceSquared + "\"");
-                p.setFireTicks(0);
-                return true;
-            }
+            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Blocked Gate: \"" + closest.getGateName() + "\" Proximity Event: \"" + event.getCause().toString() + "\" On: \"" + p.getName() + "\"");
+            p.setFireTicks(0);
+            return true;
         }
         return false;
     }
 
+    /**
+     * Checks if the gate is active or recently active and either it or its target has a lava portal.
+     * 
+     * @param stargate
+     *            the stargate
+     * @return true, if players near the gate need protecting
+     */
+    private static boolean isActiveLavaGate(final Stargate stargate)
+    {
+        return (stargate.isGateActive() || stargate.isGateRecentlyActive()) && ((getPortalMaterial(stargate) == Material.LAVA) || ((stargate.getGateTarget() != null) && (getPortalMaterial(stargate.getGateTarget()) == Material.LAVA)));
+    }
+
+    /**
+     * Gets the portal material of the gate.
+     * 
+     * @param stargate
+     *            the stargate
+     * @return the portal material
+     */
+    private static Material getPortalMaterial(final Stargate stargate)
+    {
+        return stargate.isGateCustom()
+            ? stargate.getGateCustomPortalMaterial()
+            : stargate.getGateShape() != null
+                ? stargate.getGateShape().getShapePortalMaterial()
+                : Material.WATER;
+    }
+
     /* (non-Javadoc)
      * @see org.bukkit.event.entity.EntityListener#onEntityDamage(org.bukkit.event.entity.EntityDamageEvent)
      */
@@ -39,6 +39,7 @@ import org.bukkit.block.data.type.Switch;
 import org.bukkit.block.data.type.WallSign;
 import java.util.logging.Level;
 
+import com.wormhole_xtreme.wormhole.command.Wormhole;
 import com.wormhole_xtreme.wormhole.config.WormholeConfig;
 import com.wormhole_xtreme.wormhole.logic.StargateHelper;
 import com.wormhole_xtreme.wormhole.model.Stargate;
@@ -101,6 +102,8 @@ public class WormholeXTremePlayerListener implements Listener {
                         player.sendMessage("[WormholeXTreme] Stargate design valid with sign nav.");
                         if (Objects.equals(newGate.getGateName(), "")) {
                             player.sendMessage("[WormholeXTreme] Invalid stargate name: \"\"");
+                        } else if (Wormhole.isSnapshotRunning()) {
+                            player.sendMessage("[WormholeXTreme] Stargates cannot be built while a snapshot export or import runs.");
                         } else {
                             final boolean success = StargateManager.completeStargate(player, newGate);
                             if (success) {
@@ -294,16 +297,20 @@ public class WormholeXTremePlayerListener implements Listener {
      */
     private static boolean handlePlayerMoveEvent(final PlayerMoveEvent event)
     {
-        if (!hasChangedBlockCoordinates(event.getFrom(), event.getTo())) 
+        if (!StargateManager.isAnyStargateActive() || !hasChangedBlockCoordinates(event.getFrom(), event.getTo())) 
         {
             return false;
         }
         final Player player = event.getPlayer();
         final Location toLocFinal = event.getTo();
+        final Stargate stargate = StargateManager.getActiveGateFromPortal(toLocFinal.getWorld(), toLocFinal.getBlockX(), toLocFinal.getBlockY(), toLocFinal.getBlockZ());
+        if (stargate == null)
+        {
+            return false;
+        }
         final Block gateBlockFinal = toLocFinal.getWorld().getBlockAt(toLocFinal.getBlockX(), toLocFinal.getBlockY(), toLocFinal.getBlockZ());
-        final Stargate stargate = StargateManager.getGateFromBlock(gateBlockFinal);
 
-    if ((stargate != null) && stargate.isGateActive() && (stargate.getGateTarget() != null) && (gateBlockFinal.getType() == (stargate.isGateCustom()
+        if (stargate.isGateActive() && (stargate.getGateTarget() != null) && (gateBlockFinal.getType() == (stargate.isGateCustom()
             ? stargate.getGateCustomPortalMaterial()
             : stargate.getGateShape() != null
                 ? stargate.getGateShape().getShapePortalMaterial()
@@ -357,7 +364,7 @@ public class WormholeXTremePlayerListener implements Listener {
             }
             return true;
         }
-        else if (stargate != null)
+        else
         {
             WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Player entered gate but wasn't active or didn't have a target.");
         }
@@ -82,6 +82,10 @@ class WormholeXTremeRedstoneListener implements Listener
     public void handleBlockRedstoneChange(final BlockRedstoneEvent event)
     {
         final Block block = event.getBlock();
+        if ( !StargateManager.isGateChunk(block))
+        {
+            return;
+        }
         WormholeXTreme.getThisPlugin().prettyLog(Level.FINEST, false, "Caught redstone event on block: " + block.toString() + " oldCurrent: " + event.getOldCurrent() + " newCurrent: " + event.getNewCurrent());
         if (StargateManager.isBlockInGate(block))
         {
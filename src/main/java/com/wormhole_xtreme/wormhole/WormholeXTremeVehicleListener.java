@@ -63,9 +63,13 @@ class WormholeXTremeVehicleListener implements Listener
     private static boolean handleStargateMinecartTeleportEvent(final VehicleMoveEvent event)
     {
         final Location l = event.getTo();
+        final Stargate st = StargateManager.getActiveGateFromPortal(l.getWorld(), l.getBlockX(), l.getBlockY(), l.getBlockZ());
+        if (st == null)
+        {
+            return false;
+        }
         final Block ch = l.getWorld().getBlockAt(l.getBlockX(), l.getBlockY(), l.getBlockZ());
-        final Stargate st = StargateManager.getGateFromBlock(ch);
-            if ((st != null) && st.isGateActive() && (st.getGateTarget() != null) && (ch.getType() == (st.isGateCustom()
+            if (st.isGateActive() && (st.getGateTarget() != null) && (ch.getType() == (st.isGateCustom()
                 ? st.getGateCustomPortalMaterial()
                 : st.getGateShape() != null
                     ? st.getGateShape().getShapePortalMaterial()
@@ -213,7 +217,7 @@ class WormholeXTremeVehicleListener implements Listener
     @EventHandler
     public void handleVehicleMove(final VehicleMoveEvent event)
     {
-        if (event.getVehicle() instanceof Minecart)
+        if (StargateManager.isAnyStargateActive() && (event.getVehicle() instanceof Minecart))
         {
             handleStargateMinecartTeleportEvent(event);
         }
@@ -0,0 +1,95 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole;
+
+import java.util.logging.Level;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import com.wormhole_xtreme.wormhole.model.StargateManager;
+
+/**
+ * WormholeXtreme World Listener.
+ * Attaches a world's gates when it loads and detaches them when it unloads, and hydrates gates as their
+ * chunks load.
+ */
+class WormholeXTremeWorldListener implements Listener
+{
+
+    /**
+     * Handle chunk load. Gates reaching into the chunk get their blocks back.
+     *
+     * @param event
+     *            the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleChunkLoad(final ChunkLoadEvent event)
+    {
+        StargateManager.chunkLoaded(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    /**
+     * Handle chunk unload. Gates reaching into the chunk are dropped to descriptors once they have been idle a while.
+     *
+     * @param event
+     *            the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleChunkUnload(final ChunkUnloadEvent event)
+    {
+        StargateManager.chunkUnloaded(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    /**
+     * Handle world load.
+     *
+     * @param event
+     *            the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void handleWorldLoad(final WorldLoadEvent event)
+    {
+        final int attached = StargateManager.attachWorld(event.getWorld());
+        if (attached > 0)
+        {
+            WormholeXTreme.getThisPlugin().prettyLog(Level.INFO, false, "Attached " + attached + " gates in world: " + event.getWorld().getName());
+        }
+    }
+
+    /**
+     * Handle world unload. Runs last, and only if no other plugin cancelled the unload.
+     *
+     * @param event
+     *            the event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void handleWorldUnload(final WorldUnloadEvent event)
+    {
+        final int detached = StargateManager.detachWorld(event.getWorld());
+        if (detached > 0)
+        {
+            WormholeXTreme.getThisPlugin().prettyLog(Level.INFO, false, "Detached " + detached + " gates in world: " + event.getWorld().getName());
+        }
+    }
+}
@@ -19,12 +19,17 @@
 package com.wormhole_xtreme.wormhole.command;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import com.wormhole_xtreme.wormhole.model.Stargate;
 import com.wormhole_xtreme.wormhole.model.StargateManager;
+import com.wormhole_xtreme.wormhole.permissions.WXPermissions;
+import com.wormhole_xtreme.wormhole.permissions.WXPermissions.PermissionType;
 
 /**
  * WormholeXTreme Commands and command specific methods.
@@ -35,6 +40,9 @@ import com.wormhole_xtreme.wormhole.model.StargateManager;
 class CommandUtilities
 {
 
+    /** The most tab completions offered at once. */
+    private static final int COMPLETION_LIMIT = 50;
+
     /**
      * Close gate.
      * 
@@ -159,6 +167,69 @@ class CommandUtilities
         StargateManager.removeStargate(stargate);
     }
 
+    /**
+     * Complete a gate name from the networks the sender can see.
+     * Players only see the public network and networks they have use permission on.
+     * 
+     * @param sender
+     *            the sender
+     * @param prefix
+     *            the partial gate name
+     * @return the matching gate names in alphabetical order
+     */
+    static List<String> completeGateName(final CommandSender sender, final String prefix)
+    {
+        final List<String> names = new ArrayList<String>();
+        for (final String network : StargateManager.getGateNetworkNames())
+        {
+            if ( !playerCheck(sender) || network.equals("Public") || WXPermissions.checkWXPermissions((Player) sender, network, PermissionType.USE))
+            {
+                names.addAll(StargateManager.findStargateNames(network, prefix, COMPLETION_LIMIT));
+            }
+        }
+        Collections.sort(names, String.CASE_INSENSITIVE_ORDER);
+        return names.size() > COMPLETION_LIMIT
+            ? names.subList(0, COMPLETION_LIMIT)
+            : names;
+    }
+
+    /**
+     * Complete a gate name from a single network.
+     * 
+     * @param network
+     *            the network name
+     * @param prefix
+     *            the partial gate name
+     * @return the matching gate names in alphabetical order
+     */
+    static List<String> completeGateName(final String network, final String prefix)
+    {
+        return StargateManager.findStargateNames(network, prefix, COMPLETION_LIMIT);
+    }
+
+    /**
+     * Complete a word from a fixed set of options.
+     * 
+     * @param prefix
+     *            the partial word
+     * @param options
+     *            the options
+     * @return the options starting with the prefix, ignoring case
+     */
+    static List<String> completeOption(final String prefix, final String... options)
+    {
+        final String lower = prefix.toLowerCase(Locale.ROOT);
+        final List<String> matches = new ArrayList<String>();
+        for (final String option : options)
+        {
+            if (option.toLowerCase(Locale.ROOT).startsWith(lower))
+            {
+                matches.add(option);
+            }
+        }
+        return matches;
+    }
+
     /**
      * Gets the gate network.
      * 
@@ -50,6 +50,11 @@ public class Complete implements CommandExecutor
     {
         final String name = args[0].trim().replace("\n", "").replace("\r", "");
 
+        if (Wormhole.isSnapshotRunning())
+        {
+            player.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Gates cannot be built while a snapshot export or import runs.");
+            return true;
+        }
         if (name.length() < 12)
         {
             String idc = "";
@@ -18,11 +18,14 @@
  */
 package com.wormhole_xtreme.wormhole.command;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import com.wormhole_xtreme.wormhole.WormholeXTreme;
@@ -37,7 +40,7 @@ import com.wormhole_xtreme.wormhole.permissions.WXPermissions.PermissionType;
  * 
  * @author alron
  */
-public class Dial implements CommandExecutor
+public class Dial implements CommandExecutor, TabCompleter
 {
 
     /**
@@ -136,4 +139,23 @@ public class Dial implements CommandExecutor
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see org.bukkit.command.TabCompleter#onTabComplete(org.bukkit.command.CommandSender, org.bukkit.command.Command, java.lang.String, java.lang.String[])
+     */
+    @Override
+    public List<String> onTabComplete(final CommandSender sender, final Command command, final String alias, final String[] args)
+    {
+        // Dial only reaches gates on the network of the activated gate, so completion stays on that network.
+        if (args.length == 1)
+        {
+            final Stargate start = CommandUtilities.playerCheck(sender)
+                ? StargateManager.getActivatedStargates().get(sender)
+                : null;
+            return start != null
+                ? CommandUtilities.completeGateName(CommandUtilities.getGateNetwork(start), args[0])
+                : CommandUtilities.completeGateName(sender, args[0]);
+        }
+        return Collections.emptyList();
+    }
+
 }
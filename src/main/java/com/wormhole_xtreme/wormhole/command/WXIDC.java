@@ -18,9 +18,13 @@
  */
 package com.wormhole_xtreme.wormhole.command;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import com.wormhole_xtreme.wormhole.config.ConfigManager;
@@ -34,7 +38,7 @@ import com.wormhole_xtreme.wormhole.permissions.WXPermissions.PermissionType;
  * 
  * @author alron
  */
-public class WXIDC implements CommandExecutor
+public class WXIDC implements CommandExecutor, TabCompleter
 {
 
     /* (non-Javadoc)
@@ -98,4 +102,19 @@ public class WXIDC implements CommandExecutor
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see org.bukkit.command.TabCompleter#onTabComplete(org.bukkit.command.CommandSender, org.bukkit.command.Command, java.lang.String, java.lang.String[])
+     */
+    @Override
+    public List<String> onTabComplete(final CommandSender sender, final Command command, final String alias, final String[] args)
+    {
+        if (args.length == 1)
+        {
+            return CommandUtilities.completeGateName(sender, args[0]);
+        }
+        return args.length == 2
+            ? CommandUtilities.completeOption(args[1], "-clear")
+            : Collections.<String>emptyList();
+    }
+
 }
@@ -18,13 +18,16 @@
  */
 package com.wormhole_xtreme.wormhole.command;
 
-import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.World;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
 import com.wormhole_xtreme.wormhole.config.ConfigManager;
 import com.wormhole_xtreme.wormhole.model.Stargate;
 import com.wormhole_xtreme.wormhole.model.StargateManager;
@@ -49,7 +52,23 @@ public class WXList implements CommandExecutor
             ? WXPermissions.checkWXPermissions((Player) sender, PermissionType.LIST)
             : true)
         {
-            final ArrayList<Stargate> gates = StargateManager.getAllGates();
+            final String[] a = CommandUtilities.commandEscaper(args);
+            final List<Stargate> gates;
+            if (a.length >= 1)
+            {
+                // Only the gates of one world, read straight from its partition.
+                final World world = WormholeXTreme.getThisPlugin().getServer().getWorld(a[0]);
+                if (world == null)
+                {
+                    sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "World does not exist: " + a[0]);
+                    return true;
+                }
+                gates = StargateManager.getWorldStargates(world);
+            }
+            else
+            {
+                gates = StargateManager.getAllGates();
+            }
             sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Available gates \u00A73::");
             StringBuilder sb = new StringBuilder();
             // TODO: Add checks for complex permissions enabled users running this command and only display what they have access to use.
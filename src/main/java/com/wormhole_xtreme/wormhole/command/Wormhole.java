@@ -18,17 +18,33 @@
  */
 package com.wormhole_xtreme.wormhole.command;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
 import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import com.wormhole_xtreme.wormhole.WormholeXTreme;
 import com.wormhole_xtreme.wormhole.config.ConfigManager;
+import com.wormhole_xtreme.wormhole.database.GateSnapshot;
+import com.wormhole_xtreme.wormhole.database.StargateWriteQueue;
+import com.wormhole_xtreme.wormhole.logic.StargateBlockQueue;
+import com.wormhole_xtreme.wormhole.logic.StargateClientRenderer;
 import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import com.wormhole_xtreme.wormhole.logic.StargateTimerWheel;
 import com.wormhole_xtreme.wormhole.model.Stargate;
 import com.wormhole_xtreme.wormhole.model.StargateManager;
 import com.wormhole_xtreme.wormhole.permissions.PermissionsManager;
@@ -41,9 +57,41 @@ import com.wormhole_xtreme.wormhole.plugin.HelpSupport;
  * 
  * @author alron
  */
-public class Wormhole implements CommandExecutor
+public class Wormhole implements CommandExecutor, TabCompleter
 {
 
+    /** The subcommands offered by tab completion. */
+    private static final String[] SUBCOMMANDS = {"owner", "perms", "portalmaterial", "irismaterial", "lightmaterial", "shutdown_timeout", "activate_timeout", "simple", "regenerate", "redstone", "wooshdepth", "cooldown", "restrict", "custom", "export", "import", "timers"};
+
+    /** Snapshot names: a plain file name, so it stays inside the snapshots folder. */
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    /** The extension of snapshot files. */
+    private static final String SNAPSHOT_EXTENSION = ".wxs";
+
+    /** Seconds to wait for queued gate saves before a snapshot is taken or restored. */
+    private static final int SNAPSHOT_FLUSH_SECONDS = 30;
+
+    /** Most timers listed by /wormhole timers. */
+    private static final int TIMERS_LISTED = 15;
+
+    /** Set while an export or import runs; only one runs at a time. */
+    private static final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    /**
+     * Checks if a snapshot export or import is running. Gates are not built or changed meanwhile, so no save
+     * lands in the middle of one.
+     * 
+     * @return true, if one is running
+     */
+    public static boolean isSnapshotRunning()
+    {
+        return snapshotRunning.get();
+    }
+
+    /** The subcommands that take a gate name as their first argument. */
+    private static final String[] GATE_SUBCOMMANDS = {"owner", "portalmaterial", "irismaterial", "lightmaterial", "regenerate", "regen", "redstone", "wooshdepth", "custom", "timers"};
+
     /**
      * Do activate timeout.
      * 
@@ -278,6 +326,178 @@ public class Wormhole implements CommandExecutor
 
     }
 
+    /**
+     * Do export. Writes every gate and permission row to a snapshot file in the plugin folder, off the main thread.
+     * 
+     * @param sender
+     *            the sender
+     * @param args
+     *            the args
+     * @return true, if successful
+     */
+    private static boolean doExport(final CommandSender sender, final String[] args)
+    {
+        final String name = args.length >= 2
+            ? args[1]
+            : "gates-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        final Path file = snapshotFile(name);
+        if (file == null)
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Invalid snapshot name: " + name);
+            return false;
+        }
+        if ( !snapshotRunning.compareAndSet(false, true))
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "A snapshot export or import is already running.");
+            return true;
+        }
+        final WormholeXTreme plugin = WormholeXTreme.getThisPlugin();
+        final GateSnapshot snapshot = new GateSnapshot(plugin.getGateStore(), plugin.getDatabaseManager(), plugin.getLogger());
+        final StargateWriteQueue writeQueue = plugin.getStargateWriteQueue();
+        sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Exporting gates to " + file.getFileName() + "...");
+        WormholeXTreme.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try
+            {
+                // Saves still queued go in the snapshot too
+                if ((writeQueue != null) && !writeQueue.flush(SNAPSHOT_FLUSH_SECONDS, TimeUnit.SECONDS))
+                {
+                    plugin.getLogger().warning("Gate saves still queued after " + SNAPSHOT_FLUSH_SECONDS + " seconds; the export may miss them");
+                }
+                final GateSnapshot.Result result = snapshot.export(file);
+                sendFromMainThread(sender, ConfigManager.MessageStrings.normalHeader.toString() + "Exported " + result.getGates() + " gates and "
+                    + result.getPermissions() + " permission rows to " + file.getFileName() + " in " + result.getMillis() + " ms.");
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                plugin.getLogger().log(Level.SEVERE, "Failed to export gates to " + file, e);
+                sendFromMainThread(sender, ConfigManager.MessageStrings.errorHeader.toString() + "Export failed: " + e.getMessage());
+            }
+            finally
+            {
+                snapshotRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Do import. Writes the gates and permission rows of a snapshot file in the plugin folder over those stored,
+     * off the main thread, then reloads them.
+     * 
+     * @param sender
+     *            the sender
+     * @param args
+     *            the args
+     * @return true, if successful
+     */
+    private static boolean doImport(final CommandSender sender, final String[] args)
+    {
+        if (args.length < 2)
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Name the snapshot to import, from the plugin's snapshots folder.");
+            return false;
+        }
+        final Path file = snapshotFile(args[1]);
+        if ((file == null) || !Files.isRegularFile(file))
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "No such snapshot: " + args[1]);
+            return false;
+        }
+        if (StargateManager.isAnyStargateActive())
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Shut down open gates before importing.");
+            return true;
+        }
+        if ( !snapshotRunning.compareAndSet(false, true))
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "A snapshot export or import is already running.");
+            return true;
+        }
+        final WormholeXTreme plugin = WormholeXTreme.getThisPlugin();
+        final GateSnapshot snapshot = new GateSnapshot(plugin.getGateStore(), plugin.getDatabaseManager(), plugin.getLogger());
+        final StargateWriteQueue writeQueue = plugin.getStargateWriteQueue();
+        sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Importing gates from " + file.getFileName() + "...");
+        // Gates in memory would save their old state over the imported rows; drop them until the reload
+        final List<Stargate> unloaded = StargateManager.unloadAllGates();
+        WormholeXTreme.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try
+            {
+                // Saves queued before the import, the unloaded gates' last ones among them, must land first
+                if ((writeQueue != null) && !writeQueue.flush(SNAPSHOT_FLUSH_SECONDS, TimeUnit.SECONDS))
+                {
+                    throw new IOException("gate saves still queued after " + SNAPSHOT_FLUSH_SECONDS + " seconds");
+                }
+                // None may be written while it runs
+                if ((writeQueue != null) && !writeQueue.pause(SNAPSHOT_FLUSH_SECONDS, TimeUnit.SECONDS))
+                {
+                    writeQueue.resume();
+                    throw new IOException("gate saves still being written after " + SNAPSHOT_FLUSH_SECONDS + " seconds");
+                }
+            }
+            catch (final IOException e)
+            {
+                plugin.getLogger().log(Level.SEVERE, "Aborted the import of " + file + ": " + e.getMessage());
+                WormholeXTreme.getScheduler().runTask(plugin, () -> {
+                    StargateManager.reloadAllGates();
+                    sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Import aborted, nothing was imported: " + e.getMessage());
+                    snapshotRunning.set(false);
+                });
+                return;
+            }
+            try
+            {
+                final GateSnapshot.Result result = snapshot.importFrom(file);
+                WormholeXTreme.getScheduler().runTask(plugin, () -> {
+                    reloadAfterImport(writeQueue, unloaded);
+                    PermissionsManager.loadPermissions();
+                    sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Imported " + result.getGates() + " gates and "
+                        + result.getPermissions() + " permission rows from " + file.getFileName() + " in " + result.getMillis() + " ms.");
+                    if (result.getFailed() > 0)
+                    {
+                        sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + result.getFailed() + " records could not be imported; see the server log.");
+                    }
+                    snapshotRunning.set(false);
+                });
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                plugin.getLogger().log(Level.SEVERE, "Failed to import gates from " + file, e);
+                WormholeXTreme.getScheduler().runTask(plugin, () -> {
+                    reloadAfterImport(writeQueue, unloaded);
+                    sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Import failed: " + e.getMessage());
+                    snapshotRunning.set(false);
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Load the gates again once an import is over, dropping the saves of gates unloaded before it that were held
+     * back while it ran: they would write their old rows over what was imported.
+     * 
+     * @param writeQueue
+     *            the paused write queue, may be null
+     * @param unloaded
+     *            the gates unloaded before the import
+     */
+    private static void reloadAfterImport(final StargateWriteQueue writeQueue, final List<Stargate> unloaded)
+    {
+        if (writeQueue != null)
+        {
+            final int dropped = writeQueue.discard(unloaded);
+            if (dropped > 0)
+            {
+                WormholeXTreme.getThisPlugin().getLogger().info("Dropped " + dropped + " stale gate saves made during the import");
+            }
+        }
+        StargateManager.reloadAllGates();
+        if (writeQueue != null)
+        {
+            writeQueue.resume();
+        }
+    }
+
     /**
      * Do iris material.
      * 
@@ -423,7 +643,7 @@ public class Wormhole implements CommandExecutor
             {
                 if (args.length == 3)
                 {
-                    s.setGateOwner(args[2]);
+                    StargateManager.changeStargateOwner(s, args[2]);
                     s.setupGateSign(true);
                     sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Gate: " + s.getGateName() + " Now owned by: " + s.getGateOwner());
                 }
@@ -866,6 +1086,65 @@ public class Wormhole implements CommandExecutor
         return true;
     }
 
+    /**
+     * Do timers. Lists the pending gate and player timers, soonest first, optionally for one gate only.
+     * 
+     * @param sender
+     *            the sender
+     * @param args
+     *            the args
+     * @return true, if successful
+     */
+    private static boolean doTimers(final CommandSender sender, final String[] args)
+    {
+        final StargateTimerWheel wheel = WormholeXTreme.getTimerWheel();
+        final StargateBlockQueue blockQueue = WormholeXTreme.getBlockQueue();
+        if ((wheel == null) || (blockQueue == null))
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Timers are not running.");
+            return true;
+        }
+        final Stargate only = args.length >= 2
+            ? StargateManager.getStargate(args[1])
+            : null;
+        if ((args.length >= 2) && (only == null))
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.targetInvalid.toString());
+            return true;
+        }
+
+        final List<StargateTimerWheel.Timer> timers = wheel.getPendingTimers();
+        if (only != null)
+        {
+            timers.removeIf(timer -> timer.getStargate() != only);
+        }
+        sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + timers.size() + " timers pending on a wheel of " + wheel.getSize()
+            + " slots. Block changes queued: " + blockQueue.getPending() + ", " + blockQueue.getBudget() + " per tick.");
+        final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+        if (renderer != null)
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "Client animations showing: " + renderer.getOverlays() + ", "
+                + renderer.getSent() + " block changes sent.");
+        }
+        final int shown = Math.min(timers.size(), TIMERS_LISTED);
+        for (int i = 0; i < shown; i++)
+        {
+            final StargateTimerWheel.Timer timer = timers.get(i);
+            final String owner = timer.getStargate() != null
+                ? timer.getStargate().getGateName()
+                : timer.getPlayer() != null
+                    ? timer.getPlayer().getName()
+                    : "-";
+            sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + owner + " " + timer.getAction() + " in "
+                + (timer.getDeadline() - wheel.getCurrentTick()) + " ticks");
+        }
+        if (timers.size() > shown)
+        {
+            sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + "...and " + (timers.size() - shown) + " more.");
+        }
+        return true;
+    }
+
     /**
      * Do woosh depth.
      * 
@@ -893,6 +1172,7 @@ public class Wormhole implements CommandExecutor
                             {
                                 stargate.setGateCustomWooshDepth(wooshDepth);
                                 stargate.setGateCustomWooshDepthSquared(wooshDepth * wooshDepth);
+                                StargateManager.updateStargateProtection(stargate);
                                 sender.sendMessage(ConfigManager.MessageStrings.normalHeader.toString() + args[1] + " woosh depth set to: " + stargate.getGateCustomWooshDepth());
                             }
                             else
@@ -946,6 +1226,38 @@ public class Wormhole implements CommandExecutor
         return groupName.equalsIgnoreCase("one") || groupName.equalsIgnoreCase("two") || groupName.equalsIgnoreCase("three");
     }
 
+    /**
+     * Checks if the subcommand changes a gate, and so saves it.
+     * 
+     * @param subcommand
+     *            the subcommand
+     * @return true, if it changes a gate
+     */
+    private static boolean isGateChange(final String subcommand)
+    {
+        for (final String gateSubcommand : GATE_SUBCOMMANDS)
+        {
+            if (gateSubcommand.equalsIgnoreCase(subcommand) && !subcommand.equalsIgnoreCase("timers"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends a message from the main thread, for work finishing off it.
+     * 
+     * @param sender
+     *            the sender
+     * @param message
+     *            the message
+     */
+    private static void sendFromMainThread(final CommandSender sender, final String message)
+    {
+        WormholeXTreme.getScheduler().runTask(WormholeXTreme.getThisPlugin(), () -> sender.sendMessage(message));
+    }
+
     /**
      * Sets the gate custom all.
      * 
@@ -998,6 +1310,7 @@ public class Wormhole implements CommandExecutor
             {
                 stargate.setGateCustom(false);
             }
+            StargateManager.updateStargateProtection(stargate);
         }
         else
         {
@@ -1005,6 +1318,25 @@ public class Wormhole implements CommandExecutor
         }
     }
 
+    /**
+     * Resolves a snapshot name to its file in the plugin's snapshots folder.
+     * 
+     * @param name
+     *            the snapshot name, with or without its extension
+     * @return the file, or null if the name is not a plain file name
+     */
+    private static Path snapshotFile(final String name)
+    {
+        if ( !SNAPSHOT_NAME.matcher(name).matches())
+        {
+            return null;
+        }
+        final String fileName = name.endsWith(SNAPSHOT_EXTENSION)
+            ? name
+            : name + SNAPSHOT_EXTENSION;
+        return WormholeXTreme.getThisPlugin().getDataFolder().toPath().resolve("snapshots").resolve(fileName);
+    }
+
     /* (non-Javadoc)
      * @see org.bukkit.command.CommandExecutor#onCommand(org.bukkit.command.CommandSender, org.bukkit.command.Command, java.lang.String, java.lang.String[])
      */
@@ -1020,6 +1352,11 @@ public class Wormhole implements CommandExecutor
             {
                 return false;
             }
+            if (snapshotRunning.get() && isGateChange(a[0]))
+            {
+                sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Gates cannot be changed while a snapshot export or import runs.");
+                return true;
+            }
             if (a[0].equalsIgnoreCase("owner"))
             {
                 return doOwner(sender, a);
@@ -1076,10 +1413,22 @@ public class Wormhole implements CommandExecutor
             {
                 return doRestrict(sender, a);
             }
+            else if (a[0].equalsIgnoreCase("export"))
+            {
+                return doExport(sender, a);
+            }
+            else if (a[0].equalsIgnoreCase("import"))
+            {
+                return doImport(sender, a);
+            }
+            else if (a[0].equalsIgnoreCase("timers"))
+            {
+                return doTimers(sender, a);
+            }
             else
             {
                 sender.sendMessage(ConfigManager.MessageStrings.requestInvalid.toString() + ": " + a[0]);
-                sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Valid commands are 'owner', 'perms', 'portalmaterial', 'irismaterial', 'lightmaterial', 'shutdown_timeout', 'activate_timeout', 'simple', 'regenerate', 'redstone', 'wooshdepth', 'cooldown', 'restrict', & 'custom'.");
+                sender.sendMessage(ConfigManager.MessageStrings.errorHeader.toString() + "Valid commands are 'owner', 'perms', 'portalmaterial', 'irismaterial', 'lightmaterial', 'shutdown_timeout', 'activate_timeout', 'simple', 'regenerate', 'redstone', 'wooshdepth', 'cooldown', 'restrict', 'custom', 'export', 'import', & 'timers'.");
             }
         }
         else
@@ -1088,4 +1437,31 @@ public class Wormhole implements CommandExecutor
         }
         return true;
     }
+
+    /* (non-Javadoc)
+     * @see org.bukkit.command.TabCompleter#onTabComplete(org.bukkit.command.CommandSender, org.bukkit.command.Command, java.lang.String, java.lang.String[])
+     */
+    @Override
+    public List<String> onTabComplete(final CommandSender sender, final Command command, final String alias, final String[] args)
+    {
+        if (CommandUtilities.playerCheck(sender) && !WXPermissions.checkWXPermissions((Player) sender, PermissionType.CONFIG))
+        {
+            return Collections.emptyList();
+        }
+        if (args.length == 1)
+        {
+            return CommandUtilities.completeOption(args[0], SUBCOMMANDS);
+        }
+        if (args.length == 2)
+        {
+            for (final String subcommand : GATE_SUBCOMMANDS)
+            {
+                if (subcommand.equalsIgnoreCase(args[0]))
+                {
+                    return CommandUtilities.completeGateName(sender, args[1]);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
 }
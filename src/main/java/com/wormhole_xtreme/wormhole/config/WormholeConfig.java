@@ -73,6 +73,24 @@ public class WormholeConfig implements SettingsHolder {
         @Comment("Logging level. Values: SEVERE, WARNING, INFO, CONFIG, FINE, FINER, FINEST")
         public static final Property<String> LOG_LEVEL = PropertyInitializer.newProperty("logging.level", "INFO");
     
+        @Comment("Where gates are stored. Values: HSQLDB, FLATFILE. Gates are not carried over when this changes.")
+        public static final Property<String> STORAGE_BACKEND = PropertyInitializer.newProperty("storage.backend", "HSQLDB");
+    
+        @Comment("Seconds a gate's chunks must stay unloaded before its blocks are dropped from memory. They are read back when a chunk loads or the gate is dialed.")
+        public static final Property<Integer> GATE_UNLOAD_DELAY = PropertyInitializer.newProperty("storage.gate_unload_delay", 300);
+    
+        @Comment("Most gate block changes (lighting, opening, iris, removal) made in one tick. The rest wait for the next tick.")
+        public static final Property<Integer> BLOCK_CHANGES_PER_TICK = PropertyInitializer.newProperty("performance.block_changes_per_tick", 512);
+    
+        @Comment("How gates draw lighting and woosh: WORLD changes the blocks, CLIENT only shows them to nearby players. Either way the portal itself is filled in the world.")
+        public static final Property<String> ANIMATION_MODE = PropertyInitializer.newProperty("performance.animation_mode", "WORLD");
+    
+        @Comment("Blocks from a gate within which players are shown its CLIENT mode animation.")
+        public static final Property<Integer> CLIENT_ANIMATION_RANGE = PropertyInitializer.newProperty("performance.client_animation_range", 64);
+    
+        @Comment("Blocks from a gate within which a player must be for its lighting and woosh to play out. With nobody that close the gate lights and opens in one step. 0 always animates.")
+        public static final Property<Integer> ANIMATION_LOD_RADIUS = PropertyInitializer.newProperty("performance.animation_lod_radius", 96);
+    
     private final SettingsManager settingsManager;
     
     // No-args constructor required by ConfigMe reflection when creating configuration data.
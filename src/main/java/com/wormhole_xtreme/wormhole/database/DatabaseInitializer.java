@@ -37,7 +37,7 @@ import java.util.logging.Level;
  * Handles database schema initialization and updates.
  */
 public class DatabaseInitializer {
-    private static final int CURRENT_DB_VERSION = 6;
+    private static final int CURRENT_DB_VERSION = 8;
     private static final String DB_UPDATE_PATH = "/sql_commands/db_create_";
     
     private final WormholeXTreme plugin;
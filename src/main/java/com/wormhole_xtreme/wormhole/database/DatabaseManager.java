@@ -22,6 +22,8 @@ import com.zaxxer.hikari.HikariDataSource;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Properties;
@@ -35,6 +37,8 @@ public class DatabaseManager {
     private static final String DB_PATH = "./plugins/WormholeXTreme/WormholeXTremeDB";
     private static final String DB_NAME = "WormholeXTremeDB";
     private static final String DB_URL = "jdbc:hsqldb:file:" + DB_PATH + "/" + DB_NAME + ";hsqldb.log_data=false;hsqldb.tx=mvcc";
+    private static final String JOURNAL_NAME = DB_NAME + ".journal";
+    private static final String MIGRATION_NAME = DB_NAME + ".migration";
     
     private final JavaPlugin plugin;
     private final Logger logger;
@@ -109,6 +113,27 @@ public class DatabaseManager {
         return dataSource.getConnection();
     }
     
+    /**
+     * Gets the path of the stargate journal, kept beside the database files.
+     * HSQLDB runs without its data log, so the journal is what makes recent writes survive a crash.
+     *
+     * @return The journal path
+     * @see StargateRepository
+     */
+    public Path getJournalPath() {
+        return Paths.get(DB_PATH, JOURNAL_NAME);
+    }
+
+    /**
+     * Gets the path of the legacy gate migration checkpoint, kept beside the database files.
+     *
+     * @return The checkpoint path
+     * @see LegacyGateMigrator
+     */
+    public Path getMigrationCheckpointPath() {
+        return Paths.get(DB_PATH, MIGRATION_NAME);
+    }
+
     /**
      * Closes the connection pool.
      */
@@ -0,0 +1,362 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link GateStore} in a single memory mapped file, with no database behind it.
+ * The file is a {@link StargateJournal}: every write is appended, and the batch forced to disk once.
+ * Opening the file replays it into an index of where each gate's latest full record starts, with the
+ * gate's latest state; gate data is read back from the mapping only when it is wanted.
+ * <p>
+ * Replaced records and state records pile up as garbage; once there is more garbage than live data the
+ * live records are written to a new file, with their latest state folded in, which is then moved over
+ * the old one. A crash part way leaves the old file whole. Where the old file cannot be replaced while
+ * it is mapped, the compaction is given up and retried later.
+ */
+public class FlatFileGateStore implements GateStore {
+    /** Garbage that may build up before a write triggers compaction, however small the live data. */
+    private static final int COMPACT_BYTES = 8 << 20;
+
+    /**
+     * Where a gate is in the file, and what is looked up without reading it.
+     */
+    private static final class Entry {
+        private int offset;
+        private int size;
+        private final String name;
+        private final String worldName;
+        private StargateState state;
+
+        private Entry(int offset, int size, StargateRow row) {
+            this.offset = offset;
+            this.size = size;
+            name = row.name;
+            worldName = row.worldName;
+            state = row.state;
+        }
+    }
+
+    private final Path path;
+    private final Logger logger;
+    private StargateJournal file;
+
+    // By id, in the order gates were first written
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+    private int nextId;
+    private long liveBytes;
+
+    /**
+     * Opens the store, creating the file if need be.
+     *
+     * @param path The store file
+     * @param logger The logger
+     * @throws IOException if the file cannot be opened or read
+     */
+    public FlatFileGateStore(Path path, Logger logger) throws IOException {
+        this.path = path;
+        this.logger = logger;
+        file = StargateJournal.open(path);
+        try {
+            file.forEach(this::index);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies a record read back from the file to the index.
+     */
+    private void index(StargateRow row, int offset) {
+        final int id = row.id();
+        nextId = Math.max(nextId, id + 1);
+        if (row.delete) {
+            final Entry entry = entries.remove(id);
+            if (entry != null) {
+                liveBytes -= entry.size;
+            }
+        } else if (row.structure) {
+            final Entry entry = entries.put(id, new Entry(offset, file.recordSize(offset), row));
+            liveBytes += file.recordSize(offset) - (entry != null ? entry.size : 0);
+        } else {
+            final Entry entry = entries.get(id);
+            if (entry != null) {
+                entry.state = row.state;
+            }
+        }
+    }
+
+    /**
+     * Streams every gate in a loaded world to the sink, decoding in parallel.
+     * Gates in worlds that are not loaded are left for when their world loads.
+     *
+     * @param chunkSize The most gates handed to the sink at once
+     * @param sink Receives the gates on the calling thread
+     * @param outdated Never called; every record carries its geometry
+     * @return The number of gates handed to the sink
+     * @see StargateLoader
+     */
+    @Override
+    public int streamAll(int chunkSize, Consumer<List<Stargate>> sink, Consumer<Stargate> outdated) {
+        return new StargateLoader(rows -> {
+            for (final int id : ids()) {
+                final StargateRow row = read(id);
+                if (row != null && !rows.accept(id, row.name, row.data, row.geometry, row.state)) {
+                    return;
+                }
+            }
+        }, logger, Runtime.getRuntime().availableProcessors()).load(chunkSize, sink, outdated);
+    }
+
+    @Override
+    public int forEachRow(RowVisitor visitor) throws IOException {
+        int visited = 0;
+        for (final int id : ids()) {
+            final StargateRow row = read(id);
+            if (row != null) {
+                visitor.visit(row);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private synchronized List<Integer> ids() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Reads a gate's full record with its latest state.
+     *
+     * @return The row, or null if the gate is gone
+     */
+    private synchronized StargateRow read(int id) throws IOException {
+        final Entry entry = entries.get(id);
+        return entry != null ? file.read(entry.offset).withState(entry.state) : null;
+    }
+
+    @Override
+    public synchronized boolean[] writeBatch(List<StargateRow> rows) {
+        final boolean[] written = new boolean[rows.size()];
+        try {
+            for (int i = 0; i < written.length; i++) {
+                written[i] = write(rows.get(i));
+            }
+            file.force();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to write stargates to " + path, e);
+        }
+        for (int i = 0; i < written.length; i++) {
+            if (!written[i] && !rows.get(i).delete && rows.get(i).stargate != null) {
+                // Still unsaved, so the next save tries again
+                rows.get(i).stargate.markGateDirty(rows.get(i).dirty);
+            }
+        }
+        if (file.size() - liveBytes > Math.max(COMPACT_BYTES, liveBytes)) {
+            rewrite();
+        }
+        return written;
+    }
+
+    /**
+     * Appends one row and indexes it, assigning an id to a gate saved for the first time.
+     * As with the database, a state write or delete of a gate that is not stored fails.
+     */
+    private boolean write(StargateRow row) throws IOException {
+        final int id = row.id();
+        if (row.delete) {
+            if (!entries.containsKey(id)) {
+                return false;
+            }
+            file.append(row, id);
+            liveBytes -= entries.remove(id).size;
+            return true;
+        }
+        if (row.isEmpty()) {
+            return true;
+        }
+        if (!row.structure) {
+            final Entry entry = entries.get(id);
+            if (entry == null) {
+                return false;
+            }
+            file.append(row, id);
+            entry.state = row.state;
+            return true;
+        }
+        final int assigned = id >= 0 ? id : nextId;
+        final int offset = file.append(row, assigned);
+        nextId = Math.max(nextId, assigned + 1);
+        if (id < 0) {
+            row.assignId(assigned);
+        }
+        final Entry entry = entries.put(assigned, new Entry(offset, file.recordSize(offset), row));
+        liveBytes += file.recordSize(offset) - (entry != null ? entry.size : 0);
+        return true;
+    }
+
+    @Override
+    public List<Stargate> findByWorld(World world) {
+        return find(entry -> world.getName().equals(entry.worldName), "world: " + world.getName());
+    }
+
+    @Override
+    public Optional<Stargate> findByName(String name) {
+        return find(entry -> name.equals(entry.name), "name: " + name).stream().findFirst();
+    }
+
+    /**
+     * Decodes the gates whose entries match, on the calling thread, skipping those that cannot be read.
+     */
+    private List<Stargate> find(Predicate<Entry> filter, String what) {
+        final List<Integer> ids = new ArrayList<>();
+        synchronized (this) {
+            for (final Map.Entry<Integer, Entry> e : entries.entrySet()) {
+                if (filter.test(e.getValue())) {
+                    ids.add(e.getKey());
+                }
+            }
+        }
+        final List<Stargate> stargates = new ArrayList<>(ids.size());
+        for (final int id : ids) {
+            try {
+                final StargateRow row = read(id);
+                if (row == null) {
+                    continue;
+                }
+                final Stargate stargate = Stargate.fromByteArray(row.data, row.geometry);
+                if (stargate == null) {
+                    logger.warning("Failed to load stargate with ID: " + id);
+                    continue;
+                }
+                StargateRepository.applyColumns(stargate, id, row.name, row.state);
+                stargates.add(stargate);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to load stargate with ID: " + id + " for " + what, e);
+            }
+        }
+        return stargates;
+    }
+
+    /**
+     * Rewrites the file if a good part of it is garbage.
+     */
+    @Override
+    public synchronized void compact() {
+        if (file.size() - liveBytes > liveBytes / 4) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Writes the live records, with their latest state, to a new file and moves it over the old one.
+     */
+    private void rewrite() {
+        final Path next = path.resolveSibling(path.getFileName() + ".tmp");
+        final Map<Integer, Integer> offsets = new LinkedHashMap<>();
+        int sentinel = -1;
+        try {
+            Files.deleteIfExists(next);
+            try (StargateJournal rewritten = StargateJournal.open(next)) {
+                for (final Map.Entry<Integer, Entry> e : entries.entrySet()) {
+                    offsets.put(e.getKey(), rewritten.append(file.read(e.getValue().offset).withState(e.getValue().state), e.getKey()));
+                }
+                if (nextId > 0 && !entries.containsKey(nextId - 1)) {
+                    // Keeps the highest id ever given out, so a deleted gate's id is not handed out again
+                    sentinel = rewritten.append(StargateRow.delete(nextId - 1), nextId - 1);
+                }
+                rewritten.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to compact " + path + ", it will be retried", e);
+            return;
+        }
+        final long before = file.size();
+        boolean replaced = true;
+        try {
+            file.close();
+            try {
+                Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(next, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to replace " + path + " with its compacted copy, it will be retried", e);
+            replaced = false;
+        }
+        try {
+            file = StargateJournal.open(path);
+        } catch (IOException e) {
+            // The index still points into the old mapping, which is gone; nothing more can be written safely
+            throw new IllegalStateException("Failed to reopen " + path + " after compacting it", e);
+        }
+        if (!replaced) {
+            return;
+        }
+        // The sentinel is needed as much as the gates, so it counts as live; else a store with every gate
+        // deleted would look all garbage and be rewritten on every compaction
+        liveBytes = sentinel >= 0 ? file.recordSize(sentinel) : 0;
+        for (final Map.Entry<Integer, Integer> e : offsets.entrySet()) {
+            final Entry entry = entries.get(e.getKey());
+            entry.offset = e.getValue();
+            entry.size = file.recordSize(entry.offset);
+            liveBytes += entry.size;
+        }
+        logger.fine("Compacted " + path + " from " + before + " to " + file.size() + " bytes");
+    }
+
+    /**
+     * Compacts and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        compact();
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close " + path, e);
+        }
+    }
+
+    /**
+     * Gets the number of gates stored.
+     *
+     * @return The number of gates
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A whole gate store, with the permission tables, in one gzipped file, for backups and for moving
+ * gates between servers or backends.
+ * <p>
+ * The file is a header, then tagged records: each gate as a full {@link StargateRow}, in the journal's
+ * layout, network and state included; each individual and group permission row; then an end record
+ * with the counts. Both directions stream a record at a time, so memory use does not grow with the
+ * number of gates, and neither touches the server, so both belong off the server thread.
+ * <p>
+ * Export writes next to the target and moves the file into place when it is complete. Import reads the
+ * file twice: once to check it is whole, gzip checksum and counts included, and only then to write it.
+ * Gates are written under the ids they were exported with, over any gate already stored under that id;
+ * gates not in the file are left alone. Permission rows live in the HSQLDB database only, so they are
+ * skipped without one.
+ */
+public final class GateSnapshot {
+    /** "WXSN". */
+    private static final int MAGIC = 0x5758534E;
+    private static final int VERSION = 1;
+
+    /** Record tags. */
+    private static final byte RECORD_END = 0, RECORD_GATE = 1, RECORD_PLAYER_PERMISSION = 2, RECORD_GROUP_PERMISSION = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String SELECT_PLAYER_SQL = "SELECT PlayerName, Permission FROM StargateIndividualPermissions";
+    private static final String SELECT_GROUP_SQL = "SELECT GroupName, Permission FROM StargateGroupPermissions";
+    private static final String MERGE_PLAYER_SQL = """
+            MERGE INTO StargateIndividualPermissions t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)))) AS v (PlayerName, Permission)
+            ON t.PlayerName = v.PlayerName
+            WHEN MATCHED THEN UPDATE SET t.Permission = v.Permission
+            WHEN NOT MATCHED THEN INSERT VALUES (v.PlayerName, v.Permission)""";
+    private static final String MERGE_GROUP_SQL = """
+            MERGE INTO StargateGroupPermissions t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)))) AS v (GroupName, Permission)
+            ON t.GroupName = v.GroupName
+            WHEN MATCHED THEN UPDATE SET t.Permission = v.Permission
+            WHEN NOT MATCHED THEN INSERT VALUES (v.GroupName, v.Permission)""";
+
+    /**
+     * What an export or import did.
+     */
+    public static final class Result {
+        private final int gates;
+        private final int permissions;
+        private final int failed;
+        private final long millis;
+
+        private Result(int gates, int permissions, int failed, long millis) {
+            this.gates = gates;
+            this.permissions = permissions;
+            this.failed = failed;
+            this.millis = millis;
+        }
+
+        /**
+         * @return The gates written
+         */
+        public int getGates() {
+            return gates;
+        }
+
+        /**
+         * @return The permission rows written
+         */
+        public int getPermissions() {
+            return permissions;
+        }
+
+        /**
+         * @return The gates and permission rows that could not be imported; always 0 for an export
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return How long it took
+         */
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * Receives the records of a snapshot as they are read.
+     */
+    private interface RecordSink {
+        void gate(StargateRow row) throws IOException;
+
+        void permission(boolean group, String name, String permission) throws IOException;
+    }
+
+    private final GateStore store;
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+
+    /**
+     * @param store The gate store to read or write
+     * @param databaseManager The database holding the permission tables, or null if there is none
+     * @param logger The logger
+     */
+    public GateSnapshot(GateStore store, DatabaseManager databaseManager, Logger logger) {
+        this.store = store;
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+    }
+
+    /**
+     * Writes every stored gate and permission row to the file, replacing it only once the snapshot is complete.
+     * Queued gate writes should be flushed first to be included.
+     *
+     * @param file The snapshot file
+     * @return What was written
+     * @throws IOException if the store or the file fails; the file is then left as it was
+     */
+    public Result export(Path file) throws IOException {
+        final long start = System.currentTimeMillis();
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int gates;
+        int permissions = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(start);
+            gates = store.forEachRow(row -> {
+                out.writeByte(RECORD_GATE);
+                row.writeTo(out, row.id());
+            });
+            if (databaseManager != null) {
+                permissions += exportPermissions(out, SELECT_PLAYER_SQL, RECORD_PLAYER_PERMISSION);
+                permissions += exportPermissions(out, SELECT_GROUP_SQL, RECORD_GROUP_PERMISSION);
+            }
+            out.writeByte(RECORD_END);
+            out.writeInt(gates);
+            out.writeInt(permissions);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new Result(gates, permissions, 0, System.currentTimeMillis() - start);
+    }
+
+    private int exportPermissions(DataOutputStream out, String sql, byte tag) throws IOException {
+        int count = 0;
+        try (Connection conn = databaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(StargateWriteQueue.DEFAULT_BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    out.writeByte(tag);
+                    out.writeUTF(rs.getString(1));
+                    out.writeUTF(rs.getString(2));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read permissions", e);
+        }
+        return count;
+    }
+
+    /**
+     * Checks the file is a whole snapshot, then writes its gates and permission rows, in batches.
+     * A gate or permission row that cannot be written is logged and counted, and the rest carry on.
+     * Gates already loaded are not touched; unload them and hold back the write queue before, so none of them
+     * saves over the imported rows, and reload them afterwards.
+     *
+     * @param file The snapshot file
+     * @return What was written
+     * @throws IOException if the file is not a whole snapshot, in which case nothing was written
+     */
+    public Result importFrom(Path file) throws IOException {
+        final long start = System.currentTimeMillis();
+        read(file, null);
+        if (databaseManager == null) {
+            logger.info("Permission rows in " + file + " are skipped; there is no database to put them in");
+        }
+
+        final List<StargateRow> batch = new ArrayList<>(StargateWriteQueue.DEFAULT_BATCH_SIZE);
+        final int[] counts = new int[3];
+        try (PermissionWriter permissions = new PermissionWriter()) {
+            read(file, new RecordSink() {
+                @Override
+                public void gate(StargateRow row) {
+                    batch.add(row);
+                    if (batch.size() == StargateWriteQueue.DEFAULT_BATCH_SIZE) {
+                        writeGates(batch, counts);
+                    }
+                }
+
+                @Override
+                public void permission(boolean group, String name, String permission) {
+                    if (databaseManager == null) {
+                        return;
+                    }
+                    if (permissions.write(group, name, permission)) {
+                        counts[1]++;
+                    } else {
+                        counts[2]++;
+                    }
+                }
+            });
+            writeGates(batch, counts);
+        }
+        return new Result(counts[0], counts[1], counts[2], System.currentTimeMillis() - start);
+    }
+
+    private void writeGates(List<StargateRow> batch, int[] counts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final boolean[] written = store.writeBatch(batch);
+        for (int i = 0; i < written.length; i++) {
+            if (written[i]) {
+                counts[0]++;
+            } else {
+                counts[2]++;
+                logger.warning("Failed to import stargate with ID: " + batch.get(i).id() + " (" + batch.get(i).name + ")");
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Reads the snapshot through, handing each record to the sink, or only checking it with no sink.
+     */
+    private void read(Path file, RecordSink sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a gate snapshot");
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " is a version " + version + " snapshot; this version reads " + VERSION);
+            }
+            in.readLong();
+            int gates = 0;
+            int permissions = 0;
+            while (true) {
+                final byte tag = in.readByte();
+                if (tag == RECORD_END) {
+                    break;
+                }
+                if (tag == RECORD_GATE) {
+                    final StargateRow row = StargateRow.readFrom(in);
+                    if (!row.structure) {
+                        throw new IOException("Gate record " + gates + " of " + file + " is not a whole gate");
+                    }
+                    gates++;
+                    if (sink != null) {
+                        sink.gate(row);
+                    }
+                } else if (tag == RECORD_PLAYER_PERMISSION || tag == RECORD_GROUP_PERMISSION) {
+                    final String name = in.readUTF();
+                    final String permission = in.readUTF();
+                    permissions++;
+                    if (sink != null) {
+                        sink.permission(tag == RECORD_GROUP_PERMISSION, name, permission);
+                    }
+                } else {
+                    throw new IOException("Unknown record " + tag + " in " + file);
+                }
+            }
+            if (in.readInt() != gates || in.readInt() != permissions) {
+                throw new IOException(file + " does not hold the records it says it does");
+            }
+            // Reading to the end checks the gzip trailer
+            if (in.read() != -1) {
+                throw new IOException(file + " has data after its end record");
+            }
+        }
+    }
+
+    /**
+     * Merges permission rows into their tables on one connection, opened with the first row.
+     */
+    private final class PermissionWriter implements AutoCloseable {
+        private Connection conn;
+        private PreparedStatement player;
+        private PreparedStatement group;
+
+        boolean write(boolean isGroup, String name, String permission) {
+            try {
+                if (conn == null) {
+                    conn = databaseManager.getConnection();
+                    player = conn.prepareStatement(MERGE_PLAYER_SQL);
+                    group = conn.prepareStatement(MERGE_GROUP_SQL);
+                }
+                final PreparedStatement stmt = isGroup ? group : player;
+                stmt.setString(1, name);
+                stmt.setString(2, permission);
+                stmt.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Failed to import permission for " + name, e);
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (conn == null) {
+                return;
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Failed to close the permission import connection", e);
+            }
+        }
+    }
+}
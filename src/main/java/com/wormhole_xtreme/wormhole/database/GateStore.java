@@ -0,0 +1,152 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Where gates are kept between restarts.
+ * The server only ever talks to a store through this interface, so the backend is chosen by the
+ * {@code storage.backend} setting: {@link StargateRepository} over HSQLDB, or {@link FlatFileGateStore}.
+ * <p>
+ * Writes are {@link StargateRow}s, captured from the gates on the server thread; a store writes them in
+ * order and hands new gates their ids. A store must be safe to call from the writer thread and the server
+ * thread at once.
+ */
+public interface GateStore {
+
+    /**
+     * Streams every gate in a loaded world to the sink, decoding in parallel.
+     * Gates in worlds that are not loaded are left for when their world loads.
+     *
+     * @param chunkSize The most gates handed to the sink at once
+     * @param sink Receives the gates on the calling thread
+     * @param outdated Receives, on the calling thread, each loaded gate stored in an older layout,
+     *                 so it can be saved again in the current one
+     * @return The number of gates handed to the sink
+     */
+    int streamAll(int chunkSize, Consumer<List<Stargate>> sink, Consumer<Stargate> outdated);
+
+    /**
+     * Hands every stored gate to the visitor as a full row with its latest state, one at a time and in id order,
+     * so a store of any size can be copied out without holding its gates in memory.
+     * Gates in worlds that are not loaded are included.
+     *
+     * @param visitor Receives each row on the calling thread
+     * @return The number of rows visited
+     * @throws IOException if the store cannot be read, or the visitor fails
+     * @see GateSnapshot
+     */
+    int forEachRow(RowVisitor visitor) throws IOException;
+
+    /**
+     * Receives stored rows from {@link #forEachRow(RowVisitor)}.
+     */
+    @FunctionalInterface
+    interface RowVisitor {
+        /**
+         * Takes one row.
+         *
+         * @param row The row, with no gate, carrying the id it is stored under
+         * @throws IOException to stop the walk
+         */
+        void visit(StargateRow row) throws IOException;
+    }
+
+    /**
+     * Writes the rows in order. A gate saved for the first time is given its id.
+     * A failed save marks what it would have saved unsaved again on the gate.
+     *
+     * @param rows The rows to write
+     * @return Whether each row was written
+     */
+    boolean[] writeBatch(List<StargateRow> rows);
+
+    /**
+     * Saves the unsaved changes of each gate.
+     *
+     * @param stargates The stargates
+     * @return Whether each gate was saved
+     */
+    default boolean[] upsertBatch(List<Stargate> stargates) {
+        final List<StargateRow> rows = new ArrayList<>(stargates.size());
+        for (final Stargate stargate : stargates) {
+            rows.add(StargateRow.save(stargate));
+        }
+        return writeBatch(rows);
+    }
+
+    /**
+     * Deletes each gate.
+     *
+     * @param stargates The stargates
+     * @return Whether each gate was deleted
+     */
+    default boolean[] deleteBatch(List<Stargate> stargates) {
+        final List<StargateRow> rows = new ArrayList<>(stargates.size());
+        for (final Stargate stargate : stargates) {
+            rows.add(StargateRow.delete(stargate));
+        }
+        return writeBatch(rows);
+    }
+
+    /**
+     * Saves the gate's runtime state only, such as whether it is active and what it is dialed to.
+     * Unsaved structure changes are left for the next full save.
+     *
+     * @param stargate The stargate
+     * @return true if the state was saved
+     */
+    default boolean updateState(Stargate stargate) {
+        return writeBatch(List.of(StargateRow.saveState(stargate)))[0];
+    }
+
+    /**
+     * Finds all stargates in a specific world.
+     *
+     * @param world The world to search in
+     * @return A list of stargates in the specified world
+     */
+    List<Stargate> findByWorld(World world);
+
+    /**
+     * Finds a stargate by its name.
+     *
+     * @param name The name of the stargate to find
+     * @return An Optional containing the stargate if found, or empty if not found
+     */
+    Optional<Stargate> findByName(String name);
+
+    /**
+     * Does whatever upkeep the store needs, such as folding its log into its main storage.
+     * Cheap when there is nothing to do, so safe to call on a timer off the server thread.
+     */
+    void compact();
+
+    /**
+     * Compacts and closes the store. Call after the last write.
+     */
+    void close();
+}
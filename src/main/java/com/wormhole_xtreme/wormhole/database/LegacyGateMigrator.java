@@ -0,0 +1,399 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateNetwork;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves gates saved by the old StargateDBManager into the current format, once.
+ * <p>
+ * Those gates sit in the same Stargates table, their GateData in the versioned layout of save versions 3 to 8
+ * that {@link StargateHelper#parseVersionedData} reads, which the current loader cannot. The table is walked in
+ * pages by id. The legacy rows of each page are decoded on a pool of threads while the page before is written,
+ * each page in one {@link GateStore#writeBatch} transaction under the gates' own ids. Rows already in the current
+ * format are passed over.
+ * <p>
+ * After each page the last id done is written to a checkpoint file, so a run cut short resumes where it stopped.
+ * A run that ends with every row migrated marks the checkpoint complete and later starts skip the table walk.
+ * Rows that fail, usually because their world is not loaded, are logged and left as they are; the next start
+ * walks the table again from the top and retries only those.
+ */
+public class LegacyGateMigrator {
+    private static final String PAGE_SQL = "SELECT Id, Name, GateData, Network, WorldName, Owner, GateShape FROM Stargates "
+            + "WHERE Id > ? ORDER BY Id LIMIT ?";
+
+    /** Rows read, decoded and written at a time. */
+    static final int PAGE_SIZE = StargateWriteQueue.DEFAULT_BATCH_SIZE;
+
+    /** How often progress is logged. */
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final String LAST_ID = "lastId", COMPLETE = "complete", MIGRATED = "migrated";
+
+    /**
+     * A legacy row and, once decoded, its gate or why it could not be read.
+     */
+    private static final class Row {
+        private final int id;
+        private final String name;
+        private final byte[] data;
+        private final String network;
+        private final String worldName;
+        private final String owner;
+        private final String shape;
+        private final World world;
+        private Stargate stargate;
+        private String error;
+
+        private Row(ResultSet rs, Map<String, World> worlds) throws SQLException {
+            id = rs.getInt("Id");
+            name = rs.getString("Name");
+            data = rs.getBytes("GateData");
+            network = rs.getString("Network");
+            worldName = rs.getString("WorldName");
+            owner = rs.getString("Owner");
+            shape = rs.getString("GateShape");
+            world = worldName != null && !worldName.isEmpty() ? worlds.computeIfAbsent(worldName, Bukkit::getWorld) : null;
+        }
+    }
+
+    /**
+     * What a run did.
+     */
+    public static final class Result {
+        private final int scanned;
+        private final int migrated;
+        private final int failed;
+        private final long millis;
+
+        private Result(int scanned, int migrated, int failed, long millis) {
+            this.scanned = scanned;
+            this.migrated = migrated;
+            this.failed = failed;
+            this.millis = millis;
+        }
+
+        /**
+         * @return The rows looked at, in either format
+         */
+        public int getScanned() {
+            return scanned;
+        }
+
+        /**
+         * @return The legacy gates written in the current format
+         */
+        public int getMigrated() {
+            return migrated;
+        }
+
+        /**
+         * @return The legacy gates left as they were
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return How long the run took
+         */
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final DatabaseManager databaseManager;
+    private final GateStore store;
+    private final Path checkpoint;
+    private final Logger logger;
+    private final int threads;
+
+    /**
+     * @param databaseManager The database holding the Stargates table
+     * @param store The store to write migrated gates to
+     * @param checkpoint The checkpoint file
+     * @param logger The logger
+     * @param threads The number of decoder threads
+     */
+    public LegacyGateMigrator(DatabaseManager databaseManager, GateStore store, Path checkpoint, Logger logger, int threads) {
+        this.databaseManager = databaseManager;
+        this.store = store;
+        this.checkpoint = checkpoint;
+        this.logger = logger;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Checks if a GateData blob is in the versioned legacy layout.
+     * The current codec's blobs start with 'W' and the object map ones with the gzip magic; neither is a save version.
+     *
+     * @param data The GateData column
+     * @return true if {@link StargateHelper#parseVersionedData} should read it
+     */
+    static boolean isLegacy(byte[] data) {
+        return data != null && data.length > 0 && data[0] >= 3 && data[0] <= 8;
+    }
+
+    /**
+     * Migrates every legacy row after the checkpoint, unless a run has already completed.
+     * Blocks until done. Worlds of the gates must be loaded.
+     *
+     * @return What was done, or null if an earlier run already completed
+     */
+    public Result migrate() {
+        final Properties state = readCheckpoint();
+        if (Boolean.parseBoolean(state.getProperty(COMPLETE))) {
+            return null;
+        }
+        final long start = System.nanoTime();
+        final int resumeAfter = intProperty(state, LAST_ID, Integer.MIN_VALUE);
+        final int migratedBefore = intProperty(state, MIGRATED, 0);
+        if (resumeAfter != Integer.MIN_VALUE) {
+            logger.info("Resuming legacy stargate migration after ID: " + resumeAfter);
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService decoders = Executors.newFixedThreadPool(threads, r -> {
+            final Thread thread = new Thread(r, "WormholeXTreme-Migrate-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int scanned = 0;
+        int migrated = 0;
+        int failed = 0;
+        boolean interrupted = false;
+        long lastProgress = start;
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement page = conn.prepareStatement(PAGE_SQL)) {
+            int lastId = resumeAfter;
+            // Looked up by name as the pages are read; null for worlds that are not loaded
+            final Map<String, World> worlds = new HashMap<>();
+            List<Row> rows = readPage(page, lastId, worlds);
+            List<Future<Row>> decoding = decode(decoders, rows);
+            while (!rows.isEmpty()) {
+                scanned += rows.size();
+                lastId = rows.get(rows.size() - 1).id;
+                // Decode the next page while this one is written
+                final List<Row> next = readPage(page, lastId, worlds);
+                final List<Future<Row>> nextDecoding = decode(decoders, next);
+
+                final List<Row> decoded = new ArrayList<>(decoding.size());
+                for (final Future<Row> future : decoding) {
+                    decoded.add(future.get());
+                }
+                final int[] written = write(decoded);
+                migrated += written[0];
+                failed += written[1];
+                writeCheckpoint(lastId, false, migratedBefore + migrated);
+
+                rows = next;
+                decoding = nextDecoding;
+                final long now = System.nanoTime();
+                if (now - lastProgress > PROGRESS_INTERVAL_NANOS) {
+                    lastProgress = now;
+                    logger.info("Migrating legacy stargates: " + migrated + " done, " + failed + " failed, up to ID " + lastId
+                            + String.format(" (%.0f gates/s)", migrated / ((now - start) / 1e9)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+        } catch (SQLException | IOException | ExecutionException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Legacy stargate migration stopped; it resumes from its checkpoint on the next start", e);
+            interrupted = true;
+        } finally {
+            decoders.shutdownNow();
+        }
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (!interrupted) {
+            try {
+                // With failures left, the next run walks the whole table again; the rest no longer look legacy
+                writeCheckpoint(Integer.MIN_VALUE, failed == 0, migratedBefore + migrated);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write " + checkpoint, e);
+            }
+        }
+        if (migrated > 0 || failed > 0) {
+            logger.info("Migrated " + migrated + " legacy stargates in " + millis + " ms"
+                    + String.format(" (%.0f gates/s)", migrated / Math.max(millis / 1000.0, 0.001))
+                    + (failed > 0 ? ", " + failed + " failed and are left as they were" : ""));
+        }
+        return new Result(scanned, migrated, failed, millis);
+    }
+
+    /**
+     * Reads the next page of rows after the id, looking up their worlds on the calling thread.
+     */
+    private static List<Row> readPage(PreparedStatement page, int afterId, Map<String, World> worlds) throws SQLException {
+        page.setInt(1, afterId);
+        page.setInt(2, PAGE_SIZE);
+        final List<Row> rows = new ArrayList<>(PAGE_SIZE);
+        try (ResultSet rs = page.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new Row(rs, worlds));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Hands the legacy rows of a page to the decoders. Current rows are passed over, already done.
+     */
+    private static List<Future<Row>> decode(ExecutorService decoders, List<Row> rows) {
+        final List<Future<Row>> futures = new ArrayList<>();
+        for (final Row row : rows) {
+            if (isLegacy(row.data)) {
+                futures.add(decoders.submit(() -> decode(row)));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Decoder stage: builds the gate from its legacy blob and the row's own columns, in its world if loaded.
+     * Nothing here touches the server but the world's block handles.
+     */
+    private static Row decode(Row row) {
+        if (row.world == null) {
+            row.error = "world '" + row.worldName + "' is not loaded";
+            return row;
+        }
+        try {
+            final StargateNetwork network = row.network != null && !row.network.isEmpty() ? new StargateNetwork(row.network) : null;
+            final Stargate stargate = StargateHelper.parseVersionedData(row.data, row.world, row.name, network);
+            if (stargate == null) {
+                row.error = "unknown save version " + row.data[0];
+                return row;
+            }
+            stargate.setGateId(row.id);
+            stargate.setGateOwner(row.owner);
+            stargate.setGateShape(StargateHelper.getStargateShape(row.shape != null ? row.shape : "Standard"));
+            row.stargate = stargate;
+        } catch (RuntimeException e) {
+            row.error = e.toString();
+        }
+        return row;
+    }
+
+    /**
+     * Writes the decoded gates of a page in one batch.
+     *
+     * @return The gates written, and the gates that failed
+     */
+    private int[] write(List<Row> decoded) {
+        final int[] counts = new int[2];
+        final List<StargateRow> batch = new ArrayList<>(decoded.size());
+        final List<Row> batched = new ArrayList<>(decoded.size());
+        for (final Row row : decoded) {
+            if (row.stargate == null) {
+                counts[1]++;
+                logger.warning("Failed to migrate legacy stargate with ID: " + row.id + " (" + row.name + "): " + row.error);
+                continue;
+            }
+            row.stargate.markGateDirty(Stargate.DIRTY_STATE | Stargate.DIRTY_STRUCTURE);
+            batch.add(StargateRow.save(row.stargate));
+            batched.add(row);
+        }
+        if (batch.isEmpty()) {
+            return counts;
+        }
+        final boolean[] written = store.writeBatch(batch);
+        for (int i = 0; i < written.length; i++) {
+            if (written[i]) {
+                counts[0]++;
+            } else {
+                counts[1]++;
+                logger.warning("Failed to write migrated stargate with ID: " + batched.get(i).id + " (" + batched.get(i).name + ")");
+            }
+        }
+        return counts;
+    }
+
+    private Properties readCheckpoint() {
+        final Properties state = new Properties();
+        if (Files.exists(checkpoint)) {
+            try (Reader in = Files.newBufferedReader(checkpoint)) {
+                state.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Failed to read " + checkpoint + ", migrating from the start", e);
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    private int intProperty(Properties state, String key, int missing) {
+        try {
+            return Integer.parseInt(state.getProperty(key, Integer.toString(missing)));
+        } catch (NumberFormatException e) {
+            logger.warning("Ignoring bad " + key + " in " + checkpoint);
+            return missing;
+        }
+    }
+
+    /**
+     * Writes the checkpoint beside the old one and moves it into place, so a crash leaves one or the other whole.
+     */
+    private void writeCheckpoint(int lastId, boolean complete, int migrated) throws IOException {
+        final Properties state = new Properties();
+        if (lastId != Integer.MIN_VALUE) {
+            state.setProperty(LAST_ID, Integer.toString(lastId));
+        }
+        state.setProperty(COMPLETE, Boolean.toString(complete));
+        state.setProperty(MIGRATED, Integer.toString(migrated));
+        final Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp)) {
+            state.store(out, "Legacy stargate migration");
+        }
+        try {
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
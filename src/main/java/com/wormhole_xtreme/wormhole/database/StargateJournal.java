@@ -0,0 +1,261 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory mapped journal of gate writes.
+ * HSQLDB runs without its own data log, so what it commits is only on disk after a CHECKPOINT. Each write
+ * committed to the database is appended here as well, and the journal is forced to disk once per batch.
+ * On startup the journal is replayed over the database, and once the database has been checkpointed the
+ * journal is reset.
+ * <p>
+ * Layout: a header of magic, version and epoch, then records of length, epoch, payload and a CRC32 of the
+ * epoch and payload. Reading stops at the first record that is cut short, fails its CRC, or carries another
+ * epoch. Resetting moves to a new epoch, so records left over from before the reset are never read back.
+ * <p>
+ * {@link FlatFileGateStore} keeps its gates in one of these, read back by offset.
+ * <p>
+ * Not thread safe; the owner serializes access.
+ */
+class StargateJournal implements Closeable {
+    private static final int MAGIC = 0x57584A4C; // "WXJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    /** Length, epoch and CRC around each payload. */
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private long epoch;
+    private int position = HEADER_SIZE;
+    private boolean unforced;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+
+    private StargateJournal(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, channel.size()));
+    }
+
+    /**
+     * Opens the journal, creating it if need be. Records already in it are left for {@link #readAll()}.
+     *
+     * @param path The journal file
+     * @return The journal
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static StargateJournal open(Path path) throws IOException {
+        final StargateJournal journal = new StargateJournal(path);
+        try {
+            if (journal.map.getInt(0) == MAGIC && journal.map.getInt(4) == VERSION) {
+                journal.epoch = journal.map.getLong(8);
+                journal.position = journal.scan(null);
+            } else {
+                journal.reset();
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Reads back every record of the current epoch, oldest first.
+     *
+     * @return The rows, with no gates
+     * @throws IOException if a record that passed its CRC cannot be parsed
+     */
+    List<StargateRow> readAll() throws IOException {
+        final List<StargateRow> rows = new ArrayList<>();
+        scan((row, offset) -> rows.add(row));
+        return rows;
+    }
+
+    /**
+     * Reads back every record of the current epoch, oldest first, with where it starts.
+     *
+     * @param visitor Receives each row, with no gate, and the offset of its record
+     * @throws IOException if a record that passed its CRC cannot be parsed
+     */
+    void forEach(ObjIntConsumer<StargateRow> visitor) throws IOException {
+        scan(visitor);
+    }
+
+    /**
+     * Reads the record at an offset, as given by {@link #append(StargateRow, int)} or {@link #forEach(ObjIntConsumer)}.
+     *
+     * @param offset The offset of the record
+     * @return The row, with no gate
+     * @throws IOException if the record cannot be parsed
+     */
+    StargateRow read(int offset) throws IOException {
+        final byte[] payload = new byte[map.getInt(offset)];
+        map.get(offset + 12, payload);
+        return StargateRow.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    /**
+     * Gets the size of the record at an offset, overhead included.
+     *
+     * @param offset The offset of the record
+     * @return The size in bytes
+     */
+    int recordSize(int offset) {
+        return RECORD_OVERHEAD + map.getInt(offset);
+    }
+
+    /**
+     * Walks the valid records.
+     *
+     * @param visitor Receives the rows and their offsets, or null just to find the end
+     * @return The offset after the last valid record
+     */
+    private int scan(ObjIntConsumer<StargateRow> visitor) throws IOException {
+        int at = HEADER_SIZE;
+        while (at + RECORD_OVERHEAD <= map.capacity()) {
+            final int length = map.getInt(at);
+            if (length <= 0 || at + RECORD_OVERHEAD + length > map.capacity() || map.getLong(at + 4) != epoch) {
+                break;
+            }
+            final byte[] payload = new byte[length];
+            map.get(at + 12, payload);
+            crc.reset();
+            crc.update(map.slice(at + 4, 8));
+            crc.update(payload);
+            if ((int) crc.getValue() != map.getInt(at + 12 + length)) {
+                break;
+            }
+            if (visitor != null) {
+                visitor.accept(StargateRow.readFrom(new DataInputStream(new ByteArrayInputStream(payload))), at);
+            }
+            at += RECORD_OVERHEAD + length;
+        }
+        return at;
+    }
+
+    /**
+     * Appends a row as written to the database. It is only sure to survive a crash after {@link #force()}.
+     *
+     * @param row The row
+     * @param id The id it was written under
+     * @return The offset of the record
+     * @throws IOException if the journal cannot grow
+     */
+    int append(StargateRow row, int id) throws IOException {
+        buffer.reset();
+        row.writeTo(out, id);
+        final byte[] payload = buffer.toByteArray();
+        final int end = position + RECORD_OVERHEAD + payload.length;
+        if (end + 4 > map.capacity()) {
+            grow(end + 4);
+        }
+        map.putLong(position + 4, epoch);
+        map.put(position + 12, payload);
+        crc.reset();
+        crc.update(map.slice(position + 4, 8));
+        crc.update(payload);
+        map.putInt(position + 12 + payload.length, (int) crc.getValue());
+        // The next length is cleared before this record's length is set, so a crash never exposes stale bytes
+        map.putInt(end, 0);
+        map.putInt(position, payload.length);
+        final int offset = position;
+        position = end;
+        unforced = true;
+        return offset;
+    }
+
+    private void grow(int needed) throws IOException {
+        int capacity = map.capacity();
+        while (capacity < needed) {
+            capacity *= 2;
+        }
+        map.force();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Forces appended records to disk, if there are any since the last force.
+     */
+    void force() {
+        if (unforced) {
+            map.force();
+            unforced = false;
+        }
+    }
+
+    /**
+     * Drops every record. Only call once what they hold is safely in the database.
+     *
+     * @throws IOException if the header cannot be written
+     */
+    void reset() throws IOException {
+        epoch++;
+        map.putInt(HEADER_SIZE, 0);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putLong(8, epoch);
+        map.force();
+        position = HEADER_SIZE;
+        unforced = false;
+    }
+
+    /**
+     * Gets the bytes of records appended since the last reset.
+     *
+     * @return The size in bytes
+     */
+    int size() {
+        return position - HEADER_SIZE;
+    }
+
+    /**
+     * Gets the journal file.
+     *
+     * @return The path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateCodec;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streams every gate out of a {@link GateStore} in three overlapping stages.
+ * A reader thread walks the store's rows, a pool of decoder threads parses the GateData blobs, and the
+ * calling thread builds the gates against their worlds and hands them on in chunks as they arrive.
+ * Only the last stage touches the server, so it is the only one that must run on the main thread.
+ * Gates whose geometry is stored apart are built as descriptors, their blocks left packed until the gate
+ * is hydrated.
+ */
+class StargateLoader {
+    private static final String SELECT_SQL = "SELECT Id, Name, GateData, Geometry, " + StargateState.COLUMNS
+            + " FROM Stargates " + StargateState.JOIN;
+
+    /**
+     * Where the rows come from. Runs on the reader thread.
+     */
+    @FunctionalInterface
+    interface Source {
+        /**
+         * Hands every stored row to the sink, stopping early if the sink asks.
+         *
+         * @param sink Receives the rows
+         * @throws Exception if the rows cannot be read
+         */
+        void read(RowSink sink) throws Exception;
+    }
+
+    /**
+     * Takes the rows a {@link Source} reads.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * Takes a row.
+         *
+         * @param id The gate id
+         * @param name The gate name as stored beside its data
+         * @param data The GateData blob
+         * @param geometry The geometry blob, or null if the row predates it
+         * @param state The state stored beside the blob, or null
+         * @return false once the load has been abandoned, when reading should stop
+         */
+        boolean accept(int id, String name, byte[] data, byte[] geometry, StargateState state);
+    }
+
+    /** Rows fetched from the database per round trip. */
+    private static final int FETCH_SIZE = 256;
+
+    /** Decoded rows that may wait for the calling thread before decoders are made to wait. */
+    private static final int DECODED_CAPACITY = 4096;
+
+    /** How often progress is logged. */
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * A row on its way through the pipeline.
+     */
+    private static final class Row {
+        private final int id;
+        private final String name;
+        private final byte[] data;
+        private final byte[] geometry;
+        private final StargateState state;
+        private StargateCodec.Decoded decoded;
+        private Exception error;
+
+        private Row(int id, String name, byte[] data, byte[] geometry, StargateState state) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+            this.geometry = geometry;
+            this.state = state;
+        }
+    }
+
+    /** Marks the end of the rows. */
+    private static final Row END = new Row(-1, null, null, null, null);
+
+    private final Source source;
+    private final Logger logger;
+    private final int threads;
+
+    private final BlockingQueue<Row> decoded = new ArrayBlockingQueue<>(DECODED_CAPACITY);
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicInteger rowsRead = new AtomicInteger();
+    private volatile long readNanos;
+    private volatile boolean readFailed;
+
+    /**
+     * Creates a loader.
+     *
+     * @param source Where the rows come from
+     * @param logger The logger
+     * @param threads The number of decoder threads
+     */
+    StargateLoader(Source source, Logger logger, int threads) {
+        this.source = source;
+        this.logger = logger;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Loads every gate whose world is loaded. Gates in other worlds are left for when their world loads.
+     * The sink runs on the calling thread.
+     *
+     * @param chunkSize The most gates handed to the sink at once
+     * @param sink Receives the gates
+     * @param outdated Receives each gate handed to the sink whose row predates the Geometry column, after its chunk
+     * @return The number of gates handed to the sink
+     */
+    int load(int chunkSize, Consumer<List<Stargate>> sink, Consumer<Stargate> outdated) {
+        final long start = System.nanoTime();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadPoolExecutor decoders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 64), r -> {
+                    final Thread thread = new Thread(r, "WormholeXTreme-Gate-Decoder-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        final Thread reader = new Thread(() -> read(decoders), "WormholeXTreme-Gate-Reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        int loaded = 0;
+        int skipped = 0;
+        int deferred = 0;
+        long bindNanos = 0;
+        long lastProgress = start;
+        final List<Stargate> chunk = new ArrayList<>(chunkSize);
+        final List<Stargate> stale = new ArrayList<>();
+        try {
+            while (true) {
+                final Row row = decoded.poll(1, TimeUnit.SECONDS);
+                if (row == END) {
+                    break;
+                }
+                final long bindStart = System.nanoTime();
+                if (row != null) {
+                    final Stargate stargate = bind(row);
+                    if (stargate == null) {
+                        skipped++;
+                    } else if (stargate.getGateWorld() == null) {
+                        deferred++;
+                    } else {
+                        chunk.add(stargate);
+                        if (row.geometry == null) {
+                            stale.add(stargate);
+                        }
+                    }
+                }
+                if (chunk.size() >= chunkSize || (row == null && !chunk.isEmpty())) {
+                    loaded += handOff(chunk, stale, sink, outdated);
+                }
+                bindNanos += System.nanoTime() - bindStart;
+                if (System.nanoTime() - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                    lastProgress = System.nanoTime();
+                    logger.info("Loading stargates: " + (loaded + chunk.size()) + " of " + rowsRead.get() + " read so far");
+                }
+            }
+            if (!chunk.isEmpty()) {
+                final long bindStart = System.nanoTime();
+                loaded += handOff(chunk, stale, sink, outdated);
+                bindNanos += System.nanoTime() - bindStart;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while loading stargates, " + loaded + " loaded");
+        } finally {
+            decoders.shutdownNow();
+            reader.interrupt();
+        }
+
+        if (readFailed) {
+            logger.warning("Stargate loading stopped early after a database error, " + rowsRead.get() + " rows read");
+        }
+        if (skipped > 0) {
+            logger.warning(skipped + " stargates could not be read and were skipped");
+        }
+        if (deferred > 0) {
+            logger.info(deferred + " stargates will load with their worlds");
+        }
+        logger.info(String.format("Loaded %d stargates in %d ms: read %d ms, decode %d ms across %d threads, bind %d ms",
+                loaded, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), TimeUnit.NANOSECONDS.toMillis(readNanos),
+                TimeUnit.NANOSECONDS.toMillis(decodeNanos.get()), threads, TimeUnit.NANOSECONDS.toMillis(bindNanos)));
+        return loaded;
+    }
+
+    /**
+     * Hands the chunk to the sink, then its outdated gates on, and clears both.
+     *
+     * @return The number of gates in the chunk
+     */
+    private static int handOff(List<Stargate> chunk, List<Stargate> stale, Consumer<List<Stargate>> sink, Consumer<Stargate> outdated) {
+        final int size = chunk.size();
+        sink.accept(chunk);
+        for (final Stargate stargate : stale) {
+            outdated.accept(stargate);
+        }
+        chunk.clear();
+        stale.clear();
+        return size;
+    }
+
+    /**
+     * Reads the Stargates table, joined with the state rows.
+     *
+     * @param databaseManager The database manager
+     * @return The source
+     */
+    static Source database(DatabaseManager databaseManager) {
+        return sink -> {
+            try (Connection conn = databaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery(SELECT_SQL)) {
+                    while (rs.next() && sink.accept(rs.getInt("Id"), rs.getString("Name"), rs.getBytes("GateData"),
+                            rs.getBytes("Geometry"), StargateState.read(rs))) {
+                        // Handed on
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Reader stage: hands each row to the decoders, then marks the end once they are done.
+     */
+    private void read(ThreadPoolExecutor decoders) {
+        final long start = System.nanoTime();
+        try {
+            source.read((id, name, data, geometry, state) -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                final Row row = new Row(id, name, data, geometry, state);
+                rowsRead.incrementAndGet();
+                decoders.execute(() -> decode(row));
+                return true;
+            });
+        } catch (RejectedExecutionException e) {
+            // Rejected once the load has been abandoned.
+            readFailed = true;
+        } catch (Exception e) {
+            readFailed = true;
+            logger.log(Level.SEVERE, "Failed to read stargates", e);
+        }
+        readNanos = System.nanoTime() - start;
+        decoders.shutdown();
+        try {
+            while (!decoders.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+            decoded.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Decoder stage: parses the blob without touching the server.
+     * Blobs in the old object map format are left for the bind stage.
+     */
+    private void decode(Row row) {
+        final long start = System.nanoTime();
+        if (StargateCodec.isEncoded(row.data)) {
+            try {
+                row.decoded = StargateCodec.parse(row.data, row.geometry);
+            } catch (Exception e) {
+                row.error = e;
+            }
+        }
+        decodeNanos.addAndGet(System.nanoTime() - start);
+        try {
+            decoded.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bind stage: builds the gate in its world.
+     *
+     * @return The gate, or null if the row could not be read
+     */
+    private Stargate bind(Row row) {
+        if (row.error != null) {
+            logger.log(Level.WARNING, "Failed to load stargate with ID: " + row.id, row.error);
+            return null;
+        }
+        try {
+            final Stargate stargate = row.decoded != null
+                    ? Stargate.fromDecoded(row.decoded, row.geometry)
+                    : Stargate.fromByteArray(row.data, row.geometry);
+            if (stargate == null) {
+                logger.warning("Failed to load stargate with ID: " + row.id);
+                return null;
+            }
+            StargateRepository.applyColumns(stargate, row.id, row.name, row.state);
+            return stargate;
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to load stargate with ID: " + row.id, e);
+            return null;
+        }
+    }
+}
@@ -21,18 +21,25 @@ import com.wormhole_xtreme.wormhole.WormholeXTreme;
 import com.wormhole_xtreme.wormhole.model.Stargate;
 import org.bukkit.World;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
- * Handles database operations for Stargate entities.
+ * Handles database operations for Stargate entities: the HSQLDB {@link GateStore}.
  */
-public class StargateRepository {
+public class StargateRepository implements GateStore {
+    /** Journal size past which it is compacted into the database after a write. */
+    private static final int COMPACT_BYTES = 8 << 20;
+
     private final DatabaseManager databaseManager;
     private final WormholeXTreme plugin;
+    private final StargateJournal journal;
     
     /**
      * Creates a new StargateRepository instance.
@@ -43,8 +50,144 @@ public class StargateRepository {
     public StargateRepository(WormholeXTreme plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
+        this.journal = null;
+    }
+
+    /**
+     * Creates a new StargateRepository instance that journals its writes, and replays what the journal
+     * holds from before a crash.
+     *
+     * @param plugin The plugin instance
+     * @param databaseManager The database manager
+     * @param journalPath The journal file
+     * @throws IOException if the journal cannot be opened
+     * @throws SQLException if the journal cannot be replayed
+     * @see StargateJournal
+     */
+    public StargateRepository(WormholeXTreme plugin, DatabaseManager databaseManager, Path journalPath) throws IOException, SQLException {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        this.journal = StargateJournal.open(journalPath);
+        try {
+            replay();
+        } catch (IOException | SQLException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the journal over the database, checkpoints it and resets the journal.
+     */
+    private void replay() throws IOException, SQLException {
+        final List<StargateRow> rows = journal.readAll();
+        if (rows.isEmpty()) {
+            return;
+        }
+        plugin.getLogger().warning("Replaying " + rows.size() + " stargate writes not checkpointed before the last shutdown");
+        try (Connection conn = databaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement merge = conn.prepareStatement(MERGE_SQL, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement mergeState = conn.prepareStatement(StargateState.MERGE_SQL);
+                 PreparedStatement delete = conn.prepareStatement(DELETE_SQL)) {
+                // Rows are replayed in order, so a later row always wins; a row whose gate is gone by then
+                // fails harmlessly, so each is written under a savepoint
+                for (final StargateRow row : rows) {
+                    final Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        writeRow(row, merge, mergeState, delete);
+                    } catch (SQLException e) {
+                        conn.rollback(savepoint);
+                        plugin.getLogger().log(Level.WARNING, "Skipped replaying a write of stargate with ID: " + row.id(), e);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        checkpoint();
+    }
+
+    /**
+     * Checkpoints the database, making everything it has committed durable, then empties the journal.
+     */
+    private void checkpoint() throws SQLException, IOException {
+        try (Connection conn = databaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CHECKPOINT");
+        }
+        journal.reset();
+    }
+
+    /**
+     * Compacts the journal into the database if it holds anything.
+     * Cheap when the journal is empty, so safe to call on a timer.
+     */
+    @Override
+    public synchronized void compact() {
+        if (journal == null || journal.size() == 0) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (SQLException | IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to compact the stargate journal, it will be retried", e);
+        }
+    }
+
+    /**
+     * Compacts and closes the journal. Call after the last write, before the database shuts down.
+     */
+    @Override
+    public synchronized void close() {
+        if (journal == null) {
+            return;
+        }
+        compact();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close the stargate journal", e);
+        }
     }
     
+    // HSQLDB needs typed parameters in the VALUES table; a null Id never matches, so a new gate is inserted
+    // and given an id, while a known Id that has no row yet, as when replaying the journal, is inserted as is
+    private static final String MERGE_SQL = """
+            MERGE INTO Stargates t USING (VALUES (
+                CAST(? AS INTEGER), CAST(? AS VARCHAR(128)), CAST(? AS VARBINARY(1048576)), CAST(? AS VARCHAR(255)),
+                CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                CAST(? AS VARCHAR(255)), CAST(? AS VARBINARY(1048576)), CAST(? AS INTEGER), CAST(? AS INTEGER),
+                CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER)
+            )) AS v (Id, Name, GateData, Network, World, WorldName, WorldEnvironment, Owner, GateShape,
+                Geometry, MinX, MinY, MinZ, MaxX, MaxY, MaxZ)
+            ON t.Id = v.Id
+            WHEN MATCHED THEN UPDATE SET
+                t.Name = v.Name, t.GateData = v.GateData, t.Network = v.Network, t.World = v.World,
+                t.WorldName = v.WorldName, t.WorldEnvironment = v.WorldEnvironment, t.Owner = v.Owner,
+                t.GateShape = v.GateShape, t.Geometry = v.Geometry, t.MinX = v.MinX, t.MinY = v.MinY,
+                t.MinZ = v.MinZ, t.MaxX = v.MaxX, t.MaxY = v.MaxY, t.MaxZ = v.MaxZ
+            WHEN NOT MATCHED THEN INSERT (
+                Id, Name, GateData, Network, World, WorldName, WorldEnvironment, Owner, GateShape,
+                Geometry, MinX, MinY, MinZ, MaxX, MaxY, MaxZ
+            ) VALUES (
+                v.Id, v.Name, v.GateData, v.Network, v.World, v.WorldName, v.WorldEnvironment, v.Owner, v.GateShape,
+                v.Geometry, v.MinX, v.MinY, v.MinZ, v.MaxX, v.MaxY, v.MaxZ
+            )""";
+
+    private static final String DELETE_SQL = "DELETE FROM Stargates WHERE Id = ?";
+
+    private static final String SELECT_SQL = "SELECT Stargates.*, " + StargateState.COLUMNS + " FROM Stargates " + StargateState.JOIN;
+
+    private static final String PAGE_SQL = SELECT_SQL + " WHERE Id > ? ORDER BY Id LIMIT ?";
+
+    /** Rows read at a time by {@link #forEachRow(RowVisitor)}. */
+    private static final int PAGE_SIZE = 256;
+
     /**
      * Saves a stargate to the database.
      *
@@ -52,40 +195,7 @@ public class StargateRepository {
      * @return true if the operation was successful, false otherwise
      */
     public boolean saveStargate(Stargate stargate) {
-        String sql = """
-            MERGE INTO Stargates (
-                Id, Name, GateData, Network, World, WorldName, WorldEnvironment, Owner, GateShape
-            ) KEY (Id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)""";
-            
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setObject(1, stargate.getGateId() > 0 ? stargate.getGateId() : null);
-            stmt.setString(2, stargate.getGateName());
-            stmt.setBytes(3, stargate.toByteArray());
-            stmt.setString(4, stargate.getGateNetwork() != null ? stargate.getGateNetwork().getNetworkName() : null);
-            stmt.setLong(5, stargate.getGateWorld().getUID().getMostSignificantBits());
-            stmt.setString(6, stargate.getGateWorld().getName());
-            stmt.setString(7, stargate.getGateWorld().getEnvironment().name());
-            stmt.setString(8, stargate.getGateOwner());
-            stmt.setString(9, stargate.getGateShape() != null ? stargate.getGateShape().getShapeName() : "Standard");
-            
-            int affectedRows = stmt.executeUpdate();
-            
-            // If this is a new stargate, get the generated ID
-            if (stargate.getGateId() <= 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        stargate.setGateId(generatedKeys.getInt(1));
-                    }
-                }
-            }
-            
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save stargate: " + stargate.getGateName(), e);
-            return false;
-        }
+        return writeBatch(List.of(StargateRow.save(stargate)))[0];
     }
     
     /**
@@ -95,19 +205,144 @@ public class StargateRepository {
      * @return true if the operation was successful, false otherwise
      */
     public boolean deleteStargate(Stargate stargate) {
-        String sql = "DELETE FROM Stargates WHERE Id = ?";
-        
-        try (Connection conn = databaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setInt(1, stargate.getGateId());
-            int affectedRows = stmt.executeUpdate();
-            
-            return affectedRows > 0;
+        return writeBatch(List.of(StargateRow.delete(stargate)))[0];
+    }
+
+    /**
+     * Writes the rows in order in a single transaction.
+     * If the transaction fails, each row is retried on its own so one bad row does not lose the others.
+     * Written rows are journaled, and the journal forced once for the whole batch.
+     *
+     * @param rows The rows to write
+     * @return Whether each row was written
+     */
+    @Override
+    public synchronized boolean[] writeBatch(List<StargateRow> rows) {
+        final boolean[] written = write(rows);
+        if (journal != null) {
+            try {
+                for (int i = 0; i < written.length; i++) {
+                    if (written[i] && !rows.get(i).isEmpty()) {
+                        journal.append(rows.get(i), rows.get(i).id());
+                    }
+                }
+                journal.force();
+                if (journal.size() > COMPACT_BYTES) {
+                    checkpoint();
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to journal stargate writes; they are safe once the database checkpoints", e);
+            }
+        }
+        return written;
+    }
+
+    private boolean[] write(List<StargateRow> rows) {
+        final boolean[] written = new boolean[rows.size()];
+        final int[] ids = new int[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rows.get(i).id();
+        }
+        try (Connection conn = databaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement merge = conn.prepareStatement(MERGE_SQL, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement mergeState = conn.prepareStatement(StargateState.MERGE_SQL);
+                 PreparedStatement delete = conn.prepareStatement(DELETE_SQL)) {
+                for (int i = 0; i < written.length; i++) {
+                    written[i] = writeRow(rows.get(i), merge, mergeState, delete);
+                }
+                conn.commit();
+                return written;
+            } catch (SQLException e) {
+                conn.rollback();
+                // Ids handed out by the rolled back inserts no longer exist.
+                for (int i = 0; i < ids.length; i++) {
+                    rows.get(i).assignId(ids[i]);
+                    written[i] = false;
+                }
+                if (rows.size() == 1) {
+                    throw e;
+                }
+                plugin.getLogger().log(Level.WARNING, "Batch of " + rows.size() + " stargate writes failed, retrying one at a time", e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            try (PreparedStatement merge = conn.prepareStatement(MERGE_SQL, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement mergeState = conn.prepareStatement(StargateState.MERGE_SQL);
+                 PreparedStatement delete = conn.prepareStatement(DELETE_SQL)) {
+                for (int i = 0; i < written.length; i++) {
+                    try {
+                        written[i] = writeRow(rows.get(i), merge, mergeState, delete);
+                    } catch (SQLException e) {
+                        logWriteFailure(rows.get(i), e);
+                    }
+                }
+            }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to delete stargate: " + stargate.getGateName(), e);
-            return false;
+            for (final StargateRow row : rows) {
+                logWriteFailure(row, e);
+            }
+        }
+        for (int i = 0; i < written.length; i++) {
+            if (!written[i] && !rows.get(i).delete && rows.get(i).stargate != null) {
+                // Still unsaved, so the next save tries again
+                rows.get(i).stargate.markGateDirty(rows.get(i).dirty);
+            }
         }
+        return written;
+    }
+
+    /**
+     * Writes one row, assigning the generated id to a gate saved for the first time.
+     * The Stargates row is written only if the structure changed; the state row always.
+     */
+    private boolean writeRow(StargateRow row, PreparedStatement merge, PreparedStatement mergeState, PreparedStatement delete) throws SQLException {
+        final int id = row.id();
+        if (row.delete) {
+            // The state row goes with it, by cascade
+            delete.setInt(1, id);
+            return delete.executeUpdate() > 0;
+        }
+        if (row.isEmpty()) {
+            return true;
+        }
+        if (!row.structure) {
+            return row.state.write(id, mergeState);
+        }
+        merge.setObject(1, id >= 0 ? id : null);
+        merge.setString(2, row.name);
+        merge.setBytes(3, row.data);
+        merge.setString(4, row.network);
+        merge.setLong(5, row.worldId);
+        merge.setString(6, row.worldName);
+        merge.setString(7, row.worldEnvironment);
+        merge.setString(8, row.owner);
+        merge.setString(9, row.shape);
+        merge.setBytes(10, row.geometry);
+        for (int i = 0; i < 6; i++) {
+            if (row.bounds != null) {
+                merge.setInt(11 + i, row.bounds[i]);
+            } else {
+                merge.setNull(11 + i, Types.INTEGER);
+            }
+        }
+
+        int affectedRows = merge.executeUpdate();
+
+        // If this is a new stargate, get the generated ID
+        if (id < 0) {
+            try (ResultSet generatedKeys = merge.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    row.assignId(generatedKeys.getInt(1));
+                }
+            }
+        }
+
+        return affectedRows > 0 && row.state.write(row.id(), mergeState);
+    }
+
+    private void logWriteFailure(StargateRow row, SQLException e) {
+        plugin.getLogger().log(Level.SEVERE, "Failed to " + (row.delete ? "delete" : "save") + " stargate: " + row.name, e);
     }
     
     /**
@@ -117,7 +352,7 @@ public class StargateRepository {
      * @return An Optional containing the stargate if found, or empty if not found
      */
     public Optional<Stargate> findById(int id) {
-        String sql = "SELECT * FROM Stargates WHERE Id = ?";
+        String sql = SELECT_SQL + " WHERE Id = ?";
         
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -142,8 +377,9 @@ public class StargateRepository {
      * @param name The name of the stargate to find
      * @return An Optional containing the stargate if found, or empty if not found
      */
+    @Override
     public Optional<Stargate> findByName(String name) {
-        String sql = "SELECT * FROM Stargates WHERE Name = ?";
+        String sql = SELECT_SQL + " WHERE Name = ?";
         
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -169,7 +405,7 @@ public class StargateRepository {
      */
     public List<Stargate> findAll() {
         List<Stargate> stargates = new ArrayList<>();
-        String sql = "SELECT * FROM Stargates";
+        String sql = SELECT_SQL;
         
         try (Connection conn = databaseManager.getConnection();
              Statement stmt = conn.createStatement();
@@ -195,14 +431,67 @@ public class StargateRepository {
      * @param world The world to search in
      * @return A list of stargates in the specified world
      */
+    @Override
     public List<Stargate> findByWorld(World world) {
+        return findWhere("WorldName = ?", "world: " + world.getName(), world.getName());
+    }
+
+    /**
+     * Finds all stargates on a network.
+     *
+     * @param network The network name, as saved
+     * @return A list of stargates on the network
+     */
+    public List<Stargate> findByNetwork(String network) {
+        return findWhere("Network = ?", "network: " + network, network);
+    }
+
+    /**
+     * Finds all stargates owned by a player.
+     *
+     * @param owner The owner name
+     * @return A list of stargates with that owner
+     */
+    public List<Stargate> findByOwner(String owner) {
+        return findWhere("Owner = ?", "owner: " + owner, owner);
+    }
+
+    /**
+     * Finds all stargates with a block inside the box, by their saved bounding boxes.
+     * Gates saved before their bounding box was recorded are not found until they are saved again.
+     *
+     * @param world The world to search in
+     * @param minX The least X of the box
+     * @param minY The least Y of the box
+     * @param minZ The least Z of the box
+     * @param maxX The greatest X of the box
+     * @param maxY The greatest Y of the box
+     * @param maxZ The greatest Z of the box
+     * @return A list of stargates whose bounding box meets the box
+     */
+    public List<Stargate> findInBox(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return findWhere("WorldName = ? AND MinX <= ? AND MaxX >= ? AND MinZ <= ? AND MaxZ >= ? AND MinY <= ? AND MaxY >= ?",
+                "area in world: " + world.getName(), world.getName(), maxX, minX, maxZ, minZ, maxY, minY);
+    }
+
+    /**
+     * Runs a query on the Stargates table, skipping rows that cannot be read.
+     *
+     * @param where The WHERE clause
+     * @param what What is being looked for, for the log
+     * @param params The clause parameters
+     * @return The stargates found
+     */
+    private List<Stargate> findWhere(String where, String what, Object... params) {
         List<Stargate> stargates = new ArrayList<>();
-        String sql = "SELECT * FROM Stargates WHERE WorldName = ?";
+        String sql = SELECT_SQL + " WHERE " + where;
         
         try (Connection conn = databaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setString(1, world.getName());
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -214,28 +503,96 @@ public class StargateRepository {
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load stargates for world: " + world.getName(), e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to load stargates for " + what, e);
         }
         
         return stargates;
     }
     
+    /**
+     * Streams every gate in a loaded world to the sink, decoding in parallel.
+     * Gates in worlds that are not loaded are left for when their world loads.
+     *
+     * @param chunkSize The most gates handed to the sink at once
+     * @param sink Receives the gates on the calling thread
+     * @param outdated Receives, on the calling thread, each loaded gate whose row has no Geometry or bounding box yet,
+     *                 so it can be saved again in the current layout
+     * @return The number of gates handed to the sink
+     * @see StargateLoader
+     */
+    @Override
+    public int streamAll(int chunkSize, Consumer<List<Stargate>> sink, Consumer<Stargate> outdated) {
+        return new StargateLoader(StargateLoader.database(databaseManager), plugin.getLogger(), Runtime.getRuntime().availableProcessors())
+                .load(chunkSize, sink, outdated);
+    }
+
+    /**
+     * Walks the table a page at a time, keyed on the last id seen, so neither the database nor the
+     * visitor holds more than a page of rows however many gates there are.
+     */
+    @Override
+    public int forEachRow(RowVisitor visitor) throws IOException {
+        int visited = 0;
+        int lastId = Integer.MIN_VALUE;
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PAGE_SQL)) {
+            while (true) {
+                stmt.setInt(1, lastId);
+                stmt.setInt(2, PAGE_SIZE);
+                int rows = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        final StargateRow row = StargateRow.read(rs);
+                        lastId = row.id();
+                        visitor.visit(row);
+                        rows++;
+                    }
+                }
+                visited += rows;
+                if (rows < PAGE_SIZE) {
+                    return visited;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read stargates after ID: " + lastId, e);
+        }
+    }
+
     /**
      * Maps a ResultSet row to a Stargate object.
      *
      * @param rs The ResultSet containing the stargate data
      * @return A Stargate object
-     * @throws SQLException if a database error occurs
+     * @throws SQLException if a database error occurs, or the row's GateData cannot be read
      */
     private Stargate mapResultSetToStargate(ResultSet rs) throws SQLException {
-        // TODO: Implement proper mapping from ResultSet to Stargate
-        // This is a placeholder - the actual implementation will depend on your Stargate class
-        // and how it's structured.
-        Stargate stargate = new Stargate();
-        stargate.setGateId(rs.getInt("Id"));
-        stargate.setGateName(rs.getString("Name"));
-        // Set other properties as needed
-        
+        final int id = rs.getInt("Id");
+        final Stargate stargate = Stargate.fromByteArray(rs.getBytes("GateData"), rs.getBytes("Geometry"));
+        if (stargate == null) {
+            throw new SQLException("Unreadable GateData for stargate with ID: " + id);
+        }
+        applyColumns(stargate, id, rs.getString("Name"), StargateState.read(rs));
         return stargate;
     }
+
+    /**
+     * Applies the row's own columns over what was decoded from its GateData, then marks the gate saved.
+     * The Id column is authoritative; the Name column fills in a blob without a name; the state row,
+     * if any, is newer than the state in the blob.
+     *
+     * @param stargate The decoded stargate
+     * @param id The Id column
+     * @param name The Name column
+     * @param state The state row, or null
+     */
+    static void applyColumns(Stargate stargate, int id, String name, StargateState state) {
+        stargate.setGateId(id);
+        if ((stargate.getGateName() == null || stargate.getGateName().isEmpty()) && name != null) {
+            stargate.setGateName(name);
+        }
+        if (state != null) {
+            state.applyTo(stargate);
+        }
+        stargate.takeGateDirty();
+    }
 }
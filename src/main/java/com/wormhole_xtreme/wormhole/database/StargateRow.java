@@ -0,0 +1,440 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateCodec;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A pending write of a gate: the values of the gate captured when the write was requested, or a delete.
+ * Only what changed is written. Runtime state goes to the narrow StargateState table on every save; the
+ * Stargates row, GateData and geometry included, is written only when the gate's structure changed,
+ * as told by its dirty flags.
+ * The block lists go in the Geometry column, apart from GateData, and their bounding box in the
+ * MinX..MaxZ columns so area queries can run on the index.
+ * The gate id is not captured; it is read when the row is written, so a save queued behind the
+ * first insert of a new gate updates that row instead of inserting another. Rows read back from the
+ * {@link StargateJournal}, or from a store for a {@link GateSnapshot}, have no gate and carry the id they
+ * were written with.
+ * <p>
+ * Public only so {@link GateStore} can take it; it is opaque outside this package.
+ */
+public final class StargateRow {
+    final Stargate stargate;
+    final boolean delete;
+    /** The dirty flags this write saves. */
+    final int dirty;
+    final StargateState state;
+    /** Whether the Stargates row is written; the columns below are null when it is not. */
+    final boolean structure;
+    final String name;
+    final byte[] data;
+    final byte[] geometry;
+    /** MinX, MinY, MinZ, MaxX, MaxY, MaxZ of every gate block, null if the gate has none. */
+    final int[] bounds;
+    final String network;
+    final long worldId;
+    final String worldName;
+    final String worldEnvironment;
+    final String owner;
+    final String shape;
+    /** The id of a row with no gate, as read from the journal. */
+    private final int journalId;
+
+    /** Journal record kinds. */
+    private static final byte KIND_DELETE = 0, KIND_STATE = 1, KIND_FULL = 2;
+
+    /**
+     * A delete, of the gate or, with no gate, of the id.
+     */
+    private StargateRow(Stargate stargate, int id) {
+        this.stargate = stargate;
+        delete = true;
+        dirty = 0;
+        state = null;
+        structure = false;
+        name = stargate != null ? stargate.getGateName() : null;
+        data = null;
+        geometry = null;
+        bounds = null;
+        network = null;
+        worldId = 0;
+        worldName = null;
+        worldEnvironment = null;
+        owner = null;
+        shape = null;
+        journalId = id;
+    }
+
+    /**
+     * A row read back from the journal, as written by {@link #writeTo(DataOutput, int)}.
+     */
+    private StargateRow(DataInput in) throws IOException {
+        stargate = null;
+        final byte kind = in.readByte();
+        journalId = in.readInt();
+        delete = kind == KIND_DELETE;
+        structure = kind == KIND_FULL;
+        dirty = delete ? 0 : structure ? Stargate.DIRTY_STATE | Stargate.DIRTY_STRUCTURE : Stargate.DIRTY_STATE;
+        state = delete ? null : StargateState.readFrom(in);
+        name = structure ? readString(in) : null;
+        data = structure ? readBytes(in) : null;
+        geometry = structure ? readBytes(in) : null;
+        if (structure && in.readBoolean()) {
+            bounds = new int[6];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = in.readInt();
+            }
+        } else {
+            bounds = null;
+        }
+        network = structure ? readString(in) : null;
+        worldId = structure ? in.readLong() : 0;
+        worldName = structure ? readString(in) : null;
+        worldEnvironment = structure ? readString(in) : null;
+        owner = structure ? readString(in) : null;
+        shape = structure ? readString(in) : null;
+    }
+
+    /**
+     * A stored Stargates row, read back from the database with its state.
+     */
+    private StargateRow(ResultSet rs) throws SQLException {
+        stargate = null;
+        delete = false;
+        structure = true;
+        dirty = Stargate.DIRTY_STATE | Stargate.DIRTY_STRUCTURE;
+        journalId = rs.getInt("Id");
+        name = rs.getString("Name");
+        data = rs.getBytes("GateData");
+        geometry = rs.getBytes("Geometry");
+        // A gate saved before the state table has its state in GateData only
+        final StargateState stored = StargateState.read(rs);
+        state = stored != null ? stored : StargateState.of(data);
+        rs.getInt("MinX");
+        if (rs.wasNull()) {
+            bounds = null;
+        } else {
+            bounds = new int[] {rs.getInt("MinX"), rs.getInt("MinY"), rs.getInt("MinZ"), rs.getInt("MaxX"), rs.getInt("MaxY"), rs.getInt("MaxZ")};
+        }
+        network = rs.getString("Network");
+        worldId = rs.getLong("World");
+        worldName = rs.getString("WorldName");
+        worldEnvironment = rs.getString("WorldEnvironment");
+        owner = rs.getString("Owner");
+        shape = rs.getString("GateShape");
+    }
+
+    /**
+     * The row with other state.
+     */
+    private StargateRow(StargateRow row, StargateState state) {
+        stargate = row.stargate;
+        delete = row.delete;
+        dirty = row.dirty;
+        this.state = state;
+        structure = row.structure;
+        name = row.name;
+        data = row.data;
+        geometry = row.geometry;
+        bounds = row.bounds;
+        network = row.network;
+        worldId = row.worldId;
+        worldName = row.worldName;
+        worldEnvironment = row.worldEnvironment;
+        owner = row.owner;
+        shape = row.shape;
+        journalId = row.journalId;
+    }
+
+    /**
+     * A save of the given dirty flags. Without an earlier write the structure is captured from the gate if it
+     * is dirty; with one, the structure that write captured, if any, is kept.
+     */
+    private StargateRow(Stargate stargate, int dirty, StargateRow earlier) {
+        this.stargate = stargate;
+        delete = false;
+        this.dirty = dirty;
+        journalId = 0;
+        state = StargateState.of(stargate);
+        // A gate never written has no Stargates row for its state row to hang off
+        final boolean capture = earlier == null && ((dirty & Stargate.DIRTY_STRUCTURE) != 0 || stargate.getGateId() < 0);
+        if (!capture) {
+            structure = earlier != null && earlier.structure;
+            name = structure ? earlier.name : stargate.getGateName();
+            data = structure ? earlier.data : null;
+            geometry = structure ? earlier.geometry : null;
+            bounds = structure ? earlier.bounds : null;
+            network = structure ? earlier.network : null;
+            worldId = structure ? earlier.worldId : 0;
+            worldName = structure ? earlier.worldName : null;
+            worldEnvironment = structure ? earlier.worldEnvironment : null;
+            owner = structure ? earlier.owner : null;
+            shape = structure ? earlier.shape : null;
+            return;
+        }
+        final World world = stargate.getGateWorld();
+        structure = true;
+        name = stargate.getGateName();
+        data = StargateCodec.encodeWithoutGeometry(stargate, true);
+        geometry = StargateCodec.encodeGeometry(stargate, true);
+        // A descriptor keeps its bounds, which reading its blocks to measure would hydrate it for
+        bounds = stargate.isGateHydrated() ? bounds(stargate) : stargate.getGatePackedBounds();
+        network = stargate.getGateNetwork() != null ? stargate.getGateNetwork().getNetworkName() : null;
+        worldId = world.getUID().getMostSignificantBits();
+        worldName = world.getName();
+        worldEnvironment = world.getEnvironment().name();
+        owner = stargate.getGateOwner();
+        shape = stargate.getGateShape() != null ? stargate.getGateShape().getShapeName() : "Standard";
+    }
+
+    /**
+     * Gets the id to write the row under: the gate's id now, or the id a journal row was written with.
+     *
+     * @return The id, negative if the gate was never inserted
+     */
+    int id() {
+        return stargate != null ? stargate.getGateId() : journalId;
+    }
+
+    /**
+     * Gives the gate the id it was inserted under.
+     *
+     * @param id The generated id
+     */
+    void assignId(int id) {
+        if (stargate != null) {
+            stargate.setGateId(id);
+        }
+    }
+
+    /**
+     * Writes the row as it was written to the database, for the journal.
+     *
+     * @param out Where to write
+     * @param id The id the row was written under
+     * @throws IOException if out fails
+     */
+    void writeTo(DataOutput out, int id) throws IOException {
+        out.writeByte(delete ? KIND_DELETE : structure ? KIND_FULL : KIND_STATE);
+        out.writeInt(id);
+        if (delete) {
+            return;
+        }
+        state.writeTo(out);
+        if (!structure) {
+            return;
+        }
+        writeString(out, name);
+        writeBytes(out, data);
+        writeBytes(out, geometry);
+        out.writeBoolean(bounds != null);
+        if (bounds != null) {
+            for (final int b : bounds) {
+                out.writeInt(b);
+            }
+        }
+        writeString(out, network);
+        out.writeLong(worldId);
+        writeString(out, worldName);
+        writeString(out, worldEnvironment);
+        writeString(out, owner);
+        writeString(out, shape);
+    }
+
+    /**
+     * Reads a row written by {@link #writeTo(DataOutput, int)}.
+     *
+     * @param in Where to read
+     * @return The row, with no gate
+     * @throws IOException if the row is cut short
+     */
+    static StargateRow readFrom(DataInput in) throws IOException {
+        return new StargateRow(in);
+    }
+
+    /**
+     * Reads the current row of a result set selected from Stargates, with its state columns, as a full row.
+     *
+     * @param rs The result set
+     * @return The row, with no gate
+     * @throws SQLException if a database error occurs
+     */
+    static StargateRow read(ResultSet rs) throws SQLException {
+        return new StargateRow(rs);
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBytes(DataOutput out, byte[] b) throws IOException {
+        out.writeInt(b != null ? b.length : -1);
+        if (b != null) {
+            out.write(b);
+        }
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] b = new byte[length];
+        in.readFully(b);
+        return b;
+    }
+
+    /**
+     * Gets this row with the state replaced, as when a store folds later state writes into it.
+     *
+     * @param state The state
+     * @return The row
+     */
+    StargateRow withState(StargateState state) {
+        return new StargateRow(this, state);
+    }
+
+    /**
+     * Checks if there is nothing to write.
+     *
+     * @return true if this is a save of a gate with no unsaved changes
+     */
+    boolean isEmpty() {
+        return !delete && !structure && dirty == 0;
+    }
+
+    /**
+     * Merges a later write of the same gate into this one, still queued.
+     * The later state wins; structure captured earlier is kept unless the later write captured it again.
+     *
+     * @param later The later write
+     * @return The merged write
+     */
+    StargateRow mergedWith(StargateRow later) {
+        if (later.delete || later.structure) {
+            return later;
+        }
+        if (delete) {
+            // The row is gone; write the gate whole again
+            return new StargateRow(later.stargate, later.dirty | Stargate.DIRTY_STRUCTURE, null);
+        }
+        return new StargateRow(later.stargate, dirty | later.dirty, this);
+    }
+
+    /**
+     * Gets the bounding box of the gate's blocks.
+     *
+     * @param stargate The stargate
+     * @return MinX, MinY, MinZ, MaxX, MaxY, MaxZ, or null if the gate has no blocks
+     */
+    static int[] bounds(Stargate stargate) {
+        final int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        include(box, stargate.getGateStructureBlocks());
+        include(box, stargate.getGatePortalBlocks());
+        for (final List<Location> layer : stargate.getGateLightBlocks()) {
+            include(box, layer);
+        }
+        for (final List<Location> layer : stargate.getGateWooshBlocks()) {
+            include(box, layer);
+        }
+        for (final Block b : new Block[] {stargate.getGateDialLeverBlock(), stargate.getGateIrisLeverBlock(),
+                stargate.getGateNameBlockHolder(), stargate.getGateDialSignBlock()}) {
+            if (b != null) {
+                include(box, b.getX(), b.getY(), b.getZ());
+            }
+        }
+        return box[0] <= box[3] ? box : null;
+    }
+
+    private static void include(int[] box, List<Location> blocks) {
+        if (blocks != null) {
+            for (final Location l : blocks) {
+                include(box, l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            }
+        }
+    }
+
+    private static void include(int[] box, int x, int y, int z) {
+        box[0] = Math.min(box[0], x);
+        box[1] = Math.min(box[1], y);
+        box[2] = Math.min(box[2], z);
+        box[3] = Math.max(box[3], x);
+        box[4] = Math.max(box[4], y);
+        box[5] = Math.max(box[5], z);
+    }
+
+    /**
+     * Captures the unsaved changes of the gate as it is now, for saving, and marks them saved.
+     * If the write fails they are marked unsaved again.
+     *
+     * @param stargate The stargate
+     * @return The row
+     */
+    static StargateRow save(Stargate stargate) {
+        return new StargateRow(stargate, stargate.takeGateDirty(), null);
+    }
+
+    /**
+     * Captures the gate's unsaved runtime state only, leaving any structure change unsaved.
+     * A gate never written is captured whole all the same.
+     *
+     * @param stargate The stargate
+     * @return The row
+     */
+    static StargateRow saveState(Stargate stargate) {
+        return new StargateRow(stargate, stargate.takeGateDirty(Stargate.DIRTY_STATE), null);
+    }
+
+    /**
+     * A delete of the gate.
+     *
+     * @param stargate The stargate
+     * @return The row
+     */
+    static StargateRow delete(Stargate stargate) {
+        return new StargateRow(stargate, 0);
+    }
+
+    /**
+     * A delete of an id with no gate behind it.
+     *
+     * @param id The id
+     * @return The row
+     */
+    static StargateRow delete(int id) {
+        return new StargateRow(null, id);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The runtime state of a gate, as kept in the StargateState table.
+ * These values change while a gate is used, so they are written on their own, a few bytes at a time,
+ * instead of with the rest of the gate. A row here overrides the state saved in GateData.
+ */
+final class StargateState {
+    static final String MERGE_SQL = """
+            MERGE INTO StargateState t USING (VALUES (
+                CAST(? AS INTEGER), CAST(? AS BOOLEAN), CAST(? AS BOOLEAN), CAST(? AS BOOLEAN), CAST(? AS BOOLEAN),
+                CAST(? AS BOOLEAN), CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT)
+            )) AS v (GateId, Active, LightsActive, SignPowered, RedstonePowered, IrisActive, DialSignIndex, TargetId, SignTargetId)
+            ON t.GateId = v.GateId
+            WHEN MATCHED THEN UPDATE SET
+                t.Active = v.Active, t.LightsActive = v.LightsActive, t.SignPowered = v.SignPowered,
+                t.RedstonePowered = v.RedstonePowered, t.IrisActive = v.IrisActive, t.DialSignIndex = v.DialSignIndex,
+                t.TargetId = v.TargetId, t.SignTargetId = v.SignTargetId
+            WHEN NOT MATCHED THEN INSERT VALUES (
+                v.GateId, v.Active, v.LightsActive, v.SignPowered, v.RedstonePowered, v.IrisActive, v.DialSignIndex,
+                v.TargetId, v.SignTargetId
+            )""";
+
+    /** The state columns, to select alongside a Stargates row. */
+    static final String COLUMNS = "StargateState.GateId, Active, LightsActive, SignPowered, RedstonePowered, IrisActive, "
+            + "DialSignIndex, TargetId, SignTargetId";
+
+    /** Joins each Stargates row to its state row, if it has one. */
+    static final String JOIN = "LEFT JOIN StargateState ON StargateState.GateId = Stargates.Id";
+
+    final boolean active;
+    final boolean lightsActive;
+    final boolean signPowered;
+    final boolean redstonePowered;
+    final boolean irisActive;
+    final int dialSignIndex;
+    final long targetId;
+    final long signTargetId;
+
+    private StargateState(boolean active, boolean lightsActive, boolean signPowered, boolean redstonePowered,
+                          boolean irisActive, int dialSignIndex, long targetId, long signTargetId) {
+        this.active = active;
+        this.lightsActive = lightsActive;
+        this.signPowered = signPowered;
+        this.redstonePowered = redstonePowered;
+        this.irisActive = irisActive;
+        this.dialSignIndex = dialSignIndex;
+        this.targetId = targetId;
+        this.signTargetId = signTargetId;
+    }
+
+    /**
+     * Captures the state of the gate as it is now.
+     *
+     * @param stargate The stargate
+     * @return The state
+     */
+    static StargateState of(Stargate stargate) {
+        return new StargateState(stargate.isGateActive(), stargate.isGateLightsActive(), stargate.isGateSignPowered(),
+                stargate.isGateRedstonePowered(), stargate.isGateIrisActive(), stargate.getGateDialSignIndex(),
+                stargate.getGateSavedTargetId(), stargate.getGateSavedSignTargetId());
+    }
+
+    /**
+     * Reads the state saved in a gate's GateData, for a gate that has no state row yet.
+     * Data the codec cannot read, as from the legacy format, gets the table's defaults.
+     *
+     * @param data The GateData column
+     * @return The state
+     */
+    static StargateState of(byte[] data) {
+        if (data != null && StargateCodec.isEncoded(data)) {
+            try {
+                final StargateCodec.Decoded decoded = StargateCodec.parse(data);
+                return new StargateState(decoded.isGateActive(), decoded.isGateLightsActive(), decoded.isGateSignPowered(),
+                        decoded.isGateRedstonePowered(), decoded.isGateIrisActive(), decoded.getGateDialSignIndex(),
+                        decoded.getGateTempTargetId(), decoded.getGateTempSignTarget());
+            } catch (IOException e) {
+                // Left to the defaults; the gate itself fails to load the same way
+            }
+        }
+        return new StargateState(false, false, false, false, false, 0, -1, -1);
+    }
+
+    /**
+     * Reads the state columns of the current row, selected with {@link #COLUMNS} through {@link #JOIN}.
+     *
+     * @param rs The result set
+     * @return The state, or null if the gate has no state row
+     * @throws SQLException if a database error occurs
+     */
+    static StargateState read(ResultSet rs) throws SQLException {
+        rs.getInt("GateId");
+        if (rs.wasNull()) {
+            return null;
+        }
+        return new StargateState(rs.getBoolean("Active"), rs.getBoolean("LightsActive"), rs.getBoolean("SignPowered"),
+                rs.getBoolean("RedstonePowered"), rs.getBoolean("IrisActive"), rs.getInt("DialSignIndex"),
+                rs.getLong("TargetId"), rs.getLong("SignTargetId"));
+    }
+
+    /**
+     * Writes the state for the journal.
+     *
+     * @param out Where to write
+     * @throws IOException if out fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte((active ? 1 : 0) | (lightsActive ? 2 : 0) | (signPowered ? 4 : 0) | (redstonePowered ? 8 : 0) | (irisActive ? 16 : 0));
+        out.writeInt(dialSignIndex);
+        out.writeLong(targetId);
+        out.writeLong(signTargetId);
+    }
+
+    /**
+     * Reads a state written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in Where to read
+     * @return The state
+     * @throws IOException if the state is cut short
+     */
+    static StargateState readFrom(DataInput in) throws IOException {
+        final int flags = in.readByte();
+        return new StargateState((flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0, (flags & 8) != 0, (flags & 16) != 0,
+                in.readInt(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Writes the state of the gate with the given id.
+     *
+     * @param id The gate id
+     * @param merge A statement prepared from {@link #MERGE_SQL}
+     * @return true if the row was written
+     * @throws SQLException if a database error occurs
+     */
+    boolean write(int id, PreparedStatement merge) throws SQLException {
+        merge.setInt(1, id);
+        merge.setBoolean(2, active);
+        merge.setBoolean(3, lightsActive);
+        merge.setBoolean(4, signPowered);
+        merge.setBoolean(5, redstonePowered);
+        merge.setBoolean(6, irisActive);
+        merge.setInt(7, dialSignIndex);
+        merge.setLong(8, targetId);
+        merge.setLong(9, signTargetId);
+        return merge.executeUpdate() > 0;
+    }
+
+    /**
+     * Applies the state to a freshly loaded gate. Targets are resolved later, by id.
+     *
+     * @param stargate The stargate
+     */
+    void applyTo(Stargate stargate) {
+        stargate.setGateActive(active);
+        stargate.setGateLightsActive(lightsActive);
+        stargate.setGateSignPowered(signPowered);
+        stargate.setGateRedstonePowered(redstonePowered);
+        stargate.setGateIrisActive(irisActive);
+        stargate.setGateDialSignIndex(dialSignIndex);
+        stargate.setGateTempTargetId(targetId);
+        stargate.setGateTempSignTarget(signTargetId);
+    }
+}
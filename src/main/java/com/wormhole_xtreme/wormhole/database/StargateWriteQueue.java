@@ -0,0 +1,358 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue in front of a {@link GateStore}.
+ * Gate saves and deletes are captured on the calling thread and written by a single background thread,
+ * so the server thread never waits on the database.
+ * <p>
+ * Writes to a gate that is still queued are merged into the queued write, keeping its place in line,
+ * so a gate toggled many times between writes is written once. A save of a gate with no unsaved
+ * changes writes nothing. The writer commits up to a batch of
+ * gates per transaction. When the queue is full, callers wait for the writer to make room.
+ * Once the queue is closed, writes run on the calling thread.
+ * <p>
+ * Futures complete on the writer thread; schedule back onto the server thread before touching the world.
+ */
+public class StargateWriteQueue {
+    /** Gates that may be waiting before callers are made to wait. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Most gates written in one transaction. */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** How long close waits for the queue to drain. */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * A queued write and everyone waiting on it.
+     */
+    private static final class Write {
+        private StargateRow row;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private Write(StargateRow row) {
+            this.row = row;
+        }
+    }
+
+    private final GateStore store;
+    private final Logger logger;
+    private final int capacity;
+    private final int batchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // Queued writes by gate, oldest first. Stargate equality is identity, one entry per gate.
+    private final LinkedHashMap<Stargate, Write> pending = new LinkedHashMap<>();
+
+    // Writes taken by the writer and not yet committed.
+    private int inFlight;
+    // Writes stay queued, unwritten, while paused.
+    private boolean paused;
+    private boolean closed;
+    private final Thread writer;
+
+    /**
+     * Creates the queue with the default capacity and batch size, and starts its writer thread.
+     *
+     * @param store The store to write through
+     * @param logger The logger
+     */
+    public StargateWriteQueue(GateStore store, Logger logger) {
+        this(store, logger, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates the queue and starts its writer thread.
+     *
+     * @param store The store to write through
+     * @param logger The logger
+     * @param capacity Gates that may be waiting before callers are made to wait
+     * @param batchSize Most gates written in one transaction
+     */
+    public StargateWriteQueue(GateStore store, Logger logger, int capacity, int batchSize) {
+        this.store = store;
+        this.logger = logger;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        writer = new Thread(this::runWriter, "WormholeXTreme-DB-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a save of the gate's unsaved changes as they are now.
+     *
+     * @param stargate The stargate
+     * @return Completes with true once the gate is written, false if the write failed
+     */
+    public CompletableFuture<Boolean> save(Stargate stargate) {
+        return enqueue(StargateRow.save(stargate));
+    }
+
+    /**
+     * Queues a delete of the gate, replacing any save still queued for it.
+     *
+     * @param stargate The stargate
+     * @return Completes with true once the gate is deleted, false if the delete failed
+     */
+    public CompletableFuture<Boolean> delete(Stargate stargate) {
+        return enqueue(StargateRow.delete(stargate));
+    }
+
+    private CompletableFuture<Boolean> enqueue(StargateRow row) {
+        lock.lock();
+        try {
+            // Merged even after close, while the writer drains, so the gate's writes stay in order.
+            final Write queued = pending.get(row.stargate);
+            if (queued != null) {
+                queued.row = queued.row.mergedWith(row);
+                return queued.future;
+            }
+            if (row.isEmpty()) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (!closed) {
+                boolean interrupted = false;
+                // A paused queue holds one write per gate at most, so callers are not made to wait on it
+                while (pending.size() >= capacity && !closed && !paused) {
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!closed) {
+                    final Write write = new Write(row);
+                    pending.put(row.stargate, write);
+                    notEmpty.signal();
+                    return write.future;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return CompletableFuture.completedFuture(store.writeBatch(List.of(row))[0]);
+    }
+
+    /**
+     * Waits until every write queued so far is committed.
+     *
+     * @param timeout The most time to wait
+     * @param unit The unit of timeout
+     * @return true if the queue drained, false on timeout or interrupt
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                if (nanos <= 0 || !writer.isAlive()) {
+                    return false;
+                }
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Holds queued writes back until {@link #resume()}, once the batch being written has committed.
+     * Saves still queue and merge meanwhile. A flush while paused waits out its timeout.
+     *
+     * @param timeout The most time to wait for the batch being written
+     * @param unit The unit of timeout
+     * @return true if nothing is being written, false on timeout or interrupt
+     */
+    public boolean pause(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            paused = true;
+            while (inFlight > 0) {
+                if (nanos <= 0 || !writer.isAlive()) {
+                    return false;
+                }
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the writer take queued writes again.
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the queued writes of the gates unwritten, completing each with false, as when the rows they hold are stale.
+     * Writes of other gates stay queued.
+     *
+     * @param stargates The gates whose writes to drop
+     * @return The number of writes dropped
+     */
+    public int discard(Collection<Stargate> stargates) {
+        final List<Write> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            for (final Stargate stargate : stargates) {
+                final Write write = pending.remove(stargate);
+                if (write != null) {
+                    dropped.add(write);
+                }
+            }
+            notFull.signalAll();
+            if (inFlight == 0) {
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (final Write write : dropped) {
+            write.future.complete(false);
+        }
+        return dropped.size();
+    }
+
+    /**
+     * Stops taking writes, writes everything queued and stops the writer thread.
+     * Later writes run on the calling thread.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warning("Stargate writer did not finish within " + CLOSE_TIMEOUT_SECONDS + " seconds, " + size() + " writes may be lost");
+        }
+    }
+
+    /**
+     * Gets the number of queued writes, not counting those being written.
+     *
+     * @return The number of queued writes
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWriter() {
+        final List<Write> batch = new ArrayList<>(batchSize);
+        final List<StargateRow> rows = new ArrayList<>(batchSize);
+        while (true) {
+            lock.lock();
+            try {
+                while ((pending.isEmpty() || paused) && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    drained.signalAll();
+                    return;
+                }
+                final Iterator<Write> it = pending.values().iterator();
+                while (it.hasNext() && batch.size() < batchSize) {
+                    final Write write = it.next();
+                    it.remove();
+                    batch.add(write);
+                    rows.add(write.row);
+                }
+                inFlight = batch.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            boolean[] written;
+            try {
+                written = store.writeBatch(rows);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Stargate writer failed a batch of " + rows.size(), e);
+                written = new boolean[rows.size()];
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(written[i]);
+            }
+            batch.clear();
+            rows.clear();
+
+            lock.lock();
+            try {
+                inFlight = 0;
+                // Flush waits for the queue to empty, pause only for this batch
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.logic;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * WormholeXtreme block change queue.
+ * Gate rendering queues its block changes here instead of setting them on the spot. Each tick
+ * {@link #tick()} applies up to the per-tick budget of them, oldest first, with physics off, so
+ * a hub of gates opening together is spread over a few ticks instead of landing in one.
+ * A block queued again before it is applied keeps its place and takes the newer data.
+ * Main thread only.
+ */
+public class StargateBlockQueue
+{
+
+    /**
+     * A block position.
+     */
+    private static final class Key
+    {
+
+        private final World world;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        Key(final World world, final int x, final int y, final int z)
+        {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if ( !(o instanceof Key))
+            {
+                return false;
+            }
+            final Key k = (Key) o;
+            return (x == k.x) && (y == k.y) && (z == k.z) && world.equals(k.world);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (((((x * 31) + y) * 31) + z) * 31) + world.hashCode();
+        }
+    }
+
+    /** Pending block data by position, in the order each position was first queued. */
+    private final LinkedHashMap<Key, BlockData> pending = new LinkedHashMap<Key, BlockData>();
+
+    /** Default block data of each material queued so far. */
+    private final Map<Material, BlockData> materialData = new EnumMap<Material, BlockData>(Material.class);
+
+    /** Changes applied per tick at most. */
+    private int budget;
+
+    /** Changes applied since startup. */
+    private long applied;
+
+    /** Changes dropped because a newer one replaced them before they were applied. */
+    private long coalesced;
+
+    /**
+     * Instantiates a new block queue.
+     *
+     * @param budget
+     *            the changes applied per tick at most, at least 1
+     */
+    public StargateBlockQueue(final int budget)
+    {
+        this.budget = Math.max(1, budget);
+    }
+
+    /**
+     * Queues a block to be set to the default data of a material.
+     *
+     * @param block
+     *            the block
+     * @param material
+     *            the material
+     */
+    public void set(final Block block, final Material material)
+    {
+        BlockData data = materialData.get(material);
+        if (data == null)
+        {
+            data = material.createBlockData();
+            materialData.put(material, data);
+        }
+        set(block, data);
+    }
+
+    /**
+     * Queues a block to be set to some block data. The data is not copied and must not change afterwards.
+     *
+     * @param block
+     *            the block
+     * @param data
+     *            the data
+     */
+    public void set(final Block block, final BlockData data)
+    {
+        set(block.getWorld(), block.getX(), block.getY(), block.getZ(), data);
+    }
+
+    /**
+     * Queues the block at a position to be set to some block data. The data is not copied and must not change afterwards.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param data
+     *            the data
+     */
+    public void set(final World world, final int x, final int y, final int z, final BlockData data)
+    {
+        if (pending.put(new Key(world, x, y, z), data) != null)
+        {
+            coalesced++;
+        }
+    }
+
+    /**
+     * Applies up to the budget of pending changes. Run once a tick.
+     *
+     * @return the changes applied
+     */
+    public int tick()
+    {
+        return apply(budget);
+    }
+
+    /**
+     * Applies every pending change now, such as on shutdown.
+     *
+     * @return the changes applied
+     */
+    public int flush()
+    {
+        return apply(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Applies up to some number of pending changes, oldest first.
+     *
+     * @param max
+     *            the max
+     * @return the changes applied
+     */
+    private int apply(final int max)
+    {
+        int count = 0;
+        final Iterator<Map.Entry<Key, BlockData>> it = pending.entrySet().iterator();
+        while ((count < max) && it.hasNext())
+        {
+            final Map.Entry<Key, BlockData> change = it.next();
+            it.remove();
+            final Key key = change.getKey();
+            key.world.getBlockAt(key.x, key.y, key.z).setBlockData(change.getValue(), false);
+            count++;
+        }
+        applied += count;
+        return count;
+    }
+
+    /**
+     * Gets the changes waiting to be applied.
+     *
+     * @return the pending count
+     */
+    public int getPending()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Gets the changes applied since startup.
+     *
+     * @return the applied count
+     */
+    public long getApplied()
+    {
+        return applied;
+    }
+
+    /**
+     * Gets the changes replaced by a newer one before they were applied.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalesced()
+    {
+        return coalesced;
+    }
+
+    /**
+     * Gets the per-tick budget.
+     *
+     * @return the budget
+     */
+    public int getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * Sets the per-tick budget.
+     *
+     * @param budget
+     *            the changes applied per tick at most, at least 1
+     */
+    public void setBudget(final int budget)
+    {
+        this.budget = Math.max(1, budget);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.logic;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateBlockIndex;
+import com.wormhole_xtreme.wormhole.model.StargateFrames;
+import com.wormhole_xtreme.wormhole.utils.LongObjectHashMap;
+
+/**
+ * WormholeXtreme client-side renderer.
+ * Shows gate lighting and woosh frames to the players near a gate with block change packets instead of
+ * changing the world, so animating costs no block updates, lighting work or fluid flow. Each gate's
+ * client-only blocks are kept, so players who come into range mid-animation are sent them on the next
+ * resync, and players who leave range are sent the real blocks back.
+ * Main thread only.
+ */
+public class StargateClientRenderer
+{
+
+    /** Ticks between checks for players coming into or going out of range. */
+    public static final int RESYNC_TICKS = 10;
+
+    /**
+     * The client-only blocks of one gate and the players shown them.
+     */
+    private static final class Overlay
+    {
+
+        private final StargateFrames frames;
+        private final World world;
+
+        /** Block data by packed position. */
+        private final LongObjectHashMap<BlockData> blocks = new LongObjectHashMap<BlockData>();
+
+        /** Players that have been sent every block. */
+        private final List<Player> viewers = new ArrayList<Player>();
+
+        Overlay(final StargateFrames frames)
+        {
+            this.frames = frames;
+            this.world = frames.getWorld();
+        }
+    }
+
+    /** Overlays by gate. */
+    private final IdentityHashMap<Stargate, Overlay> overlays = new IdentityHashMap<Stargate, Overlay>();
+
+    /** Reused for every packet, the server only reads its coordinates. */
+    private final Location cursor = new Location(null, 0, 0, 0);
+
+    /** Players found in range on a resync. */
+    private final List<Player> inRange = new ArrayList<Player>();
+
+    /** Square of the view range in blocks. */
+    private long rangeSquared;
+
+    /** Ticks until the next resync. */
+    private int untilResync = RESYNC_TICKS;
+
+    /** Block changes sent since startup. */
+    private long sent;
+
+    /**
+     * Instantiates a new client-side renderer.
+     *
+     * @param range
+     *            the blocks from a gate's centre its animation is shown to, at least 1
+     */
+    public StargateClientRenderer(final int range)
+    {
+        final long r = Math.max(1, range);
+        rangeSquared = r * r;
+    }
+
+    /**
+     * Shows a frame to the players in range of the gate.
+     *
+     * @param gate
+     *            the gate
+     * @param frames
+     *            the gate's frames
+     * @param frame
+     *            x, y, z triples
+     * @param data
+     *            the block data
+     */
+    public void show(final Stargate gate, final StargateFrames frames, final int[] frame, final BlockData data)
+    {
+        Overlay overlay = overlays.get(gate);
+        if (overlay == null)
+        {
+            overlay = new Overlay(frames);
+            overlays.put(gate, overlay);
+            findInRange(overlay);
+            overlay.viewers.addAll(inRange);
+        }
+        for (int i = 0; i < frame.length; i += 3)
+        {
+            overlay.blocks.put(StargateBlockIndex.blockKey(frame[i], frame[i + 1], frame[i + 2]), data);
+            for (int v = 0; v < overlay.viewers.size(); v++)
+            {
+                send(overlay.viewers.get(v), overlay.world, frame[i], frame[i + 1], frame[i + 2], data);
+            }
+        }
+    }
+
+    /**
+     * Takes a frame off the gate's client-only blocks, sending its viewers the real blocks back.
+     *
+     * @param gate
+     *            the gate
+     * @param frame
+     *            x, y, z triples
+     */
+    public void hide(final Stargate gate, final int[] frame)
+    {
+        final Overlay overlay = overlays.get(gate);
+        if (overlay == null)
+        {
+            return;
+        }
+        for (int i = 0; i < frame.length; i += 3)
+        {
+            if (overlay.blocks.remove(StargateBlockIndex.blockKey(frame[i], frame[i + 1], frame[i + 2])) != null)
+            {
+                final BlockData real = overlay.world.getBlockAt(frame[i], frame[i + 1], frame[i + 2]).getBlockData();
+                for (int v = 0; v < overlay.viewers.size(); v++)
+                {
+                    send(overlay.viewers.get(v), overlay.world, frame[i], frame[i + 1], frame[i + 2], real);
+                }
+            }
+        }
+        if (overlay.blocks.isEmpty())
+        {
+            overlays.remove(gate);
+        }
+    }
+
+    /**
+     * Takes every client-only block of a gate away, such as when the gate is removed.
+     *
+     * @param gate
+     *            the gate
+     */
+    public void clear(final Stargate gate)
+    {
+        final Overlay overlay = overlays.remove(gate);
+        if (overlay != null)
+        {
+            for (int v = 0; v < overlay.viewers.size(); v++)
+            {
+                revert(overlay, overlay.viewers.get(v));
+            }
+        }
+    }
+
+    /**
+     * Takes every gate's client-only blocks away, such as on shutdown.
+     */
+    public void clearAll()
+    {
+        for (final Overlay overlay : overlays.values())
+        {
+            for (int v = 0; v < overlay.viewers.size(); v++)
+            {
+                revert(overlay, overlay.viewers.get(v));
+            }
+        }
+        overlays.clear();
+    }
+
+    /**
+     * Checks if a gate has client-only blocks showing.
+     *
+     * @param gate
+     *            the gate
+     * @return true, if showing
+     */
+    public boolean isShowing(final Stargate gate)
+    {
+        return overlays.containsKey(gate);
+    }
+
+    /**
+     * Resyncs the overlays every {@link #RESYNC_TICKS} ticks. Run once a tick.
+     */
+    public void tick()
+    {
+        if (--untilResync > 0)
+        {
+            return;
+        }
+        untilResync = RESYNC_TICKS;
+        resync();
+    }
+
+    /**
+     * Sends each overlay to the players who came into range since the last resync and the real blocks to the
+     * players who went out of it.
+     */
+    public void resync()
+    {
+        for (final Overlay overlay : overlays.values())
+        {
+            findInRange(overlay);
+            final Iterator<Player> it = overlay.viewers.iterator();
+            while (it.hasNext())
+            {
+                final Player viewer = it.next();
+                if ( !inRange.contains(viewer))
+                {
+                    it.remove();
+                    // Gone offline or away to another world, the client has dropped the blocks already
+                    if (viewer.isOnline() && (viewer.getWorld() == overlay.world))
+                    {
+                        revert(overlay, viewer);
+                    }
+                }
+            }
+            for (int p = 0; p < inRange.size(); p++)
+            {
+                final Player player = inRange.get(p);
+                if ( !overlay.viewers.contains(player))
+                {
+                    overlay.viewers.add(player);
+                    overlay.blocks.forEachKey(key -> send(player, overlay.world, key, overlay.blocks.get(key)));
+                }
+            }
+        }
+        inRange.clear();
+    }
+
+    /**
+     * Fills {@link #inRange} with the players in view range of an overlay.
+     */
+    private void findInRange(final Overlay overlay)
+    {
+        inRange.clear();
+        for (final Player player : overlay.world.getPlayers())
+        {
+            if (overlay.frames.distanceSquared(player.getLocation()) <= rangeSquared)
+            {
+                inRange.add(player);
+            }
+        }
+    }
+
+    /**
+     * Sends a player the real blocks under an overlay.
+     */
+    private void revert(final Overlay overlay, final Player player)
+    {
+        overlay.blocks.forEachKey(key -> send(player, overlay.world, key, null));
+    }
+
+    /**
+     * Sends a block change at a packed position, of the real block if the data is null.
+     */
+    private void send(final Player player, final World world, final long key, final BlockData data)
+    {
+        final int x = StargateBlockIndex.blockX(key), y = StargateBlockIndex.blockY(key), z = StargateBlockIndex.blockZ(key);
+        send(player, world, x, y, z, data != null
+            ? data
+            : world.getBlockAt(x, y, z).getBlockData());
+    }
+
+    /**
+     * Sends a block change.
+     */
+    private void send(final Player player, final World world, final int x, final int y, final int z, final BlockData data)
+    {
+        cursor.setWorld(world);
+        cursor.setX(x);
+        cursor.setY(y);
+        cursor.setZ(z);
+        player.sendBlockChange(cursor, data);
+        sent++;
+    }
+
+    /**
+     * Gets the gates with client-only blocks showing.
+     *
+     * @return the overlay count
+     */
+    public int getOverlays()
+    {
+        return overlays.size();
+    }
+
+    /**
+     * Gets the block changes sent since startup.
+     *
+     * @return the sent count
+     */
+    public long getSent()
+    {
+        return sent;
+    }
+
+    /**
+     * Sets the view range.
+     *
+     * @param range
+     *            the blocks from a gate's centre its animation is shown to, at least 1
+     */
+    public void setRange(final int range)
+    {
+        final long r = Math.max(1, range);
+        rangeSquared = r * r;
+    }
+}
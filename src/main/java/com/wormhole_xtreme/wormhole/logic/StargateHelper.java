@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -884,6 +885,7 @@ public class StargateHelper
 
     /**
      * Parses the versioned data.
+     * Off the main thread the dial sign is not read, only its block; the sign is picked up when the gate loads.
      * 
      * @param gate_data
      *            the gate_data
@@ -935,7 +937,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1014,7 +1016,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1093,7 +1095,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1189,7 +1191,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1326,7 +1328,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1473,7 +1475,7 @@ public class StargateHelper
             {
                 s.setGateDialSignBlock(DataUtils.blockFromBytes(blocArray, w));
 
-                if (w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
+                if (Bukkit.isPrimaryThread() && w.isChunkLoaded(s.getGateDialSignBlock().getChunk()))
                 {
                     try
                     {
@@ -1635,7 +1637,7 @@ public class StargateHelper
 
             stargate.setGateNetwork(net);
             stargate.setGateDialSignIndex( -1);
-            WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(stargate, ActionToTake.DIAL_SIGN_CLICK));
+            WormholeXTreme.getTimerWheel().schedule(stargate, null, ActionToTake.DIAL_SIGN_CLICK, 0);
         }
     }
 
@@ -0,0 +1,358 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.entity.Player;
+
+import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable.ActionToTake;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+
+/**
+ * WormholeXtreme timer wheel.
+ * Hashed timing wheel holding every pending gate and player timer (animation steps, shutdowns,
+ * cooldowns), driven by a single repeating plugin task calling {@link #tick()}. Each slot is a
+ * linked list of the timers due on ticks that hash to it, so scheduling, moving and cancelling a
+ * timer are constant time and never touch the Bukkit scheduler. Timers further out than one turn
+ * of the wheel are passed over until their tick comes round.
+ * Main thread only.
+ */
+public class StargateTimerWheel
+{
+
+    /** Slots in a wheel built with the default size: a little over 25 seconds of ticks. */
+    public static final int DEFAULT_SLOTS = 512;
+
+    /** Slot value of a timer taken off the wheel to fire this tick. */
+    private static final int FIRING = -2;
+
+    /**
+     * A timer running one {@link ActionToTake} for a gate or player. A timer can be scheduled again
+     * once fired, and scheduling one that is pending moves it.
+     */
+    public static final class Timer
+    {
+
+        private final Stargate stargate;
+        private final ActionToTake action;
+        private Player player;
+        private long deadline;
+        private int slot = -1;
+        private Timer prev;
+        private Timer next;
+
+        /**
+         * Instantiates a new timer.
+         *
+         * @param stargate
+         *            the stargate, null for player timers
+         * @param player
+         *            the player, may be null
+         * @param action
+         *            the action
+         */
+        public Timer(final Stargate stargate, final Player player, final ActionToTake action)
+        {
+            this.stargate = stargate;
+            this.player = player;
+            this.action = action;
+        }
+
+        /**
+         * Checks if the timer is waiting to fire.
+         *
+         * @return true, if pending
+         */
+        public boolean isPending()
+        {
+            return slot >= 0;
+        }
+
+        /**
+         * Gets the stargate.
+         *
+         * @return the stargate
+         */
+        public Stargate getStargate()
+        {
+            return stargate;
+        }
+
+        /**
+         * Gets the player.
+         *
+         * @return the player
+         */
+        public Player getPlayer()
+        {
+            return player;
+        }
+
+        /**
+         * Sets the player passed to the action.
+         *
+         * @param player
+         *            the player
+         */
+        public void setPlayer(final Player player)
+        {
+            this.player = player;
+        }
+
+        /**
+         * Gets the action.
+         *
+         * @return the action
+         */
+        public ActionToTake getAction()
+        {
+            return action;
+        }
+
+        /**
+         * Gets the wheel tick the timer fires on.
+         *
+         * @return the deadline
+         */
+        public long getDeadline()
+        {
+            return deadline;
+        }
+    }
+
+    /** Head of each slot's list. */
+    private final Timer[] slots;
+
+    /** Slot count less one. */
+    private final int mask;
+
+    /** The logger. */
+    private final Logger logger;
+
+    /** Timers taken off the wheel on the current tick. */
+    private final ArrayList<Timer> due = new ArrayList<Timer>();
+
+    /** Ticks since the wheel started. */
+    private long now;
+
+    /** Timers on the wheel. */
+    private int pending;
+
+    /**
+     * Instantiates a new timer wheel.
+     *
+     * @param size
+     *            the slot count, rounded up to a power of two
+     * @param logger
+     *            the logger for actions that throw
+     */
+    public StargateTimerWheel(final int size, final Logger logger)
+    {
+        final int count = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        slots = new Timer[count];
+        mask = count - 1;
+        this.logger = logger;
+    }
+
+    /**
+     * Schedules a new timer.
+     *
+     * @param stargate
+     *            the stargate, null for player timers
+     * @param player
+     *            the player, may be null
+     * @param action
+     *            the action
+     * @param delay
+     *            the ticks to wait, run on the next tick if less than 1
+     * @return the timer
+     */
+    public Timer schedule(final Stargate stargate, final Player player, final ActionToTake action, final long delay)
+    {
+        final Timer timer = new Timer(stargate, player, action);
+        schedule(timer, delay);
+        return timer;
+    }
+
+    /**
+     * Schedules a timer, moving it if it is already pending.
+     *
+     * @param timer
+     *            the timer
+     * @param delay
+     *            the ticks to wait, run on the next tick if less than 1
+     */
+    public void schedule(final Timer timer, final long delay)
+    {
+        unlink(timer);
+        timer.deadline = now + Math.max(1L, delay);
+        final int index = (int) (timer.deadline & mask);
+        timer.slot = index;
+        timer.prev = null;
+        timer.next = slots[index];
+        if (timer.next != null)
+        {
+            timer.next.prev = timer;
+        }
+        slots[index] = timer;
+        pending++;
+    }
+
+    /**
+     * Cancels a timer.
+     *
+     * @param timer
+     *            the timer, may be null
+     * @return true, if it was pending
+     */
+    public boolean cancel(final Timer timer)
+    {
+        if ((timer == null) || (timer.slot == -1))
+        {
+            return false;
+        }
+        final boolean wasPending = timer.slot >= 0;
+        unlink(timer);
+        return wasPending;
+    }
+
+    /**
+     * Takes a timer off its slot, or marks it no longer due if it was taken off to fire this tick.
+     *
+     * @param timer
+     *            the timer
+     */
+    private void unlink(final Timer timer)
+    {
+        if (timer.slot >= 0)
+        {
+            if (timer.prev != null)
+            {
+                timer.prev.next = timer.next;
+            }
+            else
+            {
+                slots[timer.slot] = timer.next;
+            }
+            if (timer.next != null)
+            {
+                timer.next.prev = timer.prev;
+            }
+            timer.prev = null;
+            timer.next = null;
+            pending--;
+        }
+        timer.slot = -1;
+    }
+
+    /**
+     * Advances the wheel one tick and runs the timers due on it. Timers due together run in no set order,
+     * and one cancelled or moved by an earlier one does not run.
+     */
+    public void tick()
+    {
+        now++;
+        final int index = (int) (now & mask);
+        Timer timer = slots[index];
+        while (timer != null)
+        {
+            final Timer next = timer.next;
+            if (timer.deadline <= now)
+            {
+                unlink(timer);
+                timer.slot = FIRING;
+                due.add(timer);
+            }
+            timer = next;
+        }
+        for (int i = 0; i < due.size(); i++)
+        {
+            final Timer fire = due.get(i);
+            if (fire.slot != FIRING)
+            {
+                continue;
+            }
+            fire.slot = -1;
+            try
+            {
+                StargateUpdateRunnable.perform(fire.stargate, fire.player, fire.action);
+            }
+            catch (final RuntimeException e)
+            {
+                logger.log(Level.SEVERE, "Timer " + fire.action + (fire.stargate != null
+                    ? " for gate \"" + fire.stargate.getGateName() + "\""
+                    : "") + " failed", e);
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * Gets the ticks since the wheel started.
+     *
+     * @return the current tick
+     */
+    public long getCurrentTick()
+    {
+        return now;
+    }
+
+    /**
+     * Gets the timers on the wheel.
+     *
+     * @return the pending count
+     */
+    public int getPending()
+    {
+        return pending;
+    }
+
+    /**
+     * Gets the slot count.
+     *
+     * @return the size
+     */
+    public int getSize()
+    {
+        return slots.length;
+    }
+
+    /**
+     * Lists the pending timers, soonest first. Walks the whole wheel, so meant for diagnostics.
+     *
+     * @return the pending timers
+     */
+    public List<Timer> getPendingTimers()
+    {
+        final List<Timer> timers = new ArrayList<Timer>(pending);
+        for (final Timer head : slots)
+        {
+            for (Timer timer = head; timer != null; timer = timer.next)
+            {
+                timers.add(timer);
+            }
+        }
+        timers.sort(Comparator.comparingLong(Timer::getDeadline));
+        return timers;
+    }
+}
@@ -28,6 +28,7 @@ import com.wormhole_xtreme.wormhole.permissions.StargateRestrictions;
 
 /**
  * WormholeXtreme Runnable thread for updating stargates.
+ * Gate and player timers are run by {@link StargateTimerWheel}, which calls {@link #perform}.
  * 
  * @author Ben Echols (Lologarithm)
  */
@@ -111,6 +112,21 @@ public class StargateUpdateRunnable implements Runnable
      */
     @Override
     public void run()
+    {
+        perform(stargate, player, action);
+    }
+
+    /**
+     * Runs an action. Called by the timer wheel when a gate or player timer fires.
+     * 
+     * @param stargate
+     *            the stargate
+     * @param player
+     *            the player
+     * @param action
+     *            the action
+     */
+    public static void perform(final Stargate stargate, final Player player, final ActionToTake action)
     {
         WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Run Action \"" + action.toString() + (stargate != null
             ? "\" Stargate \"" + stargate.getGateName()
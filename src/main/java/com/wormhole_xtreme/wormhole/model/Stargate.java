@@ -20,7 +20,9 @@ package com.wormhole_xtreme.wormhole.model;
 
 import com.wormhole_xtreme.wormhole.WormholeXTreme;
 import com.wormhole_xtreme.wormhole.config.ConfigManager;
-import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable;
+import com.wormhole_xtreme.wormhole.logic.StargateBlockQueue;
+import com.wormhole_xtreme.wormhole.logic.StargateClientRenderer;
+import com.wormhole_xtreme.wormhole.logic.StargateTimerWheel;
 import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable.ActionToTake;
 import com.wormhole_xtreme.wormhole.utils.WorldUtils;
 
@@ -29,17 +31,17 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.WallSign;
 import org.bukkit.block.data.type.Switch;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * WormholeXtreme Stargate Class/Instance.
@@ -55,6 +57,178 @@ public class Stargate
 
     // Note: legacy ID setter removed; all code paths now use Material and BlockData APIs.
 
+    /**
+     * Sets a block drawn as part of the gate, through the plugin's block queue when it is running.
+     * 
+     * @param block
+     *            the block
+     * @param material
+     *            the material
+     */
+    private static void setGateBlock(final Block block, final Material material)
+    {
+        final StargateBlockQueue queue = WormholeXTreme.getBlockQueue();
+        if (queue != null)
+        {
+            queue.set(block, material);
+        }
+        else
+        {
+            block.setType(material);
+        }
+    }
+
+    /**
+     * Sets the block at a position drawn as part of the gate, through the plugin's block queue when it is running.
+     * 
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param data
+     *            the block data
+     */
+    private static void setGateBlock(final World world, final int x, final int y, final int z, final BlockData data)
+    {
+        final StargateBlockQueue queue = WormholeXTreme.getBlockQueue();
+        if (queue != null)
+        {
+            queue.set(world, x, y, z, data);
+        }
+        else
+        {
+            world.getBlockAt(x, y, z).setBlockData(data);
+        }
+    }
+
+    /**
+     * Draws a frame.
+     * 
+     * @param world
+     *            the world
+     * @param frame
+     *            x, y, z triples
+     * @param data
+     *            the block data
+     */
+    private static void drawFrame(final World world, final int[] frame, final BlockData data)
+    {
+        for (int i = 0; i < frame.length; i += 3)
+        {
+            setGateBlock(world, frame[i], frame[i + 1], frame[i + 2], data);
+        }
+    }
+
+    /**
+     * Draws a frame of animation blocks, indexing them so fluids and physics leave them alone.
+     * 
+     * @param frames
+     *            the gate's frames
+     * @param frame
+     *            x, y, z triples
+     */
+    private void addAnimationFrame(final StargateFrames frames, final int[] frame)
+    {
+        gateAnimatedBlockCount += frame.length / 3;
+        final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+        if (renderer != null)
+        {
+            renderer.show(this, frames, frame, frames.getPortalData());
+            return;
+        }
+        final World world = frames.getWorld();
+        final BlockData data = frames.getPortalData();
+        for (int i = 0; i < frame.length; i += 3)
+        {
+            StargateManager.addOpeningAnimationBlock(this, world, frame[i], frame[i + 1], frame[i + 2]);
+            setGateBlock(world, frame[i], frame[i + 1], frame[i + 2], data);
+        }
+    }
+
+    /**
+     * Clears a frame of animation blocks back to air.
+     * 
+     * @param frames
+     *            the gate's frames
+     * @param frame
+     *            x, y, z triples
+     * @param keepGateBlocks
+     *            true to leave blocks that are part of a gate as they are
+     */
+    private void removeAnimationFrame(final StargateFrames frames, final int[] frame, final boolean keepGateBlocks)
+    {
+        gateAnimatedBlockCount = Math.max(0, gateAnimatedBlockCount - (frame.length / 3));
+        final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+        if ((renderer != null) && renderer.isShowing(this))
+        {
+            // The real blocks never changed, so clients are just sent them back
+            renderer.hide(this, frame);
+            return;
+        }
+        final World world = frames.getWorld();
+        final BlockData air = frames.getAirData();
+        for (int i = 0; i < frame.length; i += 3)
+        {
+            StargateManager.removeOpeningAnimationBlock(world, frame[i], frame[i + 1], frame[i + 2]);
+            if ( !keepGateBlocks || !StargateManager.isBlockInGate(world, frame[i], frame[i + 1], frame[i + 2]))
+            {
+                setGateBlock(world, frame[i], frame[i + 1], frame[i + 2], air);
+            }
+        }
+    }
+
+    /**
+     * Checks if any player is near enough to see the gate animate. Always true with animation level of detail off.
+     * 
+     * @param frames
+     *            the gate's frames
+     * @return true, if a player is within the level of detail radius
+     */
+    private static boolean isGateWatched(final StargateFrames frames)
+    {
+        final int radius = WormholeXTreme.getAnimationLodRadius();
+        if ((radius <= 0) || (frames.getWorld() == null))
+        {
+            return true;
+        }
+        final long radiusSquared = (long) radius * radius;
+        for (final Player player : frames.getWorld().getPlayers())
+        {
+            if (frames.distanceSquared(player.getLocation()) <= radiusSquared)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules one of this gate's timers on the plugin's timer wheel, creating it on first use.
+     * 
+     * @param timer
+     *            the timer, null if not created yet
+     * @param action
+     *            the action it runs
+     * @param player
+     *            the player passed to the action
+     * @param delay
+     *            the ticks to wait
+     * @return the timer
+     */
+    private StargateTimerWheel.Timer scheduleGateTimer(final StargateTimerWheel.Timer timer, final ActionToTake action, final Player player, final int delay)
+    {
+        final StargateTimerWheel.Timer t = timer != null
+            ? timer
+            : new StargateTimerWheel.Timer(this, player, action);
+        t.setPlayer(player);
+        WormholeXTreme.getTimerWheel().schedule(t, delay);
+        return t;
+    }
+
     private static void placeWallSign(Block block, BlockFace facing) {
         block.setType(Material.OAK_WALL_SIGN);
         org.bukkit.block.data.BlockData bd = block.getBlockData();
@@ -98,6 +272,15 @@ public class Stargate
 
     // Schema version constant removed (unused in runtime). Persisted data uses modern fields.
     
+    /** Dirty flag: the runtime state saved on its own, such as the active, lights and iris flags and the targets. */
+    public static final int DIRTY_STATE = 1;
+
+    /** Dirty flag: everything else that is saved, such as blocks, shape, materials and names. */
+    public static final int DIRTY_STRUCTURE = 2;
+
+    /** Changes not yet saved. A new gate has never been saved, so starts fully dirty. */
+    private final AtomicInteger gateDirty = new AtomicInteger(DIRTY_STATE | DIRTY_STRUCTURE);
+
     /** The Loaded version, used to determine what version of parser to use. */
     private byte loadedVersion = -1;
 
@@ -166,12 +349,16 @@ public class Stargate
     private Block gateRedstoneGateActivatedBlock;
     /** The Name block holder. Where we place the stargate name sign. */
     private Block gateNameBlockHolder;
-    /** The gate activate scheduler task id. */
-    private int gateActivateTaskId;
-    /** The gate shutdown scheduler task id. */
-    private int gateShutdownTaskId;
-    /** The gate after shutdown scheduler task id. */
-    private int gateAfterShutdownTaskId;
+    /** The gate activate timer, null until first scheduled. */
+    private StargateTimerWheel.Timer gateActivateTimer;
+    /** The gate shutdown timer, null until first scheduled. */
+    private StargateTimerWheel.Timer gateShutdownTimer;
+    /** The gate after shutdown timer, null until first scheduled. */
+    private StargateTimerWheel.Timer gateAfterShutdownTimer;
+    /** The timer of the next woosh animation step, null until first scheduled. */
+    private StargateTimerWheel.Timer gateWooshTimer;
+    /** The timer of the next lighting step, null until first scheduled. */
+    private StargateTimerWheel.Timer gateLightTimer;
     /** The gate animation step 3d. */
     private int gateAnimationStep3D = 1;
     /** The gate animation step 2d. */
@@ -188,10 +375,20 @@ public class Stargate
     private final ArrayList<ArrayList<Location>> gateLightBlocks = new ArrayList<ArrayList<Location>>();
     /** List of all blocks that woosh in order when gate is active. */
     private final ArrayList<ArrayList<Location>> gateWooshBlocks = new ArrayList<ArrayList<Location>>();
-    /** The Animated blocks. */
-    private final ArrayList<Block> gateAnimatedBlocks = new ArrayList<Block>();
+    /** Blocks the opening animation has placed and not yet cleared. */
+    private int gateAnimatedBlockCount;
+    /** The compiled animation frames, null until first played and again whenever the materials, shape, facing or world change. */
+    private volatile StargateFrames gateFrames;
     /** The gate_order. */
     private final HashMap<Integer, Stargate> gateSignOrder = new HashMap<Integer, Stargate>();
+    /** The fire and lava protection envelope, rebuilt by StargateManager when the gate is added or changed. */
+    private volatile StargateProtectionEnvelope gateProtectionEnvelope;
+    /** The block lists packed by StargateCodec while the gate is only a descriptor, null once it is hydrated. */
+    private volatile byte[] gatePackedGeometry;
+    /** Coordinates of the single blocks while the gate is only a descriptor, in StargateCodec order. */
+    private int[][] gatePackedBlocks;
+    /** Bounding box of the gate while it is only a descriptor: min x, y, z then max x, y, z. */
+    private int[] gatePackedBounds;
 
     /** The gate custom. */
     private boolean gateCustom = false;
@@ -225,36 +422,25 @@ public class Stargate
      */
     public void animateOpening()
     {
-        final Material wooshMaterial = isGateCustom()
-            ? getGateCustomPortalMaterial()
-            : getGateShape() != null
-                ? getGateShape().getShapePortalMaterial()
-                : Material.WATER;
-        final int wooshDepth = isGateCustom()
-            ? getGateCustomWooshDepth()
-            : getGateShape() != null
-                ? getGateShape().getShapeWooshDepth()
-                : 0;
+        final StargateFrames frames = getGateFrames();
+        if ( !isGateWatched(frames))
+        {
+            finishOpening(frames);
+            return;
+        }
 
-        if ((getGateWooshBlocks() != null) && (getGateWooshBlocks().size() > 0))
+        if (frames.getWooshFrameCount() > 0)
         {
-            final ArrayList<Location> wooshBlockStep = getGateWooshBlocks().get(getGateAnimationStep3D());
+            final int[] wooshBlockStep = frames.getWooshFrame(getGateAnimationStep3D());
             if ( !isGateAnimationRemoving())
             {
                 if (wooshBlockStep != null)
                 {
-                    for (final Location l : wooshBlockStep)
-                    {
-                        final Block b = getGateWorld().getBlockAt(l.getBlockX(), l.getBlockY(), l.getBlockZ());
-                        getGateAnimatedBlocks().add(b);
-                        StargateManager.getOpeningAnimationBlocks().put(l, b);
-                        b.setType(wooshMaterial);
-                    }
-
-                    WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, getGateName() + " Woosh Adding: " + getGateAnimationStep3D() + " Woosh Block Size: " + wooshBlockStep.size());
+                    addAnimationFrame(frames, wooshBlockStep);
+                    WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, getGateName() + " Woosh Adding: " + getGateAnimationStep3D() + " Woosh Block Size: " + (wooshBlockStep.length / 3));
                 }
 
-                if (getGateWooshBlocks().size() == getGateAnimationStep3D() + 1)
+                if (frames.getWooshFrameCount() == getGateAnimationStep3D() + 1)
                 {
                     setGateAnimationRemoving(true);
                 }
@@ -262,28 +448,15 @@ public class Stargate
                 {
                     setGateAnimationStep3D(getGateAnimationStep3D() + 1);
                 }
-                WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), isGateCustom()
-                    ? getGateCustomWooshTicks()
-                    : getGateShape() != null
-                        ? getGateShape().getShapeWooshTicks()
-                        : 2);
+                gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, frames.getWooshTicks());
             }
             else
             {
                 // remove in reverse order, if block is not a portal block!
                 if (wooshBlockStep != null)
                 {
-                    for (final Location l : wooshBlockStep)
-                    {
-                        final Block b = getGateWorld().getBlockAt(l.getBlockX(), l.getBlockY(), l.getBlockZ());
-                        StargateManager.getOpeningAnimationBlocks().remove(l, b);
-                        getGateAnimatedBlocks().remove(b);
-                        if ( !StargateManager.isBlockInGate(b))
-                        {
-                            b.setType(Material.AIR);
-                        }
-                    }
-                    WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, getGateName() + " Woosh Removing: " + getGateAnimationStep3D() + " Woosh Block Size: " + wooshBlockStep.size());
+                    removeAnimationFrame(frames, wooshBlockStep, true);
+                    WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, getGateName() + " Woosh Removing: " + getGateAnimationStep3D() + " Woosh Block Size: " + (wooshBlockStep.length / 3));
                 }
 
                 // If this is the last step to animate, we now add all the portal blocks in.
@@ -292,86 +465,113 @@ public class Stargate
                     setGateAnimationRemoving(false);
                     if (isGateLightsActive() && isGateActive())
                     {
-                        fillGateInterior(wooshMaterial);
+                        fillGateInterior(frames, frames.getPortalData());
                     }
                 }
                 else
                 {
                     setGateAnimationStep3D(getGateAnimationStep3D() - 1);
-                    WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), isGateCustom()
-                        ? getGateCustomWooshTicks()
-                        : getGateShape() != null
-                            ? getGateShape().getShapeWooshTicks()
-                            : 2);
+                    gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, frames.getWooshTicks());
                 }
             }
         }
         else
         {
+            // The portal pushed out one layer further each step, then pulled back in, newest layer first
+            final int wooshDepth = frames.getWooshDepth();
             if ((getGateAnimationStep2D() == 0) && (wooshDepth > 0))
             {
-                for (final Location block : getGatePortalBlocks())
-                {
-                    final Block r = getGateWorld().getBlockAt(block.getBlockX(), block.getBlockY(), block.getBlockZ()).getRelative(getGateFacing());
-                    r.setType(wooshMaterial);
-                    getGateAnimatedBlocks().add(r);
-                    StargateManager.getOpeningAnimationBlocks().put(r.getLocation(), r);
-                }
+                addAnimationFrame(frames, frames.getDepthLayer(1));
                 setGateAnimationStep2D(getGateAnimationStep2D() + 1);
-                WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), 4);
+                gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 4);
             }
             else if (getGateAnimationStep2D() < wooshDepth)
             {
-                final int size = getGateAnimatedBlocks().size();
-                final int start = getGatePortalBlocks().size();
-                for (int i = (size - start); i < size; i++)
-                {
-                    final Block b = getGateAnimatedBlocks().get(i);
-                    final Block r = b.getRelative(getGateFacing());
-                    r.setType(wooshMaterial);
-                    getGateAnimatedBlocks().add(r);
-                    StargateManager.getOpeningAnimationBlocks().put(r.getLocation(), r);
-                }
+                addAnimationFrame(frames, frames.getDepthLayer(getGateAnimationStep2D() + 1));
                 setGateAnimationStep2D(getGateAnimationStep2D() + 1);
                 if (getGateAnimationStep2D() == wooshDepth)
                 {
-                    WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), 8);
+                    gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 8);
                 }
                 else
                 {
-                    WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), 4);
+                    gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 4);
                 }
             }
             else if (getGateAnimationStep2D() >= wooshDepth)
             {
-                for (int i = 0; i < getGatePortalBlocks().size(); i++)
+                final int[] layer = frames.getDepthLayer((wooshDepth * 2) - getGateAnimationStep2D());
+                if (layer != null)
                 {
-                    final int index = getGateAnimatedBlocks().size() - 1;
-                    if (index >= 0)
-                    {
-                        final Block b = getGateAnimatedBlocks().get(index);
-                        b.setType(Material.AIR);
-                        getGateAnimatedBlocks().remove(index);
-                        StargateManager.getOpeningAnimationBlocks().remove(b.getLocation());
-                    }
+                    removeAnimationFrame(frames, layer, false);
                 }
                 if (getGateAnimationStep2D() < ((wooshDepth * 2) - 1))
                 {
                     setGateAnimationStep2D(getGateAnimationStep2D() + 1);
-                    WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH), 3);
+                    gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 3);
                 }
                 else
                 {
                     setGateAnimationStep2D(0);
                     if (isGateActive())
                     {
-                        fillGateInterior(wooshMaterial);
+                        fillGateInterior(frames, frames.getPortalData());
                     }
                 }
             }
         }
     }
 
+    /**
+     * Ends the opening animation in one step, as for a gate nobody is near: takes down whichever of its steps
+     * are drawn and fills the portal.
+     * 
+     * @param frames
+     *            the gate's frames
+     */
+    private void finishOpening(final StargateFrames frames)
+    {
+        if (frames.getWooshFrameCount() > 0)
+        {
+            // Steps below the current one are drawn, and the current one too once they are coming down
+            final int drawn = isGateAnimationRemoving()
+                ? getGateAnimationStep3D()
+                : getGateAnimationStep3D() - 1;
+            for (int step = drawn; step >= 1; step--)
+            {
+                final int[] wooshBlockStep = frames.getWooshFrame(step);
+                if (wooshBlockStep != null)
+                {
+                    removeAnimationFrame(frames, wooshBlockStep, true);
+                }
+            }
+            setGateAnimationRemoving(false);
+            setGateAnimationStep3D(1);
+            if (isGateLightsActive() && isGateActive())
+            {
+                fillGateInterior(frames, frames.getPortalData());
+            }
+        }
+        else
+        {
+            // Layers go out one a step up to the woosh depth, then come back in one a step
+            final int wooshDepth = frames.getWooshDepth();
+            final int drawn = getGateAnimationStep2D() <= wooshDepth
+                ? getGateAnimationStep2D()
+                : (wooshDepth * 2) - getGateAnimationStep2D();
+            for (int depth = drawn; depth >= 1; depth--)
+            {
+                removeAnimationFrame(frames, frames.getDepthLayer(depth), false);
+            }
+            setGateAnimationStep2D(0);
+            if (isGateActive())
+            {
+                fillGateInterior(frames, frames.getPortalData());
+            }
+        }
+        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, getGateName() + " opened without animating, nobody is near.");
+    }
+
     /**
      * Complete gate.
      * 
@@ -411,7 +611,7 @@ public class Stargate
         for (final Location bc : getGateStructureBlocks())
         {
             final Block b = getGateWorld().getBlockAt(bc.getBlockX(), bc.getBlockY(), bc.getBlockZ());
-            b.setType(Material.AIR);
+            setGateBlock(b, Material.AIR);
         }
     }
 
@@ -423,7 +623,7 @@ public class Stargate
         for (final Location bc : getGatePortalBlocks())
         {
             final Block b = getGateWorld().getBlockAt(bc.getBlockX(), bc.getBlockY(), bc.getBlockZ());
-            b.setType(Material.AIR);
+            setGateBlock(b, Material.AIR);
         }
     }
 
@@ -443,55 +643,37 @@ public class Stargate
      * This method activates the current stargate as if it had just been dialed.
      * This includes filling the event horizon, canceling any other shutdown events,
      * scheduling the shutdown time and scheduling the WOOSH if enabled.
-     * Failed task schedules will cause gate to not activate, fill, or animate.
      */
     private void dialStargate()
     {
         WorldUtils.scheduleChunkLoad(getGatePlayerTeleportLocation().getBlock());
-        if (getGateShutdownTaskId() > 0)
-        {
-            WormholeXTreme.getScheduler().cancelTask(getGateShutdownTaskId());
-        }
-        if (getGateAfterShutdownTaskId() > 0)
-        {
-            WormholeXTreme.getScheduler().cancelTask(getGateAfterShutdownTaskId());
-        }
+        WormholeXTreme.getTimerWheel().cancel(gateShutdownTimer);
+        WormholeXTreme.getTimerWheel().cancel(gateAfterShutdownTimer);
 
         final int timeout = ConfigManager.getTimeoutShutdown() * 20;
         if (timeout > 0)
         {
-            setGateShutdownTaskId(WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.SHUTDOWN), timeout));
-            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" ShutdownTaskID \"" + getGateShutdownTaskId() + "\" created.");
-            if (getGateShutdownTaskId() == -1)
-            {
-                shutdownStargate(true);
-                WormholeXTreme.getThisPlugin().prettyLog(Level.SEVERE, false, "Failed to schdule wormhole shutdown timeout: " + timeout + " Received task id of -1. Wormhole forced closed NOW.");
-            }
+            gateShutdownTimer = scheduleGateTimer(gateShutdownTimer, ActionToTake.SHUTDOWN, null, timeout);
+            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" shutdown timer set for " + timeout + " ticks.");
         }
 
-        if ((getGateShutdownTaskId() > 0) || (timeout == 0))
+        if ( !isGateActive())
         {
-            if ( !isGateActive())
-            {
-                setGateActive(true);
-                toggleDialLeverState(false);
-                toggleRedstoneGateActivatedPower();
-                setGateRecentlyActive(false);
-            }
-            if ( !isGateLightsActive())
-            {
-                // This function lights, wooshes, and then adds portal material
-                lightStargate(true);
-            }
-            else
-            {
-                // Just skip top woosh if already lit (/dial gate)
-                WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH));
-            }
+            setGateActive(true);
+            StargateManager.addActiveStargate(this);
+            toggleDialLeverState(false);
+            toggleRedstoneGateActivatedPower();
+            setGateRecentlyActive(false);
+        }
+        if ( !isGateLightsActive())
+        {
+            // This function lights, wooshes, and then adds portal material
+            lightStargate(true);
         }
         else
         {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.WARNING, false, "No wormhole. No visual events.");
+            // Just skip top woosh if already lit (/dial gate)
+            gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 0);
         }
     }
 
@@ -507,10 +689,9 @@ public class Stargate
      */
     public boolean dialStargate(final Stargate target, final boolean force)
     {
-        if (getGateActivateTaskId() > 0)
-        {
-            WormholeXTreme.getScheduler().cancelTask(getGateActivateTaskId());
-        }
+        StargateManager.hydrateStargate(this);
+        StargateManager.hydrateStargate(target);
+        WormholeXTreme.getTimerWheel().cancel(gateActivateTimer);
 
         if ( !target.isGateLightsActive() || force)
         {
@@ -519,6 +700,8 @@ public class Stargate
             getGateTarget().dialStargate();
             if ((isGateActive()) && (getGateTarget().isGateActive()))
             {
+                StargateManager.saveStargate(this);
+                StargateManager.saveStargate(getGateTarget());
                 return true;
             }
             else if ((isGateActive()) && ( !getGateTarget().isGateActive()))
@@ -539,46 +722,44 @@ public class Stargate
     /**
      * Fill gate interior.
      * 
-     * @param typeId
-     *            the type id
+     * @param material
+     *            the material
      */
     public void fillGateInterior(final Material material)
     {
-        for (final Location bc : getGatePortalBlocks())
-        {
-            final Block b = getGateWorld().getBlockAt(bc.getBlockX(), bc.getBlockY(), bc.getBlockZ());
-            b.setType(material);
-        }
+        final StargateFrames frames = getGateFrames();
+        fillGateInterior(frames, frames.getData(material));
     }
 
     /**
-     * Gets the gate activate task id.
-     * 
-     * @return the gate activate task id
-     */
-    private int getGateActivateTaskId()
-    {
-        return gateActivateTaskId;
-    }
-
-    /**
-     * Gets the gate after shutdown task id.
+     * Fill gate interior.
      * 
-     * @return the gate after shutdown task id
+     * @param frames
+     *            the gate's frames
+     * @param data
+     *            the block data
      */
-    private int getGateAfterShutdownTaskId()
+    private static void fillGateInterior(final StargateFrames frames, final BlockData data)
     {
-        return gateAfterShutdownTaskId;
+        drawFrame(frames.getWorld(), frames.getPortal(), data);
     }
 
     /**
-     * Gets the gate animated blocks.
+     * Gets the animation frames, compiling them if the gate has none yet or its materials, shape, facing or world
+     * changed since they were compiled.
      * 
-     * @return the gate animated blocks
+     * @return the frames
      */
-    private ArrayList<Block> getGateAnimatedBlocks()
+    public StargateFrames getGateFrames()
     {
-        return gateAnimatedBlocks;
+        StargateFrames frames = gateFrames;
+        if (frames == null)
+        {
+            hydrateIfPacked();
+            frames = StargateFrames.compile(this);
+            gateFrames = frames;
+        }
+        return frames;
     }
 
     /**
@@ -688,6 +869,7 @@ public class Stargate
      */
     public Block getGateDialLeverBlock()
     {
+        hydrateIfPacked();
         return gateDialLeverBlock;
     }
 
@@ -698,6 +880,7 @@ public class Stargate
      */
     public synchronized Sign getGateDialSign()
     {
+        hydrateIfPacked();
         return gateDialSign;
     }
 
@@ -708,6 +891,7 @@ public class Stargate
      */
     public synchronized Block getGateDialSignBlock()
     {
+        hydrateIfPacked();
         return gateDialSignBlock;
     }
 
@@ -751,6 +935,81 @@ public class Stargate
         return gateId;
     }
 
+    /**
+     * Gets the changes not yet saved.
+     *
+     * @return the dirty flags, {@link #DIRTY_STATE} and {@link #DIRTY_STRUCTURE}
+     */
+    public int getGateDirty()
+    {
+        return gateDirty.get();
+    }
+
+    /**
+     * Marks changes as not yet saved.
+     *
+     * @param flags
+     *            the dirty flags to add
+     */
+    public void markGateDirty(final int flags)
+    {
+        gateDirty.getAndUpdate(dirty -> dirty | flags);
+        if ((flags & DIRTY_STRUCTURE) != 0)
+        {
+            gateFrames = null;
+        }
+    }
+
+    /**
+     * Gets the changes not yet saved and marks them saved. Whoever takes them must save them, or mark them again.
+     *
+     * @return the dirty flags taken
+     */
+    public int takeGateDirty()
+    {
+        return gateDirty.getAndSet(0);
+    }
+
+    /**
+     * Gets some of the changes not yet saved and marks those saved, leaving the others unsaved.
+     *
+     * @param flags
+     *            the dirty flags to take
+     * @return the dirty flags taken
+     */
+    public int takeGateDirty(final int flags)
+    {
+        return gateDirty.getAndUpdate(dirty -> dirty & ~flags) & flags;
+    }
+
+    /**
+     * Gets the id of the connected gate as it is saved: -1 unless active, and the unresolved id if the target is not loaded.
+     *
+     * @return the saved target id
+     */
+    public long getGateSavedTargetId()
+    {
+        if ( !isGateActive())
+        {
+            return -1;
+        }
+        return getGateTarget() != null
+            ? getGateTarget().getGateId()
+            : getGateTempTargetId();
+    }
+
+    /**
+     * Gets the id of the gate selected on the dial sign as it is saved, the unresolved id if that gate is not loaded.
+     *
+     * @return the saved sign target id
+     */
+    public long getGateSavedSignTargetId()
+    {
+        return getGateDialSignTarget() != null
+            ? getGateDialSignTarget().getGateId()
+            : getGateTempSignTarget();
+    }
+
     /**
      * Sets the gate id.
      * 
@@ -778,6 +1037,7 @@ public class Stargate
      */
     public Block getGateIrisLeverBlock()
     {
+        hydrateIfPacked();
         return gateIrisLeverBlock;
     }
 
@@ -788,6 +1048,7 @@ public class Stargate
      */
     public ArrayList<ArrayList<Location>> getGateLightBlocks()
     {
+        hydrateIfPacked();
         return gateLightBlocks;
     }
 
@@ -828,6 +1089,7 @@ public class Stargate
      */
     public Block getGateNameBlockHolder()
     {
+        hydrateIfPacked();
         return gateNameBlockHolder;
     }
 
@@ -851,6 +1113,16 @@ public class Stargate
         return gateOwner;
     }
 
+    /**
+     * Gets the gate protection envelope.
+     * 
+     * @return the gate protection envelope, null until the gate is indexed
+     */
+    public StargateProtectionEnvelope getGateProtectionEnvelope()
+    {
+        return gateProtectionEnvelope;
+    }
+
     /**
      * Gets the gate teleport location.
      * 
@@ -868,6 +1140,7 @@ public class Stargate
      */
     public ArrayList<Location> getGatePortalBlocks()
     {
+        hydrateIfPacked();
         return gatePortalBlocks;
     }
 
@@ -878,6 +1151,7 @@ public class Stargate
      */
     public Block getGateRedstoneDialActivationBlock()
     {
+        hydrateIfPacked();
         return gateRedstoneDialActivationBlock;
     }
 
@@ -888,6 +1162,7 @@ public class Stargate
      */
     public Block getGateRedstoneGateActivatedBlock()
     {
+        hydrateIfPacked();
         return gateRedstoneGateActivatedBlock;
     }
 
@@ -898,6 +1173,7 @@ public class Stargate
      */
     public Block getGateRedstoneSignActivationBlock()
     {
+        hydrateIfPacked();
         return gateRedstoneSignActivationBlock;
     }
 
@@ -911,15 +1187,6 @@ public class Stargate
         return gateShape;
     }
 
-    /**
-     * Gets the gate shutdown task id.
-     * 
-     * @return the gate shutdown task id
-     */
-    private int getGateShutdownTaskId()
-    {
-        return gateShutdownTaskId;
-    }
 
     /**
      * Gets the gate sign order.
@@ -938,6 +1205,7 @@ public class Stargate
      */
     public ArrayList<Location> getGateStructureBlocks()
     {
+        hydrateIfPacked();
         return gateStructureBlocks;
     }
 
@@ -978,6 +1246,7 @@ public class Stargate
      */
     public ArrayList<ArrayList<Location>> getGateWooshBlocks()
     {
+        hydrateIfPacked();
         return gateWooshBlocks;
     }
 
@@ -1001,6 +1270,190 @@ public class Stargate
         return loadedVersion;
     }
 
+    /**
+     * Gets the bounding box of a gate that is only a descriptor.
+     * 
+     * @return min x, y, z then max x, y, z, or null once the gate is hydrated or if it has no blocks
+     */
+    public int[] getGatePackedBounds()
+    {
+        return gatePackedBounds;
+    }
+
+    /**
+     * Gets the packed block lists of a gate that is only a descriptor.
+     * 
+     * @return the geometry as {@link StargateCodec#encodeGeometry(Stargate, boolean)} writes it, or null once the gate is hydrated
+     */
+    byte[] getGatePackedGeometry()
+    {
+        return gatePackedGeometry;
+    }
+
+    /**
+     * Gets the single block coordinates of a gate that is only a descriptor.
+     * 
+     * @return x, y, z of each single block or null, in StargateCodec order, or null once the gate is hydrated
+     */
+    int[][] getGatePackedBlocks()
+    {
+        return gatePackedBlocks;
+    }
+
+    /**
+     * Build the block lists, block references and dial sign of a gate that was loaded as a descriptor.
+     * The sign is only read on the main thread, since reading it touches the chunk.
+     * Registered gates should go through {@link StargateManager#hydrateStargate(Stargate)}, which also indexes the blocks.
+     * 
+     * @return true, if the gate was only a descriptor until now
+     */
+    public synchronized boolean hydrate()
+    {
+        final byte[] packed = gatePackedGeometry;
+        if (packed == null)
+        {
+            return false;
+        }
+        final World world = getGateWorld();
+        try
+        {
+            StargateCodec.unpackGeometry(packed, world, gateStructureBlocks, gatePortalBlocks, gateLightBlocks, gateWooshBlocks);
+        }
+        catch (final IOException e)
+        {
+            gateStructureBlocks.clear();
+            gatePortalBlocks.clear();
+            gateLightBlocks.clear();
+            gateWooshBlocks.clear();
+            WormholeXTreme.getThisPlugin().prettyLog(Level.SEVERE, false, "Failed to read the blocks of Stargate " + gateName + ": " + e.getMessage());
+        }
+        final int[][] blocks = gatePackedBlocks;
+        gateDialLeverBlock = packedBlock(world, blocks[0]);
+        gateIrisLeverBlock = packedBlock(world, blocks[1]);
+        gateNameBlockHolder = packedBlock(world, blocks[2]);
+        gateDialSignBlock = packedBlock(world, blocks[3]);
+        gateRedstoneDialActivationBlock = packedBlock(world, blocks[4]);
+        gateRedstoneSignActivationBlock = packedBlock(world, blocks[5]);
+        gateRedstoneGateActivatedBlock = packedBlock(world, blocks[6]);
+        gatePackedBlocks = null;
+        gatePackedBounds = null;
+        gatePackedGeometry = null;
+        if ((gateDialSignBlock != null) && Bukkit.isPrimaryThread() && (gateDialSignBlock.getState() instanceof Sign))
+        {
+            gateDialSign = (Sign) gateDialSignBlock.getState();
+        }
+        return true;
+    }
+
+    /**
+     * Drop the block lists, block references and dial sign, keeping the blocks packed so {@link #hydrate()} can
+     * build them again. Gates that are open, lit or still winding down keep theirs.
+     * Registered gates should go through StargateManager, which also unindexes the blocks.
+     * 
+     * @return true, if the gate is now only a descriptor
+     */
+    public synchronized boolean dehydrate()
+    {
+        if ( !isGateHydrated() || isGateActive() || isGateLightsActive() || isGateRecentlyActive() || (gateAnimatedBlockCount > 0) || gateStructureBlocks.isEmpty())
+        {
+            return false;
+        }
+        final byte[] packed = StargateCodec.encodeGeometry(this, true);
+        final int[][] blocks = {packedBlock(gateDialLeverBlock), packedBlock(gateIrisLeverBlock), packedBlock(gateNameBlockHolder), packedBlock(gateDialSignBlock), packedBlock(gateRedstoneDialActivationBlock), packedBlock(gateRedstoneSignActivationBlock), packedBlock(gateRedstoneGateActivatedBlock)};
+        final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        includeBounds(bounds, gateStructureBlocks);
+        includeBounds(bounds, gatePortalBlocks);
+        if (gatePlayerTeleportLocation != null)
+        {
+            includeBounds(bounds, Collections.singletonList(gatePlayerTeleportLocation));
+        }
+
+        gateStructureBlocks.clear();
+        gateStructureBlocks.trimToSize();
+        gatePortalBlocks.clear();
+        gatePortalBlocks.trimToSize();
+        gateLightBlocks.clear();
+        gateLightBlocks.trimToSize();
+        gateWooshBlocks.clear();
+        gateWooshBlocks.trimToSize();
+        gateDialLeverBlock = null;
+        gateIrisLeverBlock = null;
+        gateNameBlockHolder = null;
+        gateDialSignBlock = null;
+        gateRedstoneDialActivationBlock = null;
+        gateRedstoneSignActivationBlock = null;
+        gateRedstoneGateActivatedBlock = null;
+        gateDialSign = null;
+        gateFrames = null;
+        gatePackedBlocks = blocks;
+        gatePackedBounds = bounds;
+        gatePackedGeometry = packed;
+        return true;
+    }
+
+    /**
+     * Hydrate the gate through the manager, so its blocks are indexed too, if it is only a descriptor.
+     * Keeps every caller that reaches for blocks working; paths that know a gate is wanted hydrate it up front.
+     */
+    private void hydrateIfPacked()
+    {
+        if (gatePackedGeometry != null)
+        {
+            StargateManager.hydrateStargate(this);
+        }
+    }
+
+    /**
+     * Grow the bounds to include the locations.
+     * 
+     * @param bounds
+     *            min x, y, z then max x, y, z
+     * @param locations
+     *            the locations
+     */
+    private static void includeBounds(final int[] bounds, final List<Location> locations)
+    {
+        for (final Location l : locations)
+        {
+            bounds[0] = Math.min(bounds[0], l.getBlockX());
+            bounds[1] = Math.min(bounds[1], l.getBlockY());
+            bounds[2] = Math.min(bounds[2], l.getBlockZ());
+            bounds[3] = Math.max(bounds[3], l.getBlockX());
+            bounds[4] = Math.max(bounds[4], l.getBlockY());
+            bounds[5] = Math.max(bounds[5], l.getBlockZ());
+        }
+    }
+
+    /**
+     * Gets the coordinates of a block to keep while the gate is only a descriptor.
+     * 
+     * @param block
+     *            the block, may be null
+     * @return x, y, z, or null
+     */
+    private static int[] packedBlock(final Block block)
+    {
+        return block != null
+            ? new int[]{block.getX(), block.getY(), block.getZ()}
+            : null;
+    }
+
+    /**
+     * Gets the block at coordinates kept while the gate was only a descriptor.
+     * 
+     * @param world
+     *            the world, may be null
+     * @param xyz
+     *            x, y, z, may be null
+     * @return the block, or null
+     */
+    private static Block packedBlock(final World world, final int[] xyz)
+    {
+        return (world != null) && (xyz != null)
+            ? world.getBlockAt(xyz[0], xyz[1], xyz[2])
+            : null;
+    }
+
     /**
      * Checks if is gate active.
      * 
@@ -1021,6 +1474,16 @@ public class Stargate
         return gateAnimationRemoving;
     }
 
+    /**
+     * Checks if the gate has its blocks, rather than being only the descriptor it is loaded as.
+     * 
+     * @return true, if the gate is hydrated
+     */
+    public boolean isGateHydrated()
+    {
+        return gatePackedGeometry == null;
+    }
+
     /**
      * Checks if is gate custom.
      * 
@@ -1046,7 +1509,7 @@ public class Stargate
      * 
      * @return true, if is gate iris default active
      */
-    private boolean isGateIrisDefaultActive()
+    boolean isGateIrisDefaultActive()
     {
         return gateIrisDefaultActive;
     }
@@ -1113,63 +1576,63 @@ public class Stargate
                 return;
             }
             setGateLightingCurrentIteration(getGateLightingCurrentIteration() + 1);
-            // Light up blocks
-            if (getGateLightBlocks() != null)
+            // Light up blocks, all the rest at once if nobody is near enough to watch
+            final StargateFrames frames = getGateFrames();
+            final int last = isGateWatched(frames)
+                ? getGateLightingCurrentIteration()
+                : Math.max(getGateLightingCurrentIteration(), frames.getLightFrameCount() - 1);
+            final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+            for (int i = getGateLightingCurrentIteration(); i <= last; i++)
             {
-                if ((getGateLightBlocks().size() > 0) && (getGateLightBlocks().get(getGateLightingCurrentIteration()) != null))
+                final int[] lightFrame = frames.getLightFrame(i);
+                if (lightFrame == null)
                 {
-                    for (final Location l : getGateLightBlocks().get(getGateLightingCurrentIteration()))
-                    {
-                        final Block b = getGateWorld().getBlockAt(l.getBlockX(), l.getBlockY(), l.getBlockZ());
-                        b.setType(isGateCustom()
-                            ? getGateCustomLightMaterial()
-                            : getGateShape() != null
-                                ? getGateShape().getShapeLightMaterial()
-                                : Material.GLOWSTONE);
-                    }
+                    continue;
                 }
-
-                if (getGateLightingCurrentIteration() >= getGateLightBlocks().size() - 1)
+                if (renderer != null)
                 {
-                    // Reset back to start
-                    setGateLightingCurrentIteration(0);
-                    if (isGateActive())
-                    {
-                        // Start up animation for woosh now!
-                        WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.ANIMATE_WOOSH));
-                    }
+                    renderer.show(this, frames, lightFrame, frames.getLightData());
+                }
+                else
+                {
+                    drawFrame(frames.getWorld(), lightFrame, frames.getLightData());
                 }
-                else
+            }
+            setGateLightingCurrentIteration(last);
+
+            if (getGateLightingCurrentIteration() >= frames.getLightFrameCount() - 1)
+            {
+                // Reset back to start
+                setGateLightingCurrentIteration(0);
+                if (isGateActive())
                 {
-                    // Keep lighting
-                    WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.LIGHTUP), isGateCustom()
-                        ? getGateCustomLightTicks()
-                        : getGateShape() != null
-                            ? getGateShape().getShapeLightTicks()
-                            : 2);
+                    // Start up animation for woosh now!
+                    gateWooshTimer = scheduleGateTimer(gateWooshTimer, ActionToTake.ANIMATE_WOOSH, null, 0);
                 }
             }
+            else
+            {
+                // Keep lighting
+                gateLightTimer = scheduleGateTimer(gateLightTimer, ActionToTake.LIGHTUP, null, frames.getLightTicks());
+            }
         }
         else
         {
             setGateLightsActive(false);
             // Remove Light Up Blocks
-            if (getGateLightBlocks() != null)
+            final StargateFrames frames = getGateFrames();
+            final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+            // Lights shown to clients come down the same way, lights set in the world before a switch to CLIENT mode are reset
+            final boolean shown = (renderer != null) && renderer.isShowing(this);
+            for (int i = 0; i < frames.getLightFrameCount(); i++)
             {
-                for (int i = 0; i < getGateLightBlocks().size(); i++)
+                if (shown)
                 {
-                    if (getGateLightBlocks().get(i) != null)
-                    {
-                        for (final Location l : getGateLightBlocks().get(i))
-                        {
-                            final Block b = getGateWorld().getBlockAt(l.getBlockX(), l.getBlockY(), l.getBlockZ());
-                            b.setType(isGateCustom()
-                                ? getGateCustomStructureMaterial()
-                                : getGateShape() != null
-                                    ? getGateShape().getShapeStructureMaterial()
-                                    : Material.OBSIDIAN);
-                        }
-                    }
+                    renderer.hide(this, frames.getLightFrame(i));
+                }
+                else
+                {
+                    drawFrame(frames.getWorld(), frames.getLightFrame(i), frames.getStructureData());
                 }
             }
         }
@@ -1210,20 +1673,10 @@ public class Stargate
         if ((getGateDialSignBlock() != null) && (getGateDialSign() != null))
         {
             getGateDialSignBlock().setType(Material.AIR);
-            WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.DIAL_SIGN_RESET), 2);
+            WormholeXTreme.getTimerWheel().schedule(this, null, ActionToTake.DIAL_SIGN_RESET, 2);
         }
     }
 
-    /**
-     * Sets the gate activate task id.
-     * 
-     * @param gateActivateTaskId
-     *            the new gate activate task id
-     */
-    private void setGateActivateTaskId(final int gateActivateTaskId)
-    {
-        this.gateActivateTaskId = gateActivateTaskId;
-    }
 
     /**
      * Sets the gate active.
@@ -1233,19 +1686,13 @@ public class Stargate
      */
     public void setGateActive(final boolean gateActive)
     {
-        this.gateActive = gateActive;
+        if (this.gateActive != gateActive)
+        {
+            this.gateActive = gateActive;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
-    /**
-     * Sets the gate after shutdown task id.
-     * 
-     * @param gateAfterShutdownTaskId
-     *            the new gate after shutdown task id
-     */
-    private void setGateAfterShutdownTaskId(final int gateAfterShutdownTaskId)
-    {
-        this.gateAfterShutdownTaskId = gateAfterShutdownTaskId;
-    }
 
     /**
      * Sets the gate animation removing.
@@ -1288,7 +1735,11 @@ public class Stargate
      */
     public void setGateCustom(final boolean gateCustom)
     {
-        this.gateCustom = gateCustom;
+        if (this.gateCustom != gateCustom)
+        {
+            this.gateCustom = gateCustom;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1299,7 +1750,11 @@ public class Stargate
      */
     public void setGateCustomIrisMaterial(final Material gateCustomIrisMaterial)
     {
-        this.gateCustomIrisMaterial = gateCustomIrisMaterial;
+        if (!Objects.equals(this.gateCustomIrisMaterial, gateCustomIrisMaterial))
+        {
+            this.gateCustomIrisMaterial = gateCustomIrisMaterial;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1310,7 +1765,11 @@ public class Stargate
      */
     public void setGateCustomLightMaterial(final Material gateCustomLightMaterial)
     {
-        this.gateCustomLightMaterial = gateCustomLightMaterial;
+        if (!Objects.equals(this.gateCustomLightMaterial, gateCustomLightMaterial))
+        {
+            this.gateCustomLightMaterial = gateCustomLightMaterial;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1321,7 +1780,11 @@ public class Stargate
      */
     public void setGateCustomLightTicks(final int gateCustomLightTicks)
     {
-        this.gateCustomLightTicks = gateCustomLightTicks;
+        if (this.gateCustomLightTicks != gateCustomLightTicks)
+        {
+            this.gateCustomLightTicks = gateCustomLightTicks;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1332,7 +1795,11 @@ public class Stargate
      */
     public void setGateCustomPortalMaterial(final Material gateCustomPortalMaterial)
     {
-        this.gateCustomPortalMaterial = gateCustomPortalMaterial;
+        if (!Objects.equals(this.gateCustomPortalMaterial, gateCustomPortalMaterial))
+        {
+            this.gateCustomPortalMaterial = gateCustomPortalMaterial;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1343,7 +1810,11 @@ public class Stargate
      */
     public void setGateCustomStructureMaterial(final Material gateCustomStructureMaterial)
     {
-        this.gateCustomStructureMaterial = gateCustomStructureMaterial;
+        if (!Objects.equals(this.gateCustomStructureMaterial, gateCustomStructureMaterial))
+        {
+            this.gateCustomStructureMaterial = gateCustomStructureMaterial;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1354,7 +1825,11 @@ public class Stargate
      */
     public void setGateCustomWooshDepth(final int gateCustomWooshDepth)
     {
-        this.gateCustomWooshDepth = gateCustomWooshDepth;
+        if (this.gateCustomWooshDepth != gateCustomWooshDepth)
+        {
+            this.gateCustomWooshDepth = gateCustomWooshDepth;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1365,7 +1840,11 @@ public class Stargate
      */
     public void setGateCustomWooshDepthSquared(final int gateCustomWooshDepthSquared)
     {
-        this.gateCustomWooshDepthSquared = gateCustomWooshDepthSquared;
+        if (this.gateCustomWooshDepthSquared != gateCustomWooshDepthSquared)
+        {
+            this.gateCustomWooshDepthSquared = gateCustomWooshDepthSquared;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1376,7 +1855,11 @@ public class Stargate
      */
     public void setGateCustomWooshTicks(final int gateCustomWooshTicks)
     {
-        this.gateCustomWooshTicks = gateCustomWooshTicks;
+        if (this.gateCustomWooshTicks != gateCustomWooshTicks)
+        {
+            this.gateCustomWooshTicks = gateCustomWooshTicks;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1387,7 +1870,11 @@ public class Stargate
      */
     public void setGateDialLeverBlock(final Block gateDialLeverBlock)
     {
-        this.gateDialLeverBlock = gateDialLeverBlock;
+        if (!Objects.equals(this.gateDialLeverBlock, gateDialLeverBlock))
+        {
+            this.gateDialLeverBlock = gateDialLeverBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1409,7 +1896,11 @@ public class Stargate
      */
     public synchronized void setGateDialSignBlock(final Block gateDialSignBlock)
     {
-        this.gateDialSignBlock = gateDialSignBlock;
+        if (!Objects.equals(this.gateDialSignBlock, gateDialSignBlock))
+        {
+            this.gateDialSignBlock = gateDialSignBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1420,7 +1911,11 @@ public class Stargate
      */
     public synchronized void setGateDialSignIndex(final int gateDialSignIndex)
     {
-        this.gateDialSignIndex = gateDialSignIndex;
+        if (this.gateDialSignIndex != gateDialSignIndex)
+        {
+            this.gateDialSignIndex = gateDialSignIndex;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1431,7 +1926,11 @@ public class Stargate
      */
     protected void setGateDialSignTarget(final Stargate gateDialSignTarget)
     {
-        this.gateDialSignTarget = gateDialSignTarget;
+        if (!Objects.equals(this.gateDialSignTarget, gateDialSignTarget))
+        {
+            this.gateDialSignTarget = gateDialSignTarget;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1442,7 +1941,11 @@ public class Stargate
      */
     public void setGateFacing(final BlockFace gateFacing)
     {
-        this.gateFacing = gateFacing;
+        if (!Objects.equals(this.gateFacing, gateFacing))
+        {
+            this.gateFacing = gateFacing;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1464,7 +1967,11 @@ public class Stargate
      */
     public void setGateIrisActive(final boolean gateIrisActive)
     {
-        this.gateIrisActive = gateIrisActive;
+        if (this.gateIrisActive != gateIrisActive)
+        {
+            this.gateIrisActive = gateIrisActive;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1475,7 +1982,11 @@ public class Stargate
      */
     public void setGateIrisDeactivationCode(final String gateIrisDeactivationCode)
     {
-        this.gateIrisDeactivationCode = gateIrisDeactivationCode;
+        if (!Objects.equals(this.gateIrisDeactivationCode, gateIrisDeactivationCode))
+        {
+            this.gateIrisDeactivationCode = gateIrisDeactivationCode;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1486,7 +1997,11 @@ public class Stargate
      */
     public void setGateIrisDefaultActive(final boolean gateIrisDefaultActive)
     {
-        this.gateIrisDefaultActive = gateIrisDefaultActive;
+        if (this.gateIrisDefaultActive != gateIrisDefaultActive)
+        {
+            this.gateIrisDefaultActive = gateIrisDefaultActive;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1497,7 +2012,11 @@ public class Stargate
      */
     public void setGateIrisLeverBlock(final Block gateIrisLeverBlock)
     {
-        this.gateIrisLeverBlock = gateIrisLeverBlock;
+        if (!Objects.equals(this.gateIrisLeverBlock, gateIrisLeverBlock))
+        {
+            this.gateIrisLeverBlock = gateIrisLeverBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1519,7 +2038,11 @@ public class Stargate
      */
     public void setGateLightsActive(final boolean gateLightsActive)
     {
-        this.gateLightsActive = gateLightsActive;
+        if (this.gateLightsActive != gateLightsActive)
+        {
+            this.gateLightsActive = gateLightsActive;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1530,7 +2053,11 @@ public class Stargate
      */
     public void setGateMinecartTeleportLocation(final Location gateMinecartTeleportLocation)
     {
-        this.gateMinecartTeleportLocation = gateMinecartTeleportLocation;
+        if (!Objects.equals(this.gateMinecartTeleportLocation, gateMinecartTeleportLocation))
+        {
+            this.gateMinecartTeleportLocation = gateMinecartTeleportLocation;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1541,7 +2068,11 @@ public class Stargate
      */
     public void setGateName(final String gateName)
     {
-        this.gateName = gateName;
+        if (!Objects.equals(this.gateName, gateName))
+        {
+            this.gateName = gateName;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1552,7 +2083,11 @@ public class Stargate
      */
     public void setGateNameBlockHolder(final Block gateNameBlockHolder)
     {
-        this.gateNameBlockHolder = gateNameBlockHolder;
+        if (!Objects.equals(this.gateNameBlockHolder, gateNameBlockHolder))
+        {
+            this.gateNameBlockHolder = gateNameBlockHolder;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1563,7 +2098,11 @@ public class Stargate
      */
     public void setGateNetwork(final StargateNetwork gateNetwork)
     {
-        this.gateNetwork = gateNetwork;
+        if (!Objects.equals(this.gateNetwork, gateNetwork))
+        {
+            this.gateNetwork = gateNetwork;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1574,7 +2113,28 @@ public class Stargate
      */
     public void setGateOwner(final String gateOwner)
     {
-        this.gateOwner = gateOwner;
+        if (!Objects.equals(this.gateOwner, gateOwner))
+        {
+            this.gateOwner = gateOwner;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
+    }
+
+    /**
+     * Make the gate a descriptor whose blocks are packed, as {@link StargateCodec.Decoded#bindDescriptor(World, byte[])} builds it.
+     * 
+     * @param geometry
+     *            the packed block lists
+     * @param blocks
+     *            coordinates of the single blocks, in StargateCodec order
+     * @param bounds
+     *            the bounding box, min x, y, z then max x, y, z
+     */
+    synchronized void setGatePacked(final byte[] geometry, final int[][] blocks, final int[] bounds)
+    {
+        gatePackedBlocks = blocks;
+        gatePackedBounds = bounds;
+        gatePackedGeometry = geometry;
     }
 
     /**
@@ -1585,7 +2145,22 @@ public class Stargate
      */
     public void setGatePlayerTeleportLocation(final Location gatePlayerTeleportLocation)
     {
-        this.gatePlayerTeleportLocation = gatePlayerTeleportLocation;
+        if (!Objects.equals(this.gatePlayerTeleportLocation, gatePlayerTeleportLocation))
+        {
+            this.gatePlayerTeleportLocation = gatePlayerTeleportLocation;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
+    }
+
+    /**
+     * Sets the gate protection envelope.
+     * 
+     * @param gateProtectionEnvelope
+     *            the new gate protection envelope
+     */
+    void setGateProtectionEnvelope(final StargateProtectionEnvelope gateProtectionEnvelope)
+    {
+        this.gateProtectionEnvelope = gateProtectionEnvelope;
     }
 
     /**
@@ -1607,7 +2182,11 @@ public class Stargate
      */
     public void setGateRedstoneDialActivationBlock(final Block gateRedstoneDialActivationBlock)
     {
-        this.gateRedstoneDialActivationBlock = gateRedstoneDialActivationBlock;
+        if (!Objects.equals(this.gateRedstoneDialActivationBlock, gateRedstoneDialActivationBlock))
+        {
+            this.gateRedstoneDialActivationBlock = gateRedstoneDialActivationBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1618,7 +2197,11 @@ public class Stargate
      */
     public void setGateRedstoneGateActivatedBlock(final Block gateRedstoneGateActivatedBlock)
     {
-        this.gateRedstoneGateActivatedBlock = gateRedstoneGateActivatedBlock;
+        if (!Objects.equals(this.gateRedstoneGateActivatedBlock, gateRedstoneGateActivatedBlock))
+        {
+            this.gateRedstoneGateActivatedBlock = gateRedstoneGateActivatedBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1629,7 +2212,11 @@ public class Stargate
      */
     public void setGateRedstonePowered(final boolean gateRedstonePowered)
     {
-        this.gateRedstonePowered = gateRedstonePowered;
+        if (this.gateRedstonePowered != gateRedstonePowered)
+        {
+            this.gateRedstonePowered = gateRedstonePowered;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1640,7 +2227,11 @@ public class Stargate
      */
     public void setGateRedstoneSignActivationBlock(final Block gateRedstoneSignActivationBlock)
     {
-        this.gateRedstoneSignActivationBlock = gateRedstoneSignActivationBlock;
+        if (!Objects.equals(this.gateRedstoneSignActivationBlock, gateRedstoneSignActivationBlock))
+        {
+            this.gateRedstoneSignActivationBlock = gateRedstoneSignActivationBlock;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1651,19 +2242,13 @@ public class Stargate
      */
     public void setGateShape(final StargateShape gateShape)
     {
-        this.gateShape = gateShape;
+        if (!Objects.equals(this.gateShape, gateShape))
+        {
+            this.gateShape = gateShape;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
-    /**
-     * Sets the gate shutdown task id.
-     * 
-     * @param gateShutdownTaskId
-     *            the new gate shutdown task id
-     */
-    private void setGateShutdownTaskId(final int gateShutdownTaskId)
-    {
-        this.gateShutdownTaskId = gateShutdownTaskId;
-    }
 
     /**
      * Sets the gate sign powered.
@@ -1673,7 +2258,11 @@ public class Stargate
      */
     public void setGateSignPowered(final boolean gateSignPowered)
     {
-        this.gateSignPowered = gateSignPowered;
+        if (this.gateSignPowered != gateSignPowered)
+        {
+            this.gateSignPowered = gateSignPowered;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1684,7 +2273,11 @@ public class Stargate
      */
     private void setGateTarget(final Stargate gateTarget)
     {
-        this.gateTarget = gateTarget;
+        if (!Objects.equals(this.gateTarget, gateTarget))
+        {
+            this.gateTarget = gateTarget;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1695,7 +2288,11 @@ public class Stargate
      */
     public void setGateTempSignTarget(final long gateTempSignTarget)
     {
-        this.gateTempSignTarget = gateTempSignTarget;
+        if (this.gateTempSignTarget != gateTempSignTarget)
+        {
+            this.gateTempSignTarget = gateTempSignTarget;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1706,7 +2303,11 @@ public class Stargate
      */
     public void setGateTempTargetId(final long gateTempTargetId)
     {
-        this.gateTempTargetId = gateTempTargetId;
+        if (this.gateTempTargetId != gateTempTargetId)
+        {
+            this.gateTempTargetId = gateTempTargetId;
+            markGateDirty(DIRTY_STATE);
+        }
     }
 
     /**
@@ -1717,7 +2318,11 @@ public class Stargate
      */
     public void setGateWorld(final World gateWorld)
     {
-        this.gateWorld = gateWorld;
+        if (!Objects.equals(this.gateWorld, gateWorld))
+        {
+            this.gateWorld = gateWorld;
+            markGateDirty(DIRTY_STRUCTURE);
+        }
     }
 
     /**
@@ -1740,6 +2345,7 @@ public class Stargate
             setupIrisLever(false);
             setGateIrisDeactivationCode("");
         }
+        StargateManager.saveStargate(this);
     }
 
     /**
@@ -1753,19 +2359,16 @@ public class Stargate
     private void setIrisState(final boolean irisactive)
     {
         setGateIrisActive(irisactive);
-        Material interior = Material.AIR;
+        final StargateFrames frames = getGateFrames();
+        final BlockData interior;
         if (isGateIrisActive()) {
-            interior = isGateCustom()
-                ? getGateCustomIrisMaterial()
-                : (getGateShape() != null ? getGateShape().getShapeIrisMaterial() : Material.STONE);
+            interior = frames.getIrisData();
         } else if (isGateActive()) {
-            interior = isGateCustom()
-                ? getGateCustomPortalMaterial()
-                : (getGateShape() != null ? getGateShape().getShapePortalMaterial() : Material.WATER);
+            interior = frames.getPortalData();
         } else {
-            interior = Material.AIR;
+            interior = frames.getAirData();
         }
-        fillGateInterior(interior);
+        fillGateInterior(frames, interior);
         if (getGateIrisLeverBlock() != null && getGateIrisLeverBlock().getType() == Material.LEVER) {
             setLeverPowered(getGateIrisLeverBlock(), isGateIrisActive());
         }
@@ -1790,6 +2393,7 @@ public class Stargate
      */
     public void setupGateSign(final boolean create)
     {
+        markGateDirty(DIRTY_STRUCTURE);
         if (getGateNameBlockHolder() != null)
         {
             if (create)
@@ -1832,6 +2436,7 @@ public class Stargate
      */
     public void setupIrisLever(final boolean create)
     {
+        markGateDirty(DIRTY_STRUCTURE);
         if ((getGateIrisLeverBlock() == null) && (getGateShape() != null) && !(getGateShape() instanceof Stargate3DShape))
         {
             setGateIrisLeverBlock(getGateDialLeverBlock().getRelative(BlockFace.DOWN));
@@ -1862,6 +2467,7 @@ public class Stargate
      */
     public void setupRedstone(final boolean create)
     {
+        markGateDirty(DIRTY_STRUCTURE);
         if (isGateSignPowered())
         {
             setupRedstoneDialWire(create);
@@ -1956,11 +2562,9 @@ public class Stargate
      */
     public void shutdownStargate(final boolean timer)
     {
-        if (getGateShutdownTaskId() > 0)
+        if (WormholeXTreme.getTimerWheel().cancel(gateShutdownTimer))
         {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" ShutdownTaskID \"" + getGateShutdownTaskId() + "\" cancelled.");
-            WormholeXTreme.getScheduler().cancelTask(getGateShutdownTaskId());
-            setGateShutdownTaskId( -1);
+            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" shutdown timer cancelled.");
         }
 
         if (getGateTarget() != null)
@@ -1974,6 +2578,7 @@ public class Stargate
             setGateRecentlyActive(true);
         }
         setGateActive(false);
+        StargateManager.removeActiveStargate(this);
 
         lightStargate(false);
         toggleDialLeverState(false);
@@ -1993,6 +2598,7 @@ public class Stargate
         {
             startAfterShutdownTimer();
         }
+        StargateManager.saveStargate(this);
 
         WorldUtils.scheduleChunkUnload(getGatePlayerTeleportLocation().getBlock());
     }
@@ -2005,14 +2611,9 @@ public class Stargate
      */
     public void startActivationTimer(final Player p)
     {
-        if (getGateActivateTaskId() > 0)
-        {
-            WormholeXTreme.getScheduler().cancelTask(getGateActivateTaskId());
-        }
-
         final int timeout = ConfigManager.getTimeoutActivate() * 20;
-        setGateActivateTaskId(WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, p, ActionToTake.DEACTIVATE), timeout));
-        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" ActivateTaskID \"" + getGateActivateTaskId() + "\" created.");
+        gateActivateTimer = scheduleGateTimer(gateActivateTimer, ActionToTake.DEACTIVATE, p, timeout);
+        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" activation timer set for " + timeout + " ticks.");
     }
 
     /**
@@ -2021,18 +2622,9 @@ public class Stargate
      */
     private void startAfterShutdownTimer()
     {
-        if (getGateAfterShutdownTaskId() > 0)
-        {
-            WormholeXTreme.getScheduler().cancelTask(getGateAfterShutdownTaskId());
-        }
         final int timeout = 60;
-        setGateAfterShutdownTaskId(WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, ActionToTake.AFTERSHUTDOWN), timeout));
-        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" AfterShutdownTaskID \"" + getGateAfterShutdownTaskId() + "\" created.");
-        if (getGateAfterShutdownTaskId() == -1)
-        {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.SEVERE, false, "Failed to schdule wormhole after shutdown, received task id of -1.");
-            setGateRecentlyActive(false);
-        }
+        gateAfterShutdownTimer = scheduleGateTimer(gateAfterShutdownTimer, ActionToTake.AFTERSHUTDOWN, null, timeout);
+        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" after shutdown timer set for " + timeout + " ticks.");
     }
 
     /**
@@ -2041,11 +2633,9 @@ public class Stargate
      */
     public void stopActivationTimer()
     {
-        if (getGateActivateTaskId() > 0)
+        if (WormholeXTreme.getTimerWheel().cancel(gateActivateTimer))
         {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" ActivateTaskID \"" + getGateActivateTaskId() + "\" cancelled.");
-            WormholeXTreme.getScheduler().cancelTask(getGateActivateTaskId());
-            setGateActivateTaskId( -1);
+            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" activation timer cancelled.");
         }
     }
 
@@ -2054,136 +2644,92 @@ public class Stargate
      */
     public void stopAfterShutdownTimer()
     {
-        if (getGateAfterShutdownTaskId() > 0)
+        if (WormholeXTreme.getTimerWheel().cancel(gateAfterShutdownTimer))
         {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" AfterShutdownTaskID \"" + getGateAfterShutdownTaskId() + "\" cancelled.");
-            WormholeXTreme.getScheduler().cancelTask(getGateAfterShutdownTaskId());
-            setGateAfterShutdownTaskId( -1);
+            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" after shutdown timer cancelled.");
         }
         setGateRecentlyActive(false);
     }
 
     /**
-     * Teleport sign clicked.
+     * Find the ordinal of the first sign gate at or after the ordinal, other than this gate, wrapping around.
+     * 
+     * @param signGates
+     *            the sign gates indexed by ordinal
+     * @param from
+     *            the ordinal to start at
+     * @return the ordinal, or -1 if there is no other gate
      */
-    public void teleportSignClicked()
+    private int nextSignGateOrdinal(final Stargate[] signGates, final int from)
     {
-        synchronized (getGateNetwork().getNetworkGateLock())
+        for (int i = 0; i < signGates.length; i++)
         {
-            // Ensure a wall sign exists and is facing the correct way
-            placeWallSign(getGateDialSignBlock(), getGateFacing());
-            setGateDialSign((Sign) getGateDialSignBlock().getState());
-            getGateDialSign().setLine(0, "-" + getGateName() + "-");
-            if (getGateDialSignIndex() == -1)
-            {
-                setGateDialSignIndex(getGateDialSignIndex() + 1);
-            }
-            if ((getGateNetwork().getNetworkSignGateList().size() == 0) || (getGateNetwork().getNetworkSignGateList().size() == 1))
-            {
-                getGateDialSign().setLine(1, "");
-                getGateDialSign().setLine(2, "No Other Gates");
-                getGateDialSign().setLine(3, "");
-                getGateDialSign().update();
-                setGateDialSignTarget(null);
-                return;
-            }
-
-            if (getGateDialSignIndex() >= getGateNetwork().getNetworkSignGateList().size())
-            {
-                setGateDialSignIndex(0);
-            }
-
-            if (getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()).getGateName().equals(getGateName()))
-            {
-                setGateDialSignIndex(getGateDialSignIndex() + 1);
-                if (getGateDialSignIndex() == getGateNetwork().getNetworkSignGateList().size())
-                {
-                    setGateDialSignIndex(0);
-                }
-            }
-
-            if (getGateNetwork().getNetworkSignGateList().size() == 2)
-            {
-                getGateSignOrder().clear();
-                getGateSignOrder().put(Integer.valueOf(2), getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()));
-
-                getGateDialSign().setLine(1, "");
-                getGateDialSign().setLine(2, ">" + getGateSignOrder().get(Integer.valueOf(2)).getGateName() + "<");
-                getGateDialSign().setLine(3, "");
-                setGateDialSignTarget(getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()));
-            }
-            else if (getGateNetwork().getNetworkSignGateList().size() == 3)
+            final int ordinal = (Math.max(from, 0) + i) % signGates.length;
+            if ((signGates[ordinal] != null) && (signGates[ordinal] != this))
             {
-                getGateSignOrder().clear();
-                int orderIndex = 1;
-                //SignIndex++;
-                while (getGateSignOrder().size() < 2)
-                {
-                    if (getGateDialSignIndex() >= getGateNetwork().getNetworkSignGateList().size())
-                    {
-                        setGateDialSignIndex(0);
-                    }
-
-                    if (getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()).getGateName().equals(getGateName()))
-                    {
-                        setGateDialSignIndex(getGateDialSignIndex() + 1);
-                        if (getGateDialSignIndex() == getGateNetwork().getNetworkSignGateList().size())
-                        {
-                            setGateDialSignIndex(0);
-                        }
-                    }
-
-                    getGateSignOrder().put(Integer.valueOf(orderIndex), getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()));
-                    orderIndex++;
-                    if (orderIndex == 4)
-                    {
-                        orderIndex = 1;
-                    }
-                    setGateDialSignIndex(getGateDialSignIndex() + 1);
-                }
-
-                getGateDialSign().setLine(1, getGateSignOrder().get(Integer.valueOf(1)).getGateName());
-                getGateDialSign().setLine(2, ">" + getGateSignOrder().get(Integer.valueOf(2)).getGateName() + "<");
-                getGateDialSign().setLine(3, "");
-
-                setGateDialSignTarget(getGateSignOrder().get(Integer.valueOf(2)));
-                setGateDialSignIndex(getGateNetwork().getNetworkSignGateList().indexOf(getGateSignOrder().get(Integer.valueOf(2))));
+                return ordinal;
             }
-            else
-            {
-                getGateSignOrder().clear();
-                int orderIndex = 1;
-                while (getGateSignOrder().size() < 3)
-                {
-                    if (getGateDialSignIndex() == getGateNetwork().getNetworkSignGateList().size())
-                    {
-                        setGateDialSignIndex(0);
-                    }
-
-                    if (getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()).getGateName().equals(getGateName()))
-                    {
-                        setGateDialSignIndex(getGateDialSignIndex() + 1);
-                        if (getGateDialSignIndex() == getGateNetwork().getNetworkSignGateList().size())
-                        {
-                            setGateDialSignIndex(0);
-                        }
-                    }
-
-                    getGateSignOrder().put(Integer.valueOf(orderIndex), getGateNetwork().getNetworkSignGateList().get(getGateDialSignIndex()));
-                    orderIndex++;
+        }
+        return -1;
+    }
 
-                    setGateDialSignIndex(getGateDialSignIndex() + 1);
-                }
+    /**
+     * Teleport sign clicked.
+     * Advances the dial sign to the next gate on the network. The dial sign index holds the ordinal of the
+     * current target, which other gates joining or leaving the network do not move.
+     */
+    public void teleportSignClicked()
+    {
+        // Ensure a wall sign exists and is facing the correct way
+        placeWallSign(getGateDialSignBlock(), getGateFacing());
+        setGateDialSign((Sign) getGateDialSignBlock().getState());
+        getGateDialSign().setLine(0, "-" + getGateName() + "-");
 
-                getGateDialSign().setLine(1, getGateSignOrder().get(Integer.valueOf(3)).getGateName());
-                getGateDialSign().setLine(2, ">" + getGateSignOrder().get(Integer.valueOf(2)).getGateName() + "<");
-                getGateDialSign().setLine(3, getGateSignOrder().get(Integer.valueOf(1)).getGateName());
+        // One consistent view of the network, taken without blocking gates being added or removed.
+        final Stargate[] signGates = getGateNetwork().getNetworkSignGateList().toOrdinalArray();
+        final int previous = nextSignGateOrdinal(signGates, getGateDialSignIndex());
+        if (previous == -1)
+        {
+            getGateDialSign().setLine(1, "");
+            getGateDialSign().setLine(2, "No Other Gates");
+            getGateDialSign().setLine(3, "");
+            getGateDialSign().update();
+            setGateDialSignTarget(null);
+            return;
+        }
 
-                setGateDialSignTarget(getGateSignOrder().get(Integer.valueOf(2)));
-                setGateDialSignIndex(getGateNetwork().getNetworkSignGateList().indexOf(getGateSignOrder().get(Integer.valueOf(2))));
-            }
-            getGateDialSign().update(true);
+        final int target = nextSignGateOrdinal(signGates, previous + 1);
+        final int next = nextSignGateOrdinal(signGates, target + 1);
+        getGateSignOrder().clear();
+        if (target == previous)
+        {
+            // Only one other gate.
+            getGateSignOrder().put(Integer.valueOf(2), signGates[target]);
+            getGateDialSign().setLine(1, "");
+            getGateDialSign().setLine(2, ">" + signGates[target].getGateName() + "<");
+            getGateDialSign().setLine(3, "");
+        }
+        else if (next == previous)
+        {
+            // Two other gates.
+            getGateSignOrder().put(Integer.valueOf(1), signGates[previous]);
+            getGateSignOrder().put(Integer.valueOf(2), signGates[target]);
+            getGateDialSign().setLine(1, signGates[previous].getGateName());
+            getGateDialSign().setLine(2, ">" + signGates[target].getGateName() + "<");
+            getGateDialSign().setLine(3, "");
         }
+        else
+        {
+            getGateSignOrder().put(Integer.valueOf(1), signGates[previous]);
+            getGateSignOrder().put(Integer.valueOf(2), signGates[target]);
+            getGateSignOrder().put(Integer.valueOf(3), signGates[next]);
+            getGateDialSign().setLine(1, signGates[next].getGateName());
+            getGateDialSign().setLine(2, ">" + signGates[target].getGateName() + "<");
+            getGateDialSign().setLine(3, signGates[previous].getGateName());
+        }
+        setGateDialSignTarget(signGates[target]);
+        setGateDialSignIndex(target);
+        getGateDialSign().update(true);
 
         // getGateTeleportSign().setData(getGateTeleportSign().getData());
 
@@ -2197,11 +2743,7 @@ public class Stargate
      */
     public void timeoutStargate(final Player p)
     {
-        if (getGateActivateTaskId() > 0)
-        {
-            WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" ActivateTaskID \"" + getGateActivateTaskId() + "\" timed out.");
-            setGateActivateTaskId( -1);
-        }
+        WormholeXTreme.getThisPlugin().prettyLog(Level.FINE, false, "Wormhole \"" + getGateName() + "\" activation timer timed out.");
         // Deactivate if player still hasn't picked a target.
         Stargate s = null;
         if (p != null)
@@ -2288,6 +2830,7 @@ public class Stargate
         {
             setGateIrisDefaultActive(isGateIrisActive());
         }
+        StargateManager.saveStargate(this);
     }
 
     /**
@@ -2331,13 +2874,13 @@ public class Stargate
             {
                 setGateDialSignIndex( -1);
                 getGateDialSignBlock().setType(Material.AIR);
-                WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, player, ActionToTake.DIAL_SIGN_CLICK));
+                WormholeXTreme.getTimerWheel().schedule(this, player, ActionToTake.DIAL_SIGN_CLICK, 0);
             }
         }
         else if (WorldUtils.isSameBlock(clicked, getGateDialSignBlock()))
         {
             getGateDialSignBlock().setType(Material.AIR);
-            WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(this, player, ActionToTake.DIAL_SIGN_CLICK));
+            WormholeXTreme.getTimerWheel().schedule(this, player, ActionToTake.DIAL_SIGN_CLICK, 0);
             return true;
         }
 
@@ -2348,81 +2891,12 @@ public class Stargate
      * Serializes this Stargate into a byte array for database storage.
      * 
      * @return byte array containing the serialized Stargate data
+     * @see StargateCodec
      */
     public byte[] toByteArray() {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             GZIPOutputStream gzos = new GZIPOutputStream(baos);
-             ObjectOutputStream oos = new ObjectOutputStream(gzos)) {
-            
-            Map<String, Object> data = new HashMap<>();
-            
-            // Primitive fields
-            data.put("loadedVersion", loadedVersion);
-            data.put("gateId", gateId);
-            data.put("gateName", gateName);
-            data.put("gateOwner", gateOwner);
-            data.put("gateNetwork", gateNetwork != null ? gateNetwork.getNetworkName() : null);
-            data.put("gateShape", gateShape != null ? gateShape.getShapeName() : null);
-            data.put("gateWorld", gateWorld != null ? gateWorld.getUID().toString() : null);
-            data.put("gateActive", gateActive);
-            data.put("gateRecentlyActive", gateRecentlyActive);
-            data.put("gateFacing", gateFacing != null ? gateFacing.name() : null);
-                       data.put("gateLightsActive", gateLightsActive);
-            data.put("gateSignPowered", gateSignPowered);
-            data.put("gateRedstonePowered", gateRedstonePowered);
-            data.put("gateTempSignTarget", gateTempSignTarget);
-            data.put("gateDialSignIndex", gateDialSignIndex);
-            data.put("gateTempTargetId", gateTempTargetId);
-            data.put("gateIrisDeactivationCode", gateIrisDeactivationCode);
-            data.put("gateIrisActive", gateIrisActive);
-            data.put("gateIrisDefaultActive", gateIrisDefaultActive);
-            data.put("gateCustom", gateCustom);
-            data.put("gateCustomStructureMaterial", gateCustomStructureMaterial != null ? gateCustomStructureMaterial.name() : null);
-            data.put("gateCustomPortalMaterial", gateCustomPortalMaterial != null ? gateCustomPortalMaterial.name() : null);
-            data.put("gateCustomLightMaterial", gateCustomLightMaterial != null ? gateCustomLightMaterial.name() : null);
-            data.put("gateCustomIrisMaterial", gateCustomIrisMaterial != null ? gateCustomIrisMaterial.name() : null);
-            data.put("gateCustomWooshTicks", gateCustomWooshTicks);
-            data.put("gateCustomLightTicks", gateCustomLightTicks);
-            data.put("gateCustomWooshDepth", gateCustomWooshDepth);
-            data.put("gateCustomWooshDepthSquared", gateCustomWooshDepthSquared);
-            
-            // Location data
-            data.put("gatePlayerTeleportLocation", serializeLocation(gatePlayerTeleportLocation));
-            data.put("gateMinecartTeleportLocation", serializeLocation(gateMinecartTeleportLocation));
-            data.put("gateDialLeverBlock", serializeLocation(gateDialLeverBlock != null ? gateDialLeverBlock.getLocation() : null));
-            data.put("gateIrisLeverBlock", serializeLocation(gateIrisLeverBlock != null ? gateIrisLeverBlock.getLocation() : null));
-            data.put("gateDialSignBlock", serializeLocation(gateDialSignBlock != null ? gateDialSignBlock.getLocation() : null));
-            data.put("gateRedstoneDialActivationBlock", serializeLocation(gateRedstoneDialActivationBlock != null ? gateRedstoneDialActivationBlock.getLocation() : null));
-            data.put("gateRedstoneSignActivationBlock", serializeLocation(gateRedstoneSignActivationBlock != null ? gateRedstoneSignActivationBlock.getLocation() : null));
-            data.put("gateRedstoneGateActivatedBlock", serializeLocation(gateRedstoneGateActivatedBlock != null ? gateRedstoneGateActivatedBlock.getLocation() : null));
-            data.put("gateNameBlockHolder", serializeLocation(gateNameBlockHolder != null ? gateNameBlockHolder.getLocation() : null));
-            
-            // Collections
-            data.put("gateStructureBlocks", serializeLocationList(gateStructureBlocks));
-            data.put("gatePortalBlocks", serializeLocationList(gatePortalBlocks));
-            
-            // Serialize light blocks (List of Lists of Locations)
-            List<List<Map<String, Object>>> serializedLightBlocks = new ArrayList<>();
-            for (List<Location> blockList : gateLightBlocks) {
-                serializedLightBlocks.add(serializeLocationList(blockList));
-            }
-            data.put("gateLightBlocks", serializedLightBlocks);
-            
-            // Serialize woosh blocks (List of Lists of Locations)
-            List<List<Map<String, Object>>> serializedWooshBlocks = new ArrayList<>();
-            for (List<Location> blockList : gateWooshBlocks) {
-                serializedWooshBlocks.add(serializeLocationList(blockList));
-            }
-            data.put("gateWooshBlocks", serializedWooshBlocks);
-            
-            // Write the data map to the output stream
-            oos.writeObject(data);
-            oos.flush();
-            gzos.finish();
-            
-            return baos.toByteArray();
-            
-        } catch (Exception e) {
+        try {
+            return StargateCodec.encode(this, true);
+        } catch (RuntimeException e) {
             WormholeXTreme.getThisPlugin().prettyLog(Level.SEVERE, false, "Failed to serialize Stargate " + gateName + ": " + e.getMessage());
             return new byte[0];
         }
@@ -2430,16 +2904,75 @@ public class Stargate
     
     /**
      * Deserializes a Stargate from a byte array.
+     * Reads the current codec format and the older GZIP object map format.
      * 
      * @param data the serialized Stargate data
      * @return the deserialized Stargate, or null if deserialization failed
      */
-    @SuppressWarnings("unchecked")
     public static Stargate fromByteArray(byte[] data) {
+        return fromByteArray(data, null);
+    }
+
+    /**
+     * Deserializes a Stargate whose block geometry may be stored apart from the rest of its data.
+     * 
+     * @param data the serialized Stargate data
+     * @param geometry the packed geometry from {@link StargateCodec#encodeGeometry(Stargate, boolean)}, or null
+     * @return the deserialized Stargate, or null if deserialization failed
+     */
+    public static Stargate fromByteArray(byte[] data, byte[] geometry) {
         if (data == null || data.length == 0) {
             return null;
         }
-        
+        if (!StargateCodec.isEncoded(data)) {
+            return fromLegacyByteArray(data);
+        }
+        try {
+            return fromDecoded(StargateCodec.parse(data, geometry));
+        } catch (IOException | RuntimeException e) {
+            WormholeXTreme.getThisPlugin().prettyLog(Level.SEVERE, false, "Failed to deserialize Stargate: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds a Stargate from gate data parsed by {@link StargateCodec#parse(byte[])}, in its saved world.
+     * Must run on the main thread.
+     * 
+     * @param decoded the parsed gate data
+     * @return the Stargate
+     */
+    public static Stargate fromDecoded(StargateCodec.Decoded decoded) {
+        Stargate stargate = decoded.bind(null);
+        if (stargate.gateDialSignBlock != null && stargate.gateDialSignBlock.getState() instanceof Sign) {
+            stargate.gateDialSign = (Sign) stargate.gateDialSignBlock.getState();
+        }
+        return stargate;
+    }
+
+    /**
+     * Builds a Stargate descriptor from gate data parsed by {@link StargateCodec#parse(byte[], byte[])}, in its saved world.
+     * The blocks are left packed until the gate is hydrated. Must run on the main thread.
+     * 
+     * @param decoded the parsed gate data
+     * @param geometry the packed geometry the gate was parsed with; without it the gate is built whole
+     * @return the Stargate
+     */
+    public static Stargate fromDecoded(StargateCodec.Decoded decoded, byte[] geometry) {
+        if (geometry == null || !decoded.hasGeometry()) {
+            return fromDecoded(decoded);
+        }
+        return decoded.bindDescriptor(null, geometry);
+    }
+    
+    /**
+     * Deserializes a Stargate written as a GZIP compressed object map, before {@link StargateCodec}.
+     * 
+     * @param data the serialized Stargate data
+     * @return the deserialized Stargate, or null if deserialization failed
+     */
+    @SuppressWarnings("unchecked")
+    private static Stargate fromLegacyByteArray(byte[] data) {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(data);
              GZIPInputStream gzis = new GZIPInputStream(bais);
              ObjectInputStream ois = new ObjectInputStream(gzis)) {
@@ -2601,28 +3134,6 @@ public class Stargate
         }
     }
     
-    /**
-     * Helper method to serialize a Location to a Map.
-     * 
-     * @param loc the Location to serialize
-     * @return a Map containing the serialized Location data, or null if loc is null
-     */
-    private static Map<String, Object> serializeLocation(Location loc) {
-        if (loc == null) {
-            return null;
-        }
-        
-        Map<String, Object> map = new HashMap<>();
-        map.put("world", loc.getWorld() != null ? loc.getWorld().getUID().toString() : null);
-        map.put("x", loc.getX());
-        map.put("y", loc.getY());
-        map.put("z", loc.getZ());
-        map.put("yaw", loc.getYaw());
-        map.put("pitch", loc.getPitch());
-        
-        return map;
-    }
-    
     /**
      * Helper method to deserialize a Location from a Map.
      * 
@@ -2660,25 +3171,6 @@ public class Stargate
         }
     }
     
-    /**
-     * Helper method to serialize a List of Locations to a List of Maps.
-     * 
-     * @param locations the List of Locations to serialize
-     * @return a List of Maps containing the serialized Location data
-     */
-    private static List<Map<String, Object>> serializeLocationList(List<Location> locations) {
-        List<Map<String, Object>> result = new ArrayList<>();
-        if (locations != null) {
-            for (Location loc : locations) {
-                Map<String, Object> serialized = serializeLocation(loc);
-                if (serialized != null) {
-                    result.add(serialized);
-                }
-            }
-        }
-        return result;
-    }
-    
     /**
      * Helper method to deserialize a List of Maps to a List of Locations.
      * 
@@ -2708,6 +3200,13 @@ public class Stargate
         if (updatedGate == null) {
             return;
         }
+        updatedGate.hydrate();
+        synchronized (this) {
+            gatePackedBlocks = null;
+            gatePackedBounds = null;
+            gatePackedGeometry = null;
+            gateFrames = null;
+        }
         
         // Update all fields that should be persisted
         this.gateName = updatedGate.gateName;
@@ -0,0 +1,478 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import com.wormhole_xtreme.wormhole.utils.LongObjectHashMap;
+
+/**
+ * WormholeXtreme block index.
+ * Maps block coordinates to a value, partitioned by world and bucketed by chunk.
+ * Coordinates are packed into longs so lookups straight from x/y/z never allocate a Location.
+ * Chunks entering and leaving the index are reported to an optional shared {@link StargateChunkSet}.
+ *
+ * @param <V>
+ *            the indexed value type
+ */
+public class StargateBlockIndex<V>
+{
+
+    /**
+     * The blocks of a single world, bucketed by chunk key.
+     *
+     * @param <V>
+     *            the indexed value type
+     */
+    private static final class WorldBucket<V>
+    {
+
+        /** Chunk key to (block key to value). */
+        private final LongObjectHashMap<LongObjectHashMap<V>> chunks = new LongObjectHashMap<LongObjectHashMap<V>>();
+
+        /** The world UID. */
+        private final UUID worldId;
+
+        /** The shared chunk set, may be null. */
+        private final StargateChunkSet chunkSet;
+
+        /** Number of indexed blocks in this world. */
+        private int size;
+
+        WorldBucket(final UUID worldId, final StargateChunkSet chunkSet)
+        {
+            this.worldId = worldId;
+            this.chunkSet = chunkSet;
+        }
+
+        synchronized void clear()
+        {
+            if (chunkSet != null)
+            {
+                chunks.forEachKey(ck -> chunkSet.remove(worldId, ck));
+            }
+            chunks.clear();
+            size = 0;
+        }
+
+        synchronized boolean containsChunk(final long chunkKey)
+        {
+            return chunks.containsKey(chunkKey);
+        }
+
+        synchronized V get(final int x, final int y, final int z)
+        {
+            final LongObjectHashMap<V> chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+            return chunk != null
+                ? chunk.get(blockKey(x, y, z))
+                : null;
+        }
+
+        synchronized V put(final int x, final int y, final int z, final V value)
+        {
+            final long ck = chunkKey(x >> 4, z >> 4);
+            LongObjectHashMap<V> chunk = chunks.get(ck);
+            if (chunk == null)
+            {
+                chunk = new LongObjectHashMap<V>();
+                chunks.put(ck, chunk);
+                if (chunkSet != null)
+                {
+                    chunkSet.add(worldId, ck);
+                }
+            }
+            final V old = chunk.put(blockKey(x, y, z), value);
+            if (old == null)
+            {
+                size++;
+            }
+            return old;
+        }
+
+        synchronized V remove(final int x, final int y, final int z, final V expected)
+        {
+            final long ck = chunkKey(x >> 4, z >> 4);
+            final LongObjectHashMap<V> chunk = chunks.get(ck);
+            if (chunk == null)
+            {
+                return null;
+            }
+            final long bk = blockKey(x, y, z);
+            if ((expected != null) && (chunk.get(bk) != expected))
+            {
+                return null;
+            }
+            final V old = chunk.remove(bk);
+            if (old != null)
+            {
+                size--;
+                if (chunk.isEmpty())
+                {
+                    chunks.remove(ck);
+                    if (chunkSet != null)
+                    {
+                        chunkSet.remove(worldId, ck);
+                    }
+                }
+            }
+            return old;
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * Pack block coordinates into a long. 26 bits x, 26 bits z, 12 bits y (-2048 to 2047).
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return the packed block key
+     */
+    public static long blockKey(final int x, final int y, final int z)
+    {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    /**
+     * Unpack the x of a block key.
+     *
+     * @param key
+     *            the packed block key
+     * @return the x
+     */
+    public static int blockX(final long key)
+    {
+        return (int) (key >> 38);
+    }
+
+    /**
+     * Unpack the y of a block key.
+     *
+     * @param key
+     *            the packed block key
+     * @return the y
+     */
+    public static int blockY(final long key)
+    {
+        return (int) ((key << 52) >> 52);
+    }
+
+    /**
+     * Unpack the z of a block key.
+     *
+     * @param key
+     *            the packed block key
+     * @return the z
+     */
+    public static int blockZ(final long key)
+    {
+        return (int) ((key << 26) >> 38);
+    }
+
+    /**
+     * Pack chunk coordinates into a long.
+     *
+     * @param chunkX
+     *            the chunk x
+     * @param chunkZ
+     *            the chunk z
+     * @return the packed chunk key
+     */
+    public static long chunkKey(final int chunkX, final int chunkZ)
+    {
+        return (chunkX & 0xFFFFFFFFL) | ((chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /** World UID to bucket. */
+    private final ConcurrentHashMap<UUID, WorldBucket<V>> worlds = new ConcurrentHashMap<UUID, WorldBucket<V>>();
+
+    /** The shared chunk set, may be null. */
+    private final StargateChunkSet chunkSet;
+
+    /**
+     * Instantiates a new block index.
+     */
+    public StargateBlockIndex()
+    {
+        this(null);
+    }
+
+    /**
+     * Instantiates a new block index that reports its chunks to the chunk set.
+     *
+     * @param chunkSet
+     *            the chunk set, may be null
+     */
+    public StargateBlockIndex(final StargateChunkSet chunkSet)
+    {
+        this.chunkSet = chunkSet;
+    }
+
+    /**
+     * Clear the whole index.
+     */
+    public void clear()
+    {
+        for (final WorldBucket<V> bucket : worlds.values())
+        {
+            bucket.clear();
+        }
+        worlds.clear();
+    }
+
+    /**
+     * Clear everything indexed in one world.
+     *
+     * @param worldId
+     *            the world UID
+     */
+    public void clearWorld(final UUID worldId)
+    {
+        final WorldBucket<V> bucket = worlds.remove(worldId);
+        if (bucket != null)
+        {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * Checks if the block is indexed.
+     *
+     * @param block
+     *            the block
+     * @return true, if indexed
+     */
+    public boolean contains(final Block block)
+    {
+        return (block != null) && (get(block.getWorld(), block.getX(), block.getY(), block.getZ()) != null);
+    }
+
+    /**
+     * Checks if the block at the coordinates is indexed.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return true, if indexed
+     */
+    public boolean contains(final World world, final int x, final int y, final int z)
+    {
+        return get(world, x, y, z) != null;
+    }
+
+    /**
+     * Checks if anything is indexed in the chunk.
+     *
+     * @param world
+     *            the world
+     * @param chunkX
+     *            the chunk x
+     * @param chunkZ
+     *            the chunk z
+     * @return true, if the chunk holds an indexed block
+     */
+    public boolean containsChunk(final World world, final int chunkX, final int chunkZ)
+    {
+        if (world == null)
+        {
+            return false;
+        }
+        final WorldBucket<V> bucket = worlds.get(world.getUID());
+        return (bucket != null) && bucket.containsChunk(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Gets the value indexed at the block.
+     *
+     * @param block
+     *            the block
+     * @return the value, or null
+     */
+    public V get(final Block block)
+    {
+        return block != null
+            ? get(block.getWorld(), block.getX(), block.getY(), block.getZ())
+            : null;
+    }
+
+    /**
+     * Gets the value indexed at the coordinates.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return the value, or null
+     */
+    public V get(final World world, final int x, final int y, final int z)
+    {
+        if (world == null)
+        {
+            return null;
+        }
+        final WorldBucket<V> bucket = worlds.get(world.getUID());
+        return bucket != null
+            ? bucket.get(x, y, z)
+            : null;
+    }
+
+    /**
+     * Index the block.
+     *
+     * @param block
+     *            the block
+     * @param value
+     *            the value
+     */
+    public void put(final Block block, final V value)
+    {
+        if ((block != null) && (value != null))
+        {
+            put(block.getWorld(), block.getX(), block.getY(), block.getZ(), value);
+        }
+    }
+
+    /**
+     * Index the block location.
+     *
+     * @param location
+     *            the location
+     * @param value
+     *            the value
+     */
+    public void put(final Location location, final V value)
+    {
+        if ((location != null) && (value != null))
+        {
+            put(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), value);
+        }
+    }
+
+    /**
+     * Index the coordinates.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param value
+     *            the value
+     */
+    public void put(final World world, final int x, final int y, final int z, final V value)
+    {
+        if ((world != null) && (value != null))
+        {
+            worlds.computeIfAbsent(world.getUID(), k -> new WorldBucket<V>(k, chunkSet)).put(x, y, z, value);
+        }
+    }
+
+    /**
+     * Removes the block from the index.
+     *
+     * @param block
+     *            the block
+     * @return the removed value, or null
+     */
+    public V remove(final Block block)
+    {
+        return block != null
+            ? remove(block.getWorld(), block.getX(), block.getY(), block.getZ(), null)
+            : null;
+    }
+
+    /**
+     * Removes the block location from the index.
+     *
+     * @param location
+     *            the location
+     * @return the removed value, or null
+     */
+    public V remove(final Location location)
+    {
+        return location != null
+            ? remove(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), null)
+            : null;
+    }
+
+    /**
+     * Removes the coordinates from the index, only if currently mapped to the expected value.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param expected
+     *            the expected value, or null to remove any value
+     * @return the removed value, or null
+     */
+    public V remove(final World world, final int x, final int y, final int z, final V expected)
+    {
+        if (world == null)
+        {
+            return null;
+        }
+        final WorldBucket<V> bucket = worlds.get(world.getUID());
+        return bucket != null
+            ? bucket.remove(x, y, z, expected)
+            : null;
+    }
+
+    /**
+     * Gets the number of indexed blocks.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final WorldBucket<V> bucket : worlds.values())
+        {
+            size += bucket.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.World;
+
+import com.wormhole_xtreme.wormhole.utils.LongObjectHashMap;
+
+/**
+ * WormholeXtreme chunk set.
+ * Per-world set of packed chunk keys holding anything a listener may care about.
+ * Each chunk is reference counted, so several indexes can share one set and a chunk
+ * only leaves the set once every index has released it.
+ */
+public class StargateChunkSet
+{
+
+    /**
+     * The chunks of a single world.
+     */
+    private static final class WorldChunks
+    {
+
+        /** Chunk key to reference count. */
+        private final LongObjectHashMap<int[]> counts = new LongObjectHashMap<int[]>();
+
+        synchronized void add(final long chunkKey)
+        {
+            final int[] count = counts.get(chunkKey);
+            if (count == null)
+            {
+                counts.put(chunkKey, new int[]{1});
+            }
+            else
+            {
+                count[0]++;
+            }
+        }
+
+        synchronized boolean contains(final long chunkKey)
+        {
+            return counts.containsKey(chunkKey);
+        }
+
+        synchronized void remove(final long chunkKey)
+        {
+            final int[] count = counts.get(chunkKey);
+            if ((count != null) && (--count[0] <= 0))
+            {
+                counts.remove(chunkKey);
+            }
+        }
+
+        synchronized int size()
+        {
+            return counts.size();
+        }
+    }
+
+    /** World UID to chunks. */
+    private final ConcurrentHashMap<UUID, WorldChunks> worlds = new ConcurrentHashMap<UUID, WorldChunks>();
+
+    /**
+     * Take a reference on the chunk.
+     *
+     * @param worldId
+     *            the world UID
+     * @param chunkKey
+     *            the packed chunk key
+     */
+    public void add(final UUID worldId, final long chunkKey)
+    {
+        worlds.computeIfAbsent(worldId, k -> new WorldChunks()).add(chunkKey);
+    }
+
+    /**
+     * Checks if the chunk holds anything.
+     *
+     * @param world
+     *            the world
+     * @param chunkX
+     *            the chunk x
+     * @param chunkZ
+     *            the chunk z
+     * @return true, if the chunk is in the set
+     */
+    public boolean contains(final World world, final int chunkX, final int chunkZ)
+    {
+        if (world == null)
+        {
+            return false;
+        }
+        final WorldChunks chunks = worlds.get(world.getUID());
+        return (chunks != null) && chunks.contains(StargateBlockIndex.chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Release a reference on the chunk.
+     *
+     * @param worldId
+     *            the world UID
+     * @param chunkKey
+     *            the packed chunk key
+     */
+    public void remove(final UUID worldId, final long chunkKey)
+    {
+        final WorldChunks chunks = worlds.get(worldId);
+        if (chunks != null)
+        {
+            chunks.remove(chunkKey);
+        }
+    }
+
+    /**
+     * Gets the number of chunks in the set.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final WorldChunks chunks : worlds.values())
+        {
+            size += chunks.size();
+        }
+        return size;
+    }
+}
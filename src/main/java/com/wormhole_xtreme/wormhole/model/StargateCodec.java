@@ -0,0 +1,1392 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+
+/**
+ * WormholeXtreme gate codec.
+ * Compact, schema versioned binary form of a gate for database storage.
+ * <p>
+ * Layout: magic "WX", schema version, flags, then (if compressed) the inflated length and a deflate stream.
+ * The payload is a string table followed by the gate body. Strings (names, world, materials, facing) are
+ * written once and referenced by index. Integers are zigzag varints. Block coordinates are deltas, the
+ * single blocks from the gate origin and each block list from the previous block, so a typical gate block
+ * costs three bytes instead of twelve.
+ * <p>
+ * The block lists may instead be written on their own, magic "WG", so the database can keep the bulky
+ * geometry out of the gate row. Such a gate is flagged and is read back with its geometry alongside.
+ */
+public final class StargateCodec
+{
+
+    /** First magic byte. Never a legacy save version, nor the first GZIP byte. */
+    private static final byte MAGIC_0 = 'W';
+
+    /** Second magic byte. */
+    private static final byte MAGIC_1 = 'X';
+
+    /** Second magic byte of packed geometry. */
+    private static final byte MAGIC_GEOMETRY = 'G';
+
+    /** The schema version written by this codec. */
+    public static final byte SCHEMA_VERSION = 1;
+
+    /** Header flag: the payload is deflated. */
+    private static final int FLAG_COMPRESSED = 1;
+
+    /** Header flag: the block lists are stored apart, see {@link #encodeGeometry(Stargate, boolean)}. */
+    private static final int FLAG_NO_GEOMETRY = 2;
+
+    /** Payloads smaller than this are never worth deflating. */
+    private static final int COMPRESS_THRESHOLD = 128;
+
+    /** Largest payload a gate column holds, so no inflated length can claim more. */
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    /** Gate flag bits. */
+    private static final int ACTIVE = 1, LIGHTS_ACTIVE = 2, SIGN_POWERED = 4, REDSTONE_POWERED = 8, IRIS_ACTIVE = 16, IRIS_DEFAULT_ACTIVE = 32, CUSTOM = 64;
+
+    /** Location kinds. Fixed point holds every coordinate a gate normally uses (whole, half and quarter blocks). */
+    private static final int LOCATION_NULL = 0, LOCATION_FIXED = 1, LOCATION_RAW = 2;
+
+    /** Fixed point steps per block. */
+    private static final int FIXED_SCALE = 16;
+
+    /**
+     * Growable output buffer with varint helpers.
+     */
+    private static final class Output
+    {
+
+        private byte[] buf = new byte[256];
+
+        private int len;
+
+        private void ensure(final int extra)
+        {
+            if ((len + extra) > buf.length)
+            {
+                final byte[] grown = new byte[Math.max(buf.length * 2, len + extra)];
+                System.arraycopy(buf, 0, grown, 0, len);
+                buf = grown;
+            }
+        }
+
+        void write(final int b)
+        {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        void write(final byte[] bytes, final int off, final int count)
+        {
+            ensure(count);
+            System.arraycopy(bytes, off, buf, len, count);
+            len += count;
+        }
+
+        void writeVarInt(int value)
+        {
+            ensure(5);
+            while ((value & ~0x7F) != 0)
+            {
+                buf[len++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[len++] = (byte) value;
+        }
+
+        void writeVarLong(long value)
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                buf[len++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[len++] = (byte) value;
+        }
+
+        void writeSigned(final int value)
+        {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeSignedLong(final long value)
+        {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeInt(final int value)
+        {
+            ensure(4);
+            buf[len++] = (byte) (value >>> 24);
+            buf[len++] = (byte) (value >>> 16);
+            buf[len++] = (byte) (value >>> 8);
+            buf[len++] = (byte) value;
+        }
+
+        void writeLong(final long value)
+        {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+    }
+
+    /**
+     * Bounds checked input over a byte array.
+     */
+    private static final class Input
+    {
+
+        private final byte[] buf;
+
+        private int pos;
+
+        private final int end;
+
+        Input(final byte[] buf, final int pos, final int end)
+        {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int read() throws IOException
+        {
+            if (pos >= end)
+            {
+                throw new IOException("Truncated gate data");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        byte[] read(final int count) throws IOException
+        {
+            if ((count < 0) || (count > (end - pos)))
+            {
+                throw new IOException("Truncated gate data");
+            }
+            final byte[] bytes = new byte[count];
+            System.arraycopy(buf, pos, bytes, 0, count);
+            pos += count;
+            return bytes;
+        }
+
+        int readVarInt() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                final int b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in gate data");
+        }
+
+        long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7)
+            {
+                final int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in gate data");
+        }
+
+        int readSigned() throws IOException
+        {
+            final int raw = readVarInt();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        long readSignedLong() throws IOException
+        {
+            final long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int readInt() throws IOException
+        {
+            return (read() << 24) | (read() << 16) | (read() << 8) | read();
+        }
+
+        long readLong() throws IOException
+        {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Strings seen while writing the body, in first use order.
+     */
+    private static final class StringTable
+    {
+
+        private final Map<String, Integer> index = new LinkedHashMap<String, Integer>();
+
+        /**
+         * Write a reference to the string, 0 for null.
+         */
+        void write(final Output out, final String value)
+        {
+            if (value == null)
+            {
+                out.writeVarInt(0);
+                return;
+            }
+            Integer i = index.get(value);
+            if (i == null)
+            {
+                i = index.size();
+                index.put(value, i);
+            }
+            out.writeVarInt(i + 1);
+        }
+
+        void writeTable(final Output out)
+        {
+            out.writeVarInt(index.size());
+            for (final String value : index.keySet())
+            {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeVarInt(bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    /**
+     * A parsed gate, not yet tied to a world.
+     */
+    public static final class Decoded
+    {
+
+        private final int gateId;
+
+        private final String name, owner, network, shape, worldId, worldName, facing, idc;
+
+        private final int flags;
+
+        private final long tempTargetId, tempSignTarget;
+
+        private final int dialSignIndex;
+
+        private final Material structureMaterial, portalMaterial, lightMaterial, irisMaterial;
+
+        private final int wooshTicks, lightTicks, wooshDepth, wooshDepthSquared;
+
+        /** Present single blocks as absolute x, y, z, null if absent. */
+        private final int[][] blocks = new int[7][];
+
+        /** Teleport points as x, y, z, yaw, pitch, null if absent. */
+        private final double[] playerTeleport, minecartTeleport;
+
+        /** Block lists as flat absolute x, y, z triples. Empty if the geometry was stored apart and not supplied. */
+        private int[] structure = new int[0], portal = new int[0];
+
+        private int[][] lights = new int[0][], woosh = new int[0][];
+
+        private boolean geometry;
+
+        private Decoded(final Input in, final String[] strings, final boolean withGeometry) throws IOException
+        {
+            gateId = in.readSigned();
+            name = string(in, strings);
+            owner = string(in, strings);
+            network = string(in, strings);
+            shape = string(in, strings);
+            worldId = string(in, strings);
+            worldName = string(in, strings);
+            facing = string(in, strings);
+            idc = string(in, strings);
+            flags = in.readVarInt();
+            tempTargetId = in.readSignedLong();
+            tempSignTarget = in.readSignedLong();
+            dialSignIndex = in.readSigned();
+            structureMaterial = material(string(in, strings));
+            portalMaterial = material(string(in, strings));
+            lightMaterial = material(string(in, strings));
+            irisMaterial = material(string(in, strings));
+            wooshTicks = in.readSigned();
+            lightTicks = in.readSigned();
+            wooshDepth = in.readSigned();
+            wooshDepthSquared = in.readSigned();
+
+            final int[] origin = {in.readSigned(), in.readSigned(), in.readSigned()};
+            final int present = in.readVarInt();
+            for (int i = 0; i < blocks.length; i++)
+            {
+                if ((present & (1 << i)) != 0)
+                {
+                    blocks[i] = new int[]{origin[0] + in.readSigned(), origin[1] + in.readSigned(), origin[2] + in.readSigned()};
+                }
+            }
+            playerTeleport = readLocation(in, origin);
+            minecartTeleport = readLocation(in, origin);
+            if (withGeometry)
+            {
+                readGeometry(in, origin);
+            }
+        }
+
+        private void readGeometry(final Input in, final int[] origin) throws IOException
+        {
+            structure = readBlockList(in, origin);
+            portal = readBlockList(in, origin);
+            lights = readLayers(in, origin);
+            woosh = readLayers(in, origin);
+            geometry = true;
+        }
+
+        /**
+         * Checks if the block lists were read. False for a gate stored without its geometry when none was supplied.
+         *
+         * @return true, if the geometry is present
+         */
+        public boolean hasGeometry()
+        {
+            return geometry;
+        }
+
+        /**
+         * Gets the gate id.
+         *
+         * @return the gate id
+         */
+        public int getGateId()
+        {
+            return gateId;
+        }
+
+        /**
+         * Gets the gate name.
+         *
+         * @return the gate name
+         */
+        public String getGateName()
+        {
+            return name != null
+                ? name
+                : "";
+        }
+
+        /**
+         * Gets the UID of the saved world.
+         *
+         * @return the world UID, or null if none was saved
+         */
+        public UUID getWorldId()
+        {
+            return worldId != null
+                ? UUID.fromString(worldId)
+                : null;
+        }
+
+        /**
+         * Gets the name of the saved world.
+         *
+         * @return the world name, or null if none was saved
+         */
+        public String getWorldName()
+        {
+            return worldName;
+        }
+
+        /**
+         * Checks if the gate was saved active.
+         *
+         * @return true, if active
+         */
+        public boolean isGateActive()
+        {
+            return (flags & ACTIVE) != 0;
+        }
+
+        /**
+         * Checks if the gate was saved with its lights on.
+         *
+         * @return true, if lit
+         */
+        public boolean isGateLightsActive()
+        {
+            return (flags & LIGHTS_ACTIVE) != 0;
+        }
+
+        /**
+         * Checks if the gate's dial sign was saved powered.
+         *
+         * @return true, if powered
+         */
+        public boolean isGateSignPowered()
+        {
+            return (flags & SIGN_POWERED) != 0;
+        }
+
+        /**
+         * Checks if the gate was saved redstone powered.
+         *
+         * @return true, if powered
+         */
+        public boolean isGateRedstonePowered()
+        {
+            return (flags & REDSTONE_POWERED) != 0;
+        }
+
+        /**
+         * Checks if the gate's iris was saved closed.
+         *
+         * @return true, if the iris is active
+         */
+        public boolean isGateIrisActive()
+        {
+            return (flags & IRIS_ACTIVE) != 0;
+        }
+
+        /**
+         * Gets the saved dial sign index.
+         *
+         * @return the dial sign index
+         */
+        public int getGateDialSignIndex()
+        {
+            return dialSignIndex;
+        }
+
+        /**
+         * Gets the id of the gate this one was saved dialed to.
+         *
+         * @return the target id, -1 if none
+         */
+        public long getGateTempTargetId()
+        {
+            return tempTargetId;
+        }
+
+        /**
+         * Gets the id of the gate the dial sign was saved pointing at.
+         *
+         * @return the sign target id, -1 if none
+         */
+        public long getGateTempSignTarget()
+        {
+            return tempSignTarget;
+        }
+
+        /**
+         * Gets the bounding box of the structure and portal blocks and the player teleport point.
+         *
+         * @return min x, y, z then max x, y, z, or null if the gate has none of them
+         */
+        public int[] getBounds()
+        {
+            final int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            include(box, structure);
+            include(box, portal);
+            if (playerTeleport != null)
+            {
+                include(box, new int[]{(int) Math.floor(playerTeleport[0]), (int) Math.floor(playerTeleport[1]), (int) Math.floor(playerTeleport[2])});
+            }
+            return box[0] <= box[3]
+                ? box
+                : null;
+        }
+
+        private static void include(final int[] box, final int[] xyz)
+        {
+            for (int i = 0; i < xyz.length; i += 3)
+            {
+                for (int axis = 0; axis < 3; axis++)
+                {
+                    box[axis] = Math.min(box[axis], xyz[i + axis]);
+                    box[axis + 3] = Math.max(box[axis + 3], xyz[i + axis]);
+                }
+            }
+        }
+
+        /**
+         * Build the gate. Call on the main thread.
+         * The gate is not registered anywhere; its network is looked up, or created, by name.
+         *
+         * @param world
+         *            the world to place the gate in, or null to resolve the saved world by UID and then by name
+         * @return the stargate
+         */
+        public Stargate bind(World world)
+        {
+            world = resolve(world);
+            final Stargate s = describe(world);
+            s.setGateDialLeverBlock(block(world, blocks[0]));
+            s.setGateIrisLeverBlock(block(world, blocks[1]));
+            s.setGateNameBlockHolder(block(world, blocks[2]));
+            s.setGateDialSignBlock(block(world, blocks[3]));
+            s.setGateRedstoneDialActivationBlock(block(world, blocks[4]));
+            s.setGateRedstoneSignActivationBlock(block(world, blocks[5]));
+            s.setGateRedstoneGateActivatedBlock(block(world, blocks[6]));
+
+            locations(world, structure, s.getGateStructureBlocks());
+            locations(world, portal, s.getGatePortalBlocks());
+            layers(world, lights, s.getGateLightBlocks());
+            layers(world, woosh, s.getGateWooshBlocks());
+            return s;
+        }
+
+        /**
+         * Build the gate without its blocks: no block lists, no {@link Block} references and no sign.
+         * The packed geometry and single block coordinates are kept, so {@link Stargate#hydrate()} can build them
+         * later. Call on the main thread.
+         *
+         * @param world
+         *            the world to place the gate in, or null to resolve the saved world by UID and then by name
+         * @param packedGeometry
+         *            the packed geometry this gate was parsed with, from {@link StargateCodec#encodeGeometry(Stargate, boolean)}
+         * @return the stargate, not hydrated
+         */
+        public Stargate bindDescriptor(World world, final byte[] packedGeometry)
+        {
+            world = resolve(world);
+            final Stargate s = describe(world);
+            final int[][] packedBlocks = new int[blocks.length][];
+            for (int i = 0; i < blocks.length; i++)
+            {
+                packedBlocks[i] = blocks[i] != null
+                    ? blocks[i].clone()
+                    : null;
+            }
+            s.setGatePacked(packedGeometry, packedBlocks, getBounds());
+            return s;
+        }
+
+        /**
+         * Resolve the saved world by UID and then by name, unless one is given.
+         */
+        private World resolve(World world)
+        {
+            if ((world == null) && (worldId != null))
+            {
+                world = Bukkit.getWorld(UUID.fromString(worldId));
+            }
+            if ((world == null) && (worldName != null))
+            {
+                world = Bukkit.getWorld(worldName);
+            }
+            return world;
+        }
+
+        /**
+         * Build the gate with everything but its blocks.
+         */
+        private Stargate describe(final World world)
+        {
+            final Stargate s = new Stargate();
+            s.setGateId(gateId);
+            s.setGateName(getGateName());
+            s.setGateOwner(owner);
+            s.setGateWorld(world);
+            if (network != null)
+            {
+                StargateNetwork net = StargateManager.getStargateNetwork(network);
+                if (net == null)
+                {
+                    net = StargateManager.addStargateNetwork(network);
+                }
+                s.setGateNetwork(net);
+            }
+            if (shape != null)
+            {
+                s.setGateShape(StargateHelper.getStargateShape(shape));
+            }
+            if (facing != null)
+            {
+                s.setGateFacing(BlockFace.valueOf(facing));
+            }
+            s.setGateIrisDeactivationCode(idc != null
+                ? idc
+                : "");
+
+            s.setGateActive((flags & ACTIVE) != 0);
+            s.setGateLightsActive((flags & LIGHTS_ACTIVE) != 0);
+            s.setGateSignPowered((flags & SIGN_POWERED) != 0);
+            s.setGateRedstonePowered((flags & REDSTONE_POWERED) != 0);
+            s.setGateIrisActive((flags & IRIS_ACTIVE) != 0);
+            s.setGateIrisDefaultActive((flags & IRIS_DEFAULT_ACTIVE) != 0);
+            s.setGateCustom((flags & CUSTOM) != 0);
+
+            s.setGateTempTargetId(tempTargetId);
+            s.setGateTempSignTarget(tempSignTarget);
+            s.setGateDialSignIndex(dialSignIndex);
+
+            s.setGateCustomStructureMaterial(structureMaterial);
+            s.setGateCustomPortalMaterial(portalMaterial);
+            s.setGateCustomLightMaterial(lightMaterial);
+            s.setGateCustomIrisMaterial(irisMaterial);
+            s.setGateCustomWooshTicks(wooshTicks);
+            s.setGateCustomLightTicks(lightTicks);
+            s.setGateCustomWooshDepth(wooshDepth);
+            s.setGateCustomWooshDepthSquared(wooshDepthSquared);
+
+            s.setGatePlayerTeleportLocation(location(world, playerTeleport));
+            s.setGateMinecartTeleportLocation(location(world, minecartTeleport));
+            return s;
+        }
+
+        private static Block block(final World world, final int[] xyz)
+        {
+            return (xyz != null) && (world != null)
+                ? world.getBlockAt(xyz[0], xyz[1], xyz[2])
+                : null;
+        }
+
+        private static Location location(final World world, final double[] l)
+        {
+            return l != null
+                ? new Location(world, l[0], l[1], l[2], (float) l[3], (float) l[4])
+                : null;
+        }
+
+        private static void locations(final World world, final int[] xyz, final List<Location> into)
+        {
+            into.clear();
+            for (int i = 0; i < xyz.length; i += 3)
+            {
+                into.add(new Location(world, xyz[i], xyz[i + 1], xyz[i + 2]));
+            }
+        }
+
+        private static void layers(final World world, final int[][] layers, final List<ArrayList<Location>> into)
+        {
+            into.clear();
+            for (final int[] layer : layers)
+            {
+                final ArrayList<Location> list = new ArrayList<Location>(layer.length / 3);
+                locations(world, layer, list);
+                into.add(list);
+            }
+        }
+    }
+
+    private StargateCodec()
+    {
+    }
+
+    /**
+     * Checks if the data was written by this codec, as opposed to one of the legacy formats.
+     *
+     * @param data
+     *            the data
+     * @return true, if encoded by this codec
+     */
+    public static boolean isEncoded(final byte[] data)
+    {
+        return (data != null) && (data.length >= 4) && (data[0] == MAGIC_0) && (data[1] == MAGIC_1);
+    }
+
+    /**
+     * Encode the gate.
+     *
+     * @param stargate
+     *            the stargate
+     * @param compress
+     *            deflate the payload when that makes it smaller
+     * @return the encoded gate
+     */
+    public static byte[] encode(final Stargate stargate, final boolean compress)
+    {
+        return encode(stargate, compress, true);
+    }
+
+    /**
+     * Encode the gate without its block lists, which are then stored with {@link #encodeGeometry(Stargate, boolean)}.
+     *
+     * @param stargate
+     *            the stargate
+     * @param compress
+     *            deflate the payload when that makes it smaller
+     * @return the encoded gate
+     */
+    public static byte[] encodeWithoutGeometry(final Stargate stargate, final boolean compress)
+    {
+        return encode(stargate, compress, false);
+    }
+
+    /**
+     * Encode the block lists of the gate on their own: structure, portal, light and woosh blocks.
+     *
+     * @param stargate
+     *            the stargate
+     * @param compress
+     *            deflate the payload when that makes it smaller
+     * @return the packed geometry
+     */
+    public static byte[] encodeGeometry(final Stargate stargate, final boolean compress)
+    {
+        synchronized (stargate)
+        {
+            // A descriptor already holds its blocks packed; reading them through the getters would hydrate it.
+            final byte[] packed = stargate.getGatePackedGeometry();
+            if (packed != null)
+            {
+                return packed;
+            }
+            final Output payload = new Output();
+            final int[] origin = origin(stargate);
+            out3(payload, origin);
+            writeGeometry(stargate, payload, origin);
+            return frame(MAGIC_GEOMETRY, 0, payload, compress);
+        }
+    }
+
+    private static byte[] encode(final Stargate stargate, final boolean compress, final boolean geometry)
+    {
+        final StringTable strings = new StringTable();
+        final Output body = new Output();
+        synchronized (stargate)
+        {
+            writeBody(stargate, strings, body, geometry);
+        }
+
+        final Output payload = new Output();
+        strings.writeTable(payload);
+        payload.write(body.buf, 0, body.len);
+        return frame(MAGIC_1, geometry
+            ? 0
+            : FLAG_NO_GEOMETRY, payload, compress);
+    }
+
+    /**
+     * Write the header and the payload, deflated when asked and when that makes it smaller.
+     */
+    private static byte[] frame(final byte magic, final int flags, final Output payload, final boolean compress)
+    {
+        if (compress && (payload.len >= COMPRESS_THRESHOLD))
+        {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try
+            {
+                deflater.setInput(payload.buf, 0, payload.len);
+                deflater.finish();
+                final Output out = new Output();
+                writeHeader(out, magic, flags | FLAG_COMPRESSED);
+                out.writeVarInt(payload.len);
+                final byte[] chunk = new byte[512];
+                while ( !deflater.finished())
+                {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                if (out.len < (payload.len + 4))
+                {
+                    return trim(out);
+                }
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+        final Output out = new Output();
+        writeHeader(out, magic, flags);
+        out.write(payload.buf, 0, payload.len);
+        return trim(out);
+    }
+
+    /**
+     * Decode a gate.
+     * The gate is not registered anywhere; its network is looked up, or created, by name.
+     *
+     * @param data
+     *            the encoded gate
+     * @param world
+     *            the world to place the gate in, or null to resolve the saved world by UID and then by name
+     * @return the stargate
+     * @throws IOException
+     *             if the data is not from this codec, is from a newer schema, or is corrupt
+     */
+    public static Stargate decode(final byte[] data, final World world) throws IOException
+    {
+        return parse(data).bind(world);
+    }
+
+    /**
+     * Parse a gate without touching the server, so it is safe off the main thread.
+     * {@link Decoded#bind(World)} then builds the gate.
+     *
+     * @param data
+     *            the encoded gate
+     * @return the parsed gate
+     * @throws IOException
+     *             if the data is not from this codec, is from a newer schema, or is corrupt
+     */
+    public static Decoded parse(final byte[] data) throws IOException
+    {
+        return parse(data, null);
+    }
+
+    /**
+     * Parse a gate and the geometry stored apart from it, without touching the server.
+     *
+     * @param data
+     *            the encoded gate
+     * @param geometry
+     *            the packed geometry, or null; ignored if the gate was encoded with its geometry
+     * @return the parsed gate
+     * @throws IOException
+     *             if either is not from this codec, is from a newer schema, or is corrupt
+     */
+    public static Decoded parse(final byte[] data, final byte[] geometry) throws IOException
+    {
+        if ( !isEncoded(data))
+        {
+            throw new IOException("Not encoded gate data");
+        }
+        Input in = open(data);
+        final int count = in.readVarInt();
+        if ((count < 0) || (count > (in.end - in.pos)))
+        {
+            throw new IOException("Truncated gate data");
+        }
+        final String[] strings = new String[count];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = new String(in.read(in.readVarInt()), StandardCharsets.UTF_8);
+        }
+        try
+        {
+            final boolean apart = (data[3] & FLAG_NO_GEOMETRY) != 0;
+            final Decoded decoded = new Decoded(in, strings, !apart);
+            finish(in);
+            if (apart && (geometry != null))
+            {
+                if ((geometry.length < 4) || (geometry[0] != MAGIC_0) || (geometry[1] != MAGIC_GEOMETRY))
+                {
+                    throw new IOException("Not packed gate geometry");
+                }
+                in = open(geometry);
+                decoded.readGeometry(in, new int[]{in.readSigned(), in.readSigned(), in.readSigned()});
+                finish(in);
+            }
+            return decoded;
+        }
+        catch (final IllegalArgumentException e)
+        {
+            throw new IOException("Corrupt gate data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Build the block lists packed by {@link #encodeGeometry(Stargate, boolean)} into the given lists, which are cleared first.
+     *
+     * @param geometry
+     *            the packed geometry
+     * @param world
+     *            the world the locations are in
+     * @param structure
+     *            receives the structure blocks
+     * @param portal
+     *            receives the portal blocks
+     * @param lights
+     *            receives the light layers
+     * @param woosh
+     *            receives the woosh layers
+     * @throws IOException
+     *             if the geometry is not from this codec or is corrupt
+     */
+    static void unpackGeometry(final byte[] geometry, final World world, final List<Location> structure, final List<Location> portal, final List<ArrayList<Location>> lights, final List<ArrayList<Location>> woosh) throws IOException
+    {
+        if ((geometry == null) || (geometry.length < 4) || (geometry[0] != MAGIC_0) || (geometry[1] != MAGIC_GEOMETRY))
+        {
+            throw new IOException("Not packed gate geometry");
+        }
+        final Input in = open(geometry);
+        try
+        {
+            final int[] origin = {in.readSigned(), in.readSigned(), in.readSigned()};
+            Decoded.locations(world, readBlockList(in, origin), structure);
+            Decoded.locations(world, readBlockList(in, origin), portal);
+            Decoded.layers(world, readLayers(in, origin), lights);
+            Decoded.layers(world, readLayers(in, origin), woosh);
+        }
+        catch (final IllegalArgumentException e)
+        {
+            throw new IOException("Corrupt gate geometry: " + e.getMessage(), e);
+        }
+        finish(in);
+    }
+
+    private static void finish(final Input in) throws IOException
+    {
+        if (in.pos != in.end)
+        {
+            throw new IOException("Trailing bytes in gate data: " + (in.end - in.pos));
+        }
+    }
+
+    /**
+     * Check the header and open the payload, inflating it if need be.
+     */
+    private static Input open(final byte[] data) throws IOException
+    {
+        final int version = data[2];
+        if ((version < 1) || (version > SCHEMA_VERSION))
+        {
+            throw new IOException("Unsupported gate schema version: " + version);
+        }
+        final int flags = data[3];
+        Input in = new Input(data, 4, data.length);
+        if ((flags & FLAG_COMPRESSED) != 0)
+        {
+            final int length = in.readVarInt();
+            if ((length < 0) || (length > MAX_PAYLOAD))
+            {
+                throw new IOException("Corrupt gate data length: " + length);
+            }
+            final Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(data, in.pos, data.length - in.pos);
+                final byte[] inflated = new byte[length];
+                int n = 0;
+                while (n < length)
+                {
+                    final int read = inflater.inflate(inflated, n, length - n);
+                    if ((read == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    {
+                        throw new IOException("Truncated gate data");
+                    }
+                    n += read;
+                }
+                // Reads the trailing checksum, so a stream cut short is caught too.
+                if ((inflater.inflate(new byte[1]) != 0) || !inflater.finished())
+                {
+                    throw new IOException("Truncated gate data");
+                }
+                in = new Input(inflated, 0, length);
+            }
+            catch (final DataFormatException e)
+            {
+                throw new IOException("Corrupt gate data: " + e.getMessage(), e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Write the header.
+     */
+    private static void writeHeader(final Output out, final byte magic, final int flags)
+    {
+        out.write(MAGIC_0);
+        out.write(magic);
+        out.write(SCHEMA_VERSION);
+        out.write(flags);
+    }
+
+    /**
+     * Copy the written bytes out.
+     */
+    private static byte[] trim(final Output out)
+    {
+        final byte[] bytes = new byte[out.len];
+        System.arraycopy(out.buf, 0, bytes, 0, out.len);
+        return bytes;
+    }
+
+    /**
+     * Write everything but the string table.
+     */
+    private static void writeBody(final Stargate s, final StringTable strings, final Output out, final boolean geometry)
+    {
+        out.writeSigned(s.getGateId());
+        strings.write(out, s.getGateName());
+        strings.write(out, s.getGateOwner());
+        strings.write(out, s.getGateNetwork() != null
+            ? s.getGateNetwork().getNetworkName()
+            : null);
+        strings.write(out, s.getGateShape() != null
+            ? s.getGateShape().getShapeName()
+            : null);
+        final World world = s.getGateWorld();
+        strings.write(out, world != null
+            ? world.getUID().toString()
+            : null);
+        strings.write(out, world != null
+            ? world.getName()
+            : null);
+        strings.write(out, s.getGateFacing() != null
+            ? s.getGateFacing().name()
+            : null);
+        strings.write(out, s.getGateIrisDeactivationCode());
+
+        int flags = 0;
+        flags |= s.isGateActive()
+            ? ACTIVE
+            : 0;
+        flags |= s.isGateLightsActive()
+            ? LIGHTS_ACTIVE
+            : 0;
+        flags |= s.isGateSignPowered()
+            ? SIGN_POWERED
+            : 0;
+        flags |= s.isGateRedstonePowered()
+            ? REDSTONE_POWERED
+            : 0;
+        flags |= s.isGateIrisActive()
+            ? IRIS_ACTIVE
+            : 0;
+        flags |= s.isGateIrisDefaultActive()
+            ? IRIS_DEFAULT_ACTIVE
+            : 0;
+        flags |= s.isGateCustom()
+            ? CUSTOM
+            : 0;
+        out.writeVarInt(flags);
+
+        // Targets by id, resolved again once every gate is loaded.
+        out.writeSignedLong(s.getGateSavedTargetId());
+        out.writeSignedLong(s.getGateSavedSignTargetId());
+        out.writeSigned(s.getGateDialSignIndex());
+
+        strings.write(out, materialName(s.getGateCustomStructureMaterial()));
+        strings.write(out, materialName(s.getGateCustomPortalMaterial()));
+        strings.write(out, materialName(s.getGateCustomLightMaterial()));
+        strings.write(out, materialName(s.getGateCustomIrisMaterial()));
+        out.writeSigned(s.getGateCustomWooshTicks());
+        out.writeSigned(s.getGateCustomLightTicks());
+        out.writeSigned(s.getGateCustomWooshDepth());
+        out.writeSigned(s.getGateCustomWooshDepthSquared());
+
+        // A descriptor is written from its packed blocks, relative to the origin they were packed against.
+        final int[] origin = new int[3];
+        final Input packed = openPacked(s, origin);
+        final int[][] blocks = packed != null
+            ? s.getGatePackedBlocks()
+            : singleBlocks(s);
+        if (packed == null)
+        {
+            System.arraycopy(origin(s), 0, origin, 0, 3);
+        }
+        out3(out, origin);
+
+        int present = 0;
+        for (int i = 0; i < blocks.length; i++)
+        {
+            if (blocks[i] != null)
+            {
+                present |= 1 << i;
+            }
+        }
+        out.writeVarInt(present);
+        for (final int[] b : blocks)
+        {
+            if (b != null)
+            {
+                out.writeSigned(b[0] - origin[0]);
+                out.writeSigned(b[1] - origin[1]);
+                out.writeSigned(b[2] - origin[2]);
+            }
+        }
+
+        writeLocation(out, s.getGatePlayerTeleportLocation(), origin);
+        writeLocation(out, s.getGateMinecartTeleportLocation(), origin);
+        if (geometry)
+        {
+            if (packed != null)
+            {
+                out.write(packed.buf, packed.pos, packed.end - packed.pos);
+            }
+            else
+            {
+                writeGeometry(s, out, origin);
+            }
+        }
+    }
+
+    /**
+     * Open the packed block lists of a descriptor past their origin, which is read into origin.
+     * 
+     * @return the block lists, or null if the gate is hydrated or its packed blocks cannot be read, in which case
+     *         it is written through the getters, whose hydration reports the damage
+     */
+    private static Input openPacked(final Stargate s, final int[] origin)
+    {
+        final byte[] geometry = s.getGatePackedGeometry();
+        if ((geometry == null) || (s.getGatePackedBlocks() == null))
+        {
+            return null;
+        }
+        try
+        {
+            final Input in = open(geometry);
+            origin[0] = in.readSigned();
+            origin[1] = in.readSigned();
+            origin[2] = in.readSigned();
+            return in;
+        }
+        catch (final IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Write the block lists.
+     */
+    private static void writeGeometry(final Stargate s, final Output out, final int[] origin)
+    {
+        writeBlockList(out, s.getGateStructureBlocks(), origin);
+        writeBlockList(out, s.getGatePortalBlocks(), origin);
+        writeLayers(out, s.getGateLightBlocks(), origin);
+        writeLayers(out, s.getGateWooshBlocks(), origin);
+    }
+
+    private static void out3(final Output out, final int[] xyz)
+    {
+        out.writeSigned(xyz[0]);
+        out.writeSigned(xyz[1]);
+        out.writeSigned(xyz[2]);
+    }
+
+    /**
+     * The single blocks, in bit order.
+     */
+    private static int[][] singleBlocks(final Stargate s)
+    {
+        final Block[] blocks = {s.getGateDialLeverBlock(), s.getGateIrisLeverBlock(), s.getGateNameBlockHolder(), s.getGateDialSignBlock(), s.getGateRedstoneDialActivationBlock(), s.getGateRedstoneSignActivationBlock(), s.getGateRedstoneGateActivatedBlock()};
+        final int[][] xyz = new int[blocks.length][];
+        for (int i = 0; i < blocks.length; i++)
+        {
+            if (blocks[i] != null)
+            {
+                xyz[i] = new int[]{blocks[i].getX(), blocks[i].getY(), blocks[i].getZ()};
+            }
+        }
+        return xyz;
+    }
+
+    /**
+     * The gate origin all coordinates are relative to: the first structure block, else the teleport point.
+     */
+    private static int[] origin(final Stargate s)
+    {
+        Location l = !s.getGateStructureBlocks().isEmpty()
+            ? s.getGateStructureBlocks().get(0)
+            : s.getGatePlayerTeleportLocation();
+        if (l != null)
+        {
+            return new int[]{l.getBlockX(), l.getBlockY(), l.getBlockZ()};
+        }
+        final Block b = s.getGateDialLeverBlock();
+        return b != null
+            ? new int[]{b.getX(), b.getY(), b.getZ()}
+            : new int[3];
+    }
+
+    private static String materialName(final Material m)
+    {
+        return m != null
+            ? m.name()
+            : null;
+    }
+
+    private static Material material(final String name)
+    {
+        return name != null
+            ? Material.valueOf(name)
+            : null;
+    }
+
+    private static String string(final Input in, final String[] strings) throws IOException
+    {
+        final int ref = in.readVarInt();
+        if (ref == 0)
+        {
+            return null;
+        }
+        if (ref > strings.length)
+        {
+            throw new IOException("Bad string reference in gate data: " + ref);
+        }
+        return strings[ref - 1];
+    }
+
+    /**
+     * Fixed point value of the coordinate relative to the origin, or null if it has no exact fixed point form.
+     */
+    private static Long fixed(final double value, final int origin)
+    {
+        final double scaled = (value - origin) * FIXED_SCALE;
+        final long rounded = Math.round(scaled);
+        return (rounded == scaled) && (Math.abs(rounded) < Integer.MAX_VALUE) && (((double) rounded / FIXED_SCALE) + origin == value)
+            ? rounded
+            : null;
+    }
+
+    private static void writeLocation(final Output out, final Location l, final int[] origin)
+    {
+        if (l == null)
+        {
+            out.write(LOCATION_NULL);
+            return;
+        }
+        final Long x = fixed(l.getX(), origin[0]);
+        final Long y = fixed(l.getY(), origin[1]);
+        final Long z = fixed(l.getZ(), origin[2]);
+        if ((x != null) && (y != null) && (z != null))
+        {
+            out.write(LOCATION_FIXED);
+            out.writeSigned(x.intValue());
+            out.writeSigned(y.intValue());
+            out.writeSigned(z.intValue());
+        }
+        else
+        {
+            out.write(LOCATION_RAW);
+            out.writeLong(Double.doubleToLongBits(l.getX()));
+            out.writeLong(Double.doubleToLongBits(l.getY()));
+            out.writeLong(Double.doubleToLongBits(l.getZ()));
+        }
+        out.writeInt(Float.floatToIntBits(l.getYaw()));
+        out.writeInt(Float.floatToIntBits(l.getPitch()));
+    }
+
+    private static double[] readLocation(final Input in, final int[] origin) throws IOException
+    {
+        final int kind = in.read();
+        final double x, y, z;
+        if (kind == LOCATION_NULL)
+        {
+            return null;
+        }
+        else if (kind == LOCATION_FIXED)
+        {
+            x = ((double) in.readSigned() / FIXED_SCALE) + origin[0];
+            y = ((double) in.readSigned() / FIXED_SCALE) + origin[1];
+            z = ((double) in.readSigned() / FIXED_SCALE) + origin[2];
+        }
+        else if (kind == LOCATION_RAW)
+        {
+            x = Double.longBitsToDouble(in.readLong());
+            y = Double.longBitsToDouble(in.readLong());
+            z = Double.longBitsToDouble(in.readLong());
+        }
+        else
+        {
+            throw new IOException("Bad location kind in gate data: " + kind);
+        }
+        final float yaw = Float.intBitsToFloat(in.readInt());
+        final float pitch = Float.intBitsToFloat(in.readInt());
+        return new double[]{x, y, z, yaw, pitch};
+    }
+
+    /**
+     * Write a block list, each block as the delta from the one before, the first from the origin.
+     */
+    private static void writeBlockList(final Output out, final List<Location> blocks, final int[] origin)
+    {
+        if (blocks == null)
+        {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(blocks.size());
+        int px = origin[0], py = origin[1], pz = origin[2];
+        for (final Location l : blocks)
+        {
+            out.writeSigned(l.getBlockX() - px);
+            out.writeSigned(l.getBlockY() - py);
+            out.writeSigned(l.getBlockZ() - pz);
+            px = l.getBlockX();
+            py = l.getBlockY();
+            pz = l.getBlockZ();
+        }
+    }
+
+    private static int[] readBlockList(final Input in, final int[] origin) throws IOException
+    {
+        final int count = in.readVarInt();
+        if ((count < 0) || (count > (in.end - in.pos)))
+        {
+            throw new IOException("Truncated gate data");
+        }
+        final int[] xyz = new int[count * 3];
+        int x = origin[0], y = origin[1], z = origin[2];
+        for (int i = 0; i < xyz.length; i += 3)
+        {
+            xyz[i] = x += in.readSigned();
+            xyz[i + 1] = y += in.readSigned();
+            xyz[i + 2] = z += in.readSigned();
+        }
+        return xyz;
+    }
+
+    private static void writeLayers(final Output out, final List<? extends List<Location>> layers, final int[] origin)
+    {
+        out.writeVarInt(layers.size());
+        for (final List<Location> layer : layers)
+        {
+            writeBlockList(out, layer, origin);
+        }
+    }
+
+    private static int[][] readLayers(final Input in, final int[] origin) throws IOException
+    {
+        final int count = in.readVarInt();
+        if ((count < 0) || (count > (in.end - in.pos)))
+        {
+            throw new IOException("Truncated gate data");
+        }
+        final int[][] layers = new int[count][];
+        for (int i = 0; i < count; i++)
+        {
+            layers[i] = readBlockList(in, origin);
+        }
+        return layers;
+    }
+}
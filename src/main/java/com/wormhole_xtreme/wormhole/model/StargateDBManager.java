@@ -261,30 +261,10 @@ public class StargateDBManager
                     s.lightStargate(false);
                 }
 
-                if (s.getGateTempTargetId() >= 0)
+                StargateManager.resolveSavedTargets(s);
+                if (s.isGateActive())
                 {
-                    // I know this is bad, I am just trying to get this feature out asap.
-                    for (final Stargate t : gateList)
-                    {
-                        if (t.getGateId() == s.getGateTempTargetId())
-                        {
-                            s.dialStargate(t, true);
-                            break;
-                        }
-                    }
-                }
-
-                if (s.getGateTempSignTarget() >= 0)
-                {
-                    // I know this is bad, I am just trying to get this feature out asap.
-                    for (final Stargate t : gateList)
-                    {
-                        if (t.getGateId() == s.getGateTempSignTarget())
-                        {
-                            s.setGateDialSignTarget(t);
-                            break;
-                        }
-                    }
+                    StargateManager.addActiveStargate(s);
                 }
             }
 
@@ -0,0 +1,465 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * WormholeXtreme stargate animation frames.
+ * A gate's lighting, woosh, depth woosh and portal blocks compiled once into flat x, y, z coordinate
+ * arrays, together with the block data each is drawn with and the animation timings, so playing a step
+ * is a loop over ints with nothing to resolve. Immutable; the gate compiles a new set when its
+ * materials, shape, facing or world change.
+ */
+public final class StargateFrames
+{
+
+    /** Shared by frames with no blocks. */
+    private static final int[] EMPTY = new int[0];
+
+    /** The world. */
+    private final World world;
+
+    /** Light blocks of each lighting iteration. */
+    private final int[][] lightFrames;
+
+    /** Woosh blocks of each woosh step. */
+    private final int[][] wooshFrames;
+
+    /** Portal blocks pushed out 1 to depth blocks along the facing, for gates without woosh steps. */
+    private final int[][] depthLayers;
+
+    /** The portal blocks. */
+    private final int[] portal;
+
+    private final BlockData structureData;
+    private final BlockData lightData;
+    private final BlockData portalData;
+    private final BlockData irisData;
+    private final BlockData airData;
+
+    private final int lightTicks;
+    private final int wooshTicks;
+
+    /** Middle of the portal and light blocks, which view range is measured from. */
+    private final int centreX;
+    private final int centreY;
+    private final int centreZ;
+
+    /**
+     * Instantiates new frames.
+     */
+    private StargateFrames(final World world, final int[][] lightFrames, final int[][] wooshFrames, final int[][] depthLayers, final int[] portal,
+        final BlockData structureData, final BlockData lightData, final BlockData portalData, final BlockData irisData, final BlockData airData,
+        final int lightTicks, final int wooshTicks)
+    {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        final int[][] bounded = Arrays.copyOf(lightFrames, lightFrames.length + 1);
+        bounded[lightFrames.length] = portal;
+        for (final int[] frame : bounded)
+        {
+            for (int i = 0; i < frame.length; i += 3)
+            {
+                minX = Math.min(minX, frame[i]);
+                minY = Math.min(minY, frame[i + 1]);
+                minZ = Math.min(minZ, frame[i + 2]);
+                maxX = Math.max(maxX, frame[i]);
+                maxY = Math.max(maxY, frame[i + 1]);
+                maxZ = Math.max(maxZ, frame[i + 2]);
+            }
+        }
+        final boolean empty = minX > maxX;
+        this.centreX = empty
+            ? 0
+            : (minX + maxX) >> 1;
+        this.centreY = empty
+            ? 0
+            : (minY + maxY) >> 1;
+        this.centreZ = empty
+            ? 0
+            : (minZ + maxZ) >> 1;
+        this.world = world;
+        this.lightFrames = lightFrames;
+        this.wooshFrames = wooshFrames;
+        this.depthLayers = depthLayers;
+        this.portal = portal;
+        this.structureData = structureData;
+        this.lightData = lightData;
+        this.portalData = portalData;
+        this.irisData = irisData;
+        this.airData = airData;
+        this.lightTicks = lightTicks;
+        this.wooshTicks = wooshTicks;
+    }
+
+    /**
+     * Compiles the frames of a hydrated gate.
+     *
+     * @param s
+     *            the stargate
+     * @return the frames
+     */
+    static StargateFrames compile(final Stargate s)
+    {
+        final StargateShape shape = s.getGateShape();
+        final boolean custom = s.isGateCustom();
+        final Material structure = custom
+            ? s.getGateCustomStructureMaterial()
+            : shape != null
+                ? shape.getShapeStructureMaterial()
+                : Material.OBSIDIAN;
+        final Material light = custom
+            ? s.getGateCustomLightMaterial()
+            : shape != null
+                ? shape.getShapeLightMaterial()
+                : Material.GLOWSTONE;
+        final Material portalMaterial = custom
+            ? s.getGateCustomPortalMaterial()
+            : shape != null
+                ? shape.getShapePortalMaterial()
+                : Material.WATER;
+        final Material iris = custom
+            ? s.getGateCustomIrisMaterial()
+            : shape != null
+                ? shape.getShapeIrisMaterial()
+                : Material.STONE;
+        final int wooshDepth = custom
+            ? s.getGateCustomWooshDepth()
+            : shape != null
+                ? shape.getShapeWooshDepth()
+                : 0;
+        final int lightTicks = custom
+            ? s.getGateCustomLightTicks()
+            : shape != null
+                ? shape.getShapeLightTicks()
+                : 2;
+        final int wooshTicks = custom
+            ? s.getGateCustomWooshTicks()
+            : shape != null
+                ? shape.getShapeWooshTicks()
+                : 2;
+
+        final int[] portal = coordinates(s.getGatePortalBlocks());
+        final int[][] woosh = layers(s.getGateWooshBlocks());
+        final BlockFace facing = s.getGateFacing();
+        int[][] depth = new int[0][];
+        if ((woosh.length == 0) && (wooshDepth > 0) && (facing != null))
+        {
+            depth = new int[wooshDepth][];
+            for (int d = 0; d < wooshDepth; d++)
+            {
+                final int[] layer = new int[portal.length];
+                final int dx = facing.getModX() * (d + 1), dy = facing.getModY() * (d + 1), dz = facing.getModZ() * (d + 1);
+                for (int i = 0; i < portal.length; i += 3)
+                {
+                    layer[i] = portal[i] + dx;
+                    layer[i + 1] = portal[i + 1] + dy;
+                    layer[i + 2] = portal[i + 2] + dz;
+                }
+                depth[d] = layer;
+            }
+        }
+        return new StargateFrames(s.getGateWorld(), layers(s.getGateLightBlocks()), woosh, depth, portal, data(structure, Material.OBSIDIAN),
+            data(light, Material.GLOWSTONE), data(portalMaterial, Material.WATER), data(iris, Material.STONE), Material.AIR.createBlockData(), lightTicks,
+            wooshTicks);
+    }
+
+    /**
+     * Gets the block data of a material, or of the fallback if it is not set.
+     */
+    private static BlockData data(final Material material, final Material fallback)
+    {
+        return (material != null
+            ? material
+            : fallback).createBlockData();
+    }
+
+    /**
+     * Flattens locations into x, y, z triples.
+     */
+    private static int[] coordinates(final List<Location> locations)
+    {
+        if ((locations == null) || locations.isEmpty())
+        {
+            return EMPTY;
+        }
+        final int[] coords = new int[locations.size() * 3];
+        int i = 0;
+        for (final Location l : locations)
+        {
+            coords[i++] = l.getBlockX();
+            coords[i++] = l.getBlockY();
+            coords[i++] = l.getBlockZ();
+        }
+        return coords;
+    }
+
+    /**
+     * Flattens each layer, keeping missing layers as empty frames.
+     */
+    private static int[][] layers(final List<? extends List<Location>> layers)
+    {
+        final int[][] frames = new int[layers.size()][];
+        for (int i = 0; i < frames.length; i++)
+        {
+            frames[i] = coordinates(layers.get(i));
+        }
+        return frames;
+    }
+
+    /**
+     * Gets a frame, or null if there is none at the index.
+     */
+    private static int[] frame(final int[][] frames, final int index)
+    {
+        return (index >= 0) && (index < frames.length)
+            ? frames[index]
+            : null;
+    }
+
+    /**
+     * Gets the block data interior fills draw a material with, reusing the compiled data where it matches.
+     *
+     * @param material
+     *            the material
+     * @return the block data
+     */
+    public BlockData getData(final Material material)
+    {
+        if (material == portalData.getMaterial())
+        {
+            return portalData;
+        }
+        else if (material == irisData.getMaterial())
+        {
+            return irisData;
+        }
+        else if (material == airData.getMaterial())
+        {
+            return airData;
+        }
+        return material.createBlockData();
+    }
+
+    /**
+     * Gets the world.
+     *
+     * @return the world
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Gets the number of lighting iterations, including the unused first.
+     *
+     * @return the light frame count
+     */
+    public int getLightFrameCount()
+    {
+        return lightFrames.length;
+    }
+
+    /**
+     * Gets the light blocks of a lighting iteration.
+     *
+     * @param iteration
+     *            the iteration
+     * @return x, y, z triples, or null if there is no such iteration
+     */
+    public int[] getLightFrame(final int iteration)
+    {
+        return frame(lightFrames, iteration);
+    }
+
+    /**
+     * Gets the number of woosh steps, including the unused first.
+     *
+     * @return the woosh frame count
+     */
+    public int getWooshFrameCount()
+    {
+        return wooshFrames.length;
+    }
+
+    /**
+     * Gets the woosh blocks of a woosh step.
+     *
+     * @param step
+     *            the step
+     * @return x, y, z triples, or null if there is no such step
+     */
+    public int[] getWooshFrame(final int step)
+    {
+        return frame(wooshFrames, step);
+    }
+
+    /**
+     * Gets the woosh depth of a gate without woosh steps, 0 for gates with them.
+     *
+     * @return the depth
+     */
+    public int getWooshDepth()
+    {
+        return depthLayers.length;
+    }
+
+    /**
+     * Gets the portal blocks pushed out along the facing.
+     *
+     * @param depth
+     *            the distance, from 1 to the woosh depth
+     * @return x, y, z triples, or null if out of range
+     */
+    public int[] getDepthLayer(final int depth)
+    {
+        return frame(depthLayers, depth - 1);
+    }
+
+    /**
+     * Gets the portal blocks.
+     *
+     * @return x, y, z triples
+     */
+    public int[] getPortal()
+    {
+        return portal;
+    }
+
+    /**
+     * Gets the structure block data, which unlit light blocks go back to.
+     *
+     * @return the structure data
+     */
+    public BlockData getStructureData()
+    {
+        return structureData;
+    }
+
+    /**
+     * Gets the lit light block data.
+     *
+     * @return the light data
+     */
+    public BlockData getLightData()
+    {
+        return lightData;
+    }
+
+    /**
+     * Gets the portal and woosh block data.
+     *
+     * @return the portal data
+     */
+    public BlockData getPortalData()
+    {
+        return portalData;
+    }
+
+    /**
+     * Gets the iris block data.
+     *
+     * @return the iris data
+     */
+    public BlockData getIrisData()
+    {
+        return irisData;
+    }
+
+    /**
+     * Gets the air block data.
+     *
+     * @return the air data
+     */
+    public BlockData getAirData()
+    {
+        return airData;
+    }
+
+    /**
+     * Gets the ticks between lighting iterations.
+     *
+     * @return the light ticks
+     */
+    public int getLightTicks()
+    {
+        return lightTicks;
+    }
+
+    /**
+     * Gets the ticks between woosh steps.
+     *
+     * @return the woosh ticks
+     */
+    public int getWooshTicks()
+    {
+        return wooshTicks;
+    }
+
+    /**
+     * Gets the x of the middle of the gate.
+     *
+     * @return the centre x
+     */
+    public int getCentreX()
+    {
+        return centreX;
+    }
+
+    /**
+     * Gets the y of the middle of the gate.
+     *
+     * @return the centre y
+     */
+    public int getCentreY()
+    {
+        return centreY;
+    }
+
+    /**
+     * Gets the z of the middle of the gate.
+     *
+     * @return the centre z
+     */
+    public int getCentreZ()
+    {
+        return centreZ;
+    }
+
+    /**
+     * Gets the square of the distance from the middle of the gate to a location, in whole blocks.
+     *
+     * @param location
+     *            the location
+     * @return the distance squared
+     */
+    public long distanceSquared(final Location location)
+    {
+        final long dx = location.getBlockX() - centreX, dy = location.getBlockY() - centreY, dz = location.getBlockZ() - centreZ;
+        return (dx * dx) + (dy * dy) + (dz * dz);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * WormholeXtreme network gate set.
+ * Concurrent set of the gates on a network, each holding an ordinal slot in insertion order.
+ * Removing a gate empties its slot instead of shifting the others, so ordinals stay put for sign cycling.
+ * Add and remove are amortised O(1) and serialise on a writer lock; readers never take it and see
+ * a weakly consistent view, like the iterators of the concurrent collections.
+ * Ordinals are never renumbered: the table grows with its slots kept at their indices, and only starts
+ * over once the set is empty.
+ */
+public class StargateGateSet implements Iterable<Stargate>
+{
+
+    /**
+     * A slot table. Replaced as a whole when it grows or is compacted, so a reader holding one
+     * always sees a slot count that fits its array.
+     */
+    private static final class Table
+    {
+
+        /** The slots. */
+        private final AtomicReferenceArray<Stargate> slots;
+
+        /** The next free ordinal. */
+        private volatile int end;
+
+        Table(final int capacity)
+        {
+            slots = new AtomicReferenceArray<Stargate>(capacity);
+        }
+    }
+
+    /** The smallest table. */
+    private static final int MIN_CAPACITY = 8;
+
+    /** Serialises writers. */
+    private final Object writeLock = new Object();
+
+    /** Gate to ordinal. */
+    private final ConcurrentHashMap<Stargate, Integer> ordinals = new ConcurrentHashMap<Stargate, Integer>();
+
+    /** The current table. */
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    /**
+     * Add the gate at the end of the set.
+     *
+     * @param stargate
+     *            the stargate
+     * @return true, if the gate was not already in the set
+     */
+    public boolean add(final Stargate stargate)
+    {
+        if (stargate == null)
+        {
+            return false;
+        }
+        synchronized (writeLock)
+        {
+            if (ordinals.containsKey(stargate))
+            {
+                return false;
+            }
+            Table t = table;
+            if (t.end == t.slots.length())
+            {
+                t = grow(t);
+            }
+            final int ordinal = t.end;
+            t.slots.set(ordinal, stargate);
+            ordinals.put(stargate, ordinal);
+            t.end = ordinal + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Remove every gate.
+     */
+    public void clear()
+    {
+        synchronized (writeLock)
+        {
+            ordinals.clear();
+            table = new Table(MIN_CAPACITY);
+        }
+    }
+
+    /**
+     * Checks if the gate is in the set.
+     *
+     * @param stargate
+     *            the stargate
+     * @return true, if present
+     */
+    public boolean contains(final Stargate stargate)
+    {
+        return (stargate != null) && ordinals.containsKey(stargate);
+    }
+
+    /**
+     * Gets the gate in the ordinal slot.
+     *
+     * @param ordinal
+     *            the ordinal
+     * @return the gate, or null if the slot is empty or out of range
+     */
+    public Stargate get(final int ordinal)
+    {
+        final Table t = table;
+        return (ordinal >= 0) && (ordinal < t.end)
+            ? t.slots.get(ordinal)
+            : null;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return true, if empty
+     */
+    public boolean isEmpty()
+    {
+        return ordinals.isEmpty();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<Stargate> iterator()
+    {
+        final Table t = table;
+        final int end = t.end;
+        return new Iterator<Stargate>()
+        {
+
+            private int cursor;
+
+            /** The gate next returns, read when found so a later removal cannot take it back. */
+            private Stargate next = advance();
+
+            private Stargate advance()
+            {
+                while (cursor < end)
+                {
+                    final Stargate stargate = t.slots.get(cursor++);
+                    if (stargate != null)
+                    {
+                        return stargate;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public Stargate next()
+            {
+                final Stargate stargate = next;
+                if (stargate == null)
+                {
+                    throw new NoSuchElementException();
+                }
+                next = advance();
+                return stargate;
+            }
+        };
+    }
+
+    /**
+     * Gets the ordinal of the gate.
+     *
+     * @param stargate
+     *            the stargate
+     * @return the ordinal, or -1 if the gate is not in the set
+     */
+    public int ordinalOf(final Stargate stargate)
+    {
+        final Integer ordinal = stargate != null
+            ? ordinals.get(stargate)
+            : null;
+        return ordinal != null
+            ? ordinal
+            : -1;
+    }
+
+    /**
+     * Copy the slots into a table twice the size, each at the same ordinal.
+     * Caller holds the writer lock.
+     *
+     * @param old
+     *            the old table
+     * @return the new table, already published
+     */
+    private Table grow(final Table old)
+    {
+        final Table t = new Table(old.slots.length() * 2);
+        for (int i = 0; i < old.end; i++)
+        {
+            t.slots.set(i, old.slots.get(i));
+        }
+        t.end = old.end;
+        table = t;
+        return t;
+    }
+
+    /**
+     * Remove the gate, leaving its slot empty.
+     *
+     * @param stargate
+     *            the stargate
+     * @return true, if the gate was in the set
+     */
+    public boolean remove(final Stargate stargate)
+    {
+        if (stargate == null)
+        {
+            return false;
+        }
+        synchronized (writeLock)
+        {
+            final Integer ordinal = ordinals.remove(stargate);
+            if (ordinal == null)
+            {
+                return false;
+            }
+            table.slots.set(ordinal, null);
+            if (ordinals.isEmpty())
+            {
+                // No gate holds an ordinal any more, so the slots can start over.
+                table = new Table(MIN_CAPACITY);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of gates.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return ordinals.size();
+    }
+
+    /**
+     * Copy the gates into a list, in ordinal order.
+     *
+     * @return the list
+     */
+    public List<Stargate> snapshot()
+    {
+        final List<Stargate> list = new ArrayList<Stargate>(size());
+        for (final Stargate stargate : this)
+        {
+            list.add(stargate);
+        }
+        return list;
+    }
+
+    /**
+     * Copy the ordinal slots into an array, empty slots left null, so a reader can cycle
+     * through ordinals against one consistent view.
+     *
+     * @return the slots, indexed by ordinal
+     */
+    public Stargate[] toOrdinalArray()
+    {
+        final Table t = table;
+        final Stargate[] slots = new Stargate[t.end];
+        for (int i = 0; i < slots.length; i++)
+        {
+            slots[i] = t.slots.get(i);
+        }
+        return slots;
+    }
+}
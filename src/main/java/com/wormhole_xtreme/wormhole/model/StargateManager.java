@@ -19,15 +19,20 @@
 package com.wormhole_xtreme.wormhole.model;
 
 import com.wormhole_xtreme.wormhole.WormholeXTreme;
-import com.wormhole_xtreme.wormhole.database.StargateRepository;
-import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable;
+import com.wormhole_xtreme.wormhole.database.GateStore;
+import com.wormhole_xtreme.wormhole.database.StargateWriteQueue;
+import com.wormhole_xtreme.wormhole.logic.StargateClientRenderer;
 import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable.ActionToTake;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 // TODO: Auto-generated Javadoc
@@ -38,13 +43,22 @@ import java.util.logging.Level;
  */
 public class StargateManager
 {
-    // A list of all blocks contained by all stargates. Makes for easy indexing when a player is trying
+    // Chunks holding any gate block, animation block or protection envelope. Lets high frequency listeners bail out early.
+    private static final StargateChunkSet gateChunks = new StargateChunkSet();
+
+    // Index of all blocks contained by all stargates. Makes for easy indexing when a player is trying
     // to enter a gate or if water is trying to flow out, also will contain the stone buttons used to activate.
-    private static final ConcurrentHashMap<Location, Stargate> allGateBlocks = new ConcurrentHashMap<>();
+    private static final StargateBlockIndex<Stargate> allGateBlocks = new StargateBlockIndex<>(gateChunks);
     
     // List of All stargates indexed by name. Useful for dialing and such
     private static final ConcurrentHashMap<String, Stargate> stargateList = new ConcurrentHashMap<>();
     
+    // Stargates partitioned by world UID, so a world's gates can be attached and detached together.
+    private static final ConcurrentHashMap<UUID, Set<Stargate>> worldStargates = new ConcurrentHashMap<>();
+
+    // Stargates indexed by database id. Resolves saved dial and sign targets without walking every gate.
+    private static final ConcurrentHashMap<Integer, Stargate> stargateIds = new ConcurrentHashMap<>();
+    
     // List of stargates built but not named. Indexed by the player that built it.
     private static final ConcurrentHashMap<Player, Stargate> incompleteStargates = new ConcurrentHashMap<>();
     
@@ -54,14 +68,41 @@ public class StargateManager
     // List of networks indexed by their name
     private static final ConcurrentHashMap<String, StargateNetwork> stargateNetworks = new ConcurrentHashMap<>();
     
+    // Case-insensitive gate name tries indexed by network name, "Public" for gates without a network. Backs tab completion.
+    private static final ConcurrentHashMap<String, StargateNameTrie> gateNames = new ConcurrentHashMap<>();
+
+    // Stargates indexed by normalised owner name. Keeps build restriction checks from walking every gate.
+    private static final ConcurrentHashMap<String, Set<Stargate>> ownerStargates = new ConcurrentHashMap<>();
+
     // List of players ready to build a stargate, with the shape they are trying to build.
     private static final ConcurrentHashMap<Player, StargateShape> playerBuilders = new ConcurrentHashMap<>();
 
-    // List of blocks that are part of an active animation. Only use this to make sure water doesn't flow everywhere.
-    private static final ConcurrentHashMap<Location, Block> openingAnimationBlocks = new ConcurrentHashMap<>();
+    // Index of blocks that are part of an active animation. Only use this to make sure water doesn't flow everywhere.
+    private static final StargateBlockIndex<Stargate> openingAnimationBlocks = new StargateBlockIndex<>(gateChunks);
+
+    // Portal blocks of open gates only. Movement listeners consult this instead of allGateBlocks.
+    private static final StargateBlockIndex<Stargate> activePortalBlocks = new StargateBlockIndex<>();
+
+    // Gates that are currently open, so movement listeners can skip all work when there are none.
+    private static final Set<Stargate> activeStargates = ConcurrentHashMap.newKeySet();
+
+    // Grid of gate bounding boxes per world, for nearest gate and proximity lookups.
+    private static final StargateSpatialIndex gateLocations = new StargateSpatialIndex(gateChunks);
     
-    // Repository for database operations
-    private static StargateRepository stargateRepository;
+    // Store the gates are kept in
+    private static GateStore gateStore;
+
+    // Write-behind queue for gate saves and deletes
+    private static StargateWriteQueue writeQueue;
+
+    // Gates indexed per chunk while streaming them in at startup
+    private static final int LOAD_CHUNK_SIZE = 256;
+
+    // How long a world load waits for queued gate saves before reading its gates back
+    private static final long ATTACH_FLUSH_MILLIS = 2000;
+
+    // Hydrated gates whose chunks have unloaded, with when the first of them did. Dropped back to descriptors once idle.
+    private static final ConcurrentHashMap<Stargate, Long> unloadedStargates = new ConcurrentHashMap<>();
 
     /**
      * Initializes the StargateManager with the plugin instance.
@@ -69,10 +110,50 @@ public class StargateManager
      * @param plugin The WormholeXTreme plugin instance
      */
     public static void initialize(WormholeXTreme plugin) {
-        stargateRepository = plugin.getStargateRepository();
+        gateStore = plugin.getGateStore();
+        writeQueue = plugin.getStargateWriteQueue();
         loadAllGates();
     }
-    
+
+    /**
+     * Drops every gate from memory and loads them again from the store, as after an import.
+     * Open gates are shut down first. Call on the main thread, once queued writes are flushed.
+     */
+    public static void reloadAllGates() {
+        unloadAllGates();
+        loadAllGates();
+    }
+
+    /**
+     * Drops every gate from memory, shutting down open gates first, so nothing can dial or save them
+     * until {@link #reloadAllGates()}. Call on the main thread.
+     *
+     * @return the gates dropped
+     */
+    public static List<Stargate> unloadAllGates() {
+        for (final Stargate stargate : activeStargates) {
+            if (stargate.isGateActive()) {
+                stargate.shutdownStargate(false);
+            }
+        }
+        for (final Stargate stargate : activatedStargates.values()) {
+            stargate.stopActivationTimer();
+        }
+        final List<Stargate> dropped = new ArrayList<>(stargateList.values());
+        // Leave the network lists first, so no sign fixups are scheduled for gates about to go.
+        for (final Stargate stargate : dropped) {
+            if (stargate.getGateNetwork() != null) {
+                stargate.getGateNetwork().getNetworkGateList().remove(stargate);
+                stargate.getGateNetwork().getNetworkSignGateList().remove(stargate);
+            }
+        }
+        for (final Stargate stargate : dropped) {
+            removeStargateFromMemory(stargate);
+        }
+        stargateNetworks.clear();
+        return dropped;
+    }
+
     /**
      * Loads all stargates from the database into memory.
      */
@@ -80,19 +161,56 @@ public class StargateManager
         try {
             // Clear existing data
             allGateBlocks.clear();
+            gateLocations.clear();
+            ownerStargates.clear();
+            gateNames.clear();
             stargateList.clear();
+            stargateIds.clear();
+            worldStargates.clear();
             incompleteStargates.clear();
             activatedStargates.clear();
+            unloadedStargates.clear();
             
-            // Load all stargates from the database
-            List<Stargate> stargates = stargateRepository.findAll();
-            
-            // Add each stargate to memory
+            // Stream the stargates in, indexing each chunk as it is decoded
+            final List<Stargate> stargates = new ArrayList<>();
+            final List<Stargate> outdated = new ArrayList<>();
+            gateStore.streamAll(LOAD_CHUNK_SIZE, chunk -> {
+                for (Stargate stargate : chunk) {
+                    addStargateToMemory(stargate);
+                }
+                stargates.addAll(chunk);
+            }, outdated::add);
+            // Gates load as descriptors; build the ones already in view or still open
+            int hydrated = 0;
             for (Stargate stargate : stargates) {
-                addStargateToMemory(stargate);
+                if (!stargate.isGateHydrated() && (stargate.isGateActive() || stargate.isGateLightsActive() || isAnyChunkLoaded(stargate))
+                        && hydrateStargate(stargate)) {
+                    hydrated++;
+                }
+            }
+            WormholeXTreme.getLog().fine("Hydrated " + hydrated + " of " + stargates.size() + " stargates at startup");
+            for (Stargate stargate : stargates) {
+                resolveSavedTargets(stargate);
+            }
+            addSavedActiveStargates(stargates);
+            // Rows from before the indexed columns: write them again so area queries find them
+            if (!outdated.isEmpty()) {
+                WormholeXTreme.getLog().info("Rewriting " + outdated.size() + " stargates with indexed geometry");
+                for (Stargate stargate : outdated) {
+                    stargate.markGateDirty(Stargate.DIRTY_STRUCTURE);
+                    saveStargate(stargate);
+                }
+            }
+            // Rows from before packed geometry load with their blocks; drop the ones out of view to descriptors
+            int dehydrated = 0;
+            for (Stargate stargate : stargates) {
+                if (stargate.isGateHydrated() && !isAnyChunkLoaded(stargate) && dehydrateStargate(stargate)) {
+                    dehydrated++;
+                }
+            }
+            if (dehydrated > 0) {
+                WormholeXTreme.getLog().fine("Dehydrated " + dehydrated + " stargates loaded with their blocks");
             }
-            
-            WormholeXTreme.getLog().info("Loaded " + stargates.size() + " stargates from the database");
         } catch (Exception e) {
             WormholeXTreme.getLog().log(Level.SEVERE, "Failed to load stargates from database", e);
         }
@@ -106,11 +224,21 @@ public class StargateManager
     private static void addStargateToMemory(Stargate stargate) {
         // Add to stargate list
         stargateList.put(stargate.getGateName().toLowerCase(), stargate);
+        if (stargate.getGateId() >= 0) {
+            stargateIds.put(stargate.getGateId(), stargate);
+        }
+        if (stargate.getGateWorld() != null) {
+            worldStargates.computeIfAbsent(stargate.getGateWorld().getUID(), k -> ConcurrentHashMap.newKeySet()).add(stargate);
+        }
         
-        // Add block indices
-        for (Block block : stargate.getGateBlocks()) {
-            allGateBlocks.put(block.getLocation(), stargate);
+        // Add block indices; a descriptor's blocks are indexed when it is hydrated
+        if (stargate.isGateHydrated()) {
+            indexGateBlocks(stargate);
+            stargate.setGateProtectionEnvelope(StargateProtectionEnvelope.of(stargate));
         }
+        gateLocations.add(stargate);
+        indexOwner(stargate);
+        indexName(stargate);
         
         // Add to network if applicable
         if (stargate.getGateNetwork() != null) {
@@ -142,10 +270,50 @@ public class StargateManager
      */
     public static void addBlockIndex(Block block, Stargate stargate) {
         if (block != null && stargate != null) {
-            allGateBlocks.put(block.getLocation(), stargate);
+            allGateBlocks.put(block, stargate);
+        }
+    }
+
+    /**
+     * Adds the portal blocks of a gate that has just opened to the active portal index.
+     * 
+     * @param stargate The stargate that opened
+     */
+    public static void addActiveStargate(Stargate stargate) {
+        if (stargate != null && activeStargates.add(stargate)) {
+            for (final Location l : stargate.getGatePortalBlocks()) {
+                activePortalBlocks.put(l, stargate);
+            }
         }
     }
 
+    /**
+     * Adds the gates loaded as open to the active portal index. Their active flag comes back with the rest of
+     * the row, so redialing their saved target finds them already active and does not add them itself.
+     * 
+     * @param stargates The gates just loaded
+     */
+    private static void addSavedActiveStargates(List<Stargate> stargates) {
+        for (final Stargate stargate : stargates) {
+            if (stargate.isGateActive()) {
+                addActiveStargate(stargate);
+            }
+        }
+    }
+
+    /**
+     * Adds a block to the opening animation index so fluids and physics leave it alone.
+     * 
+     * @param stargate The gate animating it
+     * @param world The world
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     */
+    public static void addOpeningAnimationBlock(Stargate stargate, World world, int x, int y, int z) {
+        openingAnimationBlocks.put(world, x, y, z, stargate);
+    }
+
     /**
      * Adds the gate to network.
      * 
@@ -159,11 +327,9 @@ public class StargateManager
 
         StargateNetwork net;
         if ((net = getStargateNetworks().get(network)) != null) {
-            synchronized (net.getNetworkGateLock()) {
-                net.getNetworkGateList().add(gate);
-                if (gate.isGateSignPowered()) {
-                    net.getNetworkSignGateList().add(gate);
-                }
+            net.getNetworkGateList().add(gate);
+            if (gate.isGateSignPowered()) {
+                net.getNetworkSignGateList().add(gate);
             }
         }
     }
@@ -189,33 +355,63 @@ public class StargateManager
     }
 
     /**
-     * Adds a stargate to the list of all stargates and saves it to the database.
+     * Adds a stargate to the list of all stargates and queues a save to the database.
+     * A new gate is indexed by id once the save has assigned it one.
      *
      * @param stargate The stargate to add
-     * @return true if the stargate was added successfully, false otherwise
+     * @return true if the stargate was added
      */
     public static boolean addStargate(Stargate stargate) {
         if (stargate == null) {
             return false;
         }
         
-        try {
-            // Save to database
-            boolean success = stargateRepository.saveStargate(stargate);
-            
-            if (success) {
-                // Add to memory
-                addStargateToMemory(stargate);
-                return true;
+        addStargateToMemory(stargate);
+        saveStargate(stargate).thenAccept(saved -> {
+            if (saved && stargate.getGateId() >= 0 && stargateList.get(stargate.getGateName().toLowerCase()) == stargate) {
+                stargateIds.putIfAbsent(stargate.getGateId(), stargate);
             }
-            
-            return false;
+        });
+        return true;
+    }
+
+    /**
+     * Queues a save of the stargate as it is now. Repeated saves of a gate still waiting to be
+     * written are merged, so state changes can save freely.
+     *
+     * @param stargate The stargate to save
+     * @return Completes on the database writer thread with whether the save succeeded
+     */
+    public static CompletableFuture<Boolean> saveStargate(Stargate stargate) {
+        if (stargate == null || stargate.getGateWorld() == null || writeQueue == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        try {
+            return writeQueue.save(stargate);
         } catch (Exception e) {
-            WormholeXTreme.getLog().log(Level.SEVERE, "Failed to save stargate to database", e);
-            return false;
+            WormholeXTreme.getLog().log(Level.SEVERE, "Failed to queue save of stargate: " + stargate.getGateName(), e);
+            return CompletableFuture.completedFuture(false);
         }
     }
 
+    /**
+     * Change the owner of a stargate, keeping the owner index in step.
+     * 
+     * @param stargate The stargate
+     * @param owner The new owner name
+     */
+    public static void changeStargateOwner(Stargate stargate, String owner) {
+        if (stargate == null) {
+            return;
+        }
+        final boolean indexed = unindexOwner(stargate);
+        stargate.setGateOwner(owner);
+        if (indexed) {
+            indexOwner(stargate);
+        }
+        saveStargate(stargate);
+    }
+
     /**
      * Complete stargate.
      * 
@@ -290,44 +486,81 @@ public class StargateManager
     }
 
     /**
-     * Find the closest stargate.
+     * Find the closest stargate in the same world, measured to the gate teleport location.
      * 
      * @param self Location of the local object.
      * @return The closest stargate to the local object.
      */
     public static Stargate findClosestStargate(Location self) {
-        Stargate stargate = null;
-        if (self != null) {
-            final ArrayList<Stargate> gates = StargateManager.getAllGates();
-            double man = Double.MAX_VALUE;
-            for (final Stargate s : gates) {
-                final Location t = s.getGatePlayerTeleportLocation();
-                final double distance = getSquaredDistance(self, t);
-                if (distance < man) {
-                    man = distance;
-                    stargate = s;
-                }
-            }
+        return gateLocations.findNearest(self);
+    }
+
+    /**
+     * Find a stargate whose protection envelope covers the block, for burn and ignite protection.
+     * 
+     * @param block The block.
+     * @param filter Only return stargates passing the filter, may be null.
+     * @return The protecting stargate, or null.
+     */
+    public static Stargate findStargateProtectingBlock(Block block, Predicate<Stargate> filter) {
+        return gateLocations.findProtecting(block.getWorld(), block.getX(), block.getY(), block.getZ(), false, filter);
+    }
+
+    /**
+     * Find a stargate whose protection envelope covers a player at the location, for fire and lava damage protection.
+     * 
+     * @param self Location of the player.
+     * @param filter Only return stargates passing the filter, may be null.
+     * @return The protecting stargate, or null.
+     */
+    public static Stargate findStargateProtectingPlayer(Location self, Predicate<Stargate> filter) {
+        return gateLocations.findProtecting(self.getWorld(), self.getBlockX(), self.getBlockY(), self.getBlockZ(), true, filter);
+    }
+
+    /**
+     * Find every stargate with a block within the radius of the location.
+     * 
+     * @param self Location of the local object.
+     * @param radius The radius in blocks.
+     * @return The stargates in range, empty if none.
+     */
+    public static List<Stargate> findStargatesWithin(Location self, double radius) {
+        return gateLocations.findWithin(self, radius);
+    }
+
+    /**
+     * Find the names of gates on the network starting with the prefix, case-insensitively and in alphabetical order.
+     * 
+     * @param network The network name, "Public" for gates without a network
+     * @param prefix The name prefix
+     * @param limit The most names to return
+     * @return the matching gate names
+     */
+    public static List<String> findStargateNames(String network, String prefix, int limit) {
+        final List<String> names = new ArrayList<>();
+        final StargateNameTrie trie = gateNames.get(network);
+        if (trie != null && limit > 0) {
+            trie.collect(prefix, limit, names);
         }
-        return stargate;
+        return names;
     }
 
     /**
-     * Gets the activated stargates.
+     * Gets the names of networks that hold at least one gate, "Public" for gates without a network.
      * 
-     * @return An unmodifiable map of activated stargates by player
+     * @return the network names
      */
-    public static Map<Player, Stargate> getActivatedStargates() {
-        return Collections.unmodifiableMap(activatedStargates);
+    public static Set<String> getGateNetworkNames() {
+        return Collections.unmodifiableSet(gateNames.keySet());
     }
 
     /**
-     * Gets all gate blocks.
+     * Gets the activated stargates.
      * 
-     * @return An unmodifiable map of all gate blocks
+     * @return An unmodifiable map of activated stargates by player
      */
-    public static Map<Location, Stargate> getAllGateBlocks() {
-        return Collections.unmodifiableMap(allGateBlocks);
+    public static Map<Player, Stargate> getActivatedStargates() {
+        return Collections.unmodifiableMap(activatedStargates);
     }
 
     /**
@@ -340,6 +573,19 @@ public class StargateManager
     return new ArrayList<>(stargateList.values());
     }
 
+    /**
+     * Gets the open gate whose portal holds the block coordinates.
+     * 
+     * @param world The world
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @return the open gate, or null
+     */
+    public static Stargate getActiveGateFromPortal(World world, int x, int y, int z) {
+        return activePortalBlocks.get(world, x, y, z);
+    }
+
     /**
      * Gets the gate from block.
      * 
@@ -347,11 +593,20 @@ public class StargateManager
      * @return the gate from block
      */
     public static Stargate getGateFromBlock(Block block) {
-        if (getAllGateBlocks().containsKey(block.getLocation())) {
-            return getAllGateBlocks().get(block.getLocation());
-        }
+        return allGateBlocks.get(block);
+    }
 
-        return null;
+    /**
+     * Gets the gate indexed at the block coordinates, without needing a Block or Location.
+     * 
+     * @param world The world
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @return the gate at the coordinates, or null
+     */
+    public static Stargate getGateFromBlock(World world, int x, int y, int z) {
+        return allGateBlocks.get(world, x, y, z);
     }
 
     /**
@@ -364,12 +619,25 @@ public class StargateManager
     }
 
     /**
-     * Gets the opening animation blocks.
+     * Gets the number of stargates owned by a player.
+     * 
+     * @param owner The owner name, compared case-insensitively
+     * @return the number of stargates owned
+     */
+    public static int getOwnerStargateCount(String owner) {
+        final Set<Stargate> gates = owner != null ? ownerStargates.get(normalizeOwner(owner)) : null;
+        return gates != null ? gates.size() : 0;
+    }
+
+    /**
+     * Gets the stargates owned by a player.
      * 
-     * @return An unmodifiable map of opening animation blocks by location
+     * @param owner The owner name, compared case-insensitively
+     * @return a copy of the stargates owned, empty if none
      */
-    public static Map<Location, Block> getOpeningAnimationBlocks() {
-        return openingAnimationBlocks;
+    public static List<Stargate> getOwnerStargates(String owner) {
+        final Set<Stargate> gates = owner != null ? ownerStargates.get(normalizeOwner(owner)) : null;
+        return gates != null ? new ArrayList<>(gates) : new ArrayList<>();
     }
 
     /**
@@ -407,7 +675,10 @@ public class StargateManager
     private static double getSquaredDistance(Location self, Location target) {
         double distance = Double.MAX_VALUE;
         if ((self != null) && (target != null)) {
-            distance = Math.pow(self.getX() - target.getX(), 2) + Math.pow(self.getY() - target.getY(), 2) + Math.pow(self.getZ() - target.getZ(), 2);
+            final double dx = self.getX() - target.getX();
+            final double dy = self.getY() - target.getY();
+            final double dz = self.getZ() - target.getZ();
+            distance = (dx * dx) + (dy * dy) + (dz * dz);
         }
         return distance;
     }
@@ -429,7 +700,7 @@ public class StargateManager
         // If not found in memory, try to load from database
         if (stargate == null) {
             try {
-                stargate = stargateRepository.findByName(name).orElse(null);
+                stargate = gateStore.findByName(name).orElse(null);
                 
                 // If found in database, add to memory
                 if (stargate != null) {
@@ -443,6 +714,16 @@ public class StargateManager
         return stargate;
     }
 
+    /**
+     * Gets a stargate by its database id.
+     * 
+     * @param gateId The gate id
+     * @return the stargate, or null if no loaded gate has that id
+     */
+    public static Stargate getStargateById(int gateId) {
+        return stargateIds.get(gateId);
+    }
+
     /**
      * Gets the stargate list.
      * 
@@ -486,7 +767,156 @@ public class StargateManager
      * @return true, if is block in gate
      */
     public static boolean isBlockInGate(Block block) {
-        return getAllGateBlocks().containsKey(block.getLocation()) || getOpeningAnimationBlocks().containsKey(block.getLocation());
+        return isBlockInGate(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Checks if the block coordinates are in a gate or an opening animation.
+     * 
+     * @param world The world
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @return true, if is block in gate
+     */
+    public static boolean isBlockInGate(World world, int x, int y, int z) {
+        return allGateBlocks.contains(world, x, y, z) || openingAnimationBlocks.contains(world, x, y, z);
+    }
+
+    /**
+     * Checks if the block's chunk holds any gate block, animation block or protection envelope.
+     * Listeners call this first and return when it is false.
+     * 
+     * @param block The block to check
+     * @return true, if the chunk may concern a gate
+     */
+    public static boolean isGateChunk(Block block) {
+        return gateChunks.contains(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    /**
+     * Add the stargate to the owner index.
+     * 
+     * @param stargate The stargate
+     */
+    private static void indexOwner(Stargate stargate) {
+        if (stargate.getGateOwner() != null) {
+            ownerStargates.computeIfAbsent(normalizeOwner(stargate.getGateOwner()), k -> ConcurrentHashMap.newKeySet()).add(stargate);
+        }
+    }
+
+    /**
+     * Add the stargate to the name trie of its network.
+     * 
+     * @param stargate The stargate
+     */
+    private static void indexName(Stargate stargate) {
+        gateNames.compute(getNameNetwork(stargate), (k, v) -> {
+            final StargateNameTrie trie = v != null ? v : new StargateNameTrie();
+            trie.add(stargate);
+            return trie;
+        });
+    }
+
+    /**
+     * Remove the stargate from the name trie of its network, dropping the trie once empty.
+     * 
+     * @param stargate The stargate
+     */
+    private static void unindexName(Stargate stargate) {
+        gateNames.computeIfPresent(getNameNetwork(stargate), (k, v) -> {
+            v.remove(stargate);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    /**
+     * Gets the network name a gate is listed under in the name tries.
+     * 
+     * @param stargate The stargate
+     * @return the network name, "Public" if the gate has no network
+     */
+    private static String getNameNetwork(Stargate stargate) {
+        return stargate.getGateNetwork() != null ? stargate.getGateNetwork().getNetworkName() : "Public";
+    }
+
+    /**
+     * Normalise an owner name into an owner index key.
+     * 
+     * @param owner The owner name
+     * @return the owner key
+     */
+    private static String normalizeOwner(String owner) {
+        return owner.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Remove the stargate from the owner index.
+     * 
+     * @param stargate The stargate
+     * @return true, if the stargate was indexed
+     */
+    private static boolean unindexOwner(Stargate stargate) {
+        if (stargate.getGateOwner() == null) {
+            return false;
+        }
+        final String key = normalizeOwner(stargate.getGateOwner());
+        final Set<Stargate> gates = ownerStargates.get(key);
+        if (gates == null || !gates.remove(stargate)) {
+            return false;
+        }
+        ownerStargates.computeIfPresent(key, (k, v) -> v.isEmpty() ? null : v);
+        return true;
+    }
+
+    /**
+     * Index every structure and portal block of the gate.
+     * 
+     * @param stargate The stargate
+     */
+    private static void indexGateBlocks(Stargate stargate) {
+        for (final Location l : stargate.getGateStructureBlocks()) {
+            allGateBlocks.put(l, stargate);
+        }
+        for (final Location l : stargate.getGatePortalBlocks()) {
+            allGateBlocks.put(l, stargate);
+        }
+    }
+
+    /**
+     * Remove every structure and portal block of the gate from the index.
+     * Blocks since claimed by another gate are left alone.
+     * 
+     * @param stargate The stargate
+     */
+    private static void unindexGateBlocks(Stargate stargate) {
+        for (final Location l : stargate.getGateStructureBlocks()) {
+            allGateBlocks.remove(l.getWorld(), l.getBlockX(), l.getBlockY(), l.getBlockZ(), stargate);
+        }
+        for (final Location l : stargate.getGatePortalBlocks()) {
+            allGateBlocks.remove(l.getWorld(), l.getBlockX(), l.getBlockY(), l.getBlockZ(), stargate);
+        }
+    }
+
+    /**
+     * Checks if any stargate has a block within the radius of the location.
+     * Cheap when nothing is nearby, so listeners can use it to return early.
+     * 
+     * @param self Location of the local object.
+     * @param radius The radius in blocks.
+     * @return true, if a stargate is in range
+     */
+    public static boolean isStargateWithin(Location self, double radius) {
+        return gateLocations.isAnyWithin(self, radius);
+    }
+
+    /**
+     * Checks if any stargate is currently open.
+     * 
+     * @return true, if at least one stargate is open
+     */
+    public static boolean isAnyStargateActive() {
+        return !activeStargates.isEmpty();
     }
 
     /**
@@ -522,10 +952,35 @@ public class StargateManager
      */
     public static void removeBlockIndex(Block block) {
         if (block != null) {
-            getAllGateBlocks().remove(block.getLocation());
+            allGateBlocks.remove(block);
+        }
+    }
+
+    /**
+     * Removes the portal blocks of a gate that has just closed from the active portal index.
+     * 
+     * @param stargate The stargate that closed
+     */
+    public static void removeActiveStargate(Stargate stargate) {
+        if (stargate != null && activeStargates.remove(stargate)) {
+            for (final Location l : stargate.getGatePortalBlocks()) {
+                activePortalBlocks.remove(l.getWorld(), l.getBlockX(), l.getBlockY(), l.getBlockZ(), stargate);
+            }
         }
     }
 
+    /**
+     * Removes a block from the opening animation index.
+     * 
+     * @param world The world
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     */
+    public static void removeOpeningAnimationBlock(World world, int x, int y, int z) {
+        openingAnimationBlocks.remove(world, x, y, z, null);
+    }
+
     /**
      * Removes an incomplete stargate from the list.
      * 
@@ -536,56 +991,340 @@ public class StargateManager
     }
 
     /**
-     * This method removes a stargate from the list of all stargates and deletes it from the database.
+     * This method removes a stargate from the list of all stargates and queues its delete from the database.
      * 
      * @param stargate The stargate to remove
-     * @return true if the stargate was removed successfully, false otherwise
+     * @return true if the stargate was removed
      */
     public static boolean removeStargate(Stargate stargate) {
         if (stargate == null) {
             return false;
         }
         
-        try {
-            // Remove from database
-            boolean success = stargateRepository.deleteStargate(stargate);
-            if (success) {
-                // Remove from memory
-                stargateList.remove(stargate.getGateName().toLowerCase());
-                // Remove block indices
-                for (Block block : stargate.getGateBlocks()) {
-                    allGateBlocks.remove(block.getLocation());
-                }
-                // Remove sign gate references
-                if (stargate.getGateNetwork() != null) {
-                    List<Stargate> signGateList = stargate.getGateNetwork().getNetworkSignGateList();
-                    signGateList.remove(stargate);
-                    for (final Stargate s2 : signGateList) {
-                        if ((s2.getGateDialSignTarget() != null) && (s2.getGateDialSignTarget().getGateId() == stargate.getGateId()) && s2.isGateSignPowered()) {
-                            s2.setGateDialSignTarget(null);
-                            if (signGateList.size() > 1) {
-                                s2.setGateDialSignIndex(0);
-                                WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(s2, ActionToTake.DIAL_SIGN_CLICK));
-                                // s2.teleportSignClicked();
-                            }
-                        }
+        removeStargateFromMemory(stargate);
+        if (writeQueue != null) {
+            writeQueue.delete(stargate);
+        }
+        return true;
+    }
+
+    /**
+     * Reconnect a freshly loaded stargate to the dial and sign targets it was saved with.
+     * Call once every gate is in memory, so targets loaded after the gate still resolve.
+     * 
+     * @param stargate The stargate
+     */
+    static void resolveSavedTargets(Stargate stargate) {
+        if (stargate.getGateTempTargetId() >= 0) {
+            final Stargate target = stargateIds.get((int) stargate.getGateTempTargetId());
+            if (target != null) {
+                stargate.dialStargate(target, true);
+            }
+        }
+        if (stargate.getGateTempSignTarget() >= 0) {
+            final Stargate target = stargateIds.get((int) stargate.getGateTempSignTarget());
+            if (target != null) {
+                stargate.setGateDialSignTarget(target);
+            }
+        }
+    }
+
+    /**
+     * Removes a stargate from every in-memory registry, leaving the database alone.
+     * 
+     * @param stargate The stargate to remove
+     */
+    private static void removeStargateFromMemory(Stargate stargate) {
+        // Remove from memory
+        stargateList.remove(stargate.getGateName().toLowerCase(), stargate);
+        stargateIds.remove(stargate.getGateId(), stargate);
+        if (stargate.getGateWorld() != null) {
+            worldStargates.computeIfPresent(stargate.getGateWorld().getUID(), (k, v) -> v.remove(stargate) && v.isEmpty() ? null : v);
+        }
+        // Remove block indices
+        if (stargate.isGateHydrated()) {
+            unindexGateBlocks(stargate);
+        }
+        unloadedStargates.remove(stargate);
+        gateLocations.remove(stargate);
+        removeActiveStargate(stargate);
+        final StargateClientRenderer renderer = WormholeXTreme.getClientRenderer();
+        if (renderer != null) {
+            renderer.clear(stargate);
+        }
+        unindexOwner(stargate);
+        unindexName(stargate);
+        // Remove network and sign gate references
+        if (stargate.getGateNetwork() != null) {
+            final StargateNetwork indexed = stargateNetworks.get(stargate.getGateNetwork().getNetworkName().toLowerCase());
+            if (indexed != null) {
+                indexed.getNetworkGateList().remove(stargate);
+            }
+            stargate.getGateNetwork().getNetworkGateList().remove(stargate);
+            StargateGateSet signGateList = stargate.getGateNetwork().getNetworkSignGateList();
+            signGateList.remove(stargate);
+            for (final Stargate s2 : signGateList) {
+                if ((s2.getGateDialSignTarget() == stargate) && s2.isGateSignPowered()) {
+                    s2.setGateDialSignTarget(null);
+                    if (signGateList.size() > 1) {
+                        s2.setGateDialSignIndex(0);
+                        WormholeXTreme.getTimerWheel().schedule(s2, null, ActionToTake.DIAL_SIGN_CLICK, 0);
+                        // s2.teleportSignClicked();
                     }
                 }
-                // Remove structure and portal blocks
-                for (final Location b : stargate.getGateStructureBlocks()) {
-                    getAllGateBlocks().remove(b);
+            }
+        }
+    }
+
+    /**
+     * Attach the gates of a world that has just loaded, reading them from the database.
+     * Gates already in memory are left as they are.
+     * 
+     * @param world The world
+     * @return the number of gates attached
+     */
+    public static int attachWorld(World world) {
+        if (world == null || gateStore == null) {
+            return 0;
+        }
+        // The saves queued when the world last unloaded must land before its gates are read back
+        if (writeQueue != null && !writeQueue.flush(ATTACH_FLUSH_MILLIS, TimeUnit.MILLISECONDS)) {
+            WormholeXTreme.getLog().warning("Gate saves still queued as world " + world.getName() + " loaded; its gates may load as last stored");
+        }
+        final List<Stargate> attached = new ArrayList<>();
+        for (final Stargate stargate : gateStore.findByWorld(world)) {
+            if (stargate.getGateName() != null && !stargateList.containsKey(stargate.getGateName().toLowerCase())) {
+                addStargateToMemory(stargate);
+                attached.add(stargate);
+            }
+        }
+        for (final Stargate stargate : attached) {
+            resolveSavedTargets(stargate);
+        }
+        addSavedActiveStargates(attached);
+        return attached.size();
+    }
+
+    /**
+     * Detach every gate of a world that is unloading, so nothing keeps its blocks or the world itself alive.
+     * Open connections into or out of the world are closed and each gate is saved before it is dropped.
+     * Block, animation and spatial indexes for the world are released in bulk.
+     * 
+     * @param world The world
+     * @return the number of gates detached
+     */
+    public static int detachWorld(World world) {
+        if (world == null) {
+            return 0;
+        }
+        final UUID worldId = world.getUID();
+        final Set<Stargate> gates = worldStargates.get(worldId);
+        int detached = 0;
+        if (gates != null) {
+            for (final Stargate stargate : activeStargates) {
+                final Stargate target = stargate.getGateTarget();
+                if (stargate.isGateActive() && (gates.contains(stargate) || (target != null && gates.contains(target)))) {
+                    stargate.shutdownStargate(false);
                 }
-                for (final Location b : stargate.getGatePortalBlocks()) {
-                    getAllGateBlocks().remove(b);
+            }
+            // Leave the network lists first, so sign fixups only revisit gates that stay loaded.
+            for (final Stargate stargate : gates) {
+                if (stargate.getGateNetwork() != null) {
+                    stargate.getGateNetwork().getNetworkGateList().remove(stargate);
+                    stargate.getGateNetwork().getNetworkSignGateList().remove(stargate);
                 }
             }
-        } catch (Exception e) {
-            // Log or handle exception
+            final List<Stargate> dropped = new ArrayList<>(gates);
+            detached = dropped.size();
+            for (final Stargate stargate : dropped) {
+                saveStargate(stargate);
+                removeStargateFromMemory(stargate);
+            }
+            incompleteStargates.values().removeIf(s -> s.getGateWorld() != null && worldId.equals(s.getGateWorld().getUID()));
+            activatedStargates.values().removeIf(dropped::contains);
+        }
+        worldStargates.remove(worldId);
+        unloadedStargates.keySet().removeIf(s -> s.getGateWorld() != null && worldId.equals(s.getGateWorld().getUID()));
+        allGateBlocks.clearWorld(worldId);
+        openingAnimationBlocks.clearWorld(worldId);
+        activePortalBlocks.clearWorld(worldId);
+        gateLocations.clearWorld(worldId);
+        return detached;
+    }
+
+    /**
+     * Gets the stargates in one world.
+     * 
+     * @param world The world
+     * @return a copy of the world's stargates
+     */
+    public static List<Stargate> getWorldStargates(World world) {
+        final Set<Stargate> gates = world != null ? worldStargates.get(world.getUID()) : null;
+        return gates != null ? new ArrayList<>(gates) : new ArrayList<>();
+    }
+
+    /**
+     * Build the blocks of a gate that was loaded as a descriptor, and index them if the gate is registered.
+     * Called when one of its chunks loads or it is dialed, and by the gate itself when something asks for its blocks.
+     * 
+     * @param stargate The stargate
+     * @return true if the gate was only a descriptor until now
+     */
+    public static boolean hydrateStargate(Stargate stargate) {
+        if (stargate == null || !stargate.hydrate()) {
+            return false;
+        }
+        if (stargateList.get(stargate.getGateName().toLowerCase()) == stargate) {
+            indexGateBlocks(stargate);
+            stargate.setGateProtectionEnvelope(StargateProtectionEnvelope.of(stargate));
+            gateLocations.add(stargate);
+        }
+        return true;
+    }
+
+    /**
+     * Drop the blocks of a registered gate back to its descriptor, unindexing them.
+     * Gates that are in use keep their blocks.
+     * 
+     * @param stargate The stargate
+     * @return true if the gate is now a descriptor
+     */
+    private static boolean dehydrateStargate(Stargate stargate) {
+        if (activatedStargates.containsValue(stargate)) {
             return false;
         }
+        final List<Location> blocks = new ArrayList<>(stargate.getGateStructureBlocks());
+        blocks.addAll(stargate.getGatePortalBlocks());
+        if (!stargate.dehydrate()) {
+            return false;
+        }
+        for (final Location l : blocks) {
+            allGateBlocks.remove(l.getWorld(), l.getBlockX(), l.getBlockY(), l.getBlockZ(), stargate);
+        }
+        stargate.setGateProtectionEnvelope(null);
+        if (stargateList.get(stargate.getGateName().toLowerCase()) == stargate) {
+            gateLocations.add(stargate);
+        }
         return true;
     }
 
+    /**
+     * Hydrate the gates reaching into a chunk that has just loaded.
+     * 
+     * @param world The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return the number of gates hydrated
+     */
+    public static int chunkLoaded(World world, int chunkX, int chunkZ) {
+        int hydrated = 0;
+        for (final Stargate stargate : gateLocations.findInChunk(world, chunkX, chunkZ)) {
+            unloadedStargates.remove(stargate);
+            if (hydrateStargate(stargate)) {
+                hydrated++;
+            }
+        }
+        return hydrated;
+    }
+
+    /**
+     * Note when the hydrated gates reaching into a chunk lost it, so they can be dropped once idle.
+     * 
+     * @param world The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     */
+    public static void chunkUnloaded(World world, int chunkX, int chunkZ) {
+        final long now = System.currentTimeMillis();
+        for (final Stargate stargate : gateLocations.findInChunk(world, chunkX, chunkZ)) {
+            if (stargate.isGateHydrated()) {
+                unloadedStargates.putIfAbsent(stargate, now);
+            }
+        }
+    }
+
+    /**
+     * Drop gates back to descriptors once every chunk they reach into has stayed unloaded for the delay.
+     * Gates with a chunk loaded again are forgotten until the next unload; gates in use are retried later.
+     * Call on the main thread.
+     * 
+     * @param delayMillis How long the chunks must have been unloaded
+     * @return the number of gates dehydrated
+     */
+    public static int dehydrateIdleStargates(long delayMillis) {
+        final long cutoff = System.currentTimeMillis() - delayMillis;
+        int dehydrated = 0;
+        for (final Map.Entry<Stargate, Long> e : unloadedStargates.entrySet()) {
+            final Stargate stargate = e.getKey();
+            if (!stargate.isGateHydrated() || isAnyChunkLoaded(stargate)) {
+                unloadedStargates.remove(stargate);
+            } else if (e.getValue() <= cutoff && dehydrateStargate(stargate)) {
+                unloadedStargates.remove(stargate);
+                dehydrated++;
+            }
+        }
+        return dehydrated;
+    }
+
+    /**
+     * Checks if any chunk under the gate's bounding box is loaded.
+     * 
+     * @param stargate The stargate
+     * @return true if a chunk is loaded
+     */
+    private static boolean isAnyChunkLoaded(Stargate stargate) {
+        final World world = stargate.getGateWorld();
+        if (world == null) {
+            return false;
+        }
+        final int[] bounds = stargate.isGateHydrated() ? hydratedBounds(stargate) : stargate.getGatePackedBounds();
+        if (bounds == null) {
+            return false;
+        }
+        for (int cx = bounds[0] >> 4; cx <= bounds[3] >> 4; cx++) {
+            for (int cz = bounds[2] >> 4; cz <= bounds[5] >> 4; cz++) {
+                if (world.isChunkLoaded(cx, cz)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The x and z extent of a hydrated gate's structure and portal blocks, in the packed bounds layout.
+     * 
+     * @param stargate The stargate
+     * @return the bounds, or null if the gate has no blocks
+     */
+    private static int[] hydratedBounds(Stargate stargate) {
+        final int[] bounds = {Integer.MAX_VALUE, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MIN_VALUE};
+        final List<Location> blocks = new ArrayList<>(stargate.getGateStructureBlocks());
+        blocks.addAll(stargate.getGatePortalBlocks());
+        for (final Location l : blocks) {
+            bounds[0] = Math.min(bounds[0], l.getBlockX());
+            bounds[2] = Math.min(bounds[2], l.getBlockZ());
+            bounds[3] = Math.max(bounds[3], l.getBlockX());
+            bounds[5] = Math.max(bounds[5], l.getBlockZ());
+        }
+        return blocks.isEmpty() ? null : bounds;
+    }
+
+    /**
+     * Rebuild the protection envelope of a stargate after its woosh depth or custom settings change.
+     * 
+     * @param stargate The stargate
+     */
+    public static void updateStargateProtection(Stargate stargate) {
+        if (stargate == null) {
+            return;
+        }
+        stargate.setGateProtectionEnvelope(StargateProtectionEnvelope.of(stargate));
+        if (stargateList.get(stargate.getGateName().toLowerCase()) == stargate) {
+            gateLocations.add(stargate);
+        }
+    }
+
     /**
      * Adds a stargate network by name. Stub implementation.
      * @param network The network name
@@ -0,0 +1,199 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * WormholeXtreme gate name trie.
+ * Case-insensitive prefix tree over the gate names of one network.
+ * A prefix query walks the prefix and then only the subtree below it, so it costs
+ * the prefix length plus the size of the answer, never the whole gate list.
+ */
+public class StargateNameTrie
+{
+
+    /**
+     * A trie node.
+     */
+    private static final class Node
+    {
+
+        /** Children by lower case character, sorted so completions come out in order. */
+        private final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+
+        /** The gate whose name ends here, or null. */
+        private Stargate gate;
+    }
+
+    /** The root. */
+    private final Node root = new Node();
+
+    /** Number of gates in the trie. */
+    private int size;
+
+    /**
+     * Normalise a gate name into a trie key.
+     *
+     * @param name
+     *            the name
+     * @return the key
+     */
+    private static String key(final String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Add the gate under its name, replacing any gate already there.
+     *
+     * @param stargate
+     *            the stargate
+     */
+    public synchronized void add(final Stargate stargate)
+    {
+        final String key = key(stargate.getGateName());
+        Node node = root;
+        for (int i = 0; i < key.length(); i++)
+        {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        if (node.gate == null)
+        {
+            size++;
+        }
+        node.gate = stargate;
+    }
+
+    /**
+     * Collect up to limit gate names starting with the prefix, in alphabetical order.
+     *
+     * @param prefix
+     *            the prefix, compared case-insensitively
+     * @param limit
+     *            the most names to collect
+     * @param out
+     *            the list names are appended to
+     */
+    public synchronized void collect(final String prefix, final int limit, final List<String> out)
+    {
+        final String key = key(prefix);
+        Node node = root;
+        for (int i = 0; (i < key.length()) && (node != null); i++)
+        {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node != null)
+        {
+            collect(node, out.size() + limit, out);
+        }
+    }
+
+    /**
+     * Depth first walk of the subtree, stopping once the list is full.
+     *
+     * @param node
+     *            the node
+     * @param max
+     *            the list size to stop at
+     * @param out
+     *            the out
+     */
+    private static void collect(final Node node, final int max, final List<String> out)
+    {
+        if (out.size() >= max)
+        {
+            return;
+        }
+        if (node.gate != null)
+        {
+            out.add(node.gate.getGateName());
+        }
+        for (final Map.Entry<Character, Node> child : node.children.entrySet())
+        {
+            if (out.size() >= max)
+            {
+                return;
+            }
+            collect(child.getValue(), max, out);
+        }
+    }
+
+    /**
+     * Checks if the trie is empty.
+     *
+     * @return true, if empty
+     */
+    public synchronized boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Remove the gate, only if it is the gate currently stored under its name.
+     * Branches left empty are pruned.
+     *
+     * @param stargate
+     *            the stargate
+     * @return true, if removed
+     */
+    public synchronized boolean remove(final Stargate stargate)
+    {
+        final String key = key(stargate.getGateName());
+        final Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++)
+        {
+            path[i + 1] = path[i].children.get(key.charAt(i));
+            if (path[i + 1] == null)
+            {
+                return false;
+            }
+        }
+        final Node end = path[key.length()];
+        if (end.gate != stargate)
+        {
+            return false;
+        }
+        end.gate = null;
+        size--;
+        for (int i = key.length(); i > 0; i--)
+        {
+            final Node node = path[i];
+            if ((node.gate != null) || !node.children.isEmpty())
+            {
+                break;
+            }
+            path[i - 1].children.remove(key.charAt(i - 1));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of gates.
+     *
+     * @return the size
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+}
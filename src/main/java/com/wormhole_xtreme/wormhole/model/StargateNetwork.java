@@ -18,7 +18,6 @@
  */
 package com.wormhole_xtreme.wormhole.model;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 
 import com.wormhole_xtreme.wormhole.permissions.PermissionsManager;
@@ -41,13 +40,10 @@ public class StargateNetwork
     private String networkName;
 
     /** The gate list. */
-    private final ArrayList<Stargate> networkGateList = new ArrayList<Stargate>();
+    private final StargateGateSet networkGateList = new StargateGateSet();
 
     /** The sign gate list. */
-    private final ArrayList<Stargate> networkSignGateList = new ArrayList<Stargate>();
-
-    /** The gate lock. */
-    private Object networkGateLock = new Object();
+    private final StargateGateSet networkSignGateList = new StargateGateSet();
 
     /** The individual permissions. */
     private final HashMap<String, PermissionsManager.PermissionLevel> networkIndividualPermissions = new HashMap<String, PermissionsManager.PermissionLevel>();
@@ -57,21 +53,11 @@ public class StargateNetwork
      * 
      * @return the network gate list
      */
-    public ArrayList<Stargate> getNetworkGateList()
+    public StargateGateSet getNetworkGateList()
     {
         return networkGateList;
     }
 
-    /**
-     * Gets the network gate lock.
-     * 
-     * @return the network gate lock
-     */
-    public Object getNetworkGateLock()
-    {
-        return networkGateLock;
-    }
-
     /**
      * Gets the network individual permissions.
      * 
@@ -97,22 +83,11 @@ public class StargateNetwork
      * 
      * @return the network sign gate list
      */
-    public ArrayList<Stargate> getNetworkSignGateList()
+    public StargateGateSet getNetworkSignGateList()
     {
         return networkSignGateList;
     }
 
-    /**
-     * Sets the network gate lock.
-     * 
-     * @param networkGateLock
-     *            the new network gate lock
-     */
-    public void setNetworkGateLock(final Object networkGateLock)
-    {
-        this.networkGateLock = networkGateLock;
-    }
-
     /**
      * Sets the network name.
      * 
@@ -0,0 +1,307 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.List;
+
+import org.bukkit.Location;
+
+/**
+ * WormholeXtreme protection envelope.
+ * The blocks around a gate that fire and lava protection covers, precomputed as a bounding box plus a voxel mask.
+ * A block is covered when its squared distance to a structure block is within the woosh depth squared
+ * (if the gate has a woosh depth) or within the fixed block or player radius.
+ */
+public class StargateProtectionEnvelope
+{
+
+    /** Fixed squared radius that protects blocks from burning and igniting. */
+    public static final int BLOCK_RADIUS_SQUARED = 25;
+
+    /** Fixed squared radius that protects players from fire and lava damage. */
+    public static final int PLAYER_RADIUS_SQUARED = 16;
+
+    /** Mask bit for blocks. */
+    private static final byte BLOCK_BIT = 1;
+
+    /** Mask bit for players. */
+    private static final byte PLAYER_BIT = 2;
+
+    /** The bounding box, inclusive min corner. */
+    private final int minX, minY, minZ;
+
+    /** The bounding box size on each axis. */
+    private final int sizeX, sizeY, sizeZ;
+
+    /** The voxel mask, x major then y then z. */
+    private final byte[] mask;
+
+    /**
+     * Build the envelope for the gate from its structure blocks and resolved woosh depth.
+     *
+     * @param stargate
+     *            the stargate
+     * @return the envelope, or null if the gate has no structure blocks
+     */
+    public static StargateProtectionEnvelope of(final Stargate stargate)
+    {
+        final int wooshDepth = stargate.isGateCustom()
+            ? stargate.getGateCustomWooshDepth()
+            : stargate.getGateShape() != null
+                ? stargate.getGateShape().getShapeWooshDepth()
+                : 0;
+        final int wooshDepthSquared = stargate.isGateCustom()
+            ? stargate.getGateCustomWooshDepthSquared()
+            : stargate.getGateShape() != null
+                ? stargate.getGateShape().getShapeWooshDepthSquared()
+                : 0;
+        return of(stargate.getGateStructureBlocks(), wooshDepth != 0
+            ? wooshDepthSquared
+            : 0);
+    }
+
+    /**
+     * Build the envelope around the structure blocks.
+     *
+     * @param structureBlocks
+     *            the structure blocks
+     * @param wooshDepthSquared
+     *            the woosh depth squared, 0 if the gate has no woosh depth
+     * @return the envelope, or null if there are no structure blocks
+     */
+    static StargateProtectionEnvelope of(final List<Location> structureBlocks, final int wooshDepthSquared)
+    {
+        if ((structureBlocks == null) || structureBlocks.isEmpty())
+        {
+            return null;
+        }
+        final int blockRadiusSquared = Math.max(BLOCK_RADIUS_SQUARED, wooshDepthSquared);
+        final int playerRadiusSquared = Math.max(PLAYER_RADIUS_SQUARED, wooshDepthSquared);
+        final int reach = (int) Math.floor(Math.sqrt(Math.max(blockRadiusSquared, playerRadiusSquared)));
+
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, loZ = Integer.MAX_VALUE;
+        int hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE, hiZ = Integer.MIN_VALUE;
+        for (final Location l : structureBlocks)
+        {
+            loX = Math.min(loX, l.getBlockX());
+            loY = Math.min(loY, l.getBlockY());
+            loZ = Math.min(loZ, l.getBlockZ());
+            hiX = Math.max(hiX, l.getBlockX());
+            hiY = Math.max(hiY, l.getBlockY());
+            hiZ = Math.max(hiZ, l.getBlockZ());
+        }
+        return new StargateProtectionEnvelope(structureBlocks, loX - reach, loY - reach, loZ - reach, (hiX - loX) + (2 * reach) + 1, (hiY - loY) + (2 * reach) + 1, (hiZ - loZ) + (2 * reach) + 1, reach, blockRadiusSquared, playerRadiusSquared);
+    }
+
+    /**
+     * Instantiates a new envelope and fills the mask by stamping a sphere around every structure block.
+     *
+     * @param structureBlocks
+     *            the structure blocks
+     * @param minX
+     *            the min x
+     * @param minY
+     *            the min y
+     * @param minZ
+     *            the min z
+     * @param sizeX
+     *            the size x
+     * @param sizeY
+     *            the size y
+     * @param sizeZ
+     *            the size z
+     * @param reach
+     *            the largest radius in whole blocks
+     * @param blockRadiusSquared
+     *            the block radius squared
+     * @param playerRadiusSquared
+     *            the player radius squared
+     */
+    private StargateProtectionEnvelope(final List<Location> structureBlocks, final int minX, final int minY, final int minZ, final int sizeX, final int sizeY, final int sizeZ, final int reach, final int blockRadiusSquared, final int playerRadiusSquared)
+    {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        mask = new byte[sizeX * sizeY * sizeZ];
+        for (final Location l : structureBlocks)
+        {
+            final int bx = l.getBlockX() - minX;
+            final int by = l.getBlockY() - minY;
+            final int bz = l.getBlockZ() - minZ;
+            for (int dx = -reach; dx <= reach; dx++)
+            {
+                for (int dy = -reach; dy <= reach; dy++)
+                {
+                    for (int dz = -reach; dz <= reach; dz++)
+                    {
+                        final int distance = (dx * dx) + (dy * dy) + (dz * dz);
+                        byte bits = 0;
+                        if (distance <= blockRadiusSquared)
+                        {
+                            bits |= BLOCK_BIT;
+                        }
+                        if (distance <= playerRadiusSquared)
+                        {
+                            bits |= PLAYER_BIT;
+                        }
+                        if (bits != 0)
+                        {
+                            mask[index(bx + dx, by + dy, bz + dz)] |= bits;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the max x, inclusive.
+     *
+     * @return the max x
+     */
+    public int getMaxX()
+    {
+        return (minX + sizeX) - 1;
+    }
+
+    /**
+     * Gets the max y, inclusive.
+     *
+     * @return the max y
+     */
+    public int getMaxY()
+    {
+        return (minY + sizeY) - 1;
+    }
+
+    /**
+     * Gets the max z, inclusive.
+     *
+     * @return the max z
+     */
+    public int getMaxZ()
+    {
+        return (minZ + sizeZ) - 1;
+    }
+
+    /**
+     * Gets the min x.
+     *
+     * @return the min x
+     */
+    public int getMinX()
+    {
+        return minX;
+    }
+
+    /**
+     * Gets the min y.
+     *
+     * @return the min y
+     */
+    public int getMinY()
+    {
+        return minY;
+    }
+
+    /**
+     * Gets the min z.
+     *
+     * @return the min z
+     */
+    public int getMinZ()
+    {
+        return minZ;
+    }
+
+    /**
+     * Index into the mask from box relative coordinates.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return the index
+     */
+    private int index(final int x, final int y, final int z)
+    {
+        return (((x * sizeY) + y) * sizeZ) + z;
+    }
+
+    /**
+     * Test the mask bit at the block.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param bit
+     *            the bit
+     * @return true, if set
+     */
+    private boolean test(final int x, final int y, final int z, final byte bit)
+    {
+        final int rx = x - minX;
+        final int ry = y - minY;
+        final int rz = z - minZ;
+        if ((rx < 0) || (ry < 0) || (rz < 0) || (rx >= sizeX) || (ry >= sizeY) || (rz >= sizeZ))
+        {
+            return false;
+        }
+        return (mask[index(rx, ry, rz)] & bit) != 0;
+    }
+
+    /**
+     * Checks if the block is protected from burning and igniting.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return true, if protected
+     */
+    public boolean protectsBlock(final int x, final int y, final int z)
+    {
+        return test(x, y, z, BLOCK_BIT);
+    }
+
+    /**
+     * Checks if a player standing in the block is protected from fire and lava damage.
+     *
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @return true, if protected
+     */
+    public boolean protectsPlayer(final int x, final int y, final int z)
+    {
+        return test(x, y, z, PLAYER_BIT);
+    }
+}
@@ -0,0 +1,732 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import com.wormhole_xtreme.wormhole.utils.LongObjectHashMap;
+
+/**
+ * WormholeXtreme spatial index.
+ * Uniform grid over gate bounding boxes, one grid per world, for nearest gate and radius queries.
+ * A query only visits the grid cells around it, so a location with no gate nearby costs a few lookups.
+ * Gates are also registered in every cell their protection envelope reaches, and the chunks
+ * under each envelope are reported to an optional shared {@link StargateChunkSet}.
+ */
+public class StargateSpatialIndex
+{
+
+    /** Cells are 2^CELL_SHIFT blocks wide on x and z. */
+    private static final int CELL_SHIFT = 5;
+
+    /** The cell width in blocks. */
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    /**
+     * A gate with its bounding box and teleport point.
+     */
+    private static final class Entry
+    {
+
+        /** The gate. */
+        private final Stargate gate;
+
+        /** Bounding box of the gate blocks, inclusive. */
+        private int minX, minY, minZ, maxX, maxY, maxZ;
+
+        /** The teleport point, what nearest gate queries measure to. */
+        private double pointX, pointY, pointZ;
+
+        /** The protection envelope, may be null. */
+        private StargateProtectionEnvelope envelope;
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param gate
+         *            the gate
+         */
+        Entry(final Stargate gate)
+        {
+            this.gate = gate;
+            minX = minY = minZ = Integer.MAX_VALUE;
+            maxX = maxY = maxZ = Integer.MIN_VALUE;
+        }
+
+        /**
+         * Grow the bounding box to include the block.
+         *
+         * @param x
+         *            the x
+         * @param y
+         *            the y
+         * @param z
+         *            the z
+         */
+        void include(final int x, final int y, final int z)
+        {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        /**
+         * Gets the lowest cell x covered by the box or the envelope.
+         *
+         * @return the cell x
+         */
+        int cellMinX()
+        {
+            return (envelope != null
+                ? Math.min(minX, envelope.getMinX())
+                : minX) >> CELL_SHIFT;
+        }
+
+        /**
+         * Gets the highest cell x covered by the box or the envelope.
+         *
+         * @return the cell x
+         */
+        int cellMaxX()
+        {
+            return (envelope != null
+                ? Math.max(maxX, envelope.getMaxX())
+                : maxX) >> CELL_SHIFT;
+        }
+
+        /**
+         * Gets the lowest cell z covered by the box or the envelope.
+         *
+         * @return the cell z
+         */
+        int cellMinZ()
+        {
+            return (envelope != null
+                ? Math.min(minZ, envelope.getMinZ())
+                : minZ) >> CELL_SHIFT;
+        }
+
+        /**
+         * Gets the highest cell z covered by the box or the envelope.
+         *
+         * @return the cell z
+         */
+        int cellMaxZ()
+        {
+            return (envelope != null
+                ? Math.max(maxZ, envelope.getMaxZ())
+                : maxZ) >> CELL_SHIFT;
+        }
+
+        /**
+         * Take or release a chunk set reference on every chunk under the envelope.
+         *
+         * @param worldId
+         *            the world UID
+         * @param chunkSet
+         *            the chunk set
+         * @param add
+         *            true to take, false to release
+         */
+        void envelopeChunks(final UUID worldId, final StargateChunkSet chunkSet, final boolean add)
+        {
+            if ((envelope == null) || (chunkSet == null))
+            {
+                return;
+            }
+            for (int cx = envelope.getMinX() >> 4; cx <= (envelope.getMaxX() >> 4); cx++)
+            {
+                for (int cz = envelope.getMinZ() >> 4; cz <= (envelope.getMaxZ() >> 4); cz++)
+                {
+                    if (add)
+                    {
+                        chunkSet.add(worldId, StargateBlockIndex.chunkKey(cx, cz));
+                    }
+                    else
+                    {
+                        chunkSet.remove(worldId, StargateBlockIndex.chunkKey(cx, cz));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Squared distance from the coordinates to the teleport point.
+         *
+         * @param x
+         *            the x
+         * @param y
+         *            the y
+         * @param z
+         *            the z
+         * @return the squared distance
+         */
+        double pointDistanceSquared(final double x, final double y, final double z)
+        {
+            final double dx = x - pointX;
+            final double dy = y - pointY;
+            final double dz = z - pointZ;
+            return (dx * dx) + (dy * dy) + (dz * dz);
+        }
+
+        /**
+         * Squared distance from the coordinates to the nearest block of the bounding box.
+         *
+         * @param x
+         *            the x
+         * @param y
+         *            the y
+         * @param z
+         *            the z
+         * @return the squared distance, 0 inside the box
+         */
+        double boxDistanceSquared(final double x, final double y, final double z)
+        {
+            final double dx = axisDistance(x, minX, maxX);
+            final double dy = axisDistance(y, minY, maxY);
+            final double dz = axisDistance(z, minZ, maxZ);
+            return (dx * dx) + (dy * dy) + (dz * dz);
+        }
+
+        /**
+         * Distance along one axis from the value to the block range, measured to block corners.
+         *
+         * @param v
+         *            the value
+         * @param min
+         *            the min block
+         * @param max
+         *            the max block
+         * @return the distance, 0 inside the range
+         */
+        private static double axisDistance(final double v, final int min, final int max)
+        {
+            if (v < min)
+            {
+                return min - v;
+            }
+            if (v > max)
+            {
+                return v - max;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * The grid of a single world.
+     */
+    private static final class WorldGrid
+    {
+
+        /** Cell key to the entries overlapping the cell. */
+        private final LongObjectHashMap<ArrayList<Entry>> cells = new LongObjectHashMap<ArrayList<Entry>>();
+
+        /** Every entry in this world. */
+        private final IdentityHashMap<Stargate, Entry> entries = new IdentityHashMap<Stargate, Entry>();
+
+        /** The world UID. */
+        private final UUID worldId;
+
+        /** The shared chunk set, may be null. */
+        private final StargateChunkSet chunkSet;
+
+        /** Bounds of the occupied cells. Only ever grows, which keeps it a safe upper bound. */
+        private int minCellX = Integer.MAX_VALUE, minCellZ = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE, maxCellZ = Integer.MIN_VALUE;
+
+        WorldGrid(final UUID worldId, final StargateChunkSet chunkSet)
+        {
+            this.worldId = worldId;
+            this.chunkSet = chunkSet;
+        }
+
+        synchronized void add(final Entry entry)
+        {
+            remove(entry.gate);
+            entries.put(entry.gate, entry);
+            entry.envelopeChunks(worldId, chunkSet, true);
+            for (int cx = entry.cellMinX(); cx <= entry.cellMaxX(); cx++)
+            {
+                for (int cz = entry.cellMinZ(); cz <= entry.cellMaxZ(); cz++)
+                {
+                    final long key = StargateBlockIndex.chunkKey(cx, cz);
+                    ArrayList<Entry> cell = cells.get(key);
+                    if (cell == null)
+                    {
+                        cell = new ArrayList<Entry>(2);
+                        cells.put(key, cell);
+                    }
+                    cell.add(entry);
+                    minCellX = Math.min(minCellX, cx);
+                    minCellZ = Math.min(minCellZ, cz);
+                    maxCellX = Math.max(maxCellX, cx);
+                    maxCellZ = Math.max(maxCellZ, cz);
+                }
+            }
+        }
+
+        synchronized void remove(final Stargate gate)
+        {
+            final Entry entry = entries.remove(gate);
+            if (entry == null)
+            {
+                return;
+            }
+            entry.envelopeChunks(worldId, chunkSet, false);
+            for (int cx = entry.cellMinX(); cx <= entry.cellMaxX(); cx++)
+            {
+                for (int cz = entry.cellMinZ(); cz <= entry.cellMaxZ(); cz++)
+                {
+                    final long key = StargateBlockIndex.chunkKey(cx, cz);
+                    final ArrayList<Entry> cell = cells.get(key);
+                    if (cell != null)
+                    {
+                        cell.remove(entry);
+                        if (cell.isEmpty())
+                        {
+                            cells.remove(key);
+                        }
+                    }
+                }
+            }
+        }
+
+        synchronized Stargate nearest(final double x, final double y, final double z)
+        {
+            if (entries.isEmpty())
+            {
+                return null;
+            }
+            final int cx = (int) Math.floor(x) >> CELL_SHIFT;
+            final int cz = (int) Math.floor(z) >> CELL_SHIFT;
+            final int maxRing = Math.max(Math.max(cx - minCellX, maxCellX - cx), Math.max(cz - minCellZ, maxCellZ - cz));
+            // Once the walk has touched more cells than there are gates, scanning them all is cheaper.
+            final int budget = entries.size() + 8;
+            int visited = 0;
+            Entry best = null;
+            double bestDistance = Double.MAX_VALUE;
+            for (int ring = 0; ring <= maxRing; ring++)
+            {
+                for (int i = cx - ring; i <= (cx + ring); i++)
+                {
+                    for (int j = cz - ring; j <= (cz + ring); j++)
+                    {
+                        if ((Math.abs(i - cx) != ring) && (Math.abs(j - cz) != ring))
+                        {
+                            continue;
+                        }
+                        if (++visited > budget)
+                        {
+                            return scanNearest(x, y, z);
+                        }
+                        final ArrayList<Entry> cell = cells.get(StargateBlockIndex.chunkKey(i, j));
+                        if (cell == null)
+                        {
+                            continue;
+                        }
+                        for (final Entry e : cell)
+                        {
+                            final double distance = e.pointDistanceSquared(x, y, z);
+                            if (distance < bestDistance)
+                            {
+                                bestDistance = distance;
+                                best = e;
+                            }
+                        }
+                    }
+                }
+                // Every cell past this ring is at least ring * CELL_SIZE blocks away.
+                final double reach = (double) ring * CELL_SIZE;
+                if ((best != null) && (bestDistance <= (reach * reach)))
+                {
+                    break;
+                }
+            }
+            return best != null
+                ? best.gate
+                : null;
+        }
+
+        private Stargate scanNearest(final double x, final double y, final double z)
+        {
+            Entry best = null;
+            double bestDistance = Double.MAX_VALUE;
+            for (final Entry e : entries.values())
+            {
+                final double distance = e.pointDistanceSquared(x, y, z);
+                if (distance < bestDistance)
+                {
+                    bestDistance = distance;
+                    best = e;
+                }
+            }
+            return best != null
+                ? best.gate
+                : null;
+        }
+
+        synchronized Stargate protecting(final int x, final int y, final int z, final boolean player, final Predicate<Stargate> filter)
+        {
+            final ArrayList<Entry> cell = cells.get(StargateBlockIndex.chunkKey(x >> CELL_SHIFT, z >> CELL_SHIFT));
+            if (cell == null)
+            {
+                return null;
+            }
+            for (final Entry e : cell)
+            {
+                if ((e.envelope != null) && (player
+                    ? e.envelope.protectsPlayer(x, y, z)
+                    : e.envelope.protectsBlock(x, y, z)) && ((filter == null) || filter.test(e.gate)))
+                {
+                    return e.gate;
+                }
+            }
+            return null;
+        }
+
+        synchronized boolean within(final double x, final double y, final double z, final double radius, final List<Stargate> found)
+        {
+            final double radiusSquared = radius * radius;
+            final int minCx = (int) Math.floor(x - radius) >> CELL_SHIFT;
+            final int maxCx = (int) Math.floor(x + radius) >> CELL_SHIFT;
+            final int minCz = (int) Math.floor(z - radius) >> CELL_SHIFT;
+            final int maxCz = (int) Math.floor(z + radius) >> CELL_SHIFT;
+            boolean any = false;
+            for (int i = Math.max(minCx, minCellX); i <= Math.min(maxCx, maxCellX); i++)
+            {
+                for (int j = Math.max(minCz, minCellZ); j <= Math.min(maxCz, maxCellZ); j++)
+                {
+                    final ArrayList<Entry> cell = cells.get(StargateBlockIndex.chunkKey(i, j));
+                    if (cell == null)
+                    {
+                        continue;
+                    }
+                    for (final Entry e : cell)
+                    {
+                        if (e.boxDistanceSquared(x, y, z) <= radiusSquared)
+                        {
+                            if (found == null)
+                            {
+                                return true;
+                            }
+                            if ( !found.contains(e.gate))
+                            {
+                                found.add(e.gate);
+                            }
+                            any = true;
+                        }
+                    }
+                }
+            }
+            return any;
+        }
+
+        synchronized void inChunk(final int chunkX, final int chunkZ, final List<Stargate> found)
+        {
+            final int minX = chunkX << 4;
+            final int minZ = chunkZ << 4;
+            final ArrayList<Entry> cell = cells.get(StargateBlockIndex.chunkKey(minX >> CELL_SHIFT, minZ >> CELL_SHIFT));
+            if (cell == null)
+            {
+                return;
+            }
+            for (final Entry e : cell)
+            {
+                if ((e.minX <= (minX + 15)) && (e.maxX >= minX) && (e.minZ <= (minZ + 15)) && (e.maxZ >= minZ))
+                {
+                    found.add(e.gate);
+                }
+            }
+        }
+
+        synchronized void clear()
+        {
+            for (final Entry entry : entries.values())
+            {
+                entry.envelopeChunks(worldId, chunkSet, false);
+            }
+            entries.clear();
+            cells.clear();
+        }
+    }
+
+    /** World UID to grid. */
+    private final ConcurrentHashMap<UUID, WorldGrid> worlds = new ConcurrentHashMap<UUID, WorldGrid>();
+
+    /** The shared chunk set, may be null. */
+    private final StargateChunkSet chunkSet;
+
+    /**
+     * Instantiates a new spatial index.
+     */
+    public StargateSpatialIndex()
+    {
+        this(null);
+    }
+
+    /**
+     * Instantiates a new spatial index that reports envelope chunks to the chunk set.
+     *
+     * @param chunkSet
+     *            the chunk set, may be null
+     */
+    public StargateSpatialIndex(final StargateChunkSet chunkSet)
+    {
+        this.chunkSet = chunkSet;
+    }
+
+    /**
+     * Add the gate, or refresh it if it is already indexed.
+     * Gates without a world or without blocks are not indexed. A gate that is only a descriptor is indexed by
+     * its packed bounds.
+     *
+     * @param gate
+     *            the gate
+     */
+    public void add(final Stargate gate)
+    {
+        if (gate == null)
+        {
+            return;
+        }
+        final Entry entry = new Entry(gate);
+        World world = null;
+        if ( !gate.isGateHydrated())
+        {
+            final int[] bounds = gate.getGatePackedBounds();
+            if (bounds != null)
+            {
+                entry.include(bounds[0], bounds[1], bounds[2]);
+                entry.include(bounds[3], bounds[4], bounds[5]);
+            }
+            world = gate.getGateWorld();
+        }
+        else
+        {
+            for (final Location l : gate.getGateStructureBlocks())
+            {
+                entry.include(l.getBlockX(), l.getBlockY(), l.getBlockZ());
+                world = world != null
+                    ? world
+                    : l.getWorld();
+            }
+            for (final Location l : gate.getGatePortalBlocks())
+            {
+                entry.include(l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            }
+        }
+        entry.envelope = gate.getGateProtectionEnvelope();
+        final Location teleport = gate.getGatePlayerTeleportLocation();
+        if (teleport != null)
+        {
+            entry.pointX = teleport.getX();
+            entry.pointY = teleport.getY();
+            entry.pointZ = teleport.getZ();
+            entry.include(teleport.getBlockX(), teleport.getBlockY(), teleport.getBlockZ());
+            world = teleport.getWorld() != null
+                ? teleport.getWorld()
+                : world;
+        }
+        else if (entry.minX <= entry.maxX)
+        {
+            entry.pointX = (entry.minX + entry.maxX + 1) / 2.0;
+            entry.pointY = entry.minY;
+            entry.pointZ = (entry.minZ + entry.maxZ + 1) / 2.0;
+        }
+        if ((world == null) || (entry.minX > entry.maxX))
+        {
+            return;
+        }
+        worlds.computeIfAbsent(world.getUID(), k -> new WorldGrid(k, chunkSet)).add(entry);
+    }
+
+    /**
+     * Clear the whole index.
+     */
+    public void clear()
+    {
+        for (final WorldGrid grid : worlds.values())
+        {
+            grid.clear();
+        }
+        worlds.clear();
+    }
+
+    /**
+     * Clear everything indexed in one world.
+     *
+     * @param worldId
+     *            the world UID
+     */
+    public void clearWorld(final UUID worldId)
+    {
+        final WorldGrid grid = worlds.remove(worldId);
+        if (grid != null)
+        {
+            grid.clear();
+        }
+    }
+
+    /**
+     * Find every gate whose bounding box reaches into the chunk.
+     *
+     * @param world
+     *            the world
+     * @param chunkX
+     *            the chunk x
+     * @param chunkZ
+     *            the chunk z
+     * @return the gates, empty if none
+     */
+    public List<Stargate> findInChunk(final World world, final int chunkX, final int chunkZ)
+    {
+        final List<Stargate> found = new ArrayList<Stargate>();
+        final WorldGrid grid = world != null
+            ? worlds.get(world.getUID())
+            : null;
+        if (grid != null)
+        {
+            grid.inChunk(chunkX, chunkZ, found);
+        }
+        return found;
+    }
+
+    /**
+     * Find the gate whose teleport point is closest to the location, in the same world.
+     *
+     * @param location
+     *            the location
+     * @return the closest gate, or null if the world has none
+     */
+    public Stargate findNearest(final Location location)
+    {
+        final WorldGrid grid = grid(location);
+        return grid != null
+            ? grid.nearest(location.getX(), location.getY(), location.getZ())
+            : null;
+    }
+
+    /**
+     * Find a gate whose protection envelope covers the block coordinates.
+     *
+     * @param world
+     *            the world
+     * @param x
+     *            the x
+     * @param y
+     *            the y
+     * @param z
+     *            the z
+     * @param player
+     *            true to test the player radius, false for the block radius
+     * @param filter
+     *            only return gates passing the filter, may be null
+     * @return the gate, or null if the coordinates are unprotected
+     */
+    public Stargate findProtecting(final World world, final int x, final int y, final int z, final boolean player, final Predicate<Stargate> filter)
+    {
+        if (world == null)
+        {
+            return null;
+        }
+        final WorldGrid grid = worlds.get(world.getUID());
+        return grid != null
+            ? grid.protecting(x, y, z, player, filter)
+            : null;
+    }
+
+    /**
+     * Find every gate with a block within the radius of the location.
+     *
+     * @param location
+     *            the location
+     * @param radius
+     *            the radius in blocks
+     * @return the gates, empty if none
+     */
+    public List<Stargate> findWithin(final Location location, final double radius)
+    {
+        final List<Stargate> found = new ArrayList<Stargate>();
+        final WorldGrid grid = grid(location);
+        if (grid != null)
+        {
+            grid.within(location.getX(), location.getY(), location.getZ(), radius, found);
+        }
+        return found;
+    }
+
+    /**
+     * Checks if any gate has a block within the radius of the location.
+     *
+     * @param location
+     *            the location
+     * @param radius
+     *            the radius in blocks
+     * @return true, if a gate is that close
+     */
+    public boolean isAnyWithin(final Location location, final double radius)
+    {
+        final WorldGrid grid = grid(location);
+        return (grid != null) && grid.within(location.getX(), location.getY(), location.getZ(), radius, null);
+    }
+
+    /**
+     * Gets the grid for the location's world.
+     *
+     * @param location
+     *            the location
+     * @return the grid, or null
+     */
+    private WorldGrid grid(final Location location)
+    {
+        if ((location == null) || (location.getWorld() == null))
+        {
+            return null;
+        }
+        return worlds.get(location.getWorld().getUID());
+    }
+
+    /**
+     * Remove the gate from the index.
+     *
+     * @param gate
+     *            the gate
+     */
+    public void remove(final Stargate gate)
+    {
+        if (gate == null)
+        {
+            return;
+        }
+        for (final WorldGrid grid : worlds.values())
+        {
+            grid.remove(gate);
+        }
+    }
+}
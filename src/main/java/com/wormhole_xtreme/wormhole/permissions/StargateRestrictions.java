@@ -24,9 +24,7 @@ import org.bukkit.entity.Player;
 
 import com.wormhole_xtreme.wormhole.WormholeXTreme;
 import com.wormhole_xtreme.wormhole.config.WormholeConfig;
-import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable;
 import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable.ActionToTake;
-import com.wormhole_xtreme.wormhole.model.Stargate;
 import com.wormhole_xtreme.wormhole.model.StargateManager;
 import com.wormhole_xtreme.wormhole.permissions.WXPermissions.PermissionType;
 
@@ -112,7 +110,7 @@ public class StargateRestrictions
         {
             getPlayerUseCooldownStart().put(player, System.nanoTime());
             getPlayerUseCooldownGroup().put(player, cooldownGroup);
-            WormholeXTreme.getScheduler().scheduleSyncDelayedTask(WormholeXTreme.getThisPlugin(), new StargateUpdateRunnable(player, ActionToTake.COOLDOWN_REMOVE), cooldownGroup.getGroupValue() * 20);
+            WormholeXTreme.getTimerWheel().schedule(null, player, ActionToTake.COOLDOWN_REMOVE, cooldownGroup.getGroupValue() * 20);
         }
     }
 
@@ -181,14 +179,7 @@ public class StargateRestrictions
             {
                 restrictionGroup = RestrictionGroup.BR_GROUP_THREE;
             }
-            int gateCount = 0;
-            for (final Stargate stargate : StargateManager.getAllGates())
-            {
-                if ((stargate.getGateOwner() != null) && stargate.getGateOwner().equalsIgnoreCase(player.getName()))
-                {
-                    gateCount++;
-                }
-            }
+            final int gateCount = StargateManager.getOwnerStargateCount(player.getName());
             return (restrictionGroup != null) && (gateCount != 0) && (gateCount >= restrictionGroup.getGroupValue());
         }
         return false;
@@ -0,0 +1,315 @@
+/*
+ *   Wormhole X-Treme Plugin for Bukkit
+ *   Copyright (C) 2024 Wormhole X-Treme Team
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wormhole_xtreme.wormhole.utils;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * WormholeXTreme LongObjectHashMap.
+ * Open addressing hash map keyed by primitive longs, so lookups never box a key.
+ * Null values are not supported. Not thread safe, callers synchronize.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class LongObjectHashMap<V>
+{
+
+    /** The default capacity, always a power of two. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** The keys. */
+    private long[] keys;
+
+    /** The values, a null slot is an empty slot. */
+    private Object[] values;
+
+    /** The number of mappings. */
+    private int size;
+
+    /** The resize threshold. */
+    private int threshold;
+
+    /**
+     * Instantiates a new long object hash map.
+     */
+    public LongObjectHashMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new long object hash map.
+     *
+     * @param expected
+     *            the expected number of mappings
+     */
+    public LongObjectHashMap(final int expected)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while ((capacity * 3) / 4 < expected)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Mix the key bits so packed coordinates spread over the table.
+     *
+     * @param key
+     *            the key
+     * @return the mixed hash
+     */
+    private static int mix(final long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * Allocate the backing arrays.
+     *
+     * @param capacity
+     *            the capacity
+     */
+    private void allocate(final int capacity)
+    {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = (capacity * 3) / 4;
+    }
+
+    /**
+     * Clear all mappings.
+     */
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Checks if the key is mapped.
+     *
+     * @param key
+     *            the key
+     * @return true, if mapped
+     */
+    public boolean containsKey(final long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Call the action on every key.
+     *
+     * @param action
+     *            the action
+     */
+    public void forEachKey(final LongConsumer action)
+    {
+        final long[] k = keys;
+        final Object[] vals = values;
+        for (int i = 0; i < vals.length; i++)
+        {
+            if (vals[i] != null)
+            {
+                action.accept(k[i]);
+            }
+        }
+    }
+
+    /**
+     * Call the action on every value.
+     *
+     * @param action
+     *            the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(final Consumer<? super V> action)
+    {
+        final Object[] vals = values;
+        for (int i = 0; i < vals.length; i++)
+        {
+            if (vals[i] != null)
+            {
+                action.accept((V) vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the value mapped to the key.
+     *
+     * @param key
+     *            the key
+     * @return the value, or null if not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key)
+    {
+        final long[] k = keys;
+        final Object[] vals = values;
+        final int mask = k.length - 1;
+        int i = mix(key) & mask;
+        while (vals[i] != null)
+        {
+            if (k[i] == key)
+            {
+                return (V) vals[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the map is empty.
+     *
+     * @return true, if empty
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Map the key to the value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value, must not be null
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("LongObjectHashMap does not support null values.");
+        }
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                final V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold)
+        {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Rehash into a table of the new capacity.
+     *
+     * @param capacity
+     *            the capacity
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(final int capacity)
+    {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the key.
+     *
+     * @param key
+     *            the key
+     * @return the removed value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key)
+    {
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                final V old = (V) values[i];
+                shiftDown(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Backward shift deletion, keeps probe chains intact without tombstones.
+     *
+     * @param slot
+     *            the slot being emptied
+     */
+    private void shiftDown(final int slot)
+    {
+        final int mask = keys.length - 1;
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (values[i] != null)
+        {
+            final int home = mix(keys[i]) & mask;
+            // Move the entry back if the gap lies on its probe path from home.
+            if (((i - home) & mask) >= ((i - gap) & mask))
+            {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * Gets the number of mappings.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return size;
+    }
+}
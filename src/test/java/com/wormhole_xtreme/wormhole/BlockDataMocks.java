@@ -0,0 +1,34 @@
+package com.wormhole_xtreme.wormhole;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.mockito.MockedStatic;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Block data is made by the server, which tests do not have. Compiling gate frames or filling a gate needs it,
+ * so tests open this around them to hand out mock block data knowing its material.
+ */
+public final class BlockDataMocks {
+
+    private BlockDataMocks() {
+    }
+
+    /**
+     * Mocks {@link Bukkit#createBlockData(Material)}, which {@link Material#createBlockData()} goes through, on
+     * the calling thread until closed.
+     *
+     * @return the static mock, to close after the test
+     */
+    public static MockedStatic<Bukkit> mockBlockData() {
+        MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class);
+        bukkit.when(() -> Bukkit.createBlockData(any(Material.class))).thenAnswer(inv -> {
+            BlockData data = mock(BlockData.class);
+            when(data.getMaterial()).thenReturn(inv.getArgument(0));
+            return data;
+        });
+        return bukkit;
+    }
+}
@@ -0,0 +1,192 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FlatFileGateStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final Logger logger = Logger.getLogger("FlatFileGateStoreTest");
+    private World world;
+    private MockedStatic<Bukkit> bukkit;
+    private Path path;
+    private FlatFileGateStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        bukkit = mockStatic(Bukkit.class);
+        bukkit.when(() -> Bukkit.getWorld(any(UUID.class))).thenReturn(world);
+        bukkit.when(() -> Bukkit.getWorld(any(String.class))).thenReturn(world);
+        path = dir.resolve("stargates.dat");
+        store = new FlatFileGateStore(path, logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        bukkit.close();
+    }
+
+    private Stargate gate(String name) {
+        Stargate stargate = new Stargate();
+        stargate.setGateName(name);
+        stargate.setGateWorld(world);
+        return stargate;
+    }
+
+    private void reopen() throws Exception {
+        store.close();
+        store = new FlatFileGateStore(path, logger);
+    }
+
+    @Test
+    void testWritesSurviveReopen() throws Exception {
+        Stargate a = gate("Abydos");
+        Stargate b = gate("Chulak");
+        assertArrayEquals(new boolean[]{true, true}, store.upsertBatch(List.of(a, b)));
+        assertEquals(0, a.getGateId());
+        assertEquals(1, b.getGateId());
+
+        a.setGateIrisActive(true);
+        assertTrue(store.updateState(a));
+        assertArrayEquals(new boolean[]{true}, store.deleteBatch(List.of(b)));
+        reopen();
+
+        assertEquals(1, store.size());
+        Stargate loaded = store.findByName("Abydos").orElseThrow();
+        assertEquals(0, loaded.getGateId());
+        assertTrue(loaded.isGateIrisActive());
+        assertTrue(store.findByName("Chulak").isEmpty());
+        assertEquals(1, store.findByWorld(world).size());
+
+        // The deleted gate's id is not handed out again
+        Stargate c = gate("Dakara");
+        store.upsertBatch(List.of(c));
+        assertEquals(2, c.getGateId());
+    }
+
+    @Test
+    void testStateUpdateLeavesStructureUnsaved() {
+        Stargate a = gate("Abydos");
+        store.upsertBatch(List.of(a));
+        a.setGateOwner("jack");
+        a.setGateActive(true);
+
+        assertTrue(store.updateState(a));
+        assertEquals(Stargate.DIRTY_STRUCTURE, a.getGateDirty());
+    }
+
+    @Test
+    void testStateWriteOfMissingGateFails() {
+        Stargate a = gate("Abydos");
+        a.setGateId(5);
+        a.takeGateDirty();
+        a.setGateActive(true);
+
+        assertFalse(store.updateState(a));
+        assertEquals(Stargate.DIRTY_STATE, a.getGateDirty());
+    }
+
+    @Test
+    void testCompactionKeepsLatestState() throws Exception {
+        Stargate a = gate("Abydos");
+        Stargate b = gate("Chulak");
+        store.upsertBatch(List.of(a, b));
+        for (int i = 0; i < 50; i++) {
+            a.setGateDialSignIndex(i);
+            store.updateState(a);
+        }
+        store.deleteBatch(List.of(b));
+        store.compact();
+        store.close();
+
+        try (StargateJournal file = StargateJournal.open(path)) {
+            // The live gate, and the delete that keeps the highest id
+            assertEquals(2, file.readAll().size());
+        }
+        store = new FlatFileGateStore(path, logger);
+        assertEquals(49, store.findByName("Abydos").orElseThrow().getGateDialSignIndex());
+        Stargate c = gate("Dakara");
+        store.upsertBatch(List.of(c));
+        assertEquals(2, c.getGateId());
+    }
+
+    @Test
+    void testCompactionOfAnEmptiedStoreRunsOnce() {
+        List<String> compacted = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().startsWith("Compacted")) {
+                    compacted.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.setLevel(Level.FINE);
+        logger.addHandler(handler);
+        try {
+            Stargate a = gate("Abydos");
+            store.upsertBatch(List.of(a));
+            store.deleteBatch(List.of(a));
+
+            store.compact();
+            assertEquals(1, compacted.size());
+            // Only the sentinel keeping the highest id is left, which is not garbage
+            store.compact();
+            store.compact();
+            assertEquals(1, compacted.size());
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(null);
+        }
+    }
+
+    @Test
+    void testStreamAll() {
+        List<Stargate> gates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            gates.add(gate("Gate" + i));
+        }
+        store.upsertBatch(gates);
+
+        List<Stargate> loaded = new ArrayList<>();
+        assertEquals(100, store.streamAll(16, loaded::addAll, s -> fail("Not outdated")));
+        assertEquals(100, loaded.size());
+        for (Stargate stargate : loaded) {
+            assertEquals("Gate" + stargate.getGateId(), stargate.getGateName());
+        }
+    }
+}
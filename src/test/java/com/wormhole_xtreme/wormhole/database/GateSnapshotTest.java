@@ -0,0 +1,113 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class GateSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final Logger logger = Logger.getLogger("GateSnapshotTest");
+    private World world;
+    private MockedStatic<Bukkit> bukkit;
+    private FlatFileGateStore source;
+    private FlatFileGateStore target;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        bukkit = mockStatic(Bukkit.class);
+        bukkit.when(() -> Bukkit.getWorld(any(UUID.class))).thenReturn(world);
+        bukkit.when(() -> Bukkit.getWorld(any(String.class))).thenReturn(world);
+        source = new FlatFileGateStore(dir.resolve("source.dat"), logger);
+        target = new FlatFileGateStore(dir.resolve("target.dat"), logger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        source.close();
+        target.close();
+        bukkit.close();
+    }
+
+    private Stargate gate(String name) {
+        Stargate stargate = new Stargate();
+        stargate.setGateName(name);
+        stargate.setGateWorld(world);
+        return stargate;
+    }
+
+    @Test
+    void testRoundTripKeepsIdsAndState() throws Exception {
+        List<Stargate> gates = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            gates.add(gate("Gate" + i));
+        }
+        source.upsertBatch(gates);
+        source.deleteBatch(List.of(gates.get(7)));
+        gates.get(42).setGateIrisActive(true);
+        gates.get(42).setGateDialSignIndex(3);
+        source.updateState(gates.get(42));
+
+        Path file = dir.resolve("snapshots").resolve("all.wxs");
+        GateSnapshot.Result exported = new GateSnapshot(source, null, logger).export(file);
+        assertEquals(299, exported.getGates());
+        assertFalse(Files.exists(dir.resolve("snapshots").resolve("all.wxs.tmp")));
+
+        GateSnapshot.Result imported = new GateSnapshot(target, null, logger).importFrom(file);
+        assertEquals(299, imported.getGates());
+        assertEquals(0, imported.getFailed());
+        assertEquals(299, target.size());
+        Stargate loaded = target.findByName("Gate42").orElseThrow();
+        assertEquals(42, loaded.getGateId());
+        assertTrue(loaded.isGateIrisActive());
+        assertEquals(3, loaded.getGateDialSignIndex());
+        assertTrue(target.findByName("Gate7").isEmpty());
+
+        // Importing again overwrites the same ids instead of adding gates
+        new GateSnapshot(target, null, logger).importFrom(file);
+        assertEquals(299, target.size());
+        Stargate next = gate("Dakara");
+        target.upsertBatch(List.of(next));
+        assertEquals(300, next.getGateId());
+    }
+
+    @Test
+    void testTruncatedSnapshotWritesNothing() throws Exception {
+        List<Stargate> gates = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            gates.add(gate("Gate" + i));
+        }
+        source.upsertBatch(gates);
+        Path file = dir.resolve("all.wxs");
+        new GateSnapshot(source, null, logger).export(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThrows(IOException.class, () -> new GateSnapshot(target, null, logger).importFrom(file));
+        assertEquals(0, target.size());
+    }
+}
@@ -0,0 +1,158 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.mockito.MockedStatic;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Write throughput and startup load of each gate store, on files in a temporary folder.
+ * Not a unit test; run by hand with the test classpath, optionally giving the number of gates:
+ * <pre>java -cp target/classes:target/test-classes:... com.wormhole_xtreme.wormhole.database.GateStoreBenchmark 20000</pre>
+ */
+public class GateStoreBenchmark {
+
+    private static final int BATCH_SIZE = StargateWriteQueue.DEFAULT_BATCH_SIZE;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Logger logger = Logger.getLogger("GateStoreBenchmark");
+        logger.setLevel(Level.WARNING);
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        Path dir = Files.createTempDirectory("gatestore");
+
+        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
+            bukkit.when(() -> Bukkit.getWorld(any(UUID.class))).thenReturn(world);
+            bukkit.when(() -> Bukkit.getWorld(any(String.class))).thenReturn(world);
+
+            System.out.printf("%d gates, batches of %d%n", count, BATCH_SIZE);
+            System.out.printf("%-10s %14s %14s %14s %10s%n", "store", "insert gate/s", "state upd/s", "reopen ms", "load ms");
+            run("hsqldb", count, world, () -> hsqldb(dir, logger));
+            run("flatfile", count, world, () -> new FlatFileGateStore(dir.resolve("stargates.dat"), logger));
+        }
+    }
+
+    /**
+     * The HSQLDB store as the plugin sets it up, on a database in the folder.
+     */
+    private static GateStore hsqldb(Path dir, Logger logger) throws Exception {
+        String url = "jdbc:hsqldb:file:" + dir.resolve("db").resolve("WormholeXTremeDB") + ";hsqldb.log_data=false;hsqldb.tx=mvcc";
+        WormholeXTreme plugin = mock(WormholeXTreme.class);
+        when(plugin.getLogger()).thenReturn(logger);
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        when(databaseManager.getConnection()).thenAnswer(i -> DriverManager.getConnection(url, "SA", ""));
+        if (!Files.exists(dir.resolve("db"))) {
+            // The first version is laid down by the legacy updater before the initializer runs
+            try (InputStream in = GateStoreBenchmark.class.getResourceAsStream("/sql_commands/db_create_1");
+                 Connection conn = databaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                for (String sql : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                    if (!sql.isBlank()) {
+                        stmt.execute(sql);
+                    }
+                }
+            }
+        }
+        if (!new DatabaseInitializer(plugin, databaseManager).initialize()) {
+            throw new IllegalStateException("Schema setup failed");
+        }
+        return new StargateRepository(plugin, databaseManager, dir.resolve("db").resolve("WormholeXTremeDB.journal"));
+    }
+
+    private static void run(String name, int count, World world, Callable<GateStore> open) throws Exception {
+        List<Stargate> gates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            gates.add(gate(world, i));
+        }
+
+        GateStore store = open.call();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i += BATCH_SIZE) {
+            store.upsertBatch(gates.subList(i, Math.min(count, i + BATCH_SIZE)));
+        }
+        double insert = count / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        List<StargateRow> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            Stargate gate = gates.get(i);
+            gate.setGateActive(!gate.isGateActive());
+            rows.add(StargateRow.saveState(gate));
+            if (rows.size() == BATCH_SIZE || i == count - 1) {
+                store.writeBatch(rows);
+                rows.clear();
+            }
+        }
+        double update = count / ((System.nanoTime() - start) / 1e9);
+        store.close();
+
+        start = System.nanoTime();
+        store = open.call();
+        long reopen = System.nanoTime() - start;
+        AtomicInteger loaded = new AtomicInteger();
+        start = System.nanoTime();
+        store.streamAll(256, chunk -> loaded.addAndGet(chunk.size()), s -> { });
+        long load = System.nanoTime() - start;
+        store.close();
+        if (loaded.get() != count) {
+            throw new IllegalStateException(name + " loaded " + loaded.get() + " of " + count);
+        }
+        System.out.printf("%-10s %14.0f %14.0f %14d %10d%n", name, insert, update, reopen / 1_000_000, load / 1_000_000);
+    }
+
+    /**
+     * A gate the size of the standard 5x5 shape, each one somewhere else.
+     */
+    private static Stargate gate(World world, int n) {
+        int ox = (n % 1000) * 16, oy = 64, oz = (n / 1000) * 16;
+        Stargate s = new Stargate();
+        s.setGateName("Gate" + n);
+        s.setGateOwner("owner" + (n % 50));
+        s.setGateWorld(world);
+        for (int y = 0; y < 7; y++) {
+            for (int z = 0; z < 7; z++) {
+                if (y == 0 || y == 6 || z == 0 || z == 6) {
+                    s.getGateStructureBlocks().add(new Location(world, ox, oy + y, oz + z));
+                } else {
+                    s.getGatePortalBlocks().add(new Location(world, ox, oy + y, oz + z));
+                }
+            }
+        }
+        s.getGateLightBlocks().add(new ArrayList<>());
+        for (int i = 1; i < 6; i++) {
+            s.getGateLightBlocks().add(new ArrayList<>(List.of(new Location(world, ox, oy + i, oz), new Location(world, ox, oy + i, oz + 6))));
+        }
+        s.getGateWooshBlocks().add(new ArrayList<>());
+        for (int d = 1; d <= 4; d++) {
+            ArrayList<Location> layer = new ArrayList<>();
+            for (Location l : s.getGatePortalBlocks()) {
+                layer.add(new Location(world, l.getX() - d, l.getY(), l.getZ()));
+            }
+            s.getGateWooshBlocks().add(layer);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,200 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
+import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class LegacyGateMigratorTest {
+
+    @TempDir
+    Path dir;
+
+    private final Logger logger = Logger.getLogger("LegacyGateMigratorTest");
+    private World world;
+    private MockedStatic<Bukkit> bukkit;
+    private DatabaseManager databaseManager;
+    private StargateRepository store;
+    private Path checkpoint;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenAnswer(inv -> {
+            int x = inv.getArgument(0), y = inv.getArgument(1), z = inv.getArgument(2);
+            Block block = mock(Block.class);
+            when(block.getX()).thenReturn(x);
+            when(block.getY()).thenReturn(y);
+            when(block.getZ()).thenReturn(z);
+            when(block.getWorld()).thenReturn(world);
+            when(block.getLocation()).thenAnswer(i -> new Location(world, x, y, z));
+            return block;
+        });
+        bukkit = mockStatic(Bukkit.class);
+        bukkit.when(() -> Bukkit.getWorld(any(UUID.class))).thenReturn(world);
+        bukkit.when(() -> Bukkit.getWorld("world")).thenReturn(world);
+        bukkit.when(Bukkit::isPrimaryThread).thenReturn(false);
+
+        String url = "jdbc:hsqldb:file:" + dir.resolve("db").resolve("WormholeXTremeDB") + ";hsqldb.log_data=false;hsqldb.tx=mvcc";
+        WormholeXTreme plugin = mock(WormholeXTreme.class);
+        when(plugin.getLogger()).thenReturn(logger);
+        databaseManager = mock(DatabaseManager.class);
+        when(databaseManager.getConnection()).thenAnswer(i -> DriverManager.getConnection(url, "SA", ""));
+        try (InputStream in = getClass().getResourceAsStream("/sql_commands/db_create_1");
+             Connection conn = databaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                if (!sql.isBlank()) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+        assertTrue(new DatabaseInitializer(plugin, databaseManager).initialize());
+        store = new StargateRepository(plugin, databaseManager, dir.resolve("db").resolve("WormholeXTremeDB.journal"));
+        checkpoint = dir.resolve("db").resolve("WormholeXTremeDB.migration");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+        try (Connection conn = databaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+        bukkit.close();
+    }
+
+    /**
+     * A gate as the old StargateDBManager saved it.
+     */
+    private Stargate legacyGate(String name, int n) {
+        int ox = n * 16, oy = 64, oz = 0;
+        Stargate s = new Stargate();
+        s.setGateName(name);
+        s.setGateWorld(world);
+        s.setGateFacing(BlockFace.EAST);
+        s.setGateIrisDeactivationCode("IDC" + n);
+        s.setGateIrisActive(n % 2 == 0);
+        s.setGateDialLeverBlock(world.getBlockAt(ox - 2, oy + 1, oz + 1));
+        s.setGateNameBlockHolder(world.getBlockAt(ox, oy + 7, oz + 3));
+        s.setGatePlayerTeleportLocation(new Location(world, ox - 1.5, oy + 1, oz + 3.5));
+        for (int y = 0; y < 7; y++) {
+            for (int z = 0; z < 7; z++) {
+                Location l = new Location(world, ox, oy + y, oz + z);
+                (y == 0 || y == 6 || z == 0 || z == 6 ? s.getGateStructureBlocks() : s.getGatePortalBlocks()).add(l);
+            }
+        }
+        return s;
+    }
+
+    private void insertLegacy(int id, Stargate s, String worldName) throws Exception {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO Stargates (Id, Name, GateData, Network, WorldName, WorldEnvironment, Owner, GateShape) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            stmt.setInt(1, id);
+            stmt.setString(2, s.getGateName());
+            stmt.setBytes(3, StargateHelper.stargatetoBinary(s));
+            stmt.setString(4, id % 3 == 0 ? "Milky" : null);
+            stmt.setString(5, worldName);
+            stmt.setString(6, "NORMAL");
+            stmt.setString(7, "owner" + id);
+            stmt.setString(8, "Standard");
+            stmt.executeUpdate();
+        }
+    }
+
+    private LegacyGateMigrator migrator() {
+        return new LegacyGateMigrator(databaseManager, store, checkpoint, logger, 4);
+    }
+
+    @Test
+    void testMigratesLegacyRowsAndSkipsCurrentOnes() throws Exception {
+        int count = LegacyGateMigrator.PAGE_SIZE * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            insertLegacy(i, legacyGate("Gate" + i, i), "world");
+        }
+        insertLegacy(count, legacyGate("Elsewhere", count), "nether");
+        Stargate current = new Stargate();
+        current.setGateName("Current");
+        current.setGateWorld(world);
+        store.upsertBatch(List.of(current));
+
+        LegacyGateMigrator.Result result = migrator().migrate();
+        assertEquals(count + 2, result.getScanned());
+        assertEquals(count, result.getMigrated());
+        assertEquals(1, result.getFailed());
+
+        Stargate loaded = store.findByName("Gate9").orElseThrow();
+        assertEquals(9, loaded.getGateId());
+        assertEquals("owner9", loaded.getGateOwner());
+        assertEquals("Milky", loaded.getGateNetwork().getNetworkName());
+        assertEquals("IDC9", loaded.getGateIrisDeactivationCode());
+        assertEquals(BlockFace.EAST, loaded.getGateFacing());
+        assertEquals(24, loaded.getGateStructureBlocks().size());
+        assertEquals(25, loaded.getGatePortalBlocks().size());
+        assertFalse(LegacyGateMigrator.isLegacy(fetchGateData(9)));
+        assertTrue(LegacyGateMigrator.isLegacy(fetchGateData(count)));
+
+        // The failed row is tried again on the next run; the rest are current now
+        assertTrue(Files.readString(checkpoint).contains("complete=false"));
+        result = migrator().migrate();
+        assertEquals(0, result.getMigrated());
+        assertEquals(1, result.getFailed());
+    }
+
+    @Test
+    void testResumesFromCheckpointAndStopsOnceComplete() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            insertLegacy(i, legacyGate("Gate" + i, i), "world");
+        }
+        Files.writeString(checkpoint, "lastId=9\ncomplete=false\nmigrated=10\n");
+
+        LegacyGateMigrator.Result result = migrator().migrate();
+        assertEquals(10, result.getScanned());
+        assertEquals(10, result.getMigrated());
+        assertTrue(LegacyGateMigrator.isLegacy(fetchGateData(9)));
+        assertFalse(LegacyGateMigrator.isLegacy(fetchGateData(10)));
+        assertTrue(Files.readString(checkpoint).contains("complete=true"));
+
+        assertNull(migrator().migrate());
+    }
+
+    private byte[] fetchGateData(int id) throws Exception {
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT GateData FROM Stargates WHERE Id = ?")) {
+            stmt.setInt(1, id);
+            try (var rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBytes(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static Stargate gate(String name, int id) {
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        Stargate stargate = new Stargate();
+        stargate.setGateName(name);
+        stargate.setGateWorld(world);
+        stargate.setGateId(id);
+        return stargate;
+    }
+
+    @Test
+    void testRecordsSurviveReopen() throws Exception {
+        Path path = dir.resolve("gates.journal");
+        Stargate a = gate("Abydos", 3);
+        StargateRow full = StargateRow.save(a);
+        a.setGateIrisActive(true);
+        a.setGateDialSignIndex(4);
+        StargateRow state = StargateRow.save(a);
+        StargateRow delete = StargateRow.delete(gate("Chulak", 5));
+
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            journal.append(full, 3);
+            journal.append(state, 3);
+            journal.append(delete, 5);
+            journal.force();
+        }
+
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            List<StargateRow> rows = journal.readAll();
+            assertEquals(3, rows.size());
+
+            StargateRow r = rows.get(0);
+            assertNull(r.stargate);
+            assertEquals(3, r.id());
+            assertTrue(r.structure);
+            assertEquals("Abydos", r.name);
+            assertArrayEquals(full.data, r.data);
+            assertArrayEquals(full.geometry, r.geometry);
+            assertEquals(full.worldName, r.worldName);
+            assertEquals(full.shape, r.shape);
+
+            r = rows.get(1);
+            assertFalse(r.structure);
+            assertNull(r.data);
+            assertTrue(r.state.irisActive);
+            assertEquals(4, r.state.dialSignIndex);
+
+            r = rows.get(2);
+            assertTrue(r.delete);
+            assertEquals(5, r.id());
+        }
+    }
+
+    @Test
+    void testResetDropsEarlierRecords() throws Exception {
+        Path path = dir.resolve("gates.journal");
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            journal.append(StargateRow.save(gate("A", 1)), 1);
+            journal.append(StargateRow.save(gate("B", 2)), 2);
+            journal.reset();
+            assertEquals(0, journal.size());
+            // Shorter than what it overwrites, so stale records follow it in the file
+            journal.append(StargateRow.delete(gate("C", 3)), 3);
+        }
+
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            List<StargateRow> rows = journal.readAll();
+            assertEquals(1, rows.size());
+            assertTrue(rows.get(0).delete);
+        }
+    }
+
+    @Test
+    void testTornRecordIsDropped() throws Exception {
+        Path path = dir.resolve("gates.journal");
+        int end;
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            journal.append(StargateRow.save(gate("A", 1)), 1);
+            end = 16 + journal.size();
+            journal.append(StargateRow.save(gate("B", 2)), 2);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(end + 20);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            assertEquals(1, journal.readAll().size());
+            journal.append(StargateRow.save(gate("C", 3)), 3);
+        }
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            List<StargateRow> rows = journal.readAll();
+            assertEquals(2, rows.size());
+            assertEquals("C", rows.get(1).name);
+        }
+    }
+
+    @Test
+    void testGrowsPastInitialMapping() throws Exception {
+        Path path = dir.resolve("gates.journal");
+        StargateRow row = StargateRow.save(gate("A".repeat(100), 1));
+        int count;
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            for (count = 0; journal.size() < (3 << 20); count++) {
+                journal.append(row, count);
+            }
+        }
+
+        try (StargateJournal journal = StargateJournal.open(path)) {
+            List<StargateRow> rows = journal.readAll();
+            assertEquals(count, rows.size());
+            assertEquals(count - 1, rows.get(count - 1).id());
+        }
+    }
+}
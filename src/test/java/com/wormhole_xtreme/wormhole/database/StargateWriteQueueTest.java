@@ -0,0 +1,268 @@
+package com.wormhole_xtreme.wormhole.database;
+
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class StargateWriteQueueTest {
+
+    private StargateRepository repository;
+    private StargateWriteQueue queue;
+    private final List<List<StargateRow>> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> writers = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(StargateRepository.class);
+        when(repository.writeBatch(anyList())).thenAnswer(inv -> {
+            List<StargateRow> rows = new ArrayList<>(inv.getArgument(0));
+            batches.add(rows);
+            writers.add(Thread.currentThread());
+            firstBatchStarted.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            boolean[] written = new boolean[rows.size()];
+            Arrays.fill(written, true);
+            return written;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    private static World world() {
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getName()).thenReturn("world");
+        when(world.getEnvironment()).thenReturn(World.Environment.NORMAL);
+        return world;
+    }
+
+    private static Stargate gate(String name) {
+        World world = world();
+        Stargate stargate = mock(Stargate.class);
+        when(stargate.getGateName()).thenReturn(name);
+        when(stargate.getGateWorld()).thenReturn(world);
+        when(stargate.toByteArray()).thenReturn(new byte[]{1});
+        when(stargate.takeGateDirty()).thenReturn(Stargate.DIRTY_STATE | Stargate.DIRTY_STRUCTURE);
+        return stargate;
+    }
+
+    private static Stargate savedGate(String name) {
+        Stargate stargate = new Stargate();
+        stargate.setGateName(name);
+        stargate.setGateWorld(world());
+        stargate.setGateId(7);
+        return stargate;
+    }
+
+    private StargateRow lastRow() {
+        List<StargateRow> last = batches.get(batches.size() - 1);
+        return last.get(last.size() - 1);
+    }
+
+    private static List<Stargate> gates(List<StargateRow> rows) {
+        List<Stargate> gates = new ArrayList<>();
+        for (StargateRow row : rows) {
+            gates.add(row.stargate);
+        }
+        return gates;
+    }
+
+    @Test
+    void testRepeatedSavesCoalesce() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 16);
+        Stargate a = gate("A"), b = gate("B"), c = gate("C");
+
+        CompletableFuture<Boolean> first = queue.save(a);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> b1 = queue.save(b);
+        CompletableFuture<Boolean> c1 = queue.save(c);
+        CompletableFuture<Boolean> b2 = queue.save(b);
+        CompletableFuture<Boolean> b3 = queue.save(b);
+        assertSame(b1, b2);
+        assertSame(b1, b3);
+        assertEquals(2, queue.size());
+
+        release.countDown();
+        assertTrue(queue.flush(5, TimeUnit.SECONDS));
+
+        assertTrue(first.get());
+        assertTrue(b1.get());
+        assertTrue(c1.get());
+        assertEquals(2, batches.size());
+        assertEquals(List.of(a), gates(batches.get(0)));
+        assertEquals(List.of(b, c), gates(batches.get(1)));
+        assertNotSame(Thread.currentThread(), writers.get(0));
+    }
+
+    @Test
+    void testDeleteReplacesQueuedSave() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 16);
+        Stargate a = gate("A"), b = gate("B");
+
+        queue.save(a);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> save = queue.save(b);
+        CompletableFuture<Boolean> delete = queue.delete(b);
+        assertSame(save, delete);
+
+        release.countDown();
+        assertTrue(queue.flush(5, TimeUnit.SECONDS));
+
+        List<StargateRow> second = batches.get(1);
+        assertEquals(1, second.size());
+        assertTrue(second.get(0).delete);
+    }
+
+    @Test
+    void testStateChangeWritesOnlyState() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 16);
+        release.countDown();
+        Stargate gate = savedGate("A");
+
+        assertTrue(queue.save(gate).get(5, TimeUnit.SECONDS));
+        assertTrue(lastRow().structure);
+        assertEquals(0, gate.getGateDirty());
+
+        assertTrue(queue.save(gate).get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size(), "a clean gate writes nothing");
+
+        gate.setGateIrisActive(true);
+        assertEquals(Stargate.DIRTY_STATE, gate.getGateDirty());
+        assertTrue(queue.save(gate).get(5, TimeUnit.SECONDS));
+        StargateRow row = lastRow();
+        assertFalse(row.structure);
+        assertNull(row.data);
+        assertNull(row.geometry);
+        assertTrue(row.state.irisActive);
+    }
+
+    @Test
+    void testStateSaveKeepsQueuedStructure() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 16);
+        queue.save(gate("blocker"));
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        Stargate gate = savedGate("A");
+
+        CompletableFuture<Boolean> first = queue.save(gate);
+        gate.setGateLightsActive(true);
+        assertSame(first, queue.save(gate));
+
+        release.countDown();
+        assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        StargateRow row = lastRow();
+        assertTrue(row.structure);
+        assertNotNull(row.data);
+        assertTrue(row.state.lightsActive);
+        assertEquals(Stargate.DIRTY_STATE | Stargate.DIRTY_STRUCTURE, row.dirty);
+    }
+
+    @Test
+    void testBatchSizeLimitsTransactions() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 2);
+        queue.save(gate("blocker"));
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            queue.save(gate("G" + i));
+        }
+
+        release.countDown();
+        assertTrue(queue.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(4, batches.size());
+        assertEquals(List.of(1, 2, 2, 1), List.of(batches.get(0).size(), batches.get(1).size(), batches.get(2).size(), batches.get(3).size()));
+    }
+
+    @Test
+    void testFullQueueMakesCallersWait() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 1, 16);
+        queue.save(gate("A"));
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        queue.save(gate("B"));
+
+        CompletableFuture<CompletableFuture<Boolean>> blocked = CompletableFuture.supplyAsync(() -> queue.save(gate("C")));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone(), "caller should wait while the queue is full");
+
+        release.countDown();
+        assertTrue(blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testPausedQueueHoldsWritesUntilResumedOrDiscarded() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 1, 16);
+        queue.save(gate("A"));
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(queue.pause(100, TimeUnit.MILLISECONDS), "pause waits for the batch being written");
+        release.countDown();
+        assertTrue(queue.pause(5, TimeUnit.SECONDS));
+
+        // Held past the capacity without making callers wait
+        Stargate b = gate("B"), c = gate("C");
+        CompletableFuture<Boolean> stale = queue.save(b);
+        CompletableFuture<Boolean> kept = queue.save(c);
+        assertFalse(queue.flush(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, batches.size());
+
+        // Only the named gates' writes are dropped
+        assertEquals(1, queue.discard(List.of(b, gate("unqueued"))));
+        assertFalse(stale.get(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> later = queue.save(gate("D"));
+        queue.resume();
+        assertTrue(kept.get(5, TimeUnit.SECONDS));
+        assertTrue(later.get(5, TimeUnit.SECONDS));
+        assertTrue(queue.flush(5, TimeUnit.SECONDS));
+        List<String> written = new ArrayList<>();
+        for (int i = 1; i < batches.size(); i++) {
+            for (StargateRow row : batches.get(i)) {
+                written.add(row.stargate.getGateName());
+            }
+        }
+        assertEquals(List.of("C", "D"), written);
+    }
+
+    @Test
+    void testCloseFlushesAndThenWritesInline() throws Exception {
+        queue = new StargateWriteQueue(repository, Logger.getAnonymousLogger(), 16, 16);
+        release.countDown();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(queue.save(gate("G" + i)));
+        }
+
+        queue.close();
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.isDone());
+            assertTrue(future.get());
+        }
+        assertEquals(0, queue.size());
+
+        CompletableFuture<Boolean> late = queue.save(gate("late"));
+        assertTrue(late.isDone());
+        assertSame(Thread.currentThread(), writers.get(writers.size() - 1));
+    }
+}
@@ -0,0 +1,199 @@
+package com.wormhole_xtreme.wormhole.logic;
+
+import com.wormhole_xtreme.wormhole.BlockDataMocks;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateFrames;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.mockito.MockedStatic;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One full dial animation of a gate (lighting, woosh out and back, portal fill, lights off) drawn in WORLD
+ * mode through the block queue and in CLIENT mode through the client renderer, with players standing by.
+ * Only the plugin's side is timed: the world here is plain proxies, so the block updates, relighting and
+ * chunk packets each world write costs a live server are not, and are reported as a count instead.
+ * Not a unit test; run by hand with the test classpath, optionally giving the number of players:
+ * <pre>java -cp target/classes:target/test-classes:... com.wormhole_xtreme.wormhole.logic.StargateAnimationBenchmark 8</pre>
+ */
+public class StargateAnimationBenchmark {
+
+    private static final int WARMUP = 5_000;
+    private static final int RUNS = 20_000;
+
+    private static final AtomicLong worldWrites = new AtomicLong();
+    private static final AtomicLong packets = new AtomicLong();
+
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        List<Player> online = new ArrayList<>();
+        World world = world(online);
+        for (int i = 0; i < players; i++) {
+            online.add(player(world, i * 3, 64, 6));
+        }
+        Stargate gate = gate(world);
+        MockedStatic<Bukkit> bukkit = BlockDataMocks.mockBlockData();
+        StargateFrames frames = gate.getGateFrames();
+        bukkit.close();
+
+        System.out.printf("%-8s %14s %14s %18s%n", "mode", "ns/animation", "world writes", "packets");
+        StargateBlockQueue queue = new StargateBlockQueue(Integer.MAX_VALUE);
+        run("WORLD", () -> animate(gate, frames, queue, null));
+        StargateClientRenderer renderer = new StargateClientRenderer(64);
+        run("CLIENT", () -> animate(gate, frames, queue, renderer));
+    }
+
+    private static void run(String name, Runnable animation) {
+        for (int i = 0; i < WARMUP; i++) {
+            animation.run();
+        }
+        worldWrites.set(0);
+        packets.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            animation.run();
+        }
+        long ns = (System.nanoTime() - start) / RUNS;
+        System.out.printf("%-8s %14d %14d %18d%n", name, ns, worldWrites.get() / RUNS, packets.get() / RUNS);
+    }
+
+    /**
+     * The steps a dial draws, as Stargate does them in either mode.
+     */
+    private static void animate(Stargate gate, StargateFrames frames, StargateBlockQueue queue, StargateClientRenderer renderer) {
+        World world = frames.getWorld();
+        for (int i = 1; i < frames.getLightFrameCount(); i++) {
+            draw(gate, frames, queue, renderer, frames.getLightFrame(i), frames.getLightData());
+        }
+        for (int i = 1; i < frames.getWooshFrameCount(); i++) {
+            draw(gate, frames, queue, renderer, frames.getWooshFrame(i), frames.getPortalData());
+        }
+        for (int i = frames.getWooshFrameCount() - 1; i > 0; i--) {
+            if (renderer != null) {
+                renderer.hide(gate, frames.getWooshFrame(i));
+            } else {
+                fill(world, queue, frames.getWooshFrame(i), frames.getAirData());
+            }
+        }
+        fill(world, queue, frames.getPortal(), frames.getPortalData());
+        for (int i = 1; i < frames.getLightFrameCount(); i++) {
+            if (renderer != null) {
+                renderer.hide(gate, frames.getLightFrame(i));
+            } else {
+                fill(world, queue, frames.getLightFrame(i), frames.getStructureData());
+            }
+        }
+        fill(world, queue, frames.getPortal(), frames.getAirData());
+        queue.flush();
+    }
+
+    private static void draw(Stargate gate, StargateFrames frames, StargateBlockQueue queue, StargateClientRenderer renderer, int[] frame, BlockData data) {
+        if (renderer != null) {
+            renderer.show(gate, frames, frame, data);
+        } else {
+            fill(frames.getWorld(), queue, frame, data);
+        }
+    }
+
+    private static void fill(World world, StargateBlockQueue queue, int[] frame, BlockData data) {
+        for (int i = 0; i < frame.length; i += 3) {
+            queue.set(world, frame[i], frame[i + 1], frame[i + 2], data);
+        }
+        // Flushed each step, as the tick between steps would
+        queue.flush();
+    }
+
+    /**
+     * A 7 by 7 ring lit in 6 steps around a 5 by 5 portal, wooshing 4 blocks deep.
+     */
+    private static Stargate gate(World world) {
+        Stargate gate = new Stargate();
+        gate.setGateWorld(world);
+        gate.getGateLightBlocks().add(new ArrayList<>());
+        List<Location> ring = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ring.add(new Location(world, i, 64, 0));
+            ring.add(new Location(world, i, 70, 0));
+        }
+        for (int y = 65; y < 70; y++) {
+            ring.add(new Location(world, 0, y, 0));
+            ring.add(new Location(world, 6, y, 0));
+        }
+        for (int step = 0; step < 6; step++) {
+            gate.getGateLightBlocks().add(new ArrayList<>(ring.subList(step * 4, step * 4 + 4)));
+        }
+        gate.getGateWooshBlocks().add(new ArrayList<>());
+        for (int depth = 1; depth <= 4; depth++) {
+            ArrayList<Location> layer = new ArrayList<>();
+            for (int x = 1; x < 6; x++) {
+                for (int y = 65; y < 70; y++) {
+                    layer.add(new Location(world, x, y, depth));
+                    if (depth == 1) {
+                        gate.getGatePortalBlocks().add(new Location(world, x, y, 0));
+                    }
+                }
+            }
+            gate.getGateWooshBlocks().add(layer);
+        }
+        return gate;
+    }
+
+    private static World world(List<Player> online) {
+        UUID uid = UUID.randomUUID();
+        Block block = (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class}, (proxy, method, args) -> {
+            if (method.getName().equals("setBlockData")) {
+                worldWrites.incrementAndGet();
+            }
+            return null;
+        });
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUID":
+                    return uid;
+                case "getBlockAt":
+                    return block;
+                case "getPlayers":
+                    return online;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static Player player(World world, int x, int y, int z) {
+        Location location = new Location(world, x, y, z);
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "sendBlockChange":
+                    packets.incrementAndGet();
+                    return null;
+                case "getLocation":
+                    return location;
+                case "getWorld":
+                    return world;
+                case "isOnline":
+                    return true;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+}
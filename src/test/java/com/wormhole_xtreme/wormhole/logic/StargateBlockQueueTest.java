@@ -0,0 +1,80 @@
+package com.wormhole_xtreme.wormhole.logic;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateBlockQueueTest {
+
+    private final World world = mock(World.class);
+
+    private Block block(int x, int y, int z) {
+        Block block = mock(Block.class);
+        when(block.getWorld()).thenReturn(world);
+        when(block.getX()).thenReturn(x);
+        when(block.getY()).thenReturn(y);
+        when(block.getZ()).thenReturn(z);
+        // The first handle on a position is the one the world hands back
+        if (world.getBlockAt(x, y, z) == null) {
+            when(world.getBlockAt(x, y, z)).thenReturn(block);
+        }
+        return block;
+    }
+
+    @Test
+    void testAppliesOldestFirstWithinBudget() {
+        StargateBlockQueue queue = new StargateBlockQueue(4);
+        BlockData data = mock(BlockData.class);
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Block b = block(i, 64, 0);
+            blocks.add(b);
+            queue.set(b, data);
+        }
+
+        assertEquals(4, queue.tick());
+        assertEquals(6, queue.getPending());
+        InOrder order = inOrder(blocks.toArray());
+        for (int i = 0; i < 4; i++) {
+            order.verify(blocks.get(i)).setBlockData(data, false);
+        }
+        verify(blocks.get(4), never()).setBlockData(any(), anyBoolean());
+
+        assertEquals(4, queue.tick());
+        assertEquals(2, queue.tick());
+        assertEquals(0, queue.tick());
+        assertEquals(10, queue.getApplied());
+    }
+
+    @Test
+    void testCoalescesWritesToTheSameBlock() {
+        StargateBlockQueue queue = new StargateBlockQueue(100);
+        BlockData water = mock(BlockData.class);
+        BlockData air = mock(BlockData.class);
+        Block first = block(1, 64, 1);
+        // Another handle on the same position
+        Block again = block(1, 64, 1);
+        Block other = block(2, 64, 1);
+
+        queue.set(first, water);
+        queue.set(other, water);
+        queue.set(again, air);
+        assertEquals(2, queue.getPending());
+        assertEquals(1, queue.getCoalesced());
+
+        assertEquals(2, queue.flush());
+        verify(first).setBlockData(air, false);
+        verify(first, never()).setBlockData(water, false);
+        verifyNoInteractions(water, air);
+        verify(other).setBlockData(water, false);
+        verify(again, never()).setBlockData(any(), anyBoolean());
+    }
+}
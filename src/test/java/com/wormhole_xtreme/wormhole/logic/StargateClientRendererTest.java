@@ -0,0 +1,126 @@
+package com.wormhole_xtreme.wormhole.logic;
+
+import com.wormhole_xtreme.wormhole.BlockDataMocks;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import com.wormhole_xtreme.wormhole.model.StargateFrames;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateClientRendererTest {
+
+    private final World world = mock(World.class);
+    private final List<Player> online = new ArrayList<>();
+    private final BlockData real = mock(BlockData.class);
+    private MockedStatic<Bukkit> bukkit;
+
+    @BeforeEach
+    void setUp() {
+        bukkit = BlockDataMocks.mockBlockData();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bukkit.close();
+    }
+
+    /**
+     * A player at a position recording each block change as "x,y,z=data".
+     */
+    private Player player(int x, int y, int z, List<String> seen) {
+        Player player = mock(Player.class);
+        when(player.getLocation()).thenReturn(new Location(world, x, y, z));
+        when(player.getWorld()).thenReturn(world);
+        when(player.isOnline()).thenReturn(true);
+        doAnswer(inv -> {
+            Location l = inv.getArgument(0);
+            seen.add(l.getBlockX() + "," + l.getBlockY() + "," + l.getBlockZ() + "=" + (inv.getArgument(1) == real ? "real" : "fake"));
+            return null;
+        }).when(player).sendBlockChange(any(Location.class), any(BlockData.class));
+        online.add(player);
+        return player;
+    }
+
+    private StargateFrames frames(Stargate gate) {
+        ArrayList<Location> portal = new ArrayList<>();
+        portal.add(new Location(world, 0, 64, 0));
+        portal.add(new Location(world, 0, 65, 0));
+        gate.setGateWorld(world);
+        gate.getGatePortalBlocks().addAll(portal);
+        return gate.getGateFrames();
+    }
+
+    @Test
+    void testShowsInRangeAndResyncsPlayersWhoArriveOrLeave() {
+        when(world.getPlayers()).thenReturn(online);
+        Block block = mock(Block.class);
+        when(block.getBlockData()).thenReturn(real);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenReturn(block);
+        List<String> near = new ArrayList<>();
+        List<String> far = new ArrayList<>();
+        Player nearby = player(5, 64, 0, near);
+        Player faraway = player(500, 64, 0, far);
+
+        Stargate gate = new Stargate();
+        StargateFrames frames = frames(gate);
+        StargateClientRenderer renderer = new StargateClientRenderer(16);
+        BlockData fake = mock(BlockData.class);
+        renderer.show(gate, frames, new int[] { 0, 66, 0, 0, 67, 0 }, fake);
+        assertTrue(renderer.isShowing(gate));
+        assertEquals(List.of("0,66,0=fake", "0,67,0=fake"), near);
+        assertTrue(far.isEmpty());
+
+        // Walking up is caught on the next resync, walking off is sent the real blocks back
+        when(faraway.getLocation()).thenReturn(new Location(world, 0, 64, 10));
+        when(nearby.getLocation()).thenReturn(new Location(world, 0, 64, 40));
+        for (int i = 0; i < StargateClientRenderer.RESYNC_TICKS - 1; i++) {
+            renderer.tick();
+        }
+        assertTrue(far.isEmpty());
+        renderer.tick();
+        assertEquals(2, far.size());
+        assertTrue(far.contains("0,66,0=fake") && far.contains("0,67,0=fake"));
+        assertEquals(4, near.size());
+        assertTrue(near.subList(2, 4).contains("0,66,0=real") && near.subList(2, 4).contains("0,67,0=real"));
+
+        renderer.hide(gate, new int[] { 0, 66, 0 });
+        assertEquals("0,66,0=real", far.get(2));
+        renderer.hide(gate, new int[] { 0, 67, 0 });
+        assertEquals("0,67,0=real", far.get(3));
+        assertFalse(renderer.isShowing(gate));
+        assertEquals(0, renderer.getOverlays());
+        verify(world, never()).getBlockAt(0, 64, 0);
+        verify(block, never()).setBlockData(any());
+    }
+
+    @Test
+    void testClearSendsOnlyViewersTheRealBlocks() {
+        when(world.getPlayers()).thenReturn(online);
+        Block block = mock(Block.class);
+        when(block.getBlockData()).thenReturn(real);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenReturn(block);
+        List<String> seen = new ArrayList<>();
+        player(0, 64, 2, seen);
+
+        Stargate gate = new Stargate();
+        StargateClientRenderer renderer = new StargateClientRenderer(16);
+        renderer.show(gate, frames(gate), new int[] { -3, 70, -2 }, mock(BlockData.class));
+        renderer.clear(gate);
+        assertEquals(List.of("-3,70,-2=fake", "-3,70,-2=real"), seen);
+        assertFalse(renderer.isShowing(gate));
+        assertEquals(2, renderer.getSent());
+    }
+}
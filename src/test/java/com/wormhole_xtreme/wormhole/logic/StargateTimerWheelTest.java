@@ -0,0 +1,116 @@
+package com.wormhole_xtreme.wormhole.logic;
+
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
+import com.wormhole_xtreme.wormhole.logic.StargateUpdateRunnable.ActionToTake;
+import com.wormhole_xtreme.wormhole.model.Stargate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateTimerWheelTest {
+
+    private MockedStatic<WormholeXTreme> plugin;
+    private StargateTimerWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        WormholeXTreme instance = mock(WormholeXTreme.class);
+        plugin = mockStatic(WormholeXTreme.class);
+        plugin.when(WormholeXTreme::getThisPlugin).thenReturn(instance);
+        wheel = new StargateTimerWheel(16, Logger.getLogger("StargateTimerWheelTest"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        plugin.close();
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.tick();
+        }
+    }
+
+    @Test
+    void testFiresOnItsTickIncludingPastOneTurn() {
+        Stargate near = mock(Stargate.class);
+        Stargate far = mock(Stargate.class);
+        Stargate now = mock(Stargate.class);
+        wheel.schedule(near, null, ActionToTake.ANIMATE_WOOSH, 5);
+        wheel.schedule(far, null, ActionToTake.SHUTDOWN, 16 * 3 + 5);
+        wheel.schedule(now, null, ActionToTake.LIGHTUP, 0);
+        assertEquals(16, wheel.getSize());
+        assertEquals(3, wheel.getPending());
+
+        tick(1);
+        verify(now).lightStargate(true);
+        tick(3);
+        verify(near, never()).animateOpening();
+        tick(1);
+        verify(near).animateOpening();
+        verify(far, never()).shutdownStargate(anyBoolean());
+
+        // The far timer shares the near one's slot and is passed over each turn until its tick
+        tick(16 * 3 - 1);
+        verify(far, never()).shutdownStargate(anyBoolean());
+        tick(1);
+        verify(far).shutdownStargate(true);
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void testMovingAndCancellingTimers() {
+        Stargate gate = mock(Stargate.class);
+        StargateTimerWheel.Timer timer = new StargateTimerWheel.Timer(gate, null, ActionToTake.SHUTDOWN);
+        wheel.schedule(timer, 3);
+        wheel.schedule(timer, 10);
+        assertEquals(1, wheel.getPending());
+        assertEquals(10, timer.getDeadline());
+        tick(9);
+        verify(gate, never()).shutdownStargate(anyBoolean());
+        tick(1);
+        verify(gate).shutdownStargate(true);
+        assertFalse(timer.isPending());
+
+        // Fired timers can be scheduled again, and cancelled
+        wheel.schedule(timer, 2);
+        assertTrue(wheel.cancel(timer));
+        assertFalse(wheel.cancel(timer));
+        assertFalse(wheel.cancel(null));
+        tick(5);
+        verify(gate, times(1)).shutdownStargate(anyBoolean());
+    }
+
+    @Test
+    void testTimerCancelledByAnotherDueTheSameTickDoesNotRun() {
+        Stargate first = mock(Stargate.class);
+        Stargate second = mock(Stargate.class);
+        StargateTimerWheel.Timer a = new StargateTimerWheel.Timer(first, null, ActionToTake.SHUTDOWN);
+        StargateTimerWheel.Timer b = new StargateTimerWheel.Timer(second, null, ActionToTake.SHUTDOWN);
+        AtomicInteger ran = new AtomicInteger();
+        // Whichever runs first shuts the other down, as closing one end of a wormhole does
+        doAnswer(i -> ran.incrementAndGet() > 0 && wheel.cancel(b)).when(first).shutdownStargate(true);
+        doAnswer(i -> ran.incrementAndGet() > 0 && wheel.cancel(a)).when(second).shutdownStargate(true);
+        doThrow(new IllegalStateException("boom")).when(first).animateOpening();
+        wheel.schedule(a, 4);
+        wheel.schedule(b, 4);
+        wheel.schedule(first, null, ActionToTake.ANIMATE_WOOSH, 4);
+
+        List<StargateTimerWheel.Timer> listed = wheel.getPendingTimers();
+        assertEquals(3, listed.size());
+        tick(4);
+        assertEquals(1, ran.get());
+        // A throwing action is logged and does not stop the wheel
+        verify(first).animateOpening();
+        assertEquals(0, wheel.getPending());
+        assertTrue(wheel.getPendingTimers().isEmpty());
+    }
+}
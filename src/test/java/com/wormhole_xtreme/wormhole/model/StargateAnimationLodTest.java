@@ -0,0 +1,159 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import com.wormhole_xtreme.wormhole.BlockDataMocks;
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
+import com.wormhole_xtreme.wormhole.logic.StargateTimerWheel;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateAnimationLodTest {
+
+    private MockedStatic<WormholeXTreme> plugin;
+    private MockedStatic<Bukkit> bukkit;
+    private StargateTimerWheel wheel;
+    private final World world = mock(World.class);
+    private final List<Player> online = new ArrayList<>();
+    /** The last material set at each position. */
+    private final Map<List<Integer>, Material> placed = new HashMap<>();
+    private final Map<List<Integer>, Integer> writes = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        wheel = new StargateTimerWheel(64, Logger.getLogger("StargateAnimationLodTest"));
+        plugin = mockStatic(WormholeXTreme.class);
+        plugin.when(WormholeXTreme::getThisPlugin).thenReturn(mock(WormholeXTreme.class));
+        plugin.when(WormholeXTreme::getTimerWheel).thenReturn(wheel);
+        plugin.when(WormholeXTreme::getAnimationLodRadius).thenReturn(16);
+        bukkit = BlockDataMocks.mockBlockData();
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getPlayers()).thenReturn(online);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenAnswer(inv -> {
+            List<Integer> xyz = Arrays.asList(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2));
+            Block block = mock(Block.class);
+            doAnswer(set -> {
+                placed.put(xyz, ((BlockData) set.getArgument(0)).getMaterial());
+                writes.merge(xyz, 1, Integer::sum);
+                return null;
+            }).when(block).setBlockData(any(BlockData.class));
+            return block;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        bukkit.close();
+        plugin.close();
+    }
+
+    private Player player(int x, int y, int z) {
+        Player player = mock(Player.class);
+        when(player.getLocation()).thenReturn(new Location(world, x, y, z));
+        online.add(player);
+        return player;
+    }
+
+    private static ArrayList<Location> layer(World world, int... xyz) {
+        ArrayList<Location> layer = new ArrayList<>();
+        for (int i = 0; i < xyz.length; i += 3) {
+            layer.add(new Location(world, xyz[i], xyz[i + 1], xyz[i + 2]));
+        }
+        return layer;
+    }
+
+    /**
+     * A gate lit in 3 steps, wooshing out 2 steps in front of a 2 block portal.
+     */
+    private Stargate gate() {
+        Stargate s = new Stargate();
+        s.setGateWorld(world);
+        s.getGateLightBlocks().add(new ArrayList<>());
+        s.getGateLightBlocks().add(layer(world, 0, 64, 0));
+        s.getGateLightBlocks().add(layer(world, 0, 66, 0));
+        s.getGateLightBlocks().add(layer(world, 0, 68, 0));
+        s.getGateWooshBlocks().add(new ArrayList<>());
+        s.getGateWooshBlocks().add(layer(world, 1, 65, 1));
+        s.getGateWooshBlocks().add(layer(world, 1, 65, 2));
+        s.getGatePortalBlocks().addAll(layer(world, 1, 65, 0, 1, 66, 0));
+        s.setGateActive(true);
+        return s;
+    }
+
+    private static List<Integer> at(int x, int y, int z) {
+        return Arrays.asList(x, y, z);
+    }
+
+    @Test
+    void testUnwatchedGateLightsAndOpensInOneStepEach() {
+        player(500, 64, 0);
+        Stargate s = gate();
+
+        s.lightStargate(true);
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 64, 0)));
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 66, 0)));
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 68, 0)));
+        // Only the woosh is left to run, on the next tick
+        assertEquals(1, wheel.getPending());
+
+        wheel.tick();
+        assertEquals(Material.WATER, placed.get(at(1, 65, 0)));
+        assertEquals(Material.WATER, placed.get(at(1, 66, 0)));
+        assertFalse(writes.containsKey(at(1, 65, 1)));
+        assertFalse(writes.containsKey(at(1, 65, 2)));
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void testAnimationFollowsPlayersComingAndGoingMidSequence() {
+        Player watcher = player(0, 64, 4);
+        Stargate s = gate();
+
+        s.lightStargate(true);
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 64, 0)));
+        assertNull(placed.get(at(0, 66, 0)));
+
+        // Walking off lights the rest at once
+        when(watcher.getLocation()).thenReturn(new Location(world, 300, 64, 0));
+        for (int i = 0; i < 2; i++) {
+            wheel.tick();
+        }
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 66, 0)));
+        assertEquals(Material.GLOWSTONE, placed.get(at(0, 68, 0)));
+
+        // Back in time for the woosh, which plays step by step
+        when(watcher.getLocation()).thenReturn(new Location(world, 0, 64, 4));
+        wheel.tick();
+        assertEquals(Material.WATER, placed.get(at(1, 65, 1)));
+        assertNull(placed.get(at(1, 65, 2)));
+        assertNull(placed.get(at(1, 65, 0)));
+
+        // Off again mid-woosh: what is drawn comes down and the portal fills
+        when(watcher.getLocation()).thenReturn(new Location(world, 300, 64, 0));
+        for (int i = 0; i < 2; i++) {
+            wheel.tick();
+        }
+        assertEquals(Material.AIR, placed.get(at(1, 65, 1)));
+        assertNull(placed.get(at(1, 65, 2)));
+        assertEquals(Material.WATER, placed.get(at(1, 65, 0)));
+        assertEquals(0, wheel.getPending());
+    }
+}
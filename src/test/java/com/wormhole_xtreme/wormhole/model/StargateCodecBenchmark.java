@@ -0,0 +1,211 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size and speed of the gate codec against the formats it replaces.
+ * Not a unit test; run by hand with the test classpath:
+ * <pre>java -cp target/classes:target/test-classes:... com.wormhole_xtreme.wormhole.model.StargateCodecBenchmark</pre>
+ */
+public class StargateCodecBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int RUNS = 5_000;
+
+    private interface Encoder {
+        byte[] encode(Stargate s) throws Exception;
+    }
+
+    private interface Decoder {
+        Object decode(byte[] data) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        World world = world("world");
+        Stargate gate = StargateCodecTest.gate(world);
+        StargateNetwork network = StargateManager.addStargateNetwork("Bench");
+        gate.setGateNetwork(network);
+
+        System.out.printf("%-22s %8s %14s %14s%n", "format", "bytes", "encode ns/op", "decode ns/op");
+        run("codec", s -> StargateCodec.encode(s, false), d -> StargateCodec.decode(d, world), gate);
+        run("codec (deflate)", s -> StargateCodec.encode(s, true), d -> StargateCodec.decode(d, world), gate);
+        run("stargatetoBinary v8", StargateHelper::stargatetoBinary, d -> StargateHelper.parseVersionedData(d, world, "Abydos", network), gate);
+        run("gzip object map", StargateCodecBenchmark::objectMap, StargateCodecBenchmark::readObjectMap, gate);
+    }
+
+    /**
+     * A world backed by plain proxies, so the harness costs little next to the formats being timed.
+     */
+    private static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        Map<List<Integer>, Block> blocks = new HashMap<>();
+        World[] world = new World[1];
+        world[0] = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUID":
+                    return uid;
+                case "getName":
+                    return name;
+                case "getBlockAt":
+                    if (args.length == 3) {
+                        return blocks.computeIfAbsent(List.of((Integer) args[0], (Integer) args[1], (Integer) args[2]), xyz -> block(world[0], xyz));
+                    }
+                    Location l = (Location) args[0];
+                    return blocks.computeIfAbsent(List.of(l.getBlockX(), l.getBlockY(), l.getBlockZ()), xyz -> block(world[0], xyz));
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+        return world[0];
+    }
+
+    private static Block block(World world, List<Integer> xyz) {
+        int x = xyz.get(0), y = xyz.get(1), z = xyz.get(2);
+        return (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getX":
+                    return x;
+                case "getY":
+                    return y;
+                case "getZ":
+                    return z;
+                case "getWorld":
+                    return world;
+                case "getLocation":
+                    return new Location(world, x, y, z);
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static void run(String name, Encoder encoder, Decoder decoder, Stargate gate) throws Exception {
+        byte[] data = encoder.encode(gate);
+        for (int i = 0; i < WARMUP; i++) {
+            encoder.encode(gate);
+            decoder.decode(data);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            encoder.encode(gate);
+        }
+        long encode = (System.nanoTime() - start) / RUNS;
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            decoder.decode(data);
+        }
+        long decode = (System.nanoTime() - start) / RUNS;
+        System.out.printf("%-22s %8d %14d %14d%n", name, data.length, encode, decode);
+    }
+
+    /**
+     * The object map the gate table stored before the codec, written the same way.
+     */
+    private static byte[] objectMap(Stargate s) throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("gateId", s.getGateId());
+        data.put("gateName", s.getGateName());
+        data.put("gateOwner", s.getGateOwner());
+        data.put("gateNetwork", s.getGateNetwork() != null ? s.getGateNetwork().getNetworkName() : null);
+        data.put("gateWorld", s.getGateWorld().getUID().toString());
+        data.put("gateActive", s.isGateActive());
+        data.put("gateFacing", s.getGateFacing().name());
+        data.put("gateLightsActive", s.isGateLightsActive());
+        data.put("gateTempSignTarget", s.getGateTempSignTarget());
+        data.put("gateDialSignIndex", s.getGateDialSignIndex());
+        data.put("gateIrisDeactivationCode", s.getGateIrisDeactivationCode());
+        data.put("gateIrisActive", s.isGateIrisActive());
+        data.put("gateCustom", s.isGateCustom());
+        data.put("gateCustomStructureMaterial", s.getGateCustomStructureMaterial().name());
+        data.put("gateCustomPortalMaterial", s.getGateCustomPortalMaterial().name());
+        data.put("gateCustomLightMaterial", s.getGateCustomLightMaterial().name());
+        data.put("gateCustomIrisMaterial", s.getGateCustomIrisMaterial().name());
+        data.put("gateCustomWooshTicks", s.getGateCustomWooshTicks());
+        data.put("gateCustomLightTicks", s.getGateCustomLightTicks());
+        data.put("gateCustomWooshDepth", s.getGateCustomWooshDepth());
+        data.put("gateCustomWooshDepthSquared", s.getGateCustomWooshDepthSquared());
+        data.put("gatePlayerTeleportLocation", location(s.getGatePlayerTeleportLocation()));
+        data.put("gateMinecartTeleportLocation", location(s.getGateMinecartTeleportLocation()));
+        data.put("gateDialLeverBlock", location(block(s.getGateDialLeverBlock())));
+        data.put("gateIrisLeverBlock", location(block(s.getGateIrisLeverBlock())));
+        data.put("gateNameBlockHolder", location(block(s.getGateNameBlockHolder())));
+        data.put("gateStructureBlocks", locations(s.getGateStructureBlocks()));
+        data.put("gatePortalBlocks", locations(s.getGatePortalBlocks()));
+        List<List<Map<String, Object>>> lights = new ArrayList<>();
+        for (List<Location> layer : s.getGateLightBlocks()) {
+            lights.add(locations(layer));
+        }
+        data.put("gateLightBlocks", lights);
+        List<List<Map<String, Object>>> woosh = new ArrayList<>();
+        for (List<Location> layer : s.getGateWooshBlocks()) {
+            woosh.add(locations(layer));
+        }
+        data.put("gateWooshBlocks", woosh);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(baos))) {
+            oos.writeObject(data);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Only the stream read; turning the map back into a gate needs a live server.
+     */
+    private static Object readObjectMap(byte[] data) throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+            return ois.readObject();
+        }
+    }
+
+    private static Location block(Block b) {
+        return b != null ? b.getLocation() : null;
+    }
+
+    private static Map<String, Object> location(Location l) {
+        if (l == null) {
+            return null;
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("world", l.getWorld().getUID().toString());
+        map.put("x", l.getX());
+        map.put("y", l.getY());
+        map.put("z", l.getZ());
+        map.put("yaw", l.getYaw());
+        map.put("pitch", l.getPitch());
+        return map;
+    }
+
+    private static List<Map<String, Object>> locations(List<Location> locations) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Location l : locations) {
+            list.add(location(l));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,387 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import com.wormhole_xtreme.wormhole.logic.StargateHelper;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class StargateCodecTest {
+
+    /**
+     * A mock world handing out one mock block per coordinate.
+     */
+    static World world(String name) {
+        World world = mock(World.class);
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        Map<List<Integer>, Block> blocks = new HashMap<>();
+        when(world.getUID()).thenReturn(uid);
+        when(world.getName()).thenReturn(name);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenAnswer(inv -> {
+            int x = inv.getArgument(0), y = inv.getArgument(1), z = inv.getArgument(2);
+            return blocks.computeIfAbsent(Arrays.asList(x, y, z), k -> {
+                Block block = mock(Block.class);
+                when(block.getX()).thenReturn(x);
+                when(block.getY()).thenReturn(y);
+                when(block.getZ()).thenReturn(z);
+                when(block.getWorld()).thenReturn(world);
+                when(block.getLocation()).thenAnswer(i -> new Location(world, x, y, z));
+                return block;
+            });
+        });
+        return world;
+    }
+
+    /**
+     * A gate the size of the standard 5x5 shape, far from the world origin.
+     */
+    static Stargate gate(World world) {
+        int ox = 12_345, oy = 64, oz = -67_890;
+        Stargate s = new Stargate();
+        s.setGateId(42);
+        s.setGateName("Abydos");
+        s.setGateOwner("daniel");
+        s.setGateWorld(world);
+        s.setGateFacing(BlockFace.NORTH);
+        s.setGateIrisDeactivationCode("1234");
+        s.setGateIrisActive(true);
+        s.setGateLightsActive(true);
+        s.setGateCustom(true);
+        s.setGateCustomStructureMaterial(Material.OBSIDIAN);
+        s.setGateCustomPortalMaterial(Material.WATER);
+        s.setGateCustomLightMaterial(Material.GLOWSTONE);
+        s.setGateCustomIrisMaterial(Material.STONE);
+        s.setGateCustomWooshTicks(3);
+        s.setGateCustomLightTicks(2);
+        s.setGateCustomWooshDepth(4);
+        s.setGateCustomWooshDepthSquared(16);
+        s.setGateDialSignIndex(2);
+        s.setGateTempSignTarget(7);
+        for (int y = 0; y < 7; y++) {
+            for (int z = 0; z < 7; z++) {
+                if (y == 0 || y == 6 || z == 0 || z == 6) {
+                    s.getGateStructureBlocks().add(new Location(world, ox, oy + y, oz + z));
+                } else {
+                    s.getGatePortalBlocks().add(new Location(world, ox, oy + y, oz + z));
+                }
+            }
+        }
+        s.getGateLightBlocks().add(new ArrayList<>());
+        for (int i = 1; i < 6; i++) {
+            s.getGateLightBlocks().add(new ArrayList<>(Arrays.asList(new Location(world, ox, oy + i, oz), new Location(world, ox, oy + i, oz + 6))));
+        }
+        s.getGateWooshBlocks().add(new ArrayList<>());
+        for (int d = 1; d <= 4; d++) {
+            ArrayList<Location> layer = new ArrayList<>();
+            for (Location l : s.getGatePortalBlocks()) {
+                layer.add(new Location(world, l.getX() - d, l.getY(), l.getZ()));
+            }
+            s.getGateWooshBlocks().add(layer);
+        }
+        s.setGateDialLeverBlock(world.getBlockAt(ox - 2, oy + 1, oz + 1));
+        s.setGateIrisLeverBlock(world.getBlockAt(ox - 2, oy + 2, oz + 1));
+        s.setGateNameBlockHolder(world.getBlockAt(ox, oy + 7, oz + 3));
+        s.setGatePlayerTeleportLocation(new Location(world, ox - 1.5, oy + 1, oz + 3.5, 90f, 0f));
+        s.setGateMinecartTeleportLocation(new Location(world, ox - 2.5, oy + 1.5, oz + 3.5, 90f, 0f));
+        return s;
+    }
+
+    private static void assertSameBlock(Block expected, Block actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getY(), actual.getY());
+        assertEquals(expected.getZ(), actual.getZ());
+    }
+
+    private static void assertSameLocation(Location expected, Location actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getY(), actual.getY());
+        assertEquals(expected.getZ(), actual.getZ());
+        assertEquals(expected.getYaw(), actual.getYaw());
+        assertEquals(expected.getPitch(), actual.getPitch());
+    }
+
+    private static void assertSameLocations(List<Location> expected, List<Location> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameLocation(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSameGate(Stargate expected, Stargate actual) {
+        assertEquals(expected.getGateId(), actual.getGateId());
+        assertEquals(expected.getGateName(), actual.getGateName());
+        assertEquals(expected.getGateOwner(), actual.getGateOwner());
+        assertEquals(expected.getGateNetwork(), actual.getGateNetwork());
+        assertEquals(expected.getGateFacing(), actual.getGateFacing());
+        assertEquals(expected.getGateIrisDeactivationCode(), actual.getGateIrisDeactivationCode());
+        assertEquals(expected.isGateActive(), actual.isGateActive());
+        assertEquals(expected.isGateLightsActive(), actual.isGateLightsActive());
+        assertEquals(expected.isGateSignPowered(), actual.isGateSignPowered());
+        assertEquals(expected.isGateIrisActive(), actual.isGateIrisActive());
+        assertEquals(expected.isGateCustom(), actual.isGateCustom());
+        assertEquals(expected.getGateCustomStructureMaterial(), actual.getGateCustomStructureMaterial());
+        assertEquals(expected.getGateCustomPortalMaterial(), actual.getGateCustomPortalMaterial());
+        assertEquals(expected.getGateCustomLightMaterial(), actual.getGateCustomLightMaterial());
+        assertEquals(expected.getGateCustomIrisMaterial(), actual.getGateCustomIrisMaterial());
+        assertEquals(expected.getGateCustomWooshTicks(), actual.getGateCustomWooshTicks());
+        assertEquals(expected.getGateCustomLightTicks(), actual.getGateCustomLightTicks());
+        assertEquals(expected.getGateCustomWooshDepth(), actual.getGateCustomWooshDepth());
+        assertEquals(expected.getGateCustomWooshDepthSquared(), actual.getGateCustomWooshDepthSquared());
+        assertEquals(expected.getGateDialSignIndex(), actual.getGateDialSignIndex());
+        assertEquals(expected.getGateTempSignTarget(), actual.getGateTempSignTarget());
+        assertSameBlock(expected.getGateDialLeverBlock(), actual.getGateDialLeverBlock());
+        assertSameBlock(expected.getGateIrisLeverBlock(), actual.getGateIrisLeverBlock());
+        assertSameBlock(expected.getGateNameBlockHolder(), actual.getGateNameBlockHolder());
+        assertSameBlock(expected.getGateDialSignBlock(), actual.getGateDialSignBlock());
+        assertSameLocation(expected.getGatePlayerTeleportLocation(), actual.getGatePlayerTeleportLocation());
+        assertSameLocation(expected.getGateMinecartTeleportLocation(), actual.getGateMinecartTeleportLocation());
+        assertSameLocations(expected.getGateStructureBlocks(), actual.getGateStructureBlocks());
+        assertSameLocations(expected.getGatePortalBlocks(), actual.getGatePortalBlocks());
+        assertEquals(expected.getGateLightBlocks().size(), actual.getGateLightBlocks().size());
+        for (int i = 0; i < expected.getGateLightBlocks().size(); i++) {
+            assertSameLocations(expected.getGateLightBlocks().get(i), actual.getGateLightBlocks().get(i));
+        }
+        assertEquals(expected.getGateWooshBlocks().size(), actual.getGateWooshBlocks().size());
+        for (int i = 0; i < expected.getGateWooshBlocks().size(); i++) {
+            assertSameLocations(expected.getGateWooshBlocks().get(i), actual.getGateWooshBlocks().get(i));
+        }
+    }
+
+    @Test
+    void testRoundTripUncompressed() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+        gate.setGateNetwork(StargateManager.addStargateNetwork("CodecNet"));
+
+        byte[] data = StargateCodec.encode(gate, false);
+        assertTrue(StargateCodec.isEncoded(data));
+        Stargate decoded = StargateCodec.decode(data, world);
+
+        assertSameGate(gate, decoded);
+        assertSame(world, decoded.getGateWorld());
+    }
+
+    @Test
+    void testRoundTripCompressed() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+
+        byte[] plain = StargateCodec.encode(gate, false);
+        byte[] deflated = StargateCodec.encode(gate, true);
+        assertTrue(deflated.length < plain.length, "woosh layers should deflate");
+
+        assertSameGate(gate, StargateCodec.decode(deflated, world));
+    }
+
+    @Test
+    void testParseNeedsNoWorld() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+
+        byte[] data = StargateCodec.encode(gate, true);
+        clearInvocations(world);
+        StargateCodec.Decoded parsed = StargateCodec.parse(data);
+        verifyNoInteractions(world);
+
+        assertEquals(42, parsed.getGateId());
+        assertEquals("Abydos", parsed.getGateName());
+        assertEquals(world.getUID(), parsed.getWorldId());
+        assertEquals("world", parsed.getWorldName());
+        assertSameGate(gate, parsed.bind(world));
+    }
+
+    @Test
+    void testGeometryStoredApart() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+
+        byte[] data = StargateCodec.encodeWithoutGeometry(gate, true);
+        byte[] geometry = StargateCodec.encodeGeometry(gate, true);
+        assertTrue(data.length < StargateCodec.encode(gate, true).length);
+        assertFalse(StargateCodec.isEncoded(geometry));
+
+        assertSameGate(gate, StargateCodec.parse(data, geometry).bind(world));
+
+        StargateCodec.Decoded bare = StargateCodec.parse(data);
+        assertFalse(bare.hasGeometry());
+        assertTrue(bare.bind(world).getGateStructureBlocks().isEmpty());
+        assertThrows(IOException.class, () -> StargateCodec.parse(data, data));
+    }
+
+    @Test
+    void testDescriptorHydratesAndDehydrates() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+        byte[] data = StargateCodec.encodeWithoutGeometry(gate, true);
+        byte[] geometry = StargateCodec.encodeGeometry(gate, true);
+
+        clearInvocations(world);
+        Stargate descriptor = StargateCodec.parse(data, geometry).bindDescriptor(world, geometry);
+        verify(world, never()).getBlockAt(anyInt(), anyInt(), anyInt());
+        assertFalse(descriptor.isGateHydrated());
+        assertEquals("Abydos", descriptor.getGateName());
+        // Structure and portal blocks, and the teleport point a block and a half in front
+        assertArrayEquals(new int[]{12_343, 64, -67_890, 12_345, 70, -67_884}, descriptor.getGatePackedBounds());
+
+        assertTrue(descriptor.hydrate());
+        assertFalse(descriptor.hydrate());
+        assertNull(descriptor.getGatePackedBounds());
+        assertSameGate(gate, descriptor);
+
+        // Lit gates keep their blocks
+        assertFalse(descriptor.dehydrate());
+        descriptor.setGateLightsActive(false);
+        assertTrue(descriptor.dehydrate());
+        assertFalse(descriptor.isGateHydrated());
+        assertNotNull(descriptor.getGatePackedBounds());
+
+        // Asking for blocks hydrates it again
+        assertSameLocations(gate.getGateStructureBlocks(), descriptor.getGateStructureBlocks());
+        assertTrue(descriptor.isGateHydrated());
+        assertSameBlock(gate.getGateIrisLeverBlock(), descriptor.getGateIrisLeverBlock());
+    }
+
+    @Test
+    void testDescriptorEncodesWithoutHydrating() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+        byte[] geometry = StargateCodec.encodeGeometry(gate, true);
+        Stargate descriptor = StargateCodec.parse(StargateCodec.encodeWithoutGeometry(gate, true), geometry).bindDescriptor(world, geometry);
+
+        clearInvocations(world);
+        byte[] whole = StargateCodec.encode(descriptor, true);
+        byte[] data = StargateCodec.encodeWithoutGeometry(descriptor, true);
+        assertSame(geometry, StargateCodec.encodeGeometry(descriptor, true));
+        assertFalse(descriptor.isGateHydrated());
+        verify(world, never()).getBlockAt(anyInt(), anyInt(), anyInt());
+
+        assertSameGate(gate, StargateCodec.decode(whole, world));
+        assertSameGate(gate, StargateCodec.parse(data, geometry).bind(world));
+    }
+
+    @Test
+    void testMinimalGate() throws IOException {
+        World world = world("nether");
+        Stargate gate = new Stargate();
+        gate.setGateName("Bare");
+        gate.setGateWorld(world);
+        gate.setGatePlayerTeleportLocation(new Location(world, -3.5, 70, 8.5, 180f, 0f));
+
+        Stargate decoded = StargateCodec.decode(StargateCodec.encode(gate, true), world);
+
+        assertSameGate(gate, decoded);
+        assertNull(decoded.getGateNetwork());
+        assertNull(decoded.getGateShape());
+        assertNull(decoded.getGateOwner());
+        assertNull(decoded.getGateCustomIrisMaterial());
+        assertEquals(-1, decoded.getGateTempTargetId());
+    }
+
+    @Test
+    void testArbitraryPrecisionLocationsSurvive() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+        gate.setGatePlayerTeleportLocation(new Location(world, 12_343.123456789, 65.1, -67_886.3333, 87.25f, -4.5f));
+
+        assertSameGate(gate, StargateCodec.decode(StargateCodec.encode(gate, false), world));
+    }
+
+    @Test
+    void testActiveGateStoresTargetId() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+        gate.setGateActive(true);
+        gate.setGateTempTargetId(99);
+
+        Stargate decoded = StargateCodec.decode(StargateCodec.encode(gate, true), world);
+
+        assertTrue(decoded.isGateActive());
+        assertEquals(99, decoded.getGateTempTargetId());
+    }
+
+    @Test
+    void testSmallerThanLegacyFormats() throws IOException {
+        World world = world("world");
+        Stargate gate = gate(world);
+
+        byte[] codec = StargateCodec.encode(gate, true);
+        byte[] binary = StargateHelper.stargatetoBinary(gate);
+
+        assertTrue(codec.length * 4 < binary.length, "codec " + codec.length + " vs binary " + binary.length);
+    }
+
+    @Test
+    void testTruncatedDataThrows() {
+        World world = world("world");
+        byte[] plain = StargateCodec.encode(gate(world), false);
+        byte[] deflated = StargateCodec.encode(gate(world), true);
+
+        for (byte[] data : Arrays.asList(plain, deflated)) {
+            for (int len : new int[]{4, 5, data.length / 2, data.length - 1}) {
+                assertThrows(IOException.class, () -> StargateCodec.decode(Arrays.copyOf(data, len), world));
+            }
+        }
+    }
+
+    @Test
+    void testNegativeCountsAndOversizedLengthsThrow() {
+        World world = world("world");
+        byte[] data = StargateCodec.encodeWithoutGeometry(gate(world), false);
+        // Origin 0,0,0 then a block count of -1
+        byte[] geometry = {'W', 'G', 1, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        // Deflated payload claiming to inflate to 2 MiB
+        byte[] oversized = {'W', 'X', 1, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x78, 0x01};
+
+        assertThrows(IOException.class, () -> StargateCodec.parse(data, geometry));
+        assertThrows(IOException.class, () -> StargateCodec.decode(oversized, world));
+    }
+
+    @Test
+    void testNewerSchemaRejected() {
+        World world = world("world");
+        byte[] data = StargateCodec.encode(gate(world), false);
+        data[2] = (byte) (StargateCodec.SCHEMA_VERSION + 1);
+
+        assertThrows(IOException.class, () -> StargateCodec.decode(data, world));
+    }
+
+    @Test
+    void testLegacyFormatsNotMistaken() throws IOException {
+        World world = world("world");
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(new byte[]{1, 2, 3, 4});
+        }
+
+        assertFalse(StargateCodec.isEncoded(gzip.toByteArray()));
+        assertFalse(StargateCodec.isEncoded(StargateHelper.stargatetoBinary(gate(world))));
+        assertFalse(StargateCodec.isEncoded(null));
+        assertFalse(StargateCodec.isEncoded(new byte[]{'W', 'X'}));
+    }
+}
@@ -0,0 +1,103 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import com.wormhole_xtreme.wormhole.BlockDataMocks;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StargateFramesTest {
+
+    private MockedStatic<Bukkit> bukkit;
+
+    @BeforeEach
+    void setUp() {
+        bukkit = BlockDataMocks.mockBlockData();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bukkit.close();
+    }
+
+    private static ArrayList<Location> layer(World world, int... xyz) {
+        ArrayList<Location> layer = new ArrayList<>();
+        for (int i = 0; i < xyz.length; i += 3) {
+            layer.add(new Location(world, xyz[i], xyz[i + 1], xyz[i + 2]));
+        }
+        return layer;
+    }
+
+    private static Stargate gate(World world) {
+        Stargate s = new Stargate();
+        s.setGateWorld(world);
+        s.getGateLightBlocks().add(new ArrayList<>());
+        s.getGateLightBlocks().add(layer(world, 0, 64, 0, 4, 64, 0));
+        s.getGateLightBlocks().add(layer(world, 0, 68, 0));
+        s.getGateWooshBlocks().add(new ArrayList<>());
+        s.getGateWooshBlocks().add(layer(world, 1, 65, 1));
+        s.getGatePortalBlocks().addAll(layer(world, 1, 65, 0, 2, 65, 0, 3, 65, 0));
+        return s;
+    }
+
+    @Test
+    void testCompilesLayersIntoCoordinateTriples() {
+        World world = mock(World.class);
+        StargateFrames frames = StargateFrames.compile(gate(world));
+
+        assertSame(world, frames.getWorld());
+        assertEquals(3, frames.getLightFrameCount());
+        assertEquals(0, frames.getLightFrame(0).length);
+        assertArrayEquals(new int[] { 0, 64, 0, 4, 64, 0 }, frames.getLightFrame(1));
+        assertArrayEquals(new int[] { 0, 68, 0 }, frames.getLightFrame(2));
+        assertNull(frames.getLightFrame(3));
+        assertNull(frames.getLightFrame(-1));
+
+        assertEquals(2, frames.getWooshFrameCount());
+        assertArrayEquals(new int[] { 1, 65, 1 }, frames.getWooshFrame(1));
+        assertNull(frames.getWooshFrame(2));
+        // Gates with woosh steps get no depth layers
+        assertEquals(0, frames.getWooshDepth());
+        assertNull(frames.getDepthLayer(1));
+
+        assertEquals(9, frames.getPortal().length);
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(frames.getPortal()[0], frames.getPortal()[3], frames.getPortal()[6]));
+        assertEquals(2, frames.getLightTicks());
+        assertEquals(2, frames.getWooshTicks());
+
+        // Defaults without a shape, and fills reuse the compiled data
+        assertEquals(Material.WATER, frames.getPortalData().getMaterial());
+        assertSame(frames.getPortalData(), frames.getData(Material.WATER));
+        assertSame(frames.getAirData(), frames.getData(Material.AIR));
+        assertEquals(Material.LAVA, frames.getData(Material.LAVA).getMaterial());
+    }
+
+    @Test
+    void testFramesAreKeptUntilTheStructureChanges() {
+        Stargate s = gate(mock(World.class));
+        StargateFrames first = s.getGateFrames();
+        assertSame(first, s.getGateFrames());
+
+        // State changes do not touch what is drawn
+        s.setGateIrisActive(true);
+        assertSame(first, s.getGateFrames());
+
+        s.setGateCustomPortalMaterial(Material.LAVA);
+        StargateFrames second = s.getGateFrames();
+        assertNotSame(first, second);
+
+        s.setGateFacing(BlockFace.NORTH);
+        assertNotSame(second, s.getGateFrames());
+    }
+}
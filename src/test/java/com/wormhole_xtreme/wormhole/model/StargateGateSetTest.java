@@ -0,0 +1,123 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StargateGateSetTest {
+
+    private static List<Stargate> gates(int count) {
+        List<Stargate> gates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Stargate s = new Stargate();
+            s.setGateName("G" + i);
+            gates.add(s);
+        }
+        return gates;
+    }
+
+    @Test
+    void testAddAndRemove() {
+        StargateGateSet set = new StargateGateSet();
+        List<Stargate> gates = gates(3);
+        for (Stargate s : gates) {
+            assertTrue(set.add(s));
+        }
+        assertFalse(set.add(gates.get(1)));
+        assertFalse(set.add(null));
+        assertEquals(3, set.size());
+        assertEquals(gates, set.snapshot());
+
+        assertTrue(set.remove(gates.get(1)));
+        assertFalse(set.remove(gates.get(1)));
+        assertFalse(set.contains(gates.get(1)));
+        assertEquals(-1, set.ordinalOf(gates.get(1)));
+        assertNull(set.get(1));
+        assertEquals(List.of(gates.get(0), gates.get(2)), set.snapshot());
+        assertArrayEquals(new Stargate[]{gates.get(0), null, gates.get(2)}, set.toOrdinalArray());
+    }
+
+    @Test
+    void testOrdinalsStayPutThroughGrowthAndRemovals() {
+        StargateGateSet set = new StargateGateSet();
+        List<Stargate> gates = gates(100);
+        for (Stargate s : gates) {
+            set.add(s);
+        }
+        // Removing most gates would once pack the rest down and renumber them
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 != 0) {
+                set.remove(gates.get(i));
+            }
+        }
+        for (Stargate s : gates(50)) {
+            set.add(s);
+        }
+        for (int i = 0; i < 100; i += 10) {
+            assertEquals(i, set.ordinalOf(gates.get(i)));
+            assertSame(gates.get(i), set.get(i));
+        }
+        assertEquals(60, set.size());
+        assertEquals(150, set.toOrdinalArray().length);
+    }
+
+    @Test
+    void testEmptySetStartsOver() {
+        StargateGateSet set = new StargateGateSet();
+        List<Stargate> gates = gates(20);
+        for (Stargate s : gates) {
+            set.add(s);
+        }
+        for (Stargate s : gates) {
+            set.remove(s);
+        }
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.toOrdinalArray().length);
+
+        Stargate again = gates(1).get(0);
+        set.add(again);
+        assertEquals(0, set.ordinalOf(again));
+    }
+
+    @Test
+    void testReadersSeeStableGatesWhileWritersChurn() throws Exception {
+        StargateGateSet set = new StargateGateSet();
+        List<Stargate> stable = gates(5);
+        for (Stargate s : stable) {
+            set.add(s);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+        for (int w = 0; w < 2; w++) {
+            new Thread(() -> {
+                try {
+                    for (int round = 0; round < 200; round++) {
+                        List<Stargate> churn = gates(20);
+                        churn.forEach(set::add);
+                        churn.forEach(set::remove);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        while (done.getCount() > 0) {
+            List<Stargate> seen = set.snapshot();
+            assertTrue(seen.containsAll(stable));
+            for (int i = 0; i < stable.size(); i++) {
+                assertEquals(i, set.ordinalOf(stable.get(i)));
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(stable, set.snapshot());
+    }
+}
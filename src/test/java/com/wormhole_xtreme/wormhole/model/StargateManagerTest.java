@@ -0,0 +1,107 @@
+package com.wormhole_xtreme.wormhole.model;
+
+import com.wormhole_xtreme.wormhole.WormholeXTreme;
+import com.wormhole_xtreme.wormhole.database.GateStore;
+import com.wormhole_xtreme.wormhole.database.StargateWriteQueue;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.MockedStatic;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class StargateManagerTest {
+
+    private static Stargate gate(World world, String name, int id, int x) {
+        Stargate s = new Stargate();
+        s.setGateName(name);
+        s.setGateId(id);
+        s.setGateWorld(world);
+        s.getGatePortalBlocks().add(new Location(world, x, 65, 0));
+        return s;
+    }
+
+    /**
+     * Initializes the manager with a store that loads the gates.
+     */
+    @SuppressWarnings("unchecked")
+    private static void load(Stargate... gates) {
+        GateStore store = mock(GateStore.class);
+        when(store.streamAll(anyInt(), any(), any())).thenAnswer(inv -> {
+            ((Consumer<List<Stargate>>) inv.getArgument(1)).accept(List.of(gates));
+            return gates.length;
+        });
+        WormholeXTreme plugin = mock(WormholeXTreme.class);
+        when(plugin.getGateStore()).thenReturn(store);
+
+        try (MockedStatic<WormholeXTreme> statics = mockStatic(WormholeXTreme.class)) {
+            statics.when(WormholeXTreme::getLog).thenReturn(Logger.getLogger("StargateManagerTest"));
+            StargateManager.initialize(plugin);
+        }
+    }
+
+    @Test
+    void testAttachingAWorldWaitsForQueuedSavesBeforeReading() {
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        GateStore store = mock(GateStore.class);
+        StargateWriteQueue queue = mock(StargateWriteQueue.class);
+        when(queue.flush(anyLong(), any())).thenReturn(true);
+        when(store.findByWorld(world)).thenReturn(List.of(gate(world, "Abydos", 1, 0)));
+        WormholeXTreme plugin = mock(WormholeXTreme.class);
+        when(plugin.getGateStore()).thenReturn(store);
+        when(plugin.getStargateWriteQueue()).thenReturn(queue);
+
+        try (MockedStatic<WormholeXTreme> statics = mockStatic(WormholeXTreme.class)) {
+            statics.when(WormholeXTreme::getLog).thenReturn(Logger.getLogger("StargateManagerTest"));
+            StargateManager.initialize(plugin);
+            assertEquals(1, StargateManager.attachWorld(world));
+        }
+
+        InOrder order = inOrder(queue, store);
+        order.verify(queue).flush(anyLong(), any());
+        order.verify(store).findByWorld(world);
+        assertNotNull(StargateManager.getStargate("Abydos"));
+    }
+
+    @Test
+    void testGatesSavedOpenAreInTheActivePortalIndexAfterLoading() {
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        Stargate open = gate(world, "Abydos", 1, 0);
+        open.setGateActive(true);
+        Stargate closed = gate(world, "Chulak", 2, 10);
+
+        load(open, closed);
+
+        assertTrue(StargateManager.isAnyStargateActive());
+        assertSame(open, StargateManager.getActiveGateFromPortal(world, 0, 65, 0));
+        assertNull(StargateManager.getActiveGateFromPortal(world, 10, 65, 0));
+        StargateManager.removeActiveStargate(open);
+    }
+
+    @Test
+    void testGatesLoadedWithTheirBlocksOutOfViewAreDehydrated() {
+        World world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.isChunkLoaded(0, 0)).thenReturn(true);
+        Stargate seen = gate(world, "Abydos", 1, 0);
+        seen.getGateStructureBlocks().add(new Location(world, 0, 64, 0));
+        Stargate unseen = gate(world, "Chulak", 2, 100);
+        unseen.getGateStructureBlocks().add(new Location(world, 100, 64, 0));
+
+        load(seen, unseen);
+
+        assertTrue(seen.isGateHydrated());
+        assertFalse(unseen.isGateHydrated());
+        assertArrayEquals(new int[]{100, 64, 0, 100, 65, 0}, unseen.getGatePackedBounds());
+    }
+}